@@ -85,6 +85,19 @@ public class TimedEventExecutor implements EventExecutor {
         }
     }
 
+    // PlayLand start - baked event dispatch
+    /**
+     * Gets the wrapped executor.
+     *
+     * @return the wrapped executor
+     */
+    @org.jetbrains.annotations.ApiStatus.Internal
+    @NotNull
+    public EventExecutor getExecutor() {
+        return this.executor;
+    }
+    // PlayLand end - baked event dispatch
+
     @Override
     @NotNull
     public String toString() {
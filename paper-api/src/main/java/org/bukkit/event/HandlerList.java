@@ -38,6 +38,20 @@ public class HandlerList {
      */
     private static final java.util.Set<String> EVENT_TYPES = java.util.concurrent.ConcurrentHashMap.newKeySet();
 
+    // PlayLand start - baked event dispatch
+    /**
+     * Dispatcher the server generated for the baked handlers, see {@link #getBakedDispatcher()}.
+     */
+    private volatile Object bakedDispatcher;
+    // PlayLand end - baked event dispatch
+    // PlayLand start - has listeners fast path
+    /**
+     * Whether any listener is registered, kept up to date by every
+     * registration change so checking it never needs to bake.
+     */
+    private volatile boolean hasListeners;
+    // PlayLand end - has listeners fast path
+
     /**
      * Bake all handler lists. Best used just after all normal event
      * registration is complete, ie just after all plugins are loaded if
@@ -62,6 +76,8 @@ public class HandlerList {
                         list.clear();
                     }
                     h.handlers = null;
+                    h.bakedDispatcher = null; // PlayLand - baked event dispatch
+                    h.hasListeners = false; // PlayLand - has listeners fast path
                 }
             }
         }
@@ -122,7 +138,9 @@ public class HandlerList {
         if (handlerslots.get(listener.getPriority()).contains(listener))
             throw new IllegalStateException("This listener is already registered to priority " + listener.getPriority().toString());
         handlers = null;
+        bakedDispatcher = null; // PlayLand - baked event dispatch
         handlerslots.get(listener.getPriority()).add(listener);
+        hasListeners = true; // PlayLand - has listeners fast path
     }
 
     /**
@@ -144,6 +162,8 @@ public class HandlerList {
     public synchronized void unregister(@NotNull RegisteredListener listener) {
         if (handlerslots.get(listener.getPriority()).remove(listener)) {
             handlers = null;
+            bakedDispatcher = null; // PlayLand - baked event dispatch
+            updateHasListeners(); // PlayLand - has listeners fast path
         }
     }
 
@@ -162,7 +182,11 @@ public class HandlerList {
                 }
             }
         }
-        if (changed) handlers = null;
+        if (changed) {
+            handlers = null;
+            bakedDispatcher = null; // PlayLand - baked event dispatch
+            updateHasListeners(); // PlayLand - has listeners fast path
+        }
     }
 
     /**
@@ -180,7 +204,11 @@ public class HandlerList {
                 }
             }
         }
-        if (changed) handlers = null;
+        if (changed) {
+            handlers = null;
+            bakedDispatcher = null; // PlayLand - baked event dispatch
+            updateHasListeners(); // PlayLand - has listeners fast path
+        }
     }
 
     /**
@@ -193,6 +221,7 @@ public class HandlerList {
             entries.addAll(entry.getValue());
         }
         handlers = entries.toArray(new RegisteredListener[entries.size()]);
+        bakedDispatcher = null; // PlayLand - baked event dispatch
     }
 
     /**
@@ -206,6 +235,61 @@ public class HandlerList {
         return handlers;
     }
 
+    // PlayLand start - has listeners fast path
+    /**
+     * Checks whether any listener is registered to this handler list. This
+     * is a single read, unlike {@link #getRegisteredListeners()} it never
+     * bakes, so it is cheap enough to decide whether an event needs to be
+     * created at all.
+     *
+     * @return true if at least one listener is registered
+     */
+    public boolean hasListeners() {
+        return this.hasListeners;
+    }
+
+    private void updateHasListeners() {
+        boolean hasListeners = false;
+        for (List<RegisteredListener> list : handlerslots.values()) {
+            if (!list.isEmpty()) {
+                hasListeners = true;
+                break;
+            }
+        }
+        this.hasListeners = hasListeners;
+    }
+    // PlayLand end - has listeners fast path
+
+    // PlayLand start - baked event dispatch
+    /**
+     * Gets the dispatcher the server generated for the baked handlers of
+     * this list. The server checks that it still matches
+     * {@link #getRegisteredListeners()} before using it.
+     * <p>
+     * Not API, the server reaches it through an accessor in this package.
+     *
+     * @return the dispatcher, or null if none was generated yet
+     */
+    @org.jetbrains.annotations.Nullable Object getBakedDispatcher() {
+        return this.bakedDispatcher;
+    }
+
+    /**
+     * Sets the dispatcher generated for the baked handlers of this list.
+     * It is dropped whenever the handlers change, so it never keeps
+     * unregistered listeners reachable, and it is not set at all if the
+     * handlers changed while it was generated.
+     *
+     * @param listeners the baked handlers the dispatcher was generated for
+     * @param bakedDispatcher the dispatcher
+     */
+    synchronized void setBakedDispatcher(@NotNull RegisteredListener @NotNull [] listeners, @NotNull Object bakedDispatcher) {
+        if (this.handlers == listeners) {
+            this.bakedDispatcher = bakedDispatcher;
+        }
+    }
+    // PlayLand end - baked event dispatch
+
     /**
      * Get a specific plugin's registered listeners associated with this
      * handler list
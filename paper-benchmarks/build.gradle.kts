@@ -0,0 +1,41 @@
+plugins {
+    `java-library`
+    id("me.champeau.jmh") version "0.7.3"
+}
+
+val jmhLibraryVersion = "1.37"
+
+dependencies {
+    jmh(project(":paper-server"))
+    jmh(project(":paper-api"))
+    jmh("io.netty:netty-buffer:4.1.118.Final") // ByteBuf based codecs, keep in sync with paper-server
+    jmh("com.github.luben:zstd-jni:1.5.6-10") // zstd region compression, keep in sync with paper-server
+    jmh("org.lz4:lz4-java:1.8.0") // LZ4 region compression, keep in sync with the Minecraft libraries
+    jmh("org.openjdk.jmh:jmh-core:$jmhLibraryVersion")
+    jmhAnnotationProcessor("org.openjdk.jmh:jmh-generator-annprocess:$jmhLibraryVersion")
+}
+
+jmh {
+    jmhVersion = jmhLibraryVersion
+    // Keep runs reproducible between machines; override with -Pjmh.includes=<regex> for a single benchmark
+    includes = providers.gradleProperty("jmh.includes").map { listOf(it) }.orElse(listOf(".*"))
+    fork = 2
+    warmupIterations = 5
+    warmup = "1s"
+    iterations = 10
+    timeOnIteration = "1s"
+    timeUnit = "ns"
+    benchmarkMode = listOf("avgt")
+    profilers = listOf("gc")
+    resultFormat = "JSON"
+    resultsFile = layout.buildDirectory.file("results/jmh/results.json")
+    jvmArgs = listOf("-Xms2G", "-Xmx2G", "-XX:+UseG1GC")
+}
+
+// Copies the latest JMH run over the committed baseline, review the diff before committing
+tasks.register<Copy>("updateJmhBaseline") {
+    group = "benchmark"
+    description = "Replaces baselines/results.json with the output of the last jmh run"
+    from(layout.buildDirectory.file("results/jmh/results.json"))
+    into(layout.projectDirectory.dir("baselines"))
+}
@@ -0,0 +1,162 @@
+package io.papermc.paper.antixray;
+
+import io.papermc.paper.configuration.type.EngineMode;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import net.minecraft.SharedConstants;
+import net.minecraft.server.Bootstrap;
+import net.minecraft.util.Mth;
+import net.minecraft.world.level.EmptyBlockGetter;
+import net.minecraft.world.level.block.Block;
+import net.minecraft.world.level.block.Blocks;
+import net.minecraft.world.level.block.state.BlockState;
+import net.minecraft.world.level.chunk.GlobalPalette;
+import net.minecraft.world.level.chunk.Palette;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Sections per second of the Anti-Xray obfuscation at engine modes 1, 2 and 3, with the sections of a chunk
+ * obfuscated one after another on the calling thread and spread over the worker pool of the parallel mode.
+ *
+ * <p>Lives in the Anti-Xray package to drive the per section entry point directly, a real chunk packet needs a
+ * loaded level. Every invocation obfuscates a fresh copy of the same {@value #SECTIONS} sections below the
+ * default max block height. Sections use the global palette, stone and deepslate with caves and ores.</p>
+ *
+ * <p>The build forces average time per operation, so the result is the time per section there,
+ * sections per second is {@code 1e9 / score}. Run alone with {@code -Pjmh.includes=AntiXrayBenchmark}.</p>
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@OperationsPerInvocation(AntiXrayBenchmark.SECTIONS)
+public class AntiXrayBenchmark {
+
+    static final int SECTIONS = 8;
+
+    private static final List<Block> HIDDEN_BLOCKS = List.of(Blocks.COAL_ORE, Blocks.IRON_ORE, Blocks.COPPER_ORE, Blocks.GOLD_ORE, Blocks.REDSTONE_ORE, Blocks.LAPIS_ORE, Blocks.DIAMOND_ORE, Blocks.EMERALD_ORE);
+    private static final List<Block> REPLACEMENT_BLOCKS = List.of(Blocks.STONE, Blocks.DEEPSLATE);
+
+    @Param({"1", "2", "3"})
+    public int engineMode;
+
+    private ChunkPacketBlockControllerAntiXray controller;
+    private Palette<BlockState> palette;
+    private int bits;
+    private int sectionLength;
+    private int[] presetBlockStateBits;
+    private int[] chunkSectionIndexes;
+    private byte[] original;
+    private byte[] buffer;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        SharedConstants.tryDetectVersion();
+        Bootstrap.bootStrap();
+
+        EngineMode mode = EngineMode.valueOf(this.engineMode);
+        this.controller = new ChunkPacketBlockControllerAntiXray(Runnable::run, mode, 64, 2, false, false, true, 0, HIDDEN_BLOCKS, REPLACEMENT_BLOCKS, EmptyBlockGetter.INSTANCE);
+        this.palette = new GlobalPalette<>(Block.BLOCK_STATE_REGISTRY);
+        this.bits = Mth.ceillog2(Block.BLOCK_STATE_REGISTRY.size());
+
+        if (mode == EngineMode.HIDE) {
+            this.presetBlockStateBits = new int[]{this.palette.idFor(Blocks.STONE.defaultBlockState())};
+        } else {
+            this.presetBlockStateBits = HIDDEN_BLOCKS.stream().mapToInt(block -> this.palette.idFor(block.defaultBlockState())).toArray();
+        }
+
+        int valuesPerLong = 64 / this.bits;
+        this.sectionLength = (4096 + valuesPerLong - 1) / valuesPerLong * 8;
+        this.original = new byte[this.sectionLength * SECTIONS];
+        this.buffer = new byte[this.original.length];
+        this.chunkSectionIndexes = new int[SECTIONS];
+        Random random = new Random(0L);
+        int air = this.palette.idFor(Blocks.AIR.defaultBlockState());
+
+        for (int chunkSectionIndex = 0; chunkSectionIndex < SECTIONS; chunkSectionIndex++) {
+            this.chunkSectionIndexes[chunkSectionIndex] = chunkSectionIndex;
+            int base = this.palette.idFor(chunkSectionIndex < SECTIONS / 2 ? Blocks.DEEPSLATE.defaultBlockState() : Blocks.STONE.defaultBlockState());
+            int longIndex = chunkSectionIndex * this.sectionLength;
+            long value = 0L;
+            int bitInLong = 0;
+
+            for (int block = 0; block < 4096; block++) {
+                int x = block & 15;
+                int y = block >> 8;
+                int z = block >> 4 & 15;
+                int id;
+
+                // A winding cave through every section and a few percent of ores
+                if (Math.abs(x - 8 + (int) (4 * Math.sin((y + chunkSectionIndex * 16) * 0.2))) + Math.abs(z - 8) < 3) {
+                    id = air;
+                } else if (random.nextInt(100) < 3) {
+                    id = this.palette.idFor(HIDDEN_BLOCKS.get(random.nextInt(HIDDEN_BLOCKS.size())).defaultBlockState());
+                } else {
+                    id = base;
+                }
+
+                if (bitInLong + this.bits > 64) {
+                    writeLong(this.original, longIndex, value);
+                    longIndex += 8;
+                    value = 0L;
+                    bitInLong = 0;
+                }
+
+                value |= (long) id << bitInLong;
+                bitInLong += this.bits;
+            }
+
+            writeLong(this.original, longIndex, value);
+        }
+    }
+
+    private static void writeLong(byte[] buffer, int index, long value) {
+        for (int i = 0; i < 8; i++) {
+            buffer[index + i] = (byte) (value >>> (56 - i * 8));
+        }
+    }
+
+    private void obfuscateSection(int chunkSectionIndex, ChunkPacketBlockControllerAntiXray.SectionScratch scratch) {
+        this.controller.obfuscateSection(this.buffer, this.bits, chunkSectionIndex * this.sectionLength, this.palette, this.presetBlockStateBits, null, null, scratch);
+    }
+
+    @Benchmark
+    public byte[] sequential() {
+        System.arraycopy(this.original, 0, this.buffer, 0, this.original.length);
+        ChunkPacketBlockControllerAntiXray.SectionScratch scratch = this.controller.acquireSectionScratch();
+
+        try {
+            for (int chunkSectionIndex = 0; chunkSectionIndex < SECTIONS; chunkSectionIndex++) {
+                this.obfuscateSection(chunkSectionIndex, scratch);
+            }
+        } finally {
+            this.controller.releaseSectionScratch(scratch);
+        }
+
+        return this.buffer;
+    }
+
+    @Benchmark
+    public byte[] parallel() {
+        System.arraycopy(this.original, 0, this.buffer, 0, this.original.length);
+        this.controller.forEachSectionParallel(this.chunkSectionIndexes, SECTIONS, chunkSectionIndex -> {
+            ChunkPacketBlockControllerAntiXray.SectionScratch scratch = this.controller.acquireSectionScratch();
+
+            try {
+                this.obfuscateSection(chunkSectionIndex, scratch);
+            } finally {
+                this.controller.releaseSectionScratch(scratch);
+            }
+        });
+        return this.buffer;
+    }
+}
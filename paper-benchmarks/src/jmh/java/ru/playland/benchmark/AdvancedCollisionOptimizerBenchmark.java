@@ -0,0 +1,71 @@
+package ru.playland.benchmark;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import ru.playland.core.optimization.AdvancedCollisionOptimizer;
+import ru.playland.core.optimization.AdvancedCollisionOptimizer.EntityBounds;
+
+/**
+ * Compares {@link AdvancedCollisionOptimizer#checkCollision(String, EntityBounds, String, EntityBounds)}
+ * against the plain AABB intersection test vanilla performs.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class AdvancedCollisionOptimizerBenchmark {
+
+    private static final int ENTITIES = 1024;
+
+    private AdvancedCollisionOptimizer optimizer;
+    private String[] ids;
+    private EntityBounds[] bounds;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        this.optimizer = new AdvancedCollisionOptimizer();
+        this.ids = new String[ENTITIES];
+        this.bounds = new EntityBounds[ENTITIES];
+
+        final ThreadLocalRandom random = ThreadLocalRandom.current();
+        for (int i = 0; i < ENTITIES; ++i) {
+            final double x = random.nextDouble(32.0);
+            final double y = random.nextDouble(4.0);
+            final double z = random.nextDouble(32.0);
+            this.ids[i] = "entity-" + i;
+            this.bounds[i] = new EntityBounds(x, y, z, x + 0.6, y + 1.8, z + 0.6);
+        }
+    }
+
+    @Benchmark
+    public boolean vanilla() {
+        final ThreadLocalRandom random = ThreadLocalRandom.current();
+        final EntityBounds b1 = this.bounds[random.nextInt(ENTITIES)];
+        final EntityBounds b2 = this.bounds[random.nextInt(ENTITIES)];
+        return b1.getMinX() < b2.getMaxX() && b1.getMaxX() > b2.getMinX()
+            && b1.getMinY() < b2.getMaxY() && b1.getMaxY() > b2.getMinY()
+            && b1.getMinZ() < b2.getMaxZ() && b1.getMaxZ() > b2.getMinZ();
+    }
+
+    @Benchmark
+    public boolean checkCollision() {
+        final ThreadLocalRandom random = ThreadLocalRandom.current();
+        final int i1 = random.nextInt(ENTITIES);
+        final int i2 = random.nextInt(ENTITIES);
+        return this.optimizer.checkCollision(this.ids[i1], this.bounds[i1], this.ids[i2], this.bounds[i2]);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public boolean checkCollisionContended() {
+        return this.checkCollision();
+    }
+}
@@ -0,0 +1,307 @@
+package ru.playland.benchmark;
+
+import java.io.File;
+import java.io.InputStream;
+import java.lang.reflect.Method;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+import org.bukkit.Server;
+import org.bukkit.command.Command;
+import org.bukkit.command.CommandSender;
+import org.bukkit.configuration.file.FileConfiguration;
+import org.bukkit.event.Cancellable;
+import org.bukkit.event.Event;
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
+import org.bukkit.event.HandlerList;
+import org.bukkit.event.Listener;
+import org.bukkit.generator.BiomeProvider;
+import org.bukkit.generator.ChunkGenerator;
+import org.bukkit.plugin.EventExecutor;
+import org.bukkit.plugin.PluginBase;
+import org.bukkit.plugin.PluginDescriptionFile;
+import org.bukkit.plugin.PluginLoader;
+import org.bukkit.plugin.RegisteredListener;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import ru.playland.core.optimization.BakedEventDispatcher;
+
+/**
+ * Compares the listener loop of {@code PaperEventManager#callEvent} against {@link BakedEventDispatcher} for one
+ * cancellable event with {@code listeners} registrations.
+ *
+ * <p>The listeners are spread over eight listener classes, like handlers of different plugins, over all
+ * priorities and with every third one ignoring cancelled events. Executors are the hidden class executors
+ * {@link EventExecutor#create} makes for {@code @EventHandler} methods, so the loop sees as many executor classes
+ * as a server with that many plugin handlers.</p>
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class BakedEventDispatchBenchmark {
+
+    private static final BakedEventDispatcher.FailureHandler FAILURE_HANDLER = (registration, event, throwable) -> {
+        throw new IllegalStateException(throwable);
+    };
+
+    @Param({"4", "16", "64"})
+    public int listeners;
+
+    private HandlerList handlers;
+    private RegisteredListener[] registrations;
+    private BenchmarkEvent event;
+
+    @Setup(Level.Trial)
+    public void setup() throws ReflectiveOperationException {
+        final BenchmarkPlugin plugin = new BenchmarkPlugin();
+        final Listener[] listenerInstances = {
+            new Listener0(), new Listener1(), new Listener2(), new Listener3(),
+            new Listener4(), new Listener5(), new Listener6(), new Listener7()
+        };
+        final EventPriority[] priorities = EventPriority.values();
+
+        this.handlers = BenchmarkEvent.getHandlerList();
+        for (int i = 0; i < this.listeners; ++i) {
+            final Listener listener = listenerInstances[i % listenerInstances.length];
+            final Method method = listener.getClass().getMethod("on", BenchmarkEvent.class);
+            final EventExecutor executor = EventExecutor.create(method, BenchmarkEvent.class);
+            this.handlers.register(new RegisteredListener(listener, executor, priorities[i % priorities.length], plugin, i % 3 == 0));
+        }
+        this.registrations = this.handlers.getRegisteredListeners();
+        this.event = new BenchmarkEvent();
+    }
+
+    @Benchmark
+    public long loop() {
+        final BenchmarkEvent event = this.event;
+        for (final RegisteredListener registration : this.handlers.getRegisteredListeners()) {
+            if (!registration.getPlugin().isEnabled()) {
+                continue;
+            }
+            try {
+                registration.callEvent(event);
+            } catch (final Throwable throwable) {
+                FAILURE_HANDLER.handle(registration, event, throwable);
+            }
+        }
+        return event.counter;
+    }
+
+    @Benchmark
+    public long baked() {
+        final BenchmarkEvent event = this.event;
+        BakedEventDispatcher.get(this.handlers, this.handlers.getRegisteredListeners(), BenchmarkEvent.class).dispatch(event, FAILURE_HANDLER);
+        return event.counter;
+    }
+
+    /**
+     * Cost of generating the dispatcher after a register or unregister
+     */
+    @Benchmark
+    public Object rebake() {
+        return BakedEventDispatcher.get(this.handlers, this.registrations.clone(), BenchmarkEvent.class);
+    }
+
+    public static final class BenchmarkEvent extends Event implements Cancellable {
+        private static final HandlerList HANDLER_LIST = new HandlerList();
+
+        long counter;
+        private boolean cancelled;
+
+        @Override
+        public boolean isCancelled() {
+            return this.cancelled;
+        }
+
+        @Override
+        public void setCancelled(final boolean cancel) {
+            this.cancelled = cancel;
+        }
+
+        @Override
+        public HandlerList getHandlers() {
+            return HANDLER_LIST;
+        }
+
+        public static HandlerList getHandlerList() {
+            return HANDLER_LIST;
+        }
+    }
+
+    public static final class Listener0 implements Listener {
+        @EventHandler
+        public void on(final BenchmarkEvent event) {
+            event.counter += 1;
+        }
+    }
+
+    public static final class Listener1 implements Listener {
+        @EventHandler
+        public void on(final BenchmarkEvent event) {
+            event.counter += 3;
+        }
+    }
+
+    public static final class Listener2 implements Listener {
+        @EventHandler
+        public void on(final BenchmarkEvent event) {
+            event.counter ^= 5;
+        }
+    }
+
+    public static final class Listener3 implements Listener {
+        @EventHandler
+        public void on(final BenchmarkEvent event) {
+            event.counter += event.isCancelled() ? 0 : 7;
+        }
+    }
+
+    public static final class Listener4 implements Listener {
+        @EventHandler
+        public void on(final BenchmarkEvent event) {
+            event.counter *= 31;
+        }
+    }
+
+    public static final class Listener5 implements Listener {
+        @EventHandler
+        public void on(final BenchmarkEvent event) {
+            event.counter -= 11;
+        }
+    }
+
+    public static final class Listener6 implements Listener {
+        @EventHandler
+        public void on(final BenchmarkEvent event) {
+            event.counter = Long.rotateLeft(event.counter, 1);
+        }
+    }
+
+    public static final class Listener7 implements Listener {
+        @EventHandler
+        public void on(final BenchmarkEvent event) {
+            event.counter |= 13;
+        }
+    }
+
+    /**
+     * Always enabled, only what event dispatch touches is implemented
+     */
+    private static final class BenchmarkPlugin extends PluginBase {
+        @Override
+        public boolean isEnabled() {
+            return true;
+        }
+
+        @Override
+        public File getDataFolder() {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public PluginDescriptionFile getDescription() {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public io.papermc.paper.plugin.configuration.PluginMeta getPluginMeta() {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public FileConfiguration getConfig() {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public InputStream getResource(final String filename) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void saveConfig() {
+        }
+
+        @Override
+        public void saveDefaultConfig() {
+        }
+
+        @Override
+        public void saveResource(final String resourcePath, final boolean replace) {
+        }
+
+        @Override
+        public void reloadConfig() {
+        }
+
+        @Override
+        @SuppressWarnings("removal")
+        public PluginLoader getPluginLoader() {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public Server getServer() {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void onDisable() {
+        }
+
+        @Override
+        public void onLoad() {
+        }
+
+        @Override
+        public void onEnable() {
+        }
+
+        @Override
+        public boolean isNaggable() {
+            return false;
+        }
+
+        @Override
+        public void setNaggable(final boolean canNag) {
+        }
+
+        @Override
+        public ChunkGenerator getDefaultWorldGenerator(final String worldName, final String id) {
+            return null;
+        }
+
+        @Override
+        public BiomeProvider getDefaultBiomeProvider(final String worldName, final String id) {
+            return null;
+        }
+
+        @Override
+        public Logger getLogger() {
+            return Logger.getLogger("BakedEventDispatchBenchmark");
+        }
+
+        @Override
+        public io.papermc.paper.plugin.lifecycle.event.LifecycleEventManager<org.bukkit.plugin.Plugin> getLifecycleManager() {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public boolean onCommand(final CommandSender sender, final Command command, final String label, final String[] args) {
+            return false;
+        }
+
+        @Override
+        public List<String> onTabComplete(final CommandSender sender, final Command command, final String label, final String[] args) {
+            return null;
+        }
+    }
+}
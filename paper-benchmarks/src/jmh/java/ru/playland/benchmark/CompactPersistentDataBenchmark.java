@@ -0,0 +1,156 @@
+package ru.playland.benchmark;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+import net.minecraft.nbt.ByteTag;
+import net.minecraft.nbt.DoubleTag;
+import net.minecraft.nbt.IntTag;
+import net.minecraft.nbt.LongTag;
+import net.minecraft.nbt.StringTag;
+import net.minecraft.nbt.Tag;
+import org.bukkit.NamespacedKey;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import ru.playland.core.optimization.CompactDataMap;
+
+/**
+ * Compares the {@code HashMap<String, Tag>} of {@code CraftPersistentDataContainer} against {@link CompactDataMap}.
+ *
+ * <p>{@code chunk} builds the persistent data of {@code entities} entities like a chunk full of them after
+ * loading: most have none, the rest carry a few keys of the usual plugins, a stacked flag, a spawn time, a
+ * level, a speed, an owner. Run with the gc profiler, {@code gc.alloc.rate.norm} bounds the memory the containers
+ * of one chunk take, the compact maps also count the arrays they outgrew on every put. {@code equals} and
+ * {@code hashCode} compare the data of two item stacks like stacking does.</p>
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class CompactPersistentDataBenchmark {
+
+    private static final NamespacedKey OWNER = new NamespacedKey("pets", "owner");
+    private static final NamespacedKey LEVEL = new NamespacedKey("pets", "level");
+    private static final NamespacedKey SPAWNED = new NamespacedKey("spawners", "spawned_at");
+    private static final NamespacedKey STACKED = new NamespacedKey("stacker", "stacked");
+    private static final NamespacedKey SPEED = new NamespacedKey("mobs", "speed");
+
+    @Param({"2000"})
+    public int entities;
+
+    private long[] seeds;
+    private Map<String, Tag> hashMapItem;
+    private Map<String, Tag> hashMapOther;
+    private CompactDataMap compactItem;
+    private CompactDataMap compactOther;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        final SplittableRandom random = new SplittableRandom(1L);
+        this.seeds = new long[this.entities];
+        for (int i = 0; i < this.entities; ++i) {
+            this.seeds[i] = random.nextLong();
+        }
+        this.hashMapItem = new HashMap<>();
+        this.hashMapOther = new HashMap<>();
+        this.compactItem = new CompactDataMap();
+        this.compactOther = new CompactDataMap();
+        fillHashMap(this.hashMapItem, 0x5FL);
+        fillHashMap(this.hashMapOther, 0x5FL);
+        fillCompact(this.compactItem, 0x5FL);
+        fillCompact(this.compactOther, 0x5FL);
+    }
+
+    // The keys an entity gets, 0 to 5 of them, most entities have none
+    private static int keys(final long seed) {
+        final int roll = (int) (seed & 15);
+        return roll < 8 ? 0 : Math.max(1, Math.min(5, roll - 9));
+    }
+
+    private static void fillHashMap(final Map<String, Tag> map, final long seed) {
+        final int keys = keys(seed);
+        if (keys > 0) {
+            map.put(STACKED.toString(), ByteTag.valueOf((byte) 1));
+        }
+        if (keys > 1) {
+            map.put(SPAWNED.toString(), LongTag.valueOf(seed >>> 8));
+        }
+        if (keys > 2) {
+            map.put(LEVEL.toString(), IntTag.valueOf((int) (seed >>> 40) & 127));
+        }
+        if (keys > 3) {
+            map.put(SPEED.toString(), DoubleTag.valueOf(((seed >>> 20) & 1023) / 1024.0));
+        }
+        if (keys > 4) {
+            map.put(OWNER.toString(), StringTag.valueOf(Long.toHexString(seed)));
+        }
+    }
+
+    private static void fillCompact(final CompactDataMap map, final long seed) {
+        final int keys = keys(seed);
+        if (keys > 0) {
+            map.putPrimitive(STACKED, (byte) 1);
+        }
+        if (keys > 1) {
+            map.putPrimitive(SPAWNED, seed >>> 8);
+        }
+        if (keys > 2) {
+            map.putPrimitive(LEVEL, (int) (seed >>> 40) & 127);
+        }
+        if (keys > 3) {
+            map.putPrimitive(SPEED, ((seed >>> 20) & 1023) / 1024.0);
+        }
+        if (keys > 4) {
+            map.putPrimitive(OWNER, Long.toHexString(seed));
+        }
+    }
+
+    @Benchmark
+    public Object chunkHashMap() {
+        final Object[] containers = new Object[this.entities];
+        for (int i = 0; i < this.entities; ++i) {
+            final Map<String, Tag> map = new HashMap<>();
+            fillHashMap(map, this.seeds[i]);
+            containers[i] = map;
+        }
+        return containers;
+    }
+
+    @Benchmark
+    public Object chunkCompact() {
+        final Object[] containers = new Object[this.entities];
+        for (int i = 0; i < this.entities; ++i) {
+            final CompactDataMap map = new CompactDataMap();
+            fillCompact(map, this.seeds[i]);
+            containers[i] = map;
+        }
+        return containers;
+    }
+
+    @Benchmark
+    public boolean equalsHashMap() {
+        return this.hashMapItem.equals(this.hashMapOther);
+    }
+
+    @Benchmark
+    public boolean equalsCompact() {
+        return this.compactItem.equals(this.compactOther);
+    }
+
+    @Benchmark
+    public int hashCodeHashMap() {
+        return this.hashMapItem.hashCode();
+    }
+
+    @Benchmark
+    public int hashCodeCompact() {
+        return this.compactItem.hashCode();
+    }
+}
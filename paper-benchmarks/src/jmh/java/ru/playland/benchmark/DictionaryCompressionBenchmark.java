@@ -0,0 +1,144 @@
+package ru.playland.benchmark;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.Deflater;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import ru.playland.core.optimization.DictionaryCompressor;
+import ru.playland.core.optimization.PacketDictionary;
+
+/**
+ * Compares the shared dictionary mode of {@link ru.playland.core.optimization.SmartCompressionEncoder} against
+ * the vanilla zlib threshold path on chunk-like and entity-metadata-like packets.
+ *
+ * <p>Time per operation is the CPU cost of one packet, the {@code wireBytes} and {@code packets} counters
+ * give the bytes on wire per packet. The dictionary is trained on a different set of packets than the
+ * one being compressed.</p>
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class DictionaryCompressionBenchmark {
+
+    private static final int VANILLA_THRESHOLD = 256;
+    private static final int CORPUS_SIZE = 512;
+
+    @Param({"chunk", "metadata"})
+    public String packetType;
+
+    private byte[][] packets;
+    private ByteBuf[] directPackets;
+    private int next;
+
+    private Deflater deflater;
+    private byte[] output;
+    private DictionaryCompressor dictionaryCompressor;
+    private ByteBuf directOutput;
+
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    @State(Scope.Thread)
+    public static class WireCounters {
+        public long wireBytes;
+        public long packets;
+    }
+
+    @Setup(Level.Trial)
+    public void setup() {
+        final Random random = new Random(0L);
+        final List<byte[]> training = new ArrayList<>();
+        for (int i = 0; i < CORPUS_SIZE; ++i) {
+            training.add(this.generate(random));
+        }
+        this.packets = new byte[CORPUS_SIZE][];
+        this.directPackets = new ByteBuf[CORPUS_SIZE];
+        int maxSize = 0;
+        for (int i = 0; i < CORPUS_SIZE; ++i) {
+            this.packets[i] = this.generate(random);
+            this.directPackets[i] = Unpooled.directBuffer(this.packets[i].length).writeBytes(this.packets[i]);
+            maxSize = Math.max(maxSize, this.packets[i].length);
+        }
+
+        this.deflater = new Deflater(Deflater.DEFAULT_COMPRESSION);
+        this.output = new byte[maxSize + (maxSize >> 8) + 64];
+        this.dictionaryCompressor = new DictionaryCompressor(PacketDictionary.train(training, PacketDictionary.MAX_SIZE), Deflater.DEFAULT_COMPRESSION);
+        this.directOutput = Unpooled.directBuffer(maxSize + 64);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        this.deflater.end();
+        this.dictionaryCompressor.close();
+        this.directOutput.release();
+        for (final ByteBuf packet : this.directPackets) {
+            packet.release();
+        }
+    }
+
+    /**
+     * Packet id, a shared layout header and a payload from a small palette, like a chunk section or an entity
+     * metadata list where most entries repeat between packets
+     */
+    private byte[] generate(final Random random) {
+        final boolean chunk = "chunk".equals(this.packetType);
+        final int size = chunk ? 4096 + random.nextInt(4096) : 48 + random.nextInt(160);
+        final byte[] packet = new byte[size];
+        packet[0] = (byte)(chunk ? 0x28 : 0x5D);
+        for (int i = 1; i < size; ++i) {
+            final int slot = i % (chunk ? 64 : 12);
+            packet[i] = random.nextInt(chunk ? 6 : 4) == 0 ? (byte)random.nextInt(256) : (byte)(slot * 7 + (chunk ? i >> 9 : 0));
+        }
+        return packet;
+    }
+
+    private int nextIndex() {
+        final int index = this.next;
+        this.next = (index + 1) % CORPUS_SIZE;
+        return index;
+    }
+
+    @Benchmark
+    public int zlibThreshold(final WireCounters counters) {
+        final byte[] packet = this.packets[this.nextIndex()];
+        int written;
+        if (packet.length < VANILLA_THRESHOLD) {
+            written = packet.length;
+        } else {
+            this.deflater.setInput(packet);
+            this.deflater.finish();
+            written = 0;
+            while (!this.deflater.finished()) {
+                written += this.deflater.deflate(this.output, written, this.output.length - written);
+            }
+            this.deflater.reset();
+        }
+        counters.wireBytes += written;
+        ++counters.packets;
+        return written;
+    }
+
+    @Benchmark
+    public int sharedDictionary(final WireCounters counters) {
+        final ByteBuf packet = this.directPackets[this.nextIndex()];
+        packet.readerIndex(0);
+        this.directOutput.clear();
+        this.dictionaryCompressor.deflate(packet, this.directOutput);
+        final int written = this.directOutput.readableBytes();
+        counters.wireBytes += written;
+        ++counters.packets;
+        return written;
+    }
+}
@@ -0,0 +1,171 @@
+package ru.playland.benchmark;
+
+import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import net.minecraft.SharedConstants;
+import net.minecraft.core.BlockPos;
+import net.minecraft.core.Direction;
+import net.minecraft.server.Bootstrap;
+import net.minecraft.world.Container;
+import net.minecraft.world.item.ItemStack;
+import net.minecraft.world.item.Items;
+import net.minecraft.world.level.ChunkPos;
+import net.minecraft.world.level.block.Blocks;
+import net.minecraft.world.level.block.HopperBlock;
+import net.minecraft.world.level.block.entity.BlockEntity;
+import net.minecraft.world.level.block.entity.HopperBlockEntity;
+import net.minecraft.world.level.block.state.BlockState;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import ru.playland.core.optimization.HopperContainerCache;
+
+/**
+ * One tick of a world with {@code hoppers} hoppers, containers resolved every time like vanilla against
+ * {@link HopperContainerCache}.
+ *
+ * <p>The hoppers form loops of {@code chainLength} facing east, the last one of a loop feeds the first one again,
+ * like the item lines of a storage room that never runs dry. Each tick every hopper runs what
+ * {@code HopperBlockEntity#pushItemsTick} runs with the Spigot defaults: the cooldown counts down, and a hopper off
+ * cooldown resolves the container it pushes into, moves one item into it and goes on an 8 tick cooldown, while a
+ * hopper it fills from empty waits 8 ticks as well, one less if it already ticked. Then it resolves the block above
+ * it to pull from, air in this world. The vanilla resolver finds the block entity in its chunk by a new
+ * {@link BlockPos} like {@code LevelChunk#getBlockEntity}, the cache resolves each link once and only checks it
+ * afterwards. Events are left out in both, as on a server without listeners.</p>
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class HopperContainerCacheBenchmark {
+
+    private static final int TRANSFER_COOLDOWN = 8;
+
+    @Param({"10000"})
+    public int hoppers;
+
+    @Param({"100"})
+    public int chainLength;
+
+    private final Long2ObjectOpenHashMap<Map<BlockPos, BlockEntity>> chunks = new Long2ObjectOpenHashMap<>();
+    private final HopperContainerCache.Resolver vanilla = (level, pos, state) -> this.chunkBlockEntity(pos);
+
+    private BlockPos[] positions;
+    private HopperBlockEntity[] entities;
+    private int[] cooldowns;
+    private long[] tickedAt;
+    private long tick;
+    private BlockState hopperState;
+    private BlockState airState;
+    private HopperContainerCache.Graph graph;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        SharedConstants.tryDetectVersion();
+        Bootstrap.bootStrap();
+
+        this.hopperState = Blocks.HOPPER.defaultBlockState().setValue(HopperBlock.FACING, Direction.EAST);
+        this.airState = Blocks.AIR.defaultBlockState();
+        this.positions = new BlockPos[this.hoppers];
+        this.entities = new HopperBlockEntity[this.hoppers];
+        this.cooldowns = new int[this.hoppers];
+        this.tickedAt = new long[this.hoppers];
+        for (int i = 0; i < this.hoppers; ++i) {
+            final BlockPos pos = new BlockPos(i % this.chainLength, 64, (i / this.chainLength) * 2);
+            final HopperBlockEntity hopper = new HopperBlockEntity(pos, this.hopperState);
+            // A stack in every fourth hopper, spread out so most hoppers move an item every cycle
+            if (i % 4 == 0) {
+                hopper.setItem(0, new ItemStack(Items.COBBLESTONE, 16));
+            }
+            this.positions[i] = pos;
+            this.entities[i] = hopper;
+            this.putBlockEntity(pos, hopper);
+        }
+        for (int i = 0; i < this.hoppers; i += this.chainLength) {
+            // East of the last hopper of a loop is its first one
+            this.putBlockEntity(this.positions[i].offset(this.chainLength, 0, 0), this.entities[i]);
+        }
+        this.graph = new HopperContainerCache.Graph();
+    }
+
+    private void putBlockEntity(final BlockPos pos, final BlockEntity blockEntity) {
+        this.chunks.computeIfAbsent(ChunkPos.asLong(pos), key -> new HashMap<>()).put(pos, blockEntity);
+    }
+
+    private Container chunkBlockEntity(final BlockPos pos) {
+        final Map<BlockPos, BlockEntity> chunk = this.chunks.get(ChunkPos.asLong(pos));
+        return chunk == null ? null : (Container) chunk.get(pos.immutable());
+    }
+
+    @Benchmark
+    public int vanilla() {
+        return this.tick(false);
+    }
+
+    @Benchmark
+    public int cached() {
+        return this.tick(true);
+    }
+
+    private int tick(final boolean cached) {
+        final long tick = ++this.tick;
+        int moved = 0;
+        for (int i = 0; i < this.hoppers; ++i) {
+            this.tickedAt[i] = tick;
+            if (--this.cooldowns[i] > 0) {
+                continue;
+            }
+            this.cooldowns[i] = 0;
+            final HopperBlockEntity hopper = this.entities[i];
+            final BlockPos pos = this.positions[i];
+            if (!hopper.isEmpty()) {
+                final BlockPos target = pos.relative(Direction.EAST);
+                final Container destination = cached
+                    ? this.graph.getBlockContainer(null, target, this.hopperState, this.vanilla)
+                    : this.vanilla.resolve(null, target, this.hopperState);
+                final int next = (i + 1) % this.chainLength == 0 ? i + 1 - this.chainLength : i + 1;
+                if (destination != null && this.push(hopper, destination, next, tick)) {
+                    this.cooldowns[i] = TRANSFER_COOLDOWN;
+                    ++moved;
+                }
+            }
+            // Nothing to pull from, the lookup is the same in both
+            this.vanilla.resolve(null, pos.above(), this.airState);
+        }
+        return moved;
+    }
+
+    // One item of the first stack that fits, like hopperPush and tryMoveInItem
+    private boolean push(final HopperBlockEntity hopper, final Container destination, final int destinationIndex, final long tick) {
+        for (int slot = 0; slot < hopper.getContainerSize(); ++slot) {
+            final ItemStack item = hopper.getItem(slot);
+            if (item.isEmpty()) {
+                continue;
+            }
+            final boolean wasEmpty = destination.isEmpty();
+            for (int target = 0; target < destination.getContainerSize(); ++target) {
+                final ItemStack existing = destination.getItem(target);
+                if (existing.isEmpty()) {
+                    destination.setItem(target, item.copyWithCount(1));
+                } else if (existing.getCount() < existing.getMaxStackSize() && ItemStack.isSameItemSameComponents(existing, item)) {
+                    existing.grow(1);
+                } else {
+                    continue;
+                }
+                item.shrink(1);
+                if (wasEmpty && this.cooldowns[destinationIndex] <= TRANSFER_COOLDOWN) {
+                    this.cooldowns[destinationIndex] = TRANSFER_COOLDOWN - (this.tickedAt[destinationIndex] >= tick ? 1 : 0);
+                }
+                return true;
+            }
+        }
+        return false;
+    }
+}
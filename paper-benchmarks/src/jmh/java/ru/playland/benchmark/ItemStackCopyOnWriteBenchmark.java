@@ -0,0 +1,108 @@
+package ru.playland.benchmark;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import net.minecraft.SharedConstants;
+import net.minecraft.core.component.DataComponents;
+import net.minecraft.network.chat.Component;
+import net.minecraft.server.Bootstrap;
+import net.minecraft.world.item.Items;
+import net.minecraft.world.item.component.ItemLore;
+import org.bukkit.craftbukkit.inventory.CraftItemStack;
+import org.bukkit.inventory.ItemStack;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+import ru.playland.core.optimization.ItemStackCopyOnWrite;
+
+/**
+ * Allocation of the Bukkit item stack copies plugins cause, copied on every clone like before against
+ * {@link ItemStackCopyOnWrite}. Run with the gc profiler, {@code gc.alloc.rate.norm} is the comparison.
+ *
+ * <p>{@code hopperChain} moves one item through {@code hoppers} hoppers with an {@code InventoryMoveItemEvent}
+ * listener, like item filter plugins: it clones the moved item, checks it and hands it back with
+ * {@code setItem}, which clones it again, the hopper then takes an NMS copy of it. {@code inventoryIteration}
+ * renders a 54 slot shop menu from the plugin's own template stacks, cloning every one before reading it. The
+ * eager variants copy the NMS stack on every clone like {@code CraftItemStack#clone()} did.</p>
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class ItemStackCopyOnWriteBenchmark {
+
+    private static final int MENU_SLOTS = 54;
+
+    @Param({"10000"})
+    public int hoppers;
+
+    private net.minecraft.world.item.ItemStack moved;
+    private ItemStack[] menu;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        SharedConstants.tryDetectVersion();
+        Bootstrap.bootStrap();
+
+        this.moved = new net.minecraft.world.item.ItemStack(Items.IRON_INGOT, 1);
+        this.moved.set(DataComponents.CUSTOM_NAME, Component.literal("Sorted ingot"));
+        this.menu = new ItemStack[MENU_SLOTS];
+        for (int i = 0; i < MENU_SLOTS; ++i) {
+            final net.minecraft.world.item.ItemStack template = new net.minecraft.world.item.ItemStack(i % 2 == 0 ? Items.DIAMOND : Items.EMERALD, 1 + i);
+            template.set(DataComponents.CUSTOM_NAME, Component.literal("Offer #" + i));
+            template.set(DataComponents.LORE, new ItemLore(List.of(Component.literal("Price: " + i * 10), Component.literal("Click to buy"))));
+            this.menu[i] = CraftItemStack.asBukkitCopy(template);
+        }
+    }
+
+    // What CraftItemStack#clone() did for every stack
+    private static ItemStack eagerClone(final ItemStack stack) {
+        return CraftItemStack.asBukkitCopy(CraftItemStack.asNMSCopy(stack));
+    }
+
+    @Benchmark
+    public void hopperChainEager(final Blackhole blackhole) {
+        for (int i = 0; i < this.hoppers; ++i) {
+            final ItemStack mirror = CraftItemStack.asCraftMirror(this.moved);
+            final ItemStack checked = eagerClone(mirror);
+            blackhole.consume(checked.getType());
+            final ItemStack set = eagerClone(checked);
+            blackhole.consume(CraftItemStack.asNMSCopy(set));
+        }
+    }
+
+    @Benchmark
+    public void hopperChainCopyOnWrite(final Blackhole blackhole) {
+        for (int i = 0; i < this.hoppers; ++i) {
+            final ItemStack mirror = CraftItemStack.asCraftMirror(this.moved);
+            final ItemStack checked = mirror.clone();
+            blackhole.consume(checked.getType());
+            final ItemStack set = checked.clone();
+            blackhole.consume(CraftItemStack.asNMSCopy(set));
+        }
+    }
+
+    @Benchmark
+    public void inventoryIterationEager(final Blackhole blackhole) {
+        for (final ItemStack template : this.menu) {
+            final ItemStack offer = eagerClone(template);
+            blackhole.consume(offer.getAmount());
+            blackhole.consume(offer.getType());
+        }
+    }
+
+    @Benchmark
+    public void inventoryIterationCopyOnWrite(final Blackhole blackhole) {
+        for (final ItemStack template : this.menu) {
+            final ItemStack offer = template.clone();
+            blackhole.consume(offer.getAmount());
+            blackhole.consume(offer.getType());
+        }
+    }
+}
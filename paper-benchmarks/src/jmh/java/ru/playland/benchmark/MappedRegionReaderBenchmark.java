@@ -0,0 +1,176 @@
+package ru.playland.benchmark;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Comparator;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import ru.playland.core.optimization.MappedRegionReader;
+
+/**
+ * Compares the chunk read of {@code RegionFile#getChunkDataInputStream} through {@link FileChannel#read} against
+ * {@link MappedRegionReader}, including the zlib decompression of the payload.
+ *
+ * <p>Setup writes a world of {@code regions} full region files in the anvil layout, every chunk a compressed
+ * chunk-like payload of a few sectors, and reads the chunks in random order. The files stay in the page
+ * cache, so this measures the per read overhead, not the disk.</p>
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Fork(jvmArgsAppend = "-Dplayland.region.mmap=true")
+public class MappedRegionReaderBenchmark {
+
+    private static final int SECTOR_BYTES = 4096;
+    private static final int CHUNKS_PER_REGION = 1024;
+    private static final int PAYLOADS = 64;
+    private static final int READ_ORDER = 1 << 16;
+
+    @Param({"1", "16"})
+    public int regions;
+
+    private Path directory;
+    private FileChannel[] channels;
+    private MappedRegionReader[] readers;
+    private int[][] offsets;
+    private int[] readOrder;
+    private int next;
+    private final byte[] scratch = new byte[8192];
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        final Random random = new Random(0L);
+        final byte[][] payloads = new byte[PAYLOADS][];
+        for (int i = 0; i < PAYLOADS; ++i) {
+            payloads[i] = compress(chunkLike(random));
+        }
+
+        this.directory = Files.createTempDirectory("region-bench");
+        this.channels = new FileChannel[this.regions];
+        this.readers = new MappedRegionReader[this.regions];
+        this.offsets = new int[this.regions][CHUNKS_PER_REGION];
+        for (int region = 0; region < this.regions; ++region) {
+            final Path file = this.directory.resolve("r." + region + ".0.mca");
+            this.writeRegion(file, payloads, random, this.offsets[region]);
+            this.channels[region] = FileChannel.open(file, StandardOpenOption.READ);
+            this.readers[region] = MappedRegionReader.create();
+            if (this.readers[region] == null) {
+                throw new IllegalStateException("Mapped region reads are disabled");
+            }
+        }
+
+        this.readOrder = new int[READ_ORDER];
+        for (int i = 0; i < READ_ORDER; ++i) {
+            this.readOrder[i] = random.nextInt(this.regions * CHUNKS_PER_REGION);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        for (final FileChannel channel : this.channels) {
+            channel.close();
+        }
+        try (Stream<Path> files = Files.walk(this.directory)) {
+            for (final Path file : (Iterable<Path>) files.sorted(Comparator.reverseOrder())::iterator) {
+                Files.deleteIfExists(file);
+            }
+        }
+    }
+
+    /**
+     * Runs of a small palette with some noise, compresses to a few sectors like a real chunk
+     */
+    private static byte[] chunkLike(final Random random) {
+        final byte[] data = new byte[24 * 1024 + random.nextInt(16 * 1024)];
+        for (int i = 0; i < data.length; ++i) {
+            data[i] = (byte)(random.nextInt(6) == 0 ? random.nextInt(256) : (i >> 5) & 15);
+        }
+        return data;
+    }
+
+    private static byte[] compress(final byte[] data) throws IOException {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (DeflaterOutputStream deflater = new DeflaterOutputStream(out)) {
+            deflater.write(data);
+        }
+        return out.toByteArray();
+    }
+
+    private void writeRegion(final Path file, final byte[][] payloads, final Random random, final int[] offsets) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            final ByteBuffer header = ByteBuffer.allocate(2 * SECTOR_BYTES);
+            int sector = 2;
+            for (int chunk = 0; chunk < CHUNKS_PER_REGION; ++chunk) {
+                final byte[] payload = payloads[random.nextInt(PAYLOADS)];
+                final int sectors = (payload.length + 5 + SECTOR_BYTES - 1) / SECTOR_BYTES;
+                final ByteBuffer data = ByteBuffer.allocate(sectors * SECTOR_BYTES);
+                data.putInt(payload.length + 1).put((byte)2).put(payload).clear();
+                channel.write(data, (long)sector * SECTOR_BYTES);
+
+                offsets[chunk] = sector << 8 | sectors;
+                header.putInt(chunk * 4, offsets[chunk]);
+                sector += sectors;
+            }
+            channel.write(header, 0L);
+        }
+    }
+
+    private int nextChunk() {
+        final int index = this.next;
+        this.next = (index + 1) & (READ_ORDER - 1);
+        return this.readOrder[index];
+    }
+
+    private int decompress(final ByteBuffer buffer) throws IOException {
+        buffer.flip();
+        final int length = buffer.getInt() - 1;
+        buffer.get();
+        int read = 0;
+        try (InputStream in = new InflaterInputStream(new ByteArrayInputStream(buffer.array(), buffer.position(), length))) {
+            for (int n; (n = in.read(this.scratch)) > 0;) {
+                read += n;
+            }
+        }
+        return read;
+    }
+
+    @Benchmark
+    public int channelRead() throws IOException {
+        final int chunk = this.nextChunk();
+        final int region = chunk / CHUNKS_PER_REGION;
+        final int offset = this.offsets[region][chunk % CHUNKS_PER_REGION];
+        final ByteBuffer buffer = ByteBuffer.allocate((offset & 255) * SECTOR_BYTES);
+        this.channels[region].read(buffer, (long)(offset >>> 8) * SECTOR_BYTES);
+        return this.decompress(buffer);
+    }
+
+    @Benchmark
+    public int mappedRead() throws IOException {
+        final int chunk = this.nextChunk();
+        final int region = chunk / CHUNKS_PER_REGION;
+        final int offset = this.offsets[region][chunk % CHUNKS_PER_REGION];
+        final ByteBuffer buffer = this.readers[region].read(this.channels[region], (long)(offset >>> 8) * SECTOR_BYTES, (offset & 255) * SECTOR_BYTES);
+        return this.decompress(buffer);
+    }
+}
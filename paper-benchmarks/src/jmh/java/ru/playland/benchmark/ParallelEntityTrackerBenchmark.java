@@ -0,0 +1,153 @@
+package ru.playland.benchmark;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.SplittableRandom;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import ru.playland.core.optimization.ParallelEntityTracker;
+
+/**
+ * Stress test of the tracking decisions of a tracker tick, serial against {@link ParallelEntityTracker}.
+ *
+ * <p>{@code players} players and {@code entities} entities spread over a 2048 block square, crowded around spawn
+ * like a busy server. Every entity checks the players in view distance of its chunk like
+ * {@code TrackedEntity#canTrack}: horizontal and Y distance against its tracking range, the sent chunks of the
+ * player, the hidden entities of the player. Run with {@code -Dplayland.tracker.parallel.threads} set to the
+ * worker threads to compare, the decisions are the part that runs in parallel, applying them stays serial.</p>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class ParallelEntityTrackerBenchmark {
+
+    private static final int WORLD_SIZE = 2048;
+    private static final int VIEW_DISTANCE = 10;
+    private static final int TRACKING_RANGE_Y = 64;
+
+    @Param({"300"})
+    public int players;
+
+    @Param({"20000"})
+    public int entities;
+
+    private TrackedPlayer[] playerArray;
+    private TrackedEntity[] entityArray;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        final SplittableRandom random = new SplittableRandom(21L);
+        this.playerArray = new TrackedPlayer[this.players];
+        for (int i = 0; i < this.players; ++i) {
+            this.playerArray[i] = new TrackedPlayer(crowded(random), 60 + random.nextInt(40), crowded(random));
+        }
+        this.entityArray = new TrackedEntity[this.entities];
+        for (int i = 0; i < this.entities; ++i) {
+            final TrackedEntity entity = new TrackedEntity(new UUID(random.nextLong(), random.nextLong()), crowded(random),
+                50 + random.nextInt(60), crowded(random), random.nextBoolean() ? 48 : 80);
+            for (final TrackedPlayer player : this.playerArray) {
+                if (Math.abs((player.x >> 4) - (entity.x >> 4)) <= VIEW_DISTANCE && Math.abs((player.z >> 4) - (entity.z >> 4)) <= VIEW_DISTANCE) {
+                    entity.nearby.add(player);
+                    if (random.nextInt(64) == 0) {
+                        player.hidden.add(entity.id);
+                    }
+                }
+            }
+            entity.decisions = new boolean[entity.nearby.size()];
+            this.entityArray[i] = entity;
+        }
+    }
+
+    // Half of everything within 256 blocks of spawn
+    private static int crowded(final SplittableRandom random) {
+        return random.nextBoolean() ? random.nextInt(-256, 256) : random.nextInt(-WORLD_SIZE / 2, WORLD_SIZE / 2);
+    }
+
+    @Benchmark
+    public int serial() {
+        int tracked = 0;
+        for (final TrackedEntity entity : this.entityArray) {
+            tracked += entity.compute();
+        }
+        return tracked;
+    }
+
+    @Benchmark
+    public boolean parallel() {
+        return ParallelEntityTracker.forEach(this.entityArray, this.entityArray.length, TrackedEntity::compute);
+    }
+
+    static final class TrackedPlayer {
+        final int x;
+        final int y;
+        final int z;
+        final Set<UUID> hidden = new HashSet<>();
+        final Set<Long> sentChunks = new HashSet<>();
+
+        TrackedPlayer(final int x, final int y, final int z) {
+            this.x = x;
+            this.y = y;
+            this.z = z;
+            for (int dz = -VIEW_DISTANCE; dz <= VIEW_DISTANCE; ++dz) {
+                for (int dx = -VIEW_DISTANCE; dx <= VIEW_DISTANCE; ++dx) {
+                    this.sentChunks.add(chunkKey((x >> 4) + dx, (z >> 4) + dz));
+                }
+            }
+        }
+    }
+
+    static final class TrackedEntity {
+        final UUID id;
+        final int x;
+        final int y;
+        final int z;
+        final int range;
+        final List<TrackedPlayer> nearby = new ArrayList<>();
+        boolean[] decisions;
+
+        TrackedEntity(final UUID id, final int x, final int y, final int z, final int range) {
+            this.id = id;
+            this.x = x;
+            this.y = y;
+            this.z = z;
+            this.range = range;
+        }
+
+        int compute() {
+            int tracked = 0;
+            for (int i = 0, len = this.nearby.size(); i < len; ++i) {
+                final TrackedPlayer player = this.nearby.get(i);
+                final double dx = player.x - this.x;
+                final double dz = player.z - this.z;
+                final double d = Math.min(this.range, VIEW_DISTANCE * 16);
+                boolean flag = dx * dx + dz * dz <= d * d;
+                if (flag) {
+                    final double dy = player.y - this.y;
+                    flag = dy * dy <= TRACKING_RANGE_Y * TRACKING_RANGE_Y;
+                }
+                flag = flag && player.sentChunks.contains(chunkKey(this.x >> 4, this.z >> 4));
+                flag = flag && !player.hidden.contains(this.id);
+                this.decisions[i] = flag;
+                if (flag) {
+                    ++tracked;
+                }
+            }
+            return tracked;
+        }
+    }
+
+    private static long chunkKey(final int x, final int z) {
+        return ((long) z << 32) | (x & 0xFFFFFFFFL);
+    }
+}
@@ -0,0 +1,250 @@
+package ru.playland.benchmark;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
+import net.jpountz.lz4.LZ4BlockInputStream;
+import net.jpountz.lz4.LZ4BlockOutputStream;
+import net.minecraft.nbt.CompoundTag;
+import net.minecraft.nbt.ListTag;
+import net.minecraft.nbt.NbtIo;
+import net.minecraft.nbt.StringTag;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import ru.playland.core.optimization.ZstdRegionCompression;
+
+/**
+ * Compares the region file compression formats on chunk NBT: ZLIB (the default), LZ4, zstd and zstd with a
+ * dictionary trained from other chunks of the same generator.
+ *
+ * <p>{@code write} compresses one chunk and {@code read} decompresses one, time per operation is the cost of one
+ * chunk. The {@code compressedBytes}, {@code sectorBytes} and {@code chunks} counters of {@code write} give the
+ * size per chunk, {@code sectorBytes} rounded up to whole 4 KiB region file sectors as it is stored on disk.</p>
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class RegionCompressionBenchmark {
+
+    private static final int CORPUS_SIZE = 128;
+    private static final int SECTOR_BYTES = 4096;
+    private static final String[] BLOCKS = {
+        "minecraft:stone", "minecraft:deepslate", "minecraft:dirt", "minecraft:grass_block", "minecraft:gravel", "minecraft:andesite",
+        "minecraft:granite", "minecraft:diorite", "minecraft:coal_ore", "minecraft:iron_ore", "minecraft:water", "minecraft:air"
+    };
+
+    @Param({"zlib", "lz4", "zstd", "zstd-dictionary"})
+    public String format;
+
+    @Param({"3"})
+    public int zstdLevel;
+
+    private byte[][] chunks;
+    private byte[][] compressed;
+    private ZstdRegionCompression.Dictionary dictionary;
+    private final byte[] scratch = new byte[16 * 1024];
+    private int next;
+
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    @State(Scope.Thread)
+    public static class SizeCounters {
+        public long compressedBytes;
+        public long sectorBytes;
+        public long chunks;
+    }
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        final Random random = new Random(0L);
+        if ("zstd-dictionary".equals(this.format)) {
+            final List<byte[]> training = new ArrayList<>();
+            for (int i = 0; i < CORPUS_SIZE * 4; ++i) {
+                training.add(chunkLike(random, i));
+            }
+            this.dictionary = ZstdRegionCompression.register(ZstdRegionCompression.train(training, ZstdRegionCompression.DEFAULT_DICTIONARY_SIZE));
+        }
+
+        this.chunks = new byte[CORPUS_SIZE][];
+        this.compressed = new byte[CORPUS_SIZE][];
+        for (int i = 0; i < CORPUS_SIZE; ++i) {
+            this.chunks[i] = chunkLike(random, -i - 1);
+            this.compressed[i] = this.compress(this.chunks[i]);
+        }
+    }
+
+    /**
+     * A generated chunk in the layout {@code SerializableChunkData} writes: 24 sections with a block palette and
+     * packed states, light, heightmaps and a few block entities
+     */
+    private static byte[] chunkLike(final Random random, final int seed) throws IOException {
+        final CompoundTag chunk = new CompoundTag();
+        chunk.putInt("DataVersion", 4325);
+        chunk.putInt("xPos", seed);
+        chunk.putInt("zPos", seed >> 5);
+        chunk.putInt("yPos", -4);
+        chunk.putString("Status", "minecraft:full");
+        chunk.putLong("LastUpdate", 1_000_000L + random.nextInt(100_000));
+        chunk.putLong("InhabitedTime", random.nextInt(10_000));
+
+        final ListTag sections = new ListTag();
+        for (int y = -4; y < 20; ++y) {
+            final CompoundTag section = new CompoundTag();
+            section.putByte("Y", (byte) y);
+
+            final CompoundTag blockStates = new CompoundTag();
+            final ListTag palette = new ListTag();
+            final int paletteSize = y >= 5 ? 1 : 2 + random.nextInt(BLOCKS.length - 2);
+            for (int i = 0; i < paletteSize; ++i) {
+                final CompoundTag state = new CompoundTag();
+                final String name = y >= 5 ? "minecraft:air" : BLOCKS[(i + y + 4) % (BLOCKS.length - 1)];
+                state.putString("Name", name);
+                if (name.equals("minecraft:water")) {
+                    final CompoundTag properties = new CompoundTag();
+                    properties.putString("level", "0");
+                    state.put("Properties", properties);
+                }
+                palette.add(state);
+            }
+            blockStates.put("palette", palette);
+            if (paletteSize > 1) {
+                final int bits = Math.max(4, 32 - Integer.numberOfLeadingZeros(paletteSize - 1));
+                final int valuesPerLong = 64 / bits;
+                final long[] data = new long[(4096 + valuesPerLong - 1) / valuesPerLong];
+                long run = 0L;
+                for (int i = 0; i < data.length; ++i) {
+                    // Runs of the same palette entry with some noise
+                    if (random.nextInt(8) == 0) {
+                        run = random.nextInt(paletteSize);
+                    }
+                    long value = 0L;
+                    for (int j = 0; j < valuesPerLong; ++j) {
+                        value |= (random.nextInt(16) == 0 ? random.nextInt(paletteSize) : run) << (j * bits);
+                    }
+                    data[i] = value;
+                }
+                blockStates.putLongArray("data", data);
+            }
+            section.put("block_states", blockStates);
+
+            final CompoundTag biomes = new CompoundTag();
+            final ListTag biomePalette = new ListTag();
+            biomePalette.add(StringTag.valueOf(y < 0 ? "minecraft:dripstone_caves" : "minecraft:plains"));
+            biomes.put("palette", biomePalette);
+            section.put("biomes", biomes);
+
+            if (y < 5) {
+                final byte[] blockLight = new byte[2048];
+                for (int i = 0; i < blockLight.length; i += 1 + random.nextInt(64)) {
+                    blockLight[i] = (byte) random.nextInt(256);
+                }
+                section.putByteArray("BlockLight", blockLight);
+            }
+            final byte[] skyLight = new byte[2048];
+            Arrays.fill(skyLight, y >= 5 ? (byte) 0xFF : 0);
+            section.putByteArray("SkyLight", skyLight);
+            sections.add(section);
+        }
+        chunk.put("sections", sections);
+
+        final CompoundTag heightmaps = new CompoundTag();
+        for (final String type : new String[] {"MOTION_BLOCKING", "MOTION_BLOCKING_NO_LEAVES", "OCEAN_FLOOR", "WORLD_SURFACE"}) {
+            final long[] heights = new long[37];
+            for (int i = 0; i < heights.length; ++i) {
+                long value = 0L;
+                for (int j = 0; j < 7; ++j) {
+                    value |= (long) (130 + random.nextInt(6)) << (j * 9);
+                }
+                heights[i] = value;
+            }
+            heightmaps.putLongArray(type, heights);
+        }
+        chunk.put("Heightmaps", heightmaps);
+
+        final ListTag blockEntities = new ListTag();
+        for (int i = random.nextInt(4); i > 0; --i) {
+            final CompoundTag blockEntity = new CompoundTag();
+            blockEntity.putString("id", "minecraft:chest");
+            blockEntity.putInt("x", random.nextInt(16));
+            blockEntity.putInt("y", random.nextInt(64));
+            blockEntity.putInt("z", random.nextInt(16));
+            blockEntity.put("Items", new ListTag());
+            blockEntities.add(blockEntity);
+        }
+        chunk.put("block_entities", blockEntities);
+
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            NbtIo.write(chunk, out);
+        }
+        return bytes.toByteArray();
+    }
+
+    private OutputStream wrap(final OutputStream stream) throws IOException {
+        return switch (this.format) {
+            case "zlib" -> new DeflaterOutputStream(stream);
+            case "lz4" -> new LZ4BlockOutputStream(stream);
+            case "zstd" -> ZstdRegionCompression.wrapOutput(stream, this.zstdLevel, null);
+            default -> ZstdRegionCompression.wrapOutput(stream, this.zstdLevel, this.dictionary);
+        };
+    }
+
+    private InputStream wrap(final InputStream stream) throws IOException {
+        return switch (this.format) {
+            case "zlib" -> new InflaterInputStream(stream);
+            case "lz4" -> new LZ4BlockInputStream(stream);
+            default -> ZstdRegionCompression.wrapInput(stream);
+        };
+    }
+
+    private byte[] compress(final byte[] chunk) throws IOException {
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream(chunk.length / 4);
+        try (OutputStream out = this.wrap(bytes)) {
+            out.write(chunk);
+        }
+        return bytes.toByteArray();
+    }
+
+    private int nextIndex() {
+        final int index = this.next;
+        this.next = (index + 1) % CORPUS_SIZE;
+        return index;
+    }
+
+    @Benchmark
+    public int write(final SizeCounters counters) throws IOException {
+        final byte[] compressed = this.compress(this.chunks[this.nextIndex()]);
+        counters.compressedBytes += compressed.length;
+        counters.sectorBytes += (compressed.length + 5 + SECTOR_BYTES - 1) / SECTOR_BYTES * SECTOR_BYTES;
+        ++counters.chunks;
+        return compressed.length;
+    }
+
+    @Benchmark
+    public int read() throws IOException {
+        int read = 0;
+        try (InputStream in = this.wrap(new ByteArrayInputStream(this.compressed[this.nextIndex()]))) {
+            for (int n; (n = in.read(this.scratch)) > 0;) {
+                read += n;
+            }
+        }
+        return read;
+    }
+}
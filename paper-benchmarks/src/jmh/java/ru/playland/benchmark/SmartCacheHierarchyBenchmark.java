@@ -0,0 +1,153 @@
+package ru.playland.benchmark;
+
+import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import ru.playland.core.optimization.SmartCacheHierarchy;
+
+/**
+ * Measures {@link SmartCacheHierarchy#get(String)} and {@link SmartCacheHierarchy#put(String, Object)}
+ * on a pre-populated hierarchy, single threaded and under contention, next to the primitive keyed
+ * {@link SmartCacheHierarchy#get(long)} and {@link SmartCacheHierarchy#put(long, Object)} path.
+ *
+ * <p>The {@code vanilla*} methods are the baseline: the same keys in a plain {@link ConcurrentHashMap}, and for the
+ * single threaded primitive path a {@link Long2ObjectOpenHashMap}. Its contended variants use a
+ * {@code ConcurrentHashMap<Long, Object>} instead, the open hash map is not thread safe.</p>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class SmartCacheHierarchyBenchmark {
+
+    @Param({"1000", "10000"})
+    public int keyCount;
+
+    private SmartCacheHierarchy cache;
+    private String[] keys;
+    private final ConcurrentHashMap<String, Object> vanillaMap = new ConcurrentHashMap<>();
+    private final Long2ObjectOpenHashMap<Object> vanillaPrimitiveMap = new Long2ObjectOpenHashMap<>();
+    private final ConcurrentHashMap<Long, Object> vanillaBoxedMap = new ConcurrentHashMap<>();
+
+    @Setup(Level.Trial)
+    public void setup() {
+        this.cache = new SmartCacheHierarchy();
+        this.keys = new String[this.keyCount];
+        for (int i = 0; i < this.keyCount; ++i) {
+            this.keys[i] = "chunk_" + (i & 63) + "_" + (i >> 6);
+            this.cache.put(this.keys[i], i);
+            this.cache.put((long)i, i);
+            this.vanillaMap.put(this.keys[i], i);
+            this.vanillaPrimitiveMap.put(i, (Object) i);
+            this.vanillaBoxedMap.put((long)i, i);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        this.cache.shutdown();
+    }
+
+    private String nextKey() {
+        return this.keys[ThreadLocalRandom.current().nextInt(this.keys.length)];
+    }
+
+    @Benchmark
+    public Object get() {
+        return this.cache.get(this.nextKey());
+    }
+
+    @Benchmark
+    public void put() {
+        this.cache.put(this.nextKey(), Boolean.TRUE);
+    }
+
+    @Benchmark
+    public Object getPrimitive() {
+        return this.cache.get((long)ThreadLocalRandom.current().nextInt(this.keyCount));
+    }
+
+    @Benchmark
+    public void putPrimitive() {
+        this.cache.put((long)ThreadLocalRandom.current().nextInt(this.keyCount), Boolean.TRUE);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public Object getContended() {
+        return this.cache.get(this.nextKey());
+    }
+
+    @Benchmark
+    @Threads(4)
+    public void putContended() {
+        this.cache.put(this.nextKey(), Boolean.TRUE);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public Object getPrimitiveContended() {
+        return this.getPrimitive();
+    }
+
+    @Benchmark
+    @Threads(4)
+    public void putPrimitiveContended() {
+        this.putPrimitive();
+    }
+
+    @Benchmark
+    public Object vanillaGet() {
+        return this.vanillaMap.get(this.nextKey());
+    }
+
+    @Benchmark
+    public void vanillaPut() {
+        this.vanillaMap.put(this.nextKey(), Boolean.TRUE);
+    }
+
+    @Benchmark
+    public Object vanillaGetPrimitive() {
+        return this.vanillaPrimitiveMap.get(ThreadLocalRandom.current().nextInt(this.keyCount));
+    }
+
+    @Benchmark
+    public void vanillaPutPrimitive() {
+        this.vanillaPrimitiveMap.put(ThreadLocalRandom.current().nextInt(this.keyCount), Boolean.TRUE);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public Object vanillaGetContended() {
+        return this.vanillaGet();
+    }
+
+    @Benchmark
+    @Threads(4)
+    public void vanillaPutContended() {
+        this.vanillaPut();
+    }
+
+    @Benchmark
+    @Threads(4)
+    public Object vanillaGetPrimitiveContended() {
+        return this.vanillaBoxedMap.get((long)ThreadLocalRandom.current().nextInt(this.keyCount));
+    }
+
+    @Benchmark
+    @Threads(4)
+    public void vanillaPutPrimitiveContended() {
+        this.vanillaBoxedMap.put((long)ThreadLocalRandom.current().nextInt(this.keyCount), Boolean.TRUE);
+    }
+}
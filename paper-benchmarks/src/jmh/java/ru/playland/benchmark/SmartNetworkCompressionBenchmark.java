@@ -0,0 +1,72 @@
+package ru.playland.benchmark;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.Deflater;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import ru.playland.core.optimization.SmartNetworkCompression;
+
+/**
+ * Compares {@link SmartNetworkCompression#compressPacket(String, String, byte[])} against a reused
+ * {@link Deflater}, which is what the vanilla compression encoder does per connection.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class SmartNetworkCompressionBenchmark {
+
+    @Param({"256", "2048", "32768"})
+    public int packetSize;
+
+    private SmartNetworkCompression compression;
+    private Deflater deflater;
+    private byte[] packet;
+    private byte[] output;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        this.compression = new SmartNetworkCompression();
+        this.compression.initialize();
+        this.deflater = new Deflater(Deflater.DEFAULT_COMPRESSION);
+        this.output = new byte[this.packetSize + (this.packetSize >> 8) + 64];
+
+        // Chunk-like payload: long runs of a small palette with some noise
+        final Random random = new Random(0L);
+        this.packet = new byte[this.packetSize];
+        for (int i = 0; i < this.packet.length; ++i) {
+            this.packet[i] = (byte)(random.nextInt(8) == 0 ? random.nextInt(256) : (i >> 4) & 7);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        this.compression.shutdown();
+        this.deflater.end();
+    }
+
+    @Benchmark
+    public int vanillaDeflater() {
+        this.deflater.setInput(this.packet);
+        this.deflater.finish();
+        int written = 0;
+        while (!this.deflater.finished()) {
+            written += this.deflater.deflate(this.output, written, this.output.length - written);
+        }
+        this.deflater.reset();
+        return written;
+    }
+
+    @Benchmark
+    public byte[] compressPacket() {
+        return this.compression.compressPacket("player", "ClientboundLevelChunkWithLightPacket", this.packet);
+    }
+}
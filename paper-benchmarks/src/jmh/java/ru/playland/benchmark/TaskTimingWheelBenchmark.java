@@ -0,0 +1,153 @@
+package ru.playland.benchmark;
+
+import java.util.Comparator;
+import java.util.PriorityQueue;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import ru.playland.core.optimization.TaskTimingWheel;
+
+/**
+ * Compares the {@code PriorityQueue} of pending tasks in {@code CraftScheduler} against {@link TaskTimingWheel}
+ * with {@code tasks} scheduled tasks.
+ *
+ * <p>The task mix follows what plugins schedule: most tasks repeat every few ticks (holograms, scoreboards),
+ * some every few seconds, the rest are cooldowns minutes out. {@code tick} is one scheduler heartbeat: every due
+ * task is polled and rescheduled one period later, like {@code mainThreadHeartbeat} does with repeating tasks.
+ * {@code reschedule} cancels a random task and schedules it again, like resetting a cooldown.</p>
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class TaskTimingWheelBenchmark {
+
+    private static final Comparator<Task> COMPARATOR = (o1, o2) -> {
+        final int value = Long.compare(o1.nextRun, o2.nextRun);
+        return value != 0 ? value : Long.compare(o1.createdAt, o2.createdAt);
+    };
+
+    @Param({"100000"})
+    public int tasks;
+
+    private Task[] queueTasks;
+    private Task[] wheelTasks;
+    private PriorityQueue<Task> queue;
+    private TaskTimingWheel<Task> wheel;
+    private long queueTick;
+    private long wheelTick;
+    private SplittableRandom random;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        this.queue = new PriorityQueue<>(10, COMPARATOR);
+        this.wheel = new TaskTimingWheel<>(0L);
+        this.queueTasks = this.createTasks();
+        this.wheelTasks = this.createTasks();
+        for (int i = 0; i < this.tasks; ++i) {
+            this.queue.add(this.queueTasks[i]);
+            this.wheel.add(this.wheelTasks[i]);
+        }
+        this.random = new SplittableRandom(42L);
+    }
+
+    private Task[] createTasks() {
+        final SplittableRandom random = new SplittableRandom(1L);
+        final Task[] tasks = new Task[this.tasks];
+        for (int i = 0; i < this.tasks; ++i) {
+            final int kind = random.nextInt(10);
+            final long period;
+            if (kind < 6) {
+                period = 1 + random.nextInt(20);
+            } else if (kind < 9) {
+                period = 20 + random.nextInt(200);
+            } else {
+                period = 1200 + random.nextInt(6000);
+            }
+            tasks[i] = new Task(period, 1 + random.nextLong(period), i);
+        }
+        return tasks;
+    }
+
+    @Benchmark
+    public int tickPriorityQueue() {
+        final long tick = ++this.queueTick;
+        final PriorityQueue<Task> queue = this.queue;
+        int ran = 0;
+        while (!queue.isEmpty() && queue.peek().nextRun <= tick) {
+            final Task task = queue.remove();
+            task.nextRun = tick + task.period;
+            queue.add(task);
+            ++ran;
+        }
+        return ran;
+    }
+
+    @Benchmark
+    public int tickTimingWheel() {
+        final long tick = ++this.wheelTick;
+        final TaskTimingWheel<Task> wheel = this.wheel;
+        int ran = 0;
+        // Rescheduled tasks are added after the loop, like the scheduler's temp list
+        Task rescheduled = null;
+        while (wheel.isReady(tick)) {
+            final Task task = wheel.remove();
+            task.nextRun = tick + task.period;
+            task.link = rescheduled;
+            rescheduled = task;
+            ++ran;
+        }
+        for (Task task = rescheduled; task != null; task = task.link) {
+            wheel.add(task);
+        }
+        return ran;
+    }
+
+    @Benchmark
+    public boolean reschedulePriorityQueue() {
+        final Task task = this.queueTasks[this.random.nextInt(this.tasks)];
+        final boolean removed = this.queue.remove(task);
+        task.nextRun = this.queueTick + 1 + task.period;
+        this.queue.add(task);
+        return removed;
+    }
+
+    @Benchmark
+    public boolean rescheduleTimingWheel() {
+        final Task task = this.wheelTasks[this.random.nextInt(this.tasks)];
+        final boolean removed = this.wheel.remove(task);
+        task.nextRun = this.wheelTick + 1 + task.period;
+        this.wheel.add(task);
+        return removed;
+    }
+
+    public static final class Task extends TaskTimingWheel.Node {
+        final long period;
+        final long createdAt;
+        long nextRun;
+        Task link;
+
+        Task(final long period, final long nextRun, final long createdAt) {
+            this.period = period;
+            this.nextRun = nextRun;
+            this.createdAt = createdAt;
+        }
+
+        @Override
+        protected long getWheelTick() {
+            return this.nextRun;
+        }
+
+        @Override
+        protected long getWheelOrder() {
+            return this.createdAt;
+        }
+    }
+}
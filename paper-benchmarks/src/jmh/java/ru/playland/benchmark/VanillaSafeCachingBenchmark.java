@@ -0,0 +1,142 @@
+package ru.playland.benchmark;
+
+import java.util.Arrays;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import net.minecraft.core.BlockPos;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import ru.playland.core.optimization.VanillaSafeCaching;
+
+/**
+ * Compares the cached lookup path of {@link VanillaSafeCaching} against calling the computation directly,
+ * which is what vanilla does. The String keyed path builds its key the same way callers build it today,
+ * the typed path uses a packed {@link BlockPos} key.
+ *
+ * <p>Positions are drawn from a Zipf distribution over {@code keySpace} distinct blocks, a few hot blocks and a
+ * long tail like the blocks around players. With 8192 keys everything fits in the 10,000 entries of a domain,
+ * with 1M keys only the hot part does. The {@code hits} and {@code misses} counters give the hit rate next to
+ * the time per lookup. The String keyed path only stores computations of at least 1 ms, so it never hits here
+ * and measures the cost of the lookup alone.</p>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class VanillaSafeCachingBenchmark {
+
+    private static final int SEQUENCE_LENGTH = 1 << 16;
+    private static final double SKEW = 0.99;
+
+    private VanillaSafeCaching caching;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        this.caching = new VanillaSafeCaching();
+    }
+
+    /**
+     * Zipf distributed block positions, drawn once per thread and replayed
+     */
+    @State(Scope.Thread)
+    public static class Keys {
+
+        @Param({"8192", "1048576"})
+        public int keySpace;
+
+        private int[] sequence;
+        private int next;
+
+        @Setup(Level.Trial)
+        public void setup() {
+            final double[] cumulative = new double[this.keySpace];
+            double sum = 0.0;
+            for (int rank = 0; rank < this.keySpace; ++rank) {
+                sum += 1.0 / Math.pow(rank + 1, SKEW);
+                cumulative[rank] = sum;
+            }
+            final ThreadLocalRandom random = ThreadLocalRandom.current();
+            this.sequence = new int[SEQUENCE_LENGTH];
+            for (int i = 0; i < SEQUENCE_LENGTH; ++i) {
+                final int found = Arrays.binarySearch(cumulative, random.nextDouble() * sum);
+                this.sequence[i] = Math.min(found < 0 ? -found - 1 : found, this.keySpace - 1);
+            }
+        }
+
+        int next() {
+            final int index = this.sequence[this.next];
+            this.next = (this.next + 1) & (SEQUENCE_LENGTH - 1);
+            return index;
+        }
+    }
+
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    @State(Scope.Thread)
+    public static class HitCounters {
+        public long hits;
+        public long misses;
+    }
+
+    private static int compute(final int x, final int y, final int z) {
+        return (x * 31 + y) * 31 + z & 15;
+    }
+
+    private static Integer count(final HitCounters counters, final long misses, final Integer value) {
+        if (counters.misses == misses) {
+            ++counters.hits;
+        }
+        return value;
+    }
+
+    @Benchmark
+    public int vanilla(final Keys keys) {
+        final int index = keys.next();
+        return compute(index & 255, index >> 16, index >> 8 & 255);
+    }
+
+    @Benchmark
+    public Integer getBlockState(final Keys keys, final HitCounters counters) {
+        final int index = keys.next();
+        final int x = index & 255;
+        final int y = index >> 16;
+        final int z = index >> 8 & 255;
+        final long misses = counters.misses;
+        return count(counters, misses, this.caching.getBlockState("world:" + x + ":" + y + ":" + z, () -> {
+            ++counters.misses;
+            return compute(x, y, z);
+        }));
+    }
+
+    @Benchmark
+    public Integer getBlockStateTyped(final Keys keys, final HitCounters counters) {
+        final int index = keys.next();
+        final int x = index & 255;
+        final int y = index >> 16;
+        final int z = index >> 8 & 255;
+        final long misses = counters.misses;
+        return count(counters, misses, this.caching.getBlockState("world", BlockPos.asLong(x, y, z), () -> {
+            ++counters.misses;
+            return compute(x, y, z);
+        }));
+    }
+
+    @Benchmark
+    @Threads(4)
+    public Integer getBlockStateContended(final Keys keys, final HitCounters counters) {
+        return this.getBlockState(keys, counters);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public Integer getBlockStateTypedContended(final Keys keys, final HitCounters counters) {
+        return this.getBlockStateTyped(keys, counters);
+    }
+}
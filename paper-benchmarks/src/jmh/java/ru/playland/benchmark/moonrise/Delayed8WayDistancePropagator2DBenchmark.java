@@ -0,0 +1,53 @@
+package ru.playland.benchmark.moonrise;
+
+import ca.spottedleaf.moonrise.common.misc.Delayed8WayDistancePropagator2D;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Measures a player moving one chunk with the given view distance, which is the
+ * common update {@link Delayed8WayDistancePropagator2D} sees during a tick.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class Delayed8WayDistancePropagator2DBenchmark {
+
+    @Param({"10", "32"})
+    public int viewDistance;
+
+    @Param({"1", "100"})
+    public int players;
+
+    private Delayed8WayDistancePropagator2D propagator;
+    private int offset;
+
+    @Setup(Level.Iteration)
+    public void setup() {
+        this.propagator = new Delayed8WayDistancePropagator2D();
+        for (int i = 0; i < this.players; ++i) {
+            this.propagator.setSource(i * 128, 0, this.viewDistance);
+        }
+        this.propagator.propagateUpdates();
+        this.offset = 0;
+    }
+
+    @Benchmark
+    public boolean moveSources() {
+        final int from = this.offset;
+        final int to = ++this.offset;
+        for (int i = 0; i < this.players; ++i) {
+            this.propagator.removeSource(i * 128, from);
+            this.propagator.setSource(i * 128, to, this.viewDistance);
+        }
+        return this.propagator.propagateUpdates();
+    }
+}
@@ -0,0 +1,70 @@
+package ru.playland.benchmark.moonrise;
+
+import ca.spottedleaf.moonrise.common.list.IteratorSafeOrderedReferenceSet;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Measures the operations the entity and chunk tick lists perform on
+ * {@link IteratorSafeOrderedReferenceSet} every tick.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class IteratorSafeOrderedReferenceSetBenchmark {
+
+    @Param({"1000", "20000"})
+    public int size;
+
+    private IteratorSafeOrderedReferenceSet<Object> set;
+    private Object[] elements;
+    private int cursor;
+
+    @Setup(Level.Iteration)
+    public void setup() {
+        this.set = new IteratorSafeOrderedReferenceSet<>();
+        this.elements = new Object[this.size];
+        for (int i = 0; i < this.size; ++i) {
+            this.elements[i] = new Object();
+            this.set.add(this.elements[i]);
+        }
+        this.cursor = 0;
+    }
+
+    @Benchmark
+    public void iterate(final Blackhole blackhole) {
+        final IteratorSafeOrderedReferenceSet.Iterator<Object> iterator = this.set.iterator();
+        try {
+            while (iterator.hasNext()) {
+                blackhole.consume(iterator.next());
+            }
+        } finally {
+            iterator.finishedIterating();
+        }
+    }
+
+    @Benchmark
+    public boolean removeAdd() {
+        // remove and re-add keeps the size stable while exercising the gravestone compaction
+        final Object element = this.elements[this.cursor];
+        this.cursor = (this.cursor + 1) % this.elements.length;
+        this.set.remove(element);
+        return this.set.add(element);
+    }
+
+    @Benchmark
+    public boolean contains() {
+        final Object element = this.elements[this.cursor];
+        this.cursor = (this.cursor + 1) % this.elements.length;
+        return this.set.contains(element);
+    }
+}
@@ -1,14 +1,21 @@
 package io.papermc.paper.antixray;
 
+import ca.spottedleaf.moonrise.common.util.CoordinateUtils;
 import io.papermc.paper.configuration.WorldConfiguration;
 import io.papermc.paper.configuration.type.EngineMode;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.LinkedHashSet;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.RecursiveAction;
 import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.IntConsumer;
 import java.util.function.IntSupplier;
 import net.minecraft.core.BlockPos;
 import net.minecraft.core.Direction;
@@ -19,6 +26,7 @@ import net.minecraft.server.MinecraftServer;
 import net.minecraft.server.level.ServerLevel;
 import net.minecraft.server.level.ServerPlayer;
 import net.minecraft.server.level.ServerPlayerGameMode;
+import net.minecraft.world.level.BlockGetter;
 import net.minecraft.world.level.ChunkPos;
 import net.minecraft.world.level.Level;
 import net.minecraft.world.level.biome.Biomes;
@@ -43,6 +51,8 @@ public final class ChunkPacketBlockControllerAntiXray extends ChunkPacketBlockCo
     private final int maxBlockHeight;
     private final int updateRadius;
     private final boolean usePermission;
+    private final boolean parallelObfuscation;
+    private final ObfuscatedSectionCache sectionCache;
     private final BlockState[] presetBlockStates;
     private final BlockState[] presetBlockStatesFull;
     private final BlockState[] presetBlockStatesStone;
@@ -60,16 +70,26 @@ public final class ChunkPacketBlockControllerAntiXray extends ChunkPacketBlockCo
     private final int maxBlockHeightUpdatePosition;
 
     public ChunkPacketBlockControllerAntiXray(Level level, Executor executor) {
+        this(level.paperConfig().anticheat.antiXray, new EmptyLevelChunk(level, new ChunkPos(0, 0), MinecraftServer.getServer().registryAccess().lookupOrThrow(Registries.BIOME).getOrThrow(Biomes.PLAINS)), executor);
+    }
+
+    private ChunkPacketBlockControllerAntiXray(WorldConfiguration.Anticheat.AntiXray paperWorldConfig, BlockGetter emptyChunk, Executor executor) {
+        this(executor, paperWorldConfig.engineMode, paperWorldConfig.maxBlockHeight, paperWorldConfig.updateRadius, paperWorldConfig.usePermission, paperWorldConfig.lavaObscures, paperWorldConfig.parallelObfuscation, paperWorldConfig.sectionCacheSize, paperWorldConfig.hiddenBlocks, paperWorldConfig.replacementBlocks, emptyChunk);
+    }
+
+    // Also used by the benchmarks, which have no level to read the config from
+    ChunkPacketBlockControllerAntiXray(Executor executor, EngineMode engineMode, int maxBlockHeight, int updateRadius, boolean usePermission, boolean lavaObscures, boolean parallelObfuscation, int sectionCacheSize, List<Block> hiddenBlocks, List<Block> replacementBlocks, BlockGetter emptyChunk) {
         this.executor = executor;
-        WorldConfiguration.Anticheat.AntiXray paperWorldConfig = level.paperConfig().anticheat.antiXray;
-        engineMode = paperWorldConfig.engineMode;
-        maxBlockHeight = paperWorldConfig.maxBlockHeight >> 4 << 4;
-        updateRadius = paperWorldConfig.updateRadius;
-        usePermission = paperWorldConfig.usePermission;
+        this.engineMode = engineMode;
+        this.maxBlockHeight = maxBlockHeight >> 4 << 4;
+        this.updateRadius = updateRadius;
+        this.usePermission = usePermission;
+        this.parallelObfuscation = parallelObfuscation;
+        this.sectionCache = sectionCacheSize > 0 ? new ObfuscatedSectionCache(sectionCacheSize) : null;
         List<Block> toObfuscate;
 
         if (engineMode == EngineMode.HIDE) {
-            toObfuscate = paperWorldConfig.hiddenBlocks;
+            toObfuscate = hiddenBlocks;
             presetBlockStates = null;
             presetBlockStatesFull = null;
             presetBlockStatesStone = new BlockState[]{Blocks.STONE.defaultBlockState()};
@@ -82,10 +102,10 @@ public final class ChunkPacketBlockControllerAntiXray extends ChunkPacketBlockCo
             presetBlockStateBitsNetherrackGlobal = new int[]{GLOBAL_BLOCKSTATE_PALETTE.idFor(Blocks.NETHERRACK.defaultBlockState())};
             presetBlockStateBitsEndStoneGlobal = new int[]{GLOBAL_BLOCKSTATE_PALETTE.idFor(Blocks.END_STONE.defaultBlockState())};
         } else {
-            toObfuscate = new ArrayList<>(paperWorldConfig.replacementBlocks);
+            toObfuscate = new ArrayList<>(replacementBlocks);
             List<BlockState> presetBlockStateList = new LinkedList<>();
 
-            for (Block block : paperWorldConfig.hiddenBlocks) {
+            for (Block block : hiddenBlocks) {
 
                 if (!(block instanceof EntityBlock)) {
                     toObfuscate.add(block);
@@ -126,7 +146,6 @@ public final class ChunkPacketBlockControllerAntiXray extends ChunkPacketBlockCo
             }
         }
 
-        EmptyLevelChunk emptyChunk = new EmptyLevelChunk(level, new ChunkPos(0, 0), MinecraftServer.getServer().registryAccess().lookupOrThrow(Registries.BIOME).getOrThrow(Biomes.PLAINS));
         BlockPos zeroPos = new BlockPos(0, 0, 0);
 
         for (int i = 0; i < solidGlobal.length; i++) {
@@ -134,7 +153,7 @@ public final class ChunkPacketBlockControllerAntiXray extends ChunkPacketBlockCo
 
             if (blockState != null) {
                 solidGlobal[i] = blockState.isRedstoneConductor(emptyChunk, zeroPos)
-                    && !blockState.is(Blocks.SPAWNER) && !blockState.is(Blocks.BARRIER) && !blockState.is(Blocks.SHULKER_BOX) && !blockState.is(Blocks.SLIME_BLOCK) && !blockState.is(Blocks.MANGROVE_ROOTS) || paperWorldConfig.lavaObscures && blockState == Blocks.LAVA.defaultBlockState();
+                    && !blockState.is(Blocks.SPAWNER) && !blockState.is(Blocks.BARRIER) && !blockState.is(Blocks.SHULKER_BOX) && !blockState.is(Blocks.SLIME_BLOCK) && !blockState.is(Blocks.MANGROVE_ROOTS) || lavaObscures && blockState == Blocks.LAVA.defaultBlockState();
                 // Comparing blockState == Blocks.LAVA.defaultBlockState() instead of blockState.is(Blocks.LAVA) ensures that only "stationary lava" is used
                 // shulker box checks TE.
             }
@@ -175,7 +194,14 @@ public final class ChunkPacketBlockControllerAntiXray extends ChunkPacketBlockCo
     @Override
     public ChunkPacketInfoAntiXray getChunkPacketInfo(ClientboundLevelChunkWithLightPacket chunkPacket, LevelChunk chunk) {
         // Return a new instance to collect data and objects in the right state while creating the chunk packet for thread safe access later
-        return new ChunkPacketInfoAntiXray(chunkPacket, chunk, this);
+        ChunkPacketInfoAntiXray chunkPacketInfoAntiXray = new ChunkPacketInfoAntiXray(chunkPacket, chunk, this);
+
+        if (sectionCache != null) {
+            // The data is read from the chunk after this, changes from now on might not be part of it
+            chunkPacketInfoAntiXray.setModificationCount(sectionCache.getModificationCount());
+        }
+
+        return chunkPacketInfoAntiXray;
     }
 
     @Override
@@ -210,6 +236,11 @@ public final class ChunkPacketBlockControllerAntiXray extends ChunkPacketBlockCo
     private static final ThreadLocal<boolean[][]> NEXT_NEXT = ThreadLocal.withInitial(() -> new boolean[16][16]);
 
     public void obfuscate(ChunkPacketInfoAntiXray chunkPacketInfoAntiXray) {
+        if (parallelObfuscation) {
+            obfuscateParallel(chunkPacketInfoAntiXray);
+            return;
+        }
+
         int[] presetBlockStateBits = this.presetBlockStateBits.get();
         boolean[] solid = SOLID.get();
         boolean[] obfuscate = OBFUSCATE.get();
@@ -221,86 +252,29 @@ public final class ChunkPacketBlockControllerAntiXray extends ChunkPacketBlockCo
         BitStorageWriter bitStorageWriter = new BitStorageWriter();
         LevelChunkSection[] nearbyChunkSections = new LevelChunkSection[4];
         LevelChunk chunk = chunkPacketInfoAntiXray.getChunk();
-        Level level = chunk.getLevel();
         int maxChunkSectionIndex = Math.min((maxBlockHeight >> 4) - chunk.getMinSectionY(), chunk.getSectionsCount()) - 1;
         boolean[] solidTemp = null;
         boolean[] obfuscateTemp = null;
         bitStorageReader.setBuffer(chunkPacketInfoAntiXray.getBuffer());
         bitStorageWriter.setBuffer(chunkPacketInfoAntiXray.getBuffer());
-        int numberOfBlocks = presetBlockStateBits.length;
-        // Keep the lambda expressions as simple as possible. They are used very frequently.
-        LayeredIntSupplier random = numberOfBlocks == 1 ? (() -> 0) : engineMode == EngineMode.OBFUSCATE_LAYER ? new LayeredIntSupplier() {
-            // engine-mode: 3
-            private int state;
-            private int next;
-
-            {
-                while ((state = ThreadLocalRandom.current().nextInt()) == 0) ;
-            }
-
-            @Override
-            public void nextLayer() {
-                // https://en.wikipedia.org/wiki/Xorshift
-                state ^= state << 13;
-                state ^= state >>> 17;
-                state ^= state << 5;
-                // https://www.pcg-random.org/posts/bounded-rands.html
-                next = (int) ((Integer.toUnsignedLong(state) * numberOfBlocks) >>> 32);
-            }
-
-            @Override
-            public int getAsInt() {
-                return next;
-            }
-        } : new LayeredIntSupplier() {
-            // engine-mode: 2
-            private int state;
-
-            {
-                while ((state = ThreadLocalRandom.current().nextInt()) == 0) ;
-            }
-
-            @Override
-            public int getAsInt() {
-                // https://en.wikipedia.org/wiki/Xorshift
-                state ^= state << 13;
-                state ^= state >>> 17;
-                state ^= state << 5;
-                // https://www.pcg-random.org/posts/bounded-rands.html
-                return (int) ((Integer.toUnsignedLong(state) * numberOfBlocks) >>> 32);
-            }
-        };
+        LayeredIntSupplier random = createRandom(presetBlockStateBits.length);
+        boolean restoredBelow = false;
 
         for (int chunkSectionIndex = 0; chunkSectionIndex <= maxChunkSectionIndex; chunkSectionIndex++) {
             if (chunkPacketInfoAntiXray.isWritten(chunkSectionIndex) && chunkPacketInfoAntiXray.getPresetValues(chunkSectionIndex) != null) {
-                int[] presetBlockStateBitsTemp;
-
-                if (chunkPacketInfoAntiXray.getPalette(chunkSectionIndex) instanceof GlobalPalette) {
-                    if (engineMode == EngineMode.HIDE) {
-                        presetBlockStateBitsTemp = switch (level.getWorld().getEnvironment()) {
-                            case NETHER -> presetBlockStateBitsNetherrackGlobal;
-                            case THE_END -> presetBlockStateBitsEndStoneGlobal;
-                            default -> chunkSectionIndex + chunk.getMinSectionY() < 0 ? presetBlockStateBitsDeepslateGlobal : presetBlockStateBitsStoneGlobal;
-                        };
-                    } else {
-                        presetBlockStateBitsTemp = presetBlockStateBitsGlobal;
-                    }
-                } else {
-                    // If it's presetBlockStates, use this.presetBlockStatesFull instead
-                    BlockState[] presetBlockStatesFull = chunkPacketInfoAntiXray.getPresetValues(chunkSectionIndex) == presetBlockStates ? this.presetBlockStatesFull : chunkPacketInfoAntiXray.getPresetValues(chunkSectionIndex);
-                    presetBlockStateBitsTemp = presetBlockStateBits;
-
-                    for (int i = 0; i < presetBlockStateBitsTemp.length; i++) {
-                        // This is thread safe because we only request IDs that are guaranteed to be in the palette and are visible
-                        // For more details see the comments in the readPalette method
-                        presetBlockStateBitsTemp[i] = chunkPacketInfoAntiXray.getPalette(chunkSectionIndex).idFor(presetBlockStatesFull[i]);
-                    }
+                if (restoreSection(chunkPacketInfoAntiXray, chunkSectionIndex)) {
+                    // The state of the layers doesn't carry over to the chunk section above
+                    restoredBelow = true;
+                    continue;
                 }
 
+                byte[] original = copySection(chunkPacketInfoAntiXray, chunkSectionIndex);
+                int[] presetBlockStateBitsTemp = getPresetBlockStateBits(chunkPacketInfoAntiXray, chunkSectionIndex, presetBlockStateBits);
+
                 bitStorageWriter.setIndex(chunkPacketInfoAntiXray.getIndex(chunkSectionIndex));
 
                 // Check if the chunk section below was not obfuscated
-                if (chunkSectionIndex == 0 || !chunkPacketInfoAntiXray.isWritten(chunkSectionIndex - 1) || chunkPacketInfoAntiXray.getPresetValues(chunkSectionIndex - 1) == null) {
+                if (chunkSectionIndex == 0 || !chunkPacketInfoAntiXray.isWritten(chunkSectionIndex - 1) || chunkPacketInfoAntiXray.getPresetValues(chunkSectionIndex - 1) == null || restoredBelow) {
                     // If so, initialize some stuff
                     bitStorageReader.setBits(chunkPacketInfoAntiXray.getBits(chunkSectionIndex));
                     bitStorageReader.setIndex(chunkPacketInfoAntiXray.getIndex(chunkSectionIndex));
@@ -378,12 +352,312 @@ public final class ChunkPacketBlockControllerAntiXray extends ChunkPacketBlockCo
                 }
 
                 bitStorageWriter.flush();
+                storeSection(chunkPacketInfoAntiXray, chunkSectionIndex, original);
+                restoredBelow = false;
             }
         }
 
         chunkPacketInfoAntiXray.getChunkPacket().setReady(true);
     }
 
+    private long getSectionKey(ChunkPacketInfoAntiXray chunkPacketInfoAntiXray, int chunkSectionIndex) {
+        LevelChunk chunk = chunkPacketInfoAntiXray.getChunk();
+        return CoordinateUtils.getChunkSectionKey(chunk.getPos().x, chunkSectionIndex + chunk.getMinSectionY(), chunk.getPos().z);
+    }
+
+    private static int getNearbyChunksMask(ChunkPacketInfoAntiXray chunkPacketInfoAntiXray) {
+        LevelChunk[] nearbyChunks = chunkPacketInfoAntiXray.getNearbyChunks();
+        int mask = 0;
+
+        for (int i = 0; i < nearbyChunks.length; i++) {
+            if (nearbyChunks[i] != null) {
+                mask |= 1 << i;
+            }
+        }
+
+        return mask;
+    }
+
+    // Sections with a single value palette have no data, they are neither restored nor stored
+    private boolean restoreSection(ChunkPacketInfoAntiXray chunkPacketInfoAntiXray, int chunkSectionIndex) {
+        return sectionCache != null && chunkPacketInfoAntiXray.getBits(chunkSectionIndex) != 0 && sectionCache.restore(getSectionKey(chunkPacketInfoAntiXray, chunkSectionIndex), chunkPacketInfoAntiXray.getPalette(chunkSectionIndex), getNearbyChunksMask(chunkPacketInfoAntiXray),
+            chunkPacketInfoAntiXray.getBuffer(), chunkPacketInfoAntiXray.getIndex(chunkSectionIndex), ObfuscatedSectionCache.getDataLength(chunkPacketInfoAntiXray.getBits(chunkSectionIndex)));
+    }
+
+    private byte[] copySection(ChunkPacketInfoAntiXray chunkPacketInfoAntiXray, int chunkSectionIndex) {
+        if (sectionCache == null || chunkPacketInfoAntiXray.getBits(chunkSectionIndex) == 0) {
+            return null;
+        }
+
+        int index = chunkPacketInfoAntiXray.getIndex(chunkSectionIndex);
+        return Arrays.copyOfRange(chunkPacketInfoAntiXray.getBuffer(), index, index + ObfuscatedSectionCache.getDataLength(chunkPacketInfoAntiXray.getBits(chunkSectionIndex)));
+    }
+
+    private void storeSection(ChunkPacketInfoAntiXray chunkPacketInfoAntiXray, int chunkSectionIndex, byte[] original) {
+        if (sectionCache != null && original != null) {
+            sectionCache.store(getSectionKey(chunkPacketInfoAntiXray, chunkSectionIndex), chunkPacketInfoAntiXray.getModificationCount(), chunkPacketInfoAntiXray.getPalette(chunkSectionIndex), getNearbyChunksMask(chunkPacketInfoAntiXray),
+                original, chunkPacketInfoAntiXray.getBuffer(), chunkPacketInfoAntiXray.getIndex(chunkSectionIndex), original.length);
+        }
+    }
+
+    // Parallel mode, every chunk section is obfuscated on its own so that the sections of a chunk can be spread over the worker pool
+    // Unlike the sequential mode, a section doesn't continue with the layer state of the section below but reads the adjacent layers of the sections below and above from the chunk itself
+    // This is what the sequential mode does for sections next to a section that isn't obfuscated anyway
+    private final ConcurrentLinkedQueue<SectionScratch> sectionScratchPool = new ConcurrentLinkedQueue<>();
+
+    private void obfuscateParallel(ChunkPacketInfoAntiXray chunkPacketInfoAntiXray) {
+        LevelChunk chunk = chunkPacketInfoAntiXray.getChunk();
+        int maxChunkSectionIndex = Math.min((maxBlockHeight >> 4) - chunk.getMinSectionY(), chunk.getSectionsCount()) - 1;
+        int[] chunkSectionIndexes = new int[Math.max(maxChunkSectionIndex + 1, 0)];
+        int count = 0;
+
+        for (int chunkSectionIndex = 0; chunkSectionIndex <= maxChunkSectionIndex; chunkSectionIndex++) {
+            if (chunkPacketInfoAntiXray.isWritten(chunkSectionIndex) && chunkPacketInfoAntiXray.getPresetValues(chunkSectionIndex) != null) {
+                chunkSectionIndexes[count++] = chunkSectionIndex;
+            }
+        }
+
+        if (count == 1) {
+            obfuscateSection(chunkPacketInfoAntiXray, chunkSectionIndexes[0]);
+        } else if (count > 1) {
+            forEachSectionParallel(chunkSectionIndexes, count, chunkSectionIndex -> obfuscateSection(chunkPacketInfoAntiXray, chunkSectionIndex));
+        }
+
+        chunkPacketInfoAntiXray.getChunkPacket().setReady(true);
+    }
+
+    void forEachSectionParallel(int[] chunkSectionIndexes, int count, IntConsumer action) {
+        // If the caller is a worker of the pool itself, invoke runs the task in the caller and lets idle workers steal the rest
+        SectionPool.INSTANCE.invoke(new SectionTask(chunkSectionIndexes, 0, count, action));
+    }
+
+    private void obfuscateSection(ChunkPacketInfoAntiXray chunkPacketInfoAntiXray, int chunkSectionIndex) {
+        if (restoreSection(chunkPacketInfoAntiXray, chunkSectionIndex)) {
+            return;
+        }
+
+        byte[] original = copySection(chunkPacketInfoAntiXray, chunkSectionIndex);
+        SectionScratch scratch = acquireSectionScratch();
+
+        try {
+            LevelChunk chunk = chunkPacketInfoAntiXray.getChunk();
+            LevelChunkSection[] chunkSections = chunk.getSections();
+            LevelChunk[] nearbyChunks = chunkPacketInfoAntiXray.getNearbyChunks();
+
+            for (int i = 0; i < 4; i++) {
+                scratch.nearbyChunkSections[i] = nearbyChunks[i] == null ? EMPTY_SECTION : nearbyChunks[i].getSections()[chunkSectionIndex];
+            }
+
+            obfuscateSection(chunkPacketInfoAntiXray.getBuffer(), chunkPacketInfoAntiXray.getBits(chunkSectionIndex), chunkPacketInfoAntiXray.getIndex(chunkSectionIndex),
+                chunkPacketInfoAntiXray.getPalette(chunkSectionIndex), getPresetBlockStateBits(chunkPacketInfoAntiXray, chunkSectionIndex, scratch.presetBlockStateBits),
+                chunkSectionIndex == 0 ? EMPTY_SECTION : chunkSections[chunkSectionIndex - 1],
+                chunkSectionIndex == chunkSections.length - 1 ? EMPTY_SECTION : chunkSections[chunkSectionIndex + 1], scratch);
+        } finally {
+            releaseSectionScratch(scratch);
+        }
+
+        storeSection(chunkPacketInfoAntiXray, chunkSectionIndex, original);
+    }
+
+    void obfuscateSection(byte[] buffer, int bits, int index, Palette<BlockState> palette, int[] presetBlockStateBits, LevelChunkSection belowChunkSection, LevelChunkSection aboveChunkSection, SectionScratch scratch) {
+        BitStorageReader bitStorageReader = scratch.bitStorageReader;
+        BitStorageWriter bitStorageWriter = scratch.bitStorageWriter;
+        boolean[][] current = scratch.current;
+        boolean[][] next = scratch.next;
+        boolean[][] nextNext = scratch.nextNext;
+        LayeredIntSupplier random = createRandom(presetBlockStateBits.length);
+        bitStorageReader.setBuffer(buffer);
+        bitStorageWriter.setBuffer(buffer);
+        bitStorageReader.setBits(bits);
+        bitStorageReader.setIndex(index);
+        bitStorageWriter.setIndex(index);
+        boolean[] solidTemp = readPalette(palette, scratch.solid, solidGlobal);
+        boolean[] obfuscateTemp = readPalette(palette, scratch.obfuscate, obfuscateGlobal);
+
+        // Read the blocks of the upper layer of the chunk section below if it exists
+        for (int z = 0; z < 16; z++) {
+            for (int x = 0; x < 16; x++) {
+                current[z][x] = true;
+                next[z][x] = isTransparent(belowChunkSection, x, 15, z);
+            }
+        }
+
+        // Abuse the obfuscateLayer method to read the blocks of the first layer of the current chunk section
+        bitStorageWriter.setBits(0);
+        obfuscateLayer(-1, bitStorageReader, bitStorageWriter, solidTemp, obfuscateTemp, presetBlockStateBits, current, next, nextNext, emptyNearbyChunkSections, random);
+        bitStorageWriter.setBits(bits);
+
+        // Obfuscate all layers of the current chunk section except the upper one
+        for (int y = 0; y < 15; y++) {
+            boolean[][] temp = current;
+            current = next;
+            next = nextNext;
+            nextNext = temp;
+            random.nextLayer();
+            obfuscateLayer(y, bitStorageReader, bitStorageWriter, solidTemp, obfuscateTemp, presetBlockStateBits, current, next, nextNext, scratch.nearbyChunkSections, random);
+        }
+
+        // Obfuscate the upper layer of the current chunk section by reading blocks of the first layer from the chunk section above if it exists
+        if (aboveChunkSection != EMPTY_SECTION) {
+            boolean[][] temp = current;
+            current = next;
+            next = nextNext;
+            nextNext = temp;
+
+            for (int z = 0; z < 16; z++) {
+                for (int x = 0; x < 16; x++) {
+                    if (isTransparent(aboveChunkSection, x, 0, z)) {
+                        current[z][x] = true;
+                    }
+                }
+            }
+
+            // There is nothing to read anymore
+            bitStorageReader.setBits(0);
+            scratch.solid[0] = true;
+            random.nextLayer();
+            obfuscateLayer(15, bitStorageReader, bitStorageWriter, scratch.solid, obfuscateTemp, presetBlockStateBits, current, next, nextNext, scratch.nearbyChunkSections, random);
+        }
+
+        bitStorageWriter.flush();
+    }
+
+    SectionScratch acquireSectionScratch() {
+        SectionScratch scratch = sectionScratchPool.poll();
+        return scratch == null ? new SectionScratch(getPresetBlockStatesFullLength()) : scratch;
+    }
+
+    void releaseSectionScratch(SectionScratch scratch) {
+        sectionScratchPool.offer(scratch);
+    }
+
+    // Everything a single section needs while it's obfuscated, pooled so that sections running on different workers don't share state
+    static final class SectionScratch {
+
+        final BitStorageReader bitStorageReader = new BitStorageReader();
+        final BitStorageWriter bitStorageWriter = new BitStorageWriter();
+        final int[] presetBlockStateBits;
+        final boolean[] solid = new boolean[Block.BLOCK_STATE_REGISTRY.size()];
+        final boolean[] obfuscate = new boolean[Block.BLOCK_STATE_REGISTRY.size()];
+        // These boolean arrays represent chunk layers, true means don't obfuscate, false means obfuscate
+        final boolean[][] current = new boolean[16][16];
+        final boolean[][] next = new boolean[16][16];
+        final boolean[][] nextNext = new boolean[16][16];
+        final LevelChunkSection[] nearbyChunkSections = new LevelChunkSection[4];
+
+        SectionScratch(int presetBlockStatesFullLength) {
+            presetBlockStateBits = new int[presetBlockStatesFullLength];
+        }
+    }
+
+    private static final class SectionTask extends RecursiveAction {
+
+        private final int[] chunkSectionIndexes;
+        private final int from;
+        private final int to;
+        private final IntConsumer action;
+
+        private SectionTask(int[] chunkSectionIndexes, int from, int to, IntConsumer action) {
+            this.chunkSectionIndexes = chunkSectionIndexes;
+            this.from = from;
+            this.to = to;
+            this.action = action;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from == 1) {
+                action.accept(chunkSectionIndexes[from]);
+                return;
+            }
+
+            // Split in halves until every task is a single section, idle workers steal the halves that are not running yet
+            int middle = (from + to) >>> 1;
+            invokeAll(new SectionTask(chunkSectionIndexes, from, middle, action), new SectionTask(chunkSectionIndexes, middle, to, action));
+        }
+    }
+
+    private static final class SectionPool {
+
+        private static final ForkJoinPool INSTANCE = new ForkJoinPool(Math.max(1, Runtime.getRuntime().availableProcessors() - 1), pool -> {
+            ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+            thread.setName("Paper Anti-Xray Worker #" + thread.getPoolIndex());
+            thread.setDaemon(true);
+            return thread;
+        }, null, false);
+    }
+
+    private int[] getPresetBlockStateBits(ChunkPacketInfoAntiXray chunkPacketInfoAntiXray, int chunkSectionIndex, int[] presetBlockStateBits) {
+        if (chunkPacketInfoAntiXray.getPalette(chunkSectionIndex) instanceof GlobalPalette) {
+            if (engineMode == EngineMode.HIDE) {
+                LevelChunk chunk = chunkPacketInfoAntiXray.getChunk();
+                return switch (chunk.getLevel().getWorld().getEnvironment()) {
+                    case NETHER -> presetBlockStateBitsNetherrackGlobal;
+                    case THE_END -> presetBlockStateBitsEndStoneGlobal;
+                    default -> chunkSectionIndex + chunk.getMinSectionY() < 0 ? presetBlockStateBitsDeepslateGlobal : presetBlockStateBitsStoneGlobal;
+                };
+            }
+
+            return presetBlockStateBitsGlobal;
+        }
+
+        // If it's presetBlockStates, use this.presetBlockStatesFull instead
+        BlockState[] presetBlockStatesFull = chunkPacketInfoAntiXray.getPresetValues(chunkSectionIndex) == presetBlockStates ? this.presetBlockStatesFull : chunkPacketInfoAntiXray.getPresetValues(chunkSectionIndex);
+
+        for (int i = 0; i < presetBlockStateBits.length; i++) {
+            // This is thread safe because we only request IDs that are guaranteed to be in the palette and are visible
+            // For more details see the comments in the readPalette method
+            presetBlockStateBits[i] = chunkPacketInfoAntiXray.getPalette(chunkSectionIndex).idFor(presetBlockStatesFull[i]);
+        }
+
+        return presetBlockStateBits;
+    }
+
+    private LayeredIntSupplier createRandom(int numberOfBlocks) {
+        // Keep the lambda expressions as simple as possible. They are used very frequently.
+        return numberOfBlocks == 1 ? (() -> 0) : engineMode == EngineMode.OBFUSCATE_LAYER ? new LayeredIntSupplier() {
+            // engine-mode: 3
+            private int state;
+            private int next;
+
+            {
+                while ((state = ThreadLocalRandom.current().nextInt()) == 0) ;
+            }
+
+            @Override
+            public void nextLayer() {
+                // https://en.wikipedia.org/wiki/Xorshift
+                state ^= state << 13;
+                state ^= state >>> 17;
+                state ^= state << 5;
+                // https://www.pcg-random.org/posts/bounded-rands.html
+                next = (int) ((Integer.toUnsignedLong(state) * numberOfBlocks) >>> 32);
+            }
+
+            @Override
+            public int getAsInt() {
+                return next;
+            }
+        } : new LayeredIntSupplier() {
+            // engine-mode: 2
+            private int state;
+
+            {
+                while ((state = ThreadLocalRandom.current().nextInt()) == 0) ;
+            }
+
+            @Override
+            public int getAsInt() {
+                // https://en.wikipedia.org/wiki/Xorshift
+                state ^= state << 13;
+                state ^= state >>> 17;
+                state ^= state << 5;
+                // https://www.pcg-random.org/posts/bounded-rands.html
+                return (int) ((Integer.toUnsignedLong(state) * numberOfBlocks) >>> 32);
+            }
+        };
+    }
+
     private void obfuscateLayer(int y, BitStorageReader bitStorageReader, BitStorageWriter bitStorageWriter, boolean[] solid, boolean[] obfuscate, int[] presetBlockStateBits, boolean[][] current, boolean[][] next, boolean[][] nextNext, LevelChunkSection[] nearbyChunkSections, IntSupplier random) {
         // First block of first line
         int bits = bitStorageReader.read();
@@ -608,11 +882,44 @@ public final class ChunkPacketBlockControllerAntiXray extends ChunkPacketBlockCo
 
     @Override
     public void onBlockChange(Level level, BlockPos blockPos, BlockState newBlockState, BlockState oldBlockState, int flags, int maxUpdateDepth) {
+        if (sectionCache != null && blockPos.getY() <= maxBlockHeight) {
+            invalidateSections(blockPos);
+        }
+
         if (oldBlockState != null && solidGlobal[GLOBAL_BLOCKSTATE_PALETTE.idFor(oldBlockState)] && !solidGlobal[GLOBAL_BLOCKSTATE_PALETTE.idFor(newBlockState)] && blockPos.getY() <= maxBlockHeightUpdatePosition) {
             updateNearbyBlocks(level, blockPos);
         }
     }
 
+    private void invalidateSections(BlockPos blockPos) {
+        int x = blockPos.getX();
+        int y = blockPos.getY();
+        int z = blockPos.getZ();
+        int sectionX = x >> 4;
+        int sectionY = y >> 4;
+        int sectionZ = z >> 4;
+        sectionCache.invalidate(CoordinateUtils.getChunkSectionKey(sectionX, sectionY, sectionZ));
+
+        // Blocks on the border of a chunk section decide whether blocks of the adjacent chunk section are visible
+        if ((x & 15) == 0) {
+            sectionCache.invalidate(CoordinateUtils.getChunkSectionKey(sectionX - 1, sectionY, sectionZ));
+        } else if ((x & 15) == 15) {
+            sectionCache.invalidate(CoordinateUtils.getChunkSectionKey(sectionX + 1, sectionY, sectionZ));
+        }
+
+        if ((y & 15) == 0) {
+            sectionCache.invalidate(CoordinateUtils.getChunkSectionKey(sectionX, sectionY - 1, sectionZ));
+        } else if ((y & 15) == 15) {
+            sectionCache.invalidate(CoordinateUtils.getChunkSectionKey(sectionX, sectionY + 1, sectionZ));
+        }
+
+        if ((z & 15) == 0) {
+            sectionCache.invalidate(CoordinateUtils.getChunkSectionKey(sectionX, sectionY, sectionZ - 1));
+        } else if ((z & 15) == 15) {
+            sectionCache.invalidate(CoordinateUtils.getChunkSectionKey(sectionX, sectionY, sectionZ + 1));
+        }
+    }
+
     @Override
     public void onPlayerLeftClickBlock(ServerPlayerGameMode serverPlayerGameMode, BlockPos blockPos, ServerboundPlayerActionPacket.Action action, Direction direction, int worldHeight, int sequence) {
         if (blockPos.getY() <= maxBlockHeightUpdatePosition) {
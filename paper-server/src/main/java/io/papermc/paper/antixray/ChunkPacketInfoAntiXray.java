@@ -8,6 +8,7 @@ public final class ChunkPacketInfoAntiXray extends ChunkPacketInfo<BlockState> i
 
     private final ChunkPacketBlockControllerAntiXray chunkPacketBlockControllerAntiXray;
     private LevelChunk[] nearbyChunks;
+    private long modificationCount;
 
     public ChunkPacketInfoAntiXray(ClientboundLevelChunkWithLightPacket chunkPacket, LevelChunk chunk, ChunkPacketBlockControllerAntiXray chunkPacketBlockControllerAntiXray) {
         super(chunkPacket, chunk);
@@ -22,6 +23,14 @@ public final class ChunkPacketInfoAntiXray extends ChunkPacketInfo<BlockState> i
         this.nearbyChunks = nearbyChunks;
     }
 
+    public long getModificationCount() {
+        return modificationCount;
+    }
+
+    public void setModificationCount(long modificationCount) {
+        this.modificationCount = modificationCount;
+    }
+
     @Override
     public void run() {
         chunkPacketBlockControllerAntiXray.obfuscate(this);
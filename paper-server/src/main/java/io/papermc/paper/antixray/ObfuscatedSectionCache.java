@@ -0,0 +1,110 @@
+package io.papermc.paper.antixray;
+
+import it.unimi.dsi.fastutil.longs.Long2LongLinkedOpenHashMap;
+import it.unimi.dsi.fastutil.longs.Long2ObjectLinkedOpenHashMap;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
+import net.minecraft.world.level.block.state.BlockState;
+import net.minecraft.world.level.chunk.GlobalPalette;
+import net.minecraft.world.level.chunk.Palette;
+
+/**
+ * Caches the obfuscated block data of chunk sections, so that sending the same unchanged section again (to
+ * another player, or after a resend) only costs a compare and a copy instead of another obfuscation pass.
+ *
+ * <p>Every block change reported to the controller bumps the modification count, drops the entries of the
+ * affected sections and remembers the new count for them. A result is only stored if none of these counts is
+ * newer than the packet it was computed from, so a result that was computed while its section changed is
+ * never cached. An entry is only used if the packet contains exactly the same block data with the same palette
+ * as the one it was computed from and the same nearby chunks are loaded.</p>
+ *
+ * <p>The cache belongs to one controller, all of its entries are computed with the same engine mode.</p>
+ */
+public final class ObfuscatedSectionCache {
+
+    private final int maxSize;
+    private final AtomicLong modificationCount = new AtomicLong();
+    // Guarded by this
+    private final Long2ObjectLinkedOpenHashMap<Entry> entries = new Long2ObjectLinkedOpenHashMap<>();
+    // Guarded by this, modification count of the last change of recently changed sections
+    private final Long2LongLinkedOpenHashMap modifications = new Long2LongLinkedOpenHashMap();
+    // Guarded by this, results computed before this count might belong to a section whose change is forgotten already
+    private long forgottenModificationCount;
+
+    public ObfuscatedSectionCache(int maxSize) {
+        this.maxSize = maxSize;
+    }
+
+    /**
+     * Modification count to remember when the data of a chunk packet is read from the chunk
+     */
+    public long getModificationCount() {
+        return modificationCount.get();
+    }
+
+    public synchronized void invalidate(long sectionKey) {
+        entries.remove(sectionKey);
+        modifications.putAndMoveToLast(sectionKey, modificationCount.incrementAndGet());
+
+        while (modifications.size() > maxSize) {
+            forgottenModificationCount = Math.max(forgottenModificationCount, modifications.removeFirstLong());
+        }
+    }
+
+    /**
+     * Copies the cached obfuscated data over the section data in the buffer if the cached entry was computed from the same data
+     *
+     * @return whether the section data was replaced
+     */
+    public boolean restore(long sectionKey, Palette<BlockState> palette, int nearbyChunks, byte[] buffer, int index, int length) {
+        Entry entry;
+
+        synchronized (this) {
+            entry = entries.getAndMoveToLast(sectionKey);
+        }
+
+        // Palettes only grow in place, the IDs in the data stay the same as long as it's the same palette
+        if (entry == null || entry.palette != palette && !(palette instanceof GlobalPalette && entry.palette instanceof GlobalPalette) || entry.nearbyChunks != nearbyChunks || entry.original.length != length || !Arrays.equals(entry.original, 0, length, buffer, index, index + length)) {
+            return false;
+        }
+
+        System.arraycopy(entry.obfuscated, 0, buffer, index, length);
+        return true;
+    }
+
+    /**
+     * Stores the obfuscated section data found in the buffer
+     *
+     * @param modificationCount the modification count when the data of the chunk packet was read from the chunk
+     * @param original the section data before obfuscation
+     */
+    public synchronized void store(long sectionKey, long modificationCount, Palette<BlockState> palette, int nearbyChunks, byte[] original, byte[] buffer, int index, int length) {
+        if (modificationCount < forgottenModificationCount || modifications.get(sectionKey) > modificationCount) {
+            // The section or a neighbor was changed after the data was read
+            return;
+        }
+
+        entries.putAndMoveToLast(sectionKey, new Entry(palette, nearbyChunks, original, Arrays.copyOfRange(buffer, index, index + length)));
+
+        while (entries.size() > maxSize) {
+            entries.removeFirst();
+        }
+    }
+
+    /**
+     * Length of the data of a chunk section with the given bits per entry, 0 for a single value palette, which has no data to cache
+     */
+    public static int getDataLength(int bits) {
+        if (bits == 0) {
+            return 0;
+        }
+
+        // Entries don't span multiple longs
+        int valuesPerLong = 64 / bits;
+        return (4096 + valuesPerLong - 1) / valuesPerLong * Long.BYTES;
+    }
+
+    private record Entry(Palette<BlockState> palette, int nearbyChunks, byte[] original, byte[] obfuscated) {
+
+    }
+}
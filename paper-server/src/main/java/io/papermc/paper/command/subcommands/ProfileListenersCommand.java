@@ -0,0 +1,165 @@
+package io.papermc.paper.command.subcommands;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import com.google.gson.Strictness;
+import com.google.gson.internal.Streams;
+import com.google.gson.stream.JsonWriter;
+import io.papermc.paper.command.PaperSubcommand;
+import java.io.PrintStream;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import net.kyori.adventure.text.event.ClickEvent;
+import net.minecraft.server.MinecraftServer;
+import org.bukkit.command.CommandSender;
+import org.checkerframework.checker.nullness.qual.NonNull;
+import org.checkerframework.framework.qual.DefaultQualifier;
+import ru.playland.core.optimization.ListenerProfiler;
+
+import static net.kyori.adventure.text.Component.text;
+import static net.kyori.adventure.text.format.NamedTextColor.GRAY;
+import static net.kyori.adventure.text.format.NamedTextColor.GREEN;
+import static net.kyori.adventure.text.format.NamedTextColor.RED;
+import static net.kyori.adventure.text.format.NamedTextColor.WHITE;
+import static net.kyori.adventure.text.format.NamedTextColor.YELLOW;
+
+@DefaultQualifier(NonNull.class)
+public final class ProfileListenersCommand implements PaperSubcommand {
+    private static final DateTimeFormatter FORMATTER = DateTimeFormatter.ofPattern("yyyy-MM-dd_HH.mm.ss");
+    private static final List<String> ARGUMENTS = List.of("start", "stop", "reset", "top", "dump");
+    private static final int DEFAULT_TOP = 10;
+
+    @Override
+    public boolean execute(final CommandSender sender, final String subCommand, final String[] args) {
+        final String action = args.length == 0 ? "top" : args[0].toLowerCase(Locale.ROOT);
+        switch (action) {
+            case "start" -> {
+                ListenerProfiler.start();
+                sender.sendMessage(text("Listener profiler started, see results with /paper " + subCommand + " top", GREEN));
+                if (!ListenerProfiler.isAllocationSupported()) {
+                    sender.sendMessage(text("This JVM does not count allocations per thread, allocations will be 0", YELLOW));
+                }
+            }
+            case "stop" -> {
+                ListenerProfiler.stop();
+                sender.sendMessage(text("Listener profiler stopped, results are kept until reset", GREEN));
+            }
+            case "reset" -> {
+                ListenerProfiler.reset();
+                sender.sendMessage(text("Listener profiler results cleared", GREEN));
+            }
+            case "top" -> {
+                int count = DEFAULT_TOP;
+                if (args.length >= 2) {
+                    try {
+                        count = Math.max(1, Integer.parseInt(args[1]));
+                    } catch (final NumberFormatException e) {
+                        sender.sendMessage(text("Not a number: " + args[1], RED));
+                        return true;
+                    }
+                }
+                this.showTop(sender, count);
+            }
+            case "dump" -> this.dump(sender);
+            default -> sender.sendMessage(text("Usage: /paper " + subCommand + " [start|stop|reset|top [count]|dump]", RED));
+        }
+        return true;
+    }
+
+    private void showTop(final CommandSender sender, final int count) {
+        final List<ListenerProfiler.ListenerStats> stats = ListenerProfiler.getListenerStats();
+        if (stats.isEmpty()) {
+            sender.sendMessage(text(ListenerProfiler.isRunning() ? "No listener was called yet" : "The listener profiler is not running, start it with start", RED));
+            return;
+        }
+
+        final double seconds = Math.max(1L, ListenerProfiler.getProfiledMillis()) / 1000.0;
+        sender.sendMessage(text("Top " + Math.min(count, stats.size()) + " of " + stats.size() + " listeners over " + String.format(Locale.ROOT, "%.1f", seconds) + "s"
+            + (ListenerProfiler.isRunning() ? "" : " (stopped)") + ":", GREEN));
+        for (final ListenerProfiler.ListenerStats listener : stats.subList(0, Math.min(count, stats.size()))) {
+            sender.sendMessage(text()
+                .append(text(listener.getPluginName(), GREEN))
+                .appendSpace()
+                .append(text(String.format(Locale.ROOT, "%.2fms/s", listener.getTotalNanos() / 1_000_000.0 / seconds), WHITE))
+                .appendSpace()
+                .append(text(String.format(Locale.ROOT, "avg %.1fµs max %.2fms %d calls %s", listener.getAverageNanos() / 1000.0,
+                    listener.getMaxNanos() / 1_000_000.0, listener.getCalls(), formatBytes(listener.getAllocatedBytes())), GRAY))
+                .hoverEvent(text(listener.getMethod() + "\nPriority: " + listener.getPriority() + "\nIgnoring cancelled: " + listener.isIgnoringCancelled(), WHITE))
+                .build());
+        }
+    }
+
+    private static String formatBytes(final long bytes) {
+        if (bytes >= 1024L * 1024L) {
+            return String.format(Locale.ROOT, "%.1fMiB", bytes / (1024.0 * 1024.0));
+        }
+        return String.format(Locale.ROOT, "%.1fKiB", bytes / 1024.0);
+    }
+
+    private void dump(final CommandSender sender) {
+        Path parent = Path.of("debug");
+        Path path = parent.resolve("listener-profile-" + FORMATTER.format(LocalDateTime.now()) + ".json");
+        try {
+            Files.createDirectories(parent);
+
+            final JsonObject root = new JsonObject();
+            root.addProperty("running", ListenerProfiler.isRunning());
+            root.addProperty("profiled-ms", ListenerProfiler.getProfiledMillis());
+            root.addProperty("allocation-supported", ListenerProfiler.isAllocationSupported());
+            final JsonArray listeners = new JsonArray();
+            for (final ListenerProfiler.ListenerStats listener : ListenerProfiler.getListenerStats()) {
+                final JsonObject entry = new JsonObject();
+                entry.addProperty("plugin", listener.getPluginName());
+                entry.addProperty("listener", listener.getListenerClass());
+                entry.addProperty("method", listener.getMethod());
+                entry.addProperty("priority", listener.getPriority());
+                entry.addProperty("ignore-cancelled", listener.isIgnoringCancelled());
+                entry.addProperty("calls", listener.getCalls());
+                entry.addProperty("total-nanos", listener.getTotalNanos());
+                entry.addProperty("max-nanos", listener.getMaxNanos());
+                entry.addProperty("average-nanos", listener.getAverageNanos());
+                entry.addProperty("allocated-bytes", listener.getAllocatedBytes());
+                listeners.add(entry);
+            }
+            root.add("listeners", listeners);
+
+            StringWriter stringWriter = new StringWriter();
+            JsonWriter jsonWriter = new JsonWriter(stringWriter);
+            jsonWriter.setIndent(" ");
+            jsonWriter.setStrictness(Strictness.STRICT);
+            Streams.write(root, jsonWriter);
+
+            try (PrintStream out = new PrintStream(Files.newOutputStream(path), false, StandardCharsets.UTF_8)) {
+                out.print(stringWriter);
+            }
+            sender.sendMessage(
+                text("Successfully written listener profile into", GREEN)
+                    .appendSpace()
+                    .append(
+                        text(path.toString(), WHITE)
+                            .hoverEvent(text("Click to copy the full path of the file", WHITE))
+                            .clickEvent(ClickEvent.copyToClipboard(path.toAbsolutePath().toString()))
+                    )
+            );
+        } catch (Throwable e) {
+            sender.sendMessage(text("Failed to write listener profile! See the console for more info.", RED));
+            MinecraftServer.LOGGER.warn("Error occurred while dumping the listener profile", e);
+        }
+    }
+
+    @Override
+    public List<String> tabComplete(final CommandSender sender, final String subCommand, final String[] args) {
+        if (args.length <= 1) {
+            final String prefix = args.length == 0 ? "" : args[0].toLowerCase(Locale.ROOT);
+            return ARGUMENTS.stream().filter(argument -> argument.startsWith(prefix)).toList();
+        }
+        return Collections.emptyList();
+    }
+}
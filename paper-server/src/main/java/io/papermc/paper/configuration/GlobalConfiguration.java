@@ -183,6 +183,10 @@ public class GlobalConfiguration extends ConfigurationPart {
         public boolean skipVanillaDamageTickWhenShieldBlocked = false;
         @Comment("This setting controls what compression format is used for region files.")
         public CompressionFormat compressionFormat = CompressionFormat.ZLIB;
+        @Comment("The zstd compression level, from 1 (fastest) to 22 (smallest), used when compression-format is ZSTD.")
+        @Constraints.Min(ru.playland.core.optimization.ZstdRegionCompression.MIN_LEVEL)
+        @Constraints.Max(ru.playland.core.optimization.ZstdRegionCompression.MAX_LEVEL)
+        public int zstdCompressionLevel = ru.playland.core.optimization.ZstdRegionCompression.DEFAULT_LEVEL;
         @Comment("This setting controls if equipment should be updated when handling certain player actions.")
         public boolean updateEquipmentOnPlayerActions = true;
 
@@ -190,6 +194,7 @@ public class GlobalConfiguration extends ConfigurationPart {
             GZIP,
             ZLIB,
             LZ4,
+            ZSTD,
             NONE
         }
     }
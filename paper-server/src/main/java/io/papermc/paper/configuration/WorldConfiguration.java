@@ -98,6 +98,8 @@ public class WorldConfiguration extends ConfigurationPart {
             public int updateRadius = 2;
             public boolean lavaObscures = false;
             public boolean usePermission = false;
+            public boolean parallelObfuscation = false;
+            public int sectionCacheSize = 0;
             public List<Block> hiddenBlocks = List.of(
                 //<editor-fold desc="Anti-Xray Hidden Blocks" defaultstate="collapsed">
                 Blocks.COPPER_ORE,
@@ -29,6 +29,7 @@ import java.util.logging.Level;
 class PaperEventManager {
 
     private final Server server;
+    private final ru.playland.core.optimization.BakedEventDispatcher.FailureHandler failureHandler = this::handleListenerException; // PlayLand - baked event dispatch
 
     public PaperEventManager(Server server) {
         this.server = server;
@@ -45,6 +46,19 @@ class PaperEventManager {
         HandlerList handlers = event.getHandlers();
         RegisteredListener[] listeners = handlers.getRegisteredListeners();
 
+        // PlayLand start - listener profiler
+        if (ru.playland.core.optimization.ListenerProfiler.isRunning()) {
+            ru.playland.core.optimization.ListenerProfiler.dispatch(listeners, event, this.failureHandler);
+            return;
+        }
+        // PlayLand end - listener profiler
+        // PlayLand start - baked event dispatch
+        if (ru.playland.core.optimization.BakedEventDispatcher.ENABLED) {
+            ru.playland.core.optimization.BakedEventDispatcher.get(handlers, listeners, event.getClass()).dispatch(event, this.failureHandler);
+            return;
+        }
+        // PlayLand end - baked event dispatch
+
         for (RegisteredListener registration : listeners) {
             if (!registration.getPlugin().isEnabled()) {
                 continue;
@@ -52,28 +66,36 @@ class PaperEventManager {
 
             try {
                 registration.callEvent(event);
-            } catch (AuthorNagException ex) {
-                Plugin plugin = registration.getPlugin();
-
-                if (plugin.isNaggable()) {
-                    plugin.setNaggable(false);
-
-                    this.server.getLogger().log(Level.SEVERE, String.format(
-                        "Nag author(s): '%s' of '%s' about the following: %s",
-                        plugin.getPluginMeta().getAuthors(),
-                        plugin.getPluginMeta().getDisplayName(),
-                        ex.getMessage()
-                    ));
-                }
             } catch (Throwable ex) {
-                String msg = "Could not pass event " + event.getEventName() + " to " + registration.getPlugin().getPluginMeta().getDisplayName();
-                this.server.getLogger().log(Level.SEVERE, msg, ex);
-                if (!(event instanceof ServerExceptionEvent)) { // We don't want to cause an endless event loop
-                    this.callEvent(new ServerExceptionEvent(new ServerEventException(msg, ex, registration.getPlugin(), registration.getListener(), event)));
-                }
+                this.handleListenerException(registration, event, ex); // PlayLand - baked event dispatch
+            }
+        }
+    }
+
+    // PlayLand start - baked event dispatch - shared with the baked dispatchers
+    private void handleListenerException(RegisteredListener registration, Event event, Throwable ex) {
+        if (ex instanceof AuthorNagException) {
+            Plugin plugin = registration.getPlugin();
+
+            if (plugin.isNaggable()) {
+                plugin.setNaggable(false);
+
+                this.server.getLogger().log(Level.SEVERE, String.format(
+                    "Nag author(s): '%s' of '%s' about the following: %s",
+                    plugin.getPluginMeta().getAuthors(),
+                    plugin.getPluginMeta().getDisplayName(),
+                    ex.getMessage()
+                ));
+            }
+        } else {
+            String msg = "Could not pass event " + event.getEventName() + " to " + registration.getPlugin().getPluginMeta().getDisplayName();
+            this.server.getLogger().log(Level.SEVERE, msg, ex);
+            if (!(event instanceof ServerExceptionEvent)) { // We don't want to cause an endless event loop
+                this.callEvent(new ServerExceptionEvent(new ServerEventException(msg, ex, registration.getPlugin(), registration.getListener(), event)));
             }
         }
     }
+    // PlayLand end - baked event dispatch
 
     public void registerEvents(@NotNull Listener listener, @NotNull Plugin plugin) {
         if (!plugin.isEnabled()) {
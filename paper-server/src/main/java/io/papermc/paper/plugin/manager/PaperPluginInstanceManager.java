@@ -288,6 +288,7 @@ class PaperPluginInstanceManager {
 
         try {
             HandlerList.unregisterAll(plugin);
+            ru.playland.core.optimization.ListenerProfiler.removePlugin(plugin); // PlayLand - listener profiler
         } catch (Throwable ex) {
             this.handlePluginException("Error occurred (in the plugin loader) while unregistering events for "
                 + pluginName + " (Is it up to date?)", ex, plugin); // Paper
@@ -73,7 +73,7 @@ public final class FoliaAsyncScheduler implements AsyncScheduler {
         final AsyncScheduledTask ret = new AsyncScheduledTask(plugin, -1L, task, null, -1L);
 
         this.tasks.add(ret);
-        this.executors.execute(ret);
+        this.execute(ret); // PlayLand - virtual thread async tasks
 
         if (!plugin.isEnabled()) {
             // handle race condition where plugin is disabled asynchronously
@@ -153,6 +153,16 @@ public final class FoliaAsyncScheduler implements AsyncScheduler {
         }
     }
 
+    // PlayLand start - virtual thread async tasks
+    private void execute(final AsyncScheduledTask task) {
+        if (ru.playland.core.optimization.VirtualThreadTaskExecutor.ENABLED) {
+            ru.playland.core.optimization.VirtualThreadTaskExecutor.execute(task.plugin, task);
+            return;
+        }
+        this.executors.execute(task);
+    }
+    // PlayLand end - virtual thread async tasks
+
     private final class AsyncScheduledTask implements ScheduledTask, Runnable {
 
         private static final int STATE_ON_TIMER            = 0;
@@ -209,7 +219,7 @@ public final class FoliaAsyncScheduler implements AsyncScheduler {
             if (timer) {
                 // the scheduled executor is single thread, and unfortunately not expandable with threads
                 // so we just schedule onto the executor
-                FoliaAsyncScheduler.this.executors.execute(this);
+                FoliaAsyncScheduler.this.execute(this); // PlayLand - virtual thread async tasks
                 return;
             }
 
@@ -1489,6 +1489,11 @@ public final class CraftServer implements Server {
 
         this.worlds.remove(world.getName().toLowerCase(Locale.ROOT));
         this.console.removeLevel(handle);
+        ru.playland.core.optimization.HopperContainerCache.clear(handle); // PlayLand - hopper container cache
+        ru.playland.core.optimization.PlayerProximityIndex.clear(handle); // PlayLand - player proximity index
+        ru.playland.core.optimization.PackedActivationRange.clear(handle); // PlayLand - packed activation range
+        ru.playland.core.optimization.InactiveWakeQueue.clear(handle); // PlayLand - inactive wake queue
+        ru.playland.core.optimization.AutosavePipeline.clear(handle); // PlayLand - autosave pipeline
         return true;
     }
 
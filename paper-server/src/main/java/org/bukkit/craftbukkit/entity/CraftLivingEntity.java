@@ -1115,7 +1115,7 @@ public class CraftLivingEntity extends CraftEntity implements LivingEntity {
             if (craftItemStack.handle == null || craftItemStack.handle.isEmpty()) {
                 return stack;
             }
-            nmsStack = craftItemStack.handle;
+            nmsStack = CraftItemStack.unwrap(craftItemStack); // PlayLand - copy-on-write item stacks, changed in place
         } else {
             nmsStack = CraftItemStack.asNMSCopy(stack);
             stack = CraftItemStack.asCraftMirror(nmsStack); // mirror to capture changes in hurt logic & events
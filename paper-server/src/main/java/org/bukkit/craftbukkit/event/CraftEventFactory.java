@@ -591,9 +591,13 @@ public class CraftEventFactory {
                 }
             }
 
+            if (ru.playland.core.optimization.EventElision.shouldCall(EntitySpawnEvent.getHandlerList(), CreatureSpawnEvent.class)) { // PlayLand - event elision
             event = CraftEventFactory.callCreatureSpawnEvent((net.minecraft.world.entity.LivingEntity) entity, spawnReason);
+            } // PlayLand - event elision
         } else if (entity instanceof ItemEntity) {
+            if (ru.playland.core.optimization.EventElision.shouldCall(EntitySpawnEvent.getHandlerList(), ItemSpawnEvent.class)) { // PlayLand - event elision
             event = CraftEventFactory.callItemSpawnEvent((ItemEntity) entity);
+            } // PlayLand - event elision
         } else if (entity.getBukkitEntity() instanceof org.bukkit.entity.Projectile) {
             // Not all projectiles extend EntityProjectile, so check for Bukkit interface instead
             event = CraftEventFactory.callProjectileLaunchEvent(entity);
@@ -615,7 +619,7 @@ public class CraftEventFactory {
             event = CraftEventFactory.callEntitySpawnEvent(entity);
         }
 
-        if (event != null && (event.isCancelled() || entity.isRemoved())) {
+        if (event != null && event.isCancelled() || entity.isRemoved() && !(entity instanceof ServerPlayer)) { // PlayLand - event elision - a removed entity is not added, with or without an event
             Entity vehicle = entity.getVehicle();
             if (vehicle != null) {
                 vehicle.discard(null); // Add Bukkit remove cause
@@ -709,6 +713,7 @@ public class CraftEventFactory {
     }
 
     public static boolean callItemMergeEvent(ItemEntity merging, ItemEntity mergingWith) {
+        if (!ru.playland.core.optimization.EventElision.shouldCall(ItemMergeEvent.getHandlerList(), ItemMergeEvent.class)) return true; // PlayLand - event elision
         org.bukkit.entity.Item entityMerging = (org.bukkit.entity.Item) merging.getBukkitEntity();
         org.bukkit.entity.Item entityMergingWith = (org.bukkit.entity.Item) mergingWith.getBukkitEntity();
 
@@ -797,6 +802,12 @@ public class CraftEventFactory {
     }
 
     public static boolean handleMoistureChangeEvent(Level world, BlockPos pos, net.minecraft.world.level.block.state.BlockState state, int flags) {
+        // PlayLand start - event elision
+        if (!ru.playland.core.optimization.EventElision.shouldCall(MoistureChangeEvent.getHandlerList(), MoistureChangeEvent.class)) {
+            world.setBlock(pos, state, flags);
+            return true;
+        }
+        // PlayLand end - event elision
         CraftBlockState snapshot = CraftBlockStates.getBlockState(world, pos);
         snapshot.setData(state);
 
@@ -821,6 +832,13 @@ public class CraftEventFactory {
             return !checkSetResult || result;
         }
 
+        // PlayLand start - event elision - same as placing the snapshot of an uncancelled event
+        if (!ru.playland.core.optimization.EventElision.shouldCall(BlockSpreadEvent.getHandlerList(), BlockSpreadEvent.class)) {
+            boolean result = world.setBlock(target, state, flags);
+            return !checkSetResult || result;
+        }
+        // PlayLand end - event elision
+
         CraftBlockState snapshot = CraftBlockStates.getBlockState(world, target);
         snapshot.setData(state);
 
@@ -1167,6 +1185,12 @@ public class CraftEventFactory {
     // Paper end
 
     public static boolean handleBlockGrowEvent(Level world, BlockPos pos, net.minecraft.world.level.block.state.BlockState state, int flags) {
+        // PlayLand start - event elision
+        if (!ru.playland.core.optimization.EventElision.shouldCall(BlockGrowEvent.getHandlerList(), BlockGrowEvent.class)) {
+            world.setBlock(pos, state, flags);
+            return true;
+        }
+        // PlayLand end - event elision
         CraftBlockState snapshot = CraftBlockStates.getBlockState(world, pos);
         snapshot.setData(state);
 
@@ -1220,6 +1244,7 @@ public class CraftEventFactory {
     }
 
     public static boolean callEntityChangeBlockEvent(Entity entity, BlockPos pos, net.minecraft.world.level.block.state.BlockState newState, boolean cancelled) {
+        if (!ru.playland.core.optimization.EventElision.shouldCall(EntityChangeBlockEvent.getHandlerList(), EntityChangeBlockEvent.class)) return !cancelled; // PlayLand - event elision
         Block block = CraftBlock.at(entity.level(), pos);
 
         EntityChangeBlockEvent event = new EntityChangeBlockEvent(entity.getBukkitEntity(), block, CraftBlockData.fromData(newState));
@@ -1741,6 +1766,12 @@ public class CraftEventFactory {
     }
 
     public static boolean handleBlockFormEvent(Level world, BlockPos pos, net.minecraft.world.level.block.state.BlockState state, int flags, @Nullable Entity entity, boolean checkSetResult) {
+        // PlayLand start - event elision - EntityBlockFormEvent is called on the BlockFormEvent handlers
+        if (!ru.playland.core.optimization.EventElision.shouldCall(BlockFormEvent.getHandlerList(), entity == null ? BlockFormEvent.class : EntityBlockFormEvent.class)) {
+            boolean result = world.setBlock(pos, state, flags);
+            return !checkSetResult || result;
+        }
+        // PlayLand end - event elision
         CraftBlockState snapshot = CraftBlockStates.getBlockState(world, pos);
         snapshot.setData(state);
 
@@ -1754,6 +1785,7 @@ public class CraftEventFactory {
     }
 
     public static boolean handleBatToggleSleepEvent(Entity bat, boolean awake) {
+        if (!ru.playland.core.optimization.EventElision.shouldCall(BatToggleSleepEvent.getHandlerList(), BatToggleSleepEvent.class)) return true; // PlayLand - event elision
         BatToggleSleepEvent event = new BatToggleSleepEvent((Bat) bat.getBukkitEntity(), awake);
         Bukkit.getPluginManager().callEvent(event);
         return !event.isCancelled();
@@ -1815,6 +1847,7 @@ public class CraftEventFactory {
     }
 
     public static boolean callStriderTemperatureChangeEvent(net.minecraft.world.entity.monster.Strider strider, boolean shivering) {
+        if (!ru.playland.core.optimization.EventElision.shouldCall(StriderTemperatureChangeEvent.getHandlerList(), StriderTemperatureChangeEvent.class)) return true; // PlayLand - event elision
         StriderTemperatureChangeEvent event = new StriderTemperatureChangeEvent((Strider) strider.getBukkitEntity(), shivering);
         Bukkit.getPluginManager().callEvent(event);
         return !event.isCancelled();
@@ -1892,6 +1925,7 @@ public class CraftEventFactory {
     }
 
     public static boolean callEntityInteractEvent(Entity nmsEntity, Block block) {
+        if (!ru.playland.core.optimization.EventElision.shouldCall(EntityInteractEvent.getHandlerList(), EntityInteractEvent.class)) return true; // PlayLand - event elision
         EntityInteractEvent event = new EntityInteractEvent(nmsEntity.getBukkitEntity(), block);
         Bukkit.getPluginManager().callEvent(event);
 
@@ -1984,12 +2018,14 @@ public class CraftEventFactory {
     }
 
     public static boolean handleBlockFailedDispenseEvent(ServerLevel serverLevel, BlockPos pos) {
+        if (!ru.playland.core.optimization.EventElision.shouldCall(io.papermc.paper.event.block.BlockFailedDispenseEvent.getHandlerList(), io.papermc.paper.event.block.BlockFailedDispenseEvent.class)) return true; // PlayLand - event elision
         org.bukkit.block.Block block = CraftBlock.at(serverLevel, pos);
         io.papermc.paper.event.block.BlockFailedDispenseEvent event = new io.papermc.paper.event.block.BlockFailedDispenseEvent(block);
         return event.callEvent();
     }
 
     public static boolean handleBlockPreDispenseEvent(ServerLevel serverLevel, BlockPos pos, ItemStack itemStack, int slot) {
+        if (!ru.playland.core.optimization.EventElision.shouldCall(io.papermc.paper.event.block.BlockPreDispenseEvent.getHandlerList(), io.papermc.paper.event.block.BlockPreDispenseEvent.class)) return true; // PlayLand - event elision
         org.bukkit.block.Block block = CraftBlock.at(serverLevel, pos);
         io.papermc.paper.event.block.BlockPreDispenseEvent event = new io.papermc.paper.event.block.BlockPreDispenseEvent(block, org.bukkit.craftbukkit.inventory.CraftItemStack.asCraftMirror(itemStack), slot);
         return event.callEvent();
@@ -262,7 +262,7 @@ public class CraftInventory implements Inventory {
 
     private int firstPartial(ItemStack item) {
         ItemStack[] inventory = this.getStorageContents();
-        ItemStack filteredItem = CraftItemStack.asCraftCopy(item);
+        ItemStack filteredItem = item; // PlayLand - copy-on-write item stacks, only compared, no copy needed
         if (item == null) {
             return -1;
         }
@@ -211,7 +211,7 @@ public final class CraftItemFactory implements ItemFactory {
         CraftItemStack craft = (CraftItemStack) itemStack;
         RegistryAccess registry = CraftRegistry.getMinecraftRegistry();
         Optional<HolderSet.Named<Enchantment>> optional = (allowTreasures) ? Optional.empty() : registry.lookupOrThrow(Registries.ENCHANTMENT).get(EnchantmentTags.IN_ENCHANTING_TABLE);
-        return CraftItemStack.asCraftMirror(EnchantmentHelper.enchantItem(source, craft.handle, level, registry, optional));
+        return CraftItemStack.asCraftMirror(EnchantmentHelper.enchantItem(source, CraftItemStack.unwrap(craft), level, registry, optional)); // PlayLand - copy-on-write item stacks, changed in place
     }
 
     @Override
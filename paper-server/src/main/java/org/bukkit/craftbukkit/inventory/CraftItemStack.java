@@ -87,6 +87,13 @@ public final class CraftItemStack extends ItemStack {
     public static net.minecraft.world.item.ItemStack unwrap(ItemStack bukkit) {
         // Paper start - re-implement after delegating all api ItemStack calls to CraftItemStack
         final CraftItemStack craftItemStack = getCraftStack(bukkit);
+        // PlayLand start - copy-on-write item stacks
+        if (craftItemStack.handle != null) {
+            // The game may change the stack from now on
+            craftItemStack.ensureExclusive();
+            craftItemStack.mirror = true;
+        }
+        // PlayLand end - copy-on-write item stacks
         return craftItemStack.handle == null ? net.minecraft.world.item.ItemStack.EMPTY : craftItemStack.handle;
         // Paper end - re-implement after delegating all api ItemStack calls to CraftItemStack
     }
@@ -133,18 +140,22 @@ public final class CraftItemStack extends ItemStack {
     public static ItemStack asBukkitCopy(net.minecraft.world.item.ItemStack original) {
         // Paper start - no such thing as a "strictly-Bukkit stack" anymore
         // we copy the stack since it should be a complete copy not a mirror
-        return asCraftMirror(original.copy());
+        return new CraftItemStack(original.isEmpty() ? null : original.copy()); // PlayLand - copy-on-write item stacks, owned and not a mirror
         // Paper end
     }
 
     public static CraftItemStack asCraftMirror(net.minecraft.world.item.ItemStack original) {
-        return new CraftItemStack((original == null || original.isEmpty()) ? null : original);
+        // PlayLand start - copy-on-write item stacks
+        final CraftItemStack mirror = new CraftItemStack((original == null || original.isEmpty()) ? null : original);
+        mirror.mirror = true;
+        return mirror;
+        // PlayLand end - copy-on-write item stacks
     }
 
     public static CraftItemStack asCraftCopy(ItemStack original) {
         if (original instanceof CraftItemStack) {
             CraftItemStack stack = (CraftItemStack) original;
-            return new CraftItemStack(stack.handle == null ? null : stack.handle.copy());
+            return stack.copy(); // PlayLand - copy-on-write item stacks
         }
         return new CraftItemStack(original);
     }
@@ -165,6 +176,41 @@ public final class CraftItemStack extends ItemStack {
     }
 
     public net.minecraft.world.item.ItemStack handle;
+    // PlayLand start - copy-on-write item stacks
+    // The handle is referenced by the game, copies of it can not share it
+    private boolean mirror;
+    // Non null while the handle is shared with copies of this stack
+    private ru.playland.core.optimization.ItemStackCopyOnWrite.Share share;
+
+    private CraftItemStack copy() {
+        if (this.handle == null) {
+            return new CraftItemStack((net.minecraft.world.item.ItemStack) null);
+        }
+        if (!ru.playland.core.optimization.ItemStackCopyOnWrite.ENABLED || this.mirror) {
+            ru.playland.core.optimization.ItemStackCopyOnWrite.recordEagerCopy();
+            return new CraftItemStack(this.handle.copy());
+        }
+        if (this.share == null) {
+            this.share = new ru.playland.core.optimization.ItemStackCopyOnWrite.Share();
+        }
+        final CraftItemStack copy = new CraftItemStack(this.handle);
+        copy.share = this.share.retain();
+        return copy;
+    }
+
+    /**
+     * Copies the handle if it is shared, call before changing it
+     */
+    private void ensureExclusive() {
+        final ru.playland.core.optimization.ItemStackCopyOnWrite.Share share = this.share;
+        if (share != null) {
+            this.share = null;
+            if (share.release()) {
+                this.handle = this.handle.copy();
+            }
+        }
+    }
+    // PlayLand end - copy-on-write item stacks
 
     /**
      * Mirror
@@ -198,7 +244,9 @@ public final class CraftItemStack extends ItemStack {
     public void setType(Material type) {
         if (this.getType() == type) {
             return;
-        } else if (type == Material.AIR) {
+        }
+        this.ensureExclusive(); // PlayLand - copy-on-write item stacks
+        if (type == Material.AIR) {
             this.handle = null;
         } else if (CraftItemType.bukkitToMinecraft(type) == null) { // :(
             this.handle = null;
@@ -226,6 +274,7 @@ public final class CraftItemStack extends ItemStack {
             return;
         }
 
+        this.ensureExclusive(); // PlayLand - copy-on-write item stacks
         this.handle.setCount(amount);
     }
 
@@ -233,6 +282,7 @@ public final class CraftItemStack extends ItemStack {
     public void setDurability(final short durability) {
         // Ignore damage if item is null
         if (this.handle != null) {
+            this.ensureExclusive(); // PlayLand - copy-on-write item stacks
             this.handle.setDamageValue(durability);
         }
     }
@@ -272,6 +322,7 @@ public final class CraftItemStack extends ItemStack {
             return;
         }
 
+        this.ensureExclusive(); // PlayLand - copy-on-write item stacks
         EnchantmentHelper.updateEnchantments(this.handle, mutable -> { // data component api doesn't really support mutable things once already set yet
             mutable.set(CraftEnchantment.bukkitToMinecraftHolder(enchant), level);
         }, true);
@@ -310,6 +361,7 @@ public final class CraftItemStack extends ItemStack {
 
             ItemEnchantments.Mutable mutable = new ItemEnchantments.Mutable(itemEnchantments); // data component api doesn't really support mutable things once already set yet
             mutable.removeIf(enchantment -> enchantment.equals(removedEnchantment));
+            this.ensureExclusive(); // PlayLand - copy-on-write item stacks
             this.handle.set(DataComponents.ENCHANTMENTS, mutable.toImmutable());
             return previousLevel;
         }
@@ -320,6 +372,7 @@ public final class CraftItemStack extends ItemStack {
     @Override
     public void removeEnchantments() {
         if (this.handle != null) {
+            this.ensureExclusive(); // PlayLand - copy-on-write item stacks
             this.handle.set(DataComponents.ENCHANTMENTS, ItemEnchantments.EMPTY); // Paper - set to default instead of removing the component
         }
     }
@@ -335,7 +388,7 @@ public final class CraftItemStack extends ItemStack {
 
     @Override
     public CraftItemStack clone() {
-        return new org.bukkit.craftbukkit.inventory.CraftItemStack(this.handle != null ? this.handle.copy() : null); // Paper
+        return this.copy(); // PlayLand - copy-on-write item stacks
     }
 
     @Override
@@ -393,6 +446,7 @@ public final class CraftItemStack extends ItemStack {
 
     @Override
     public boolean setItemMeta(ItemMeta itemMeta) {
+        this.ensureExclusive(); // PlayLand - copy-on-write item stacks
         return CraftItemStack.setItemMeta(this.handle, itemMeta);
     }
 
@@ -476,7 +530,7 @@ public final class CraftItemStack extends ItemStack {
             copy.applyComponents(this.handle.getComponentsPatch());
         }
 
-        final CraftItemStack mirrored = CraftItemStack.asCraftMirror(copy);
+        final CraftItemStack mirrored = new CraftItemStack(copy.isEmpty() ? null : copy); // PlayLand - copy-on-write item stacks, nothing else references the copy
         mirrored.setItemMeta(mirrored.getItemMeta());
         return mirrored;
     }
@@ -530,6 +584,7 @@ public final class CraftItemStack extends ItemStack {
         }
 
         // mirror CraftMetaItem behavior of clearing component if it's empty.
+        this.ensureExclusive(); // PlayLand - copy-on-write item stacks
         this.handle.set(DataComponents.CUSTOM_DATA, customData.isEmpty() ? null : customData);
         return true;
     }
@@ -577,6 +632,7 @@ public final class CraftItemStack extends ItemStack {
     }
 
     private <A, V> void setDataInternal(final io.papermc.paper.datacomponent.PaperDataComponentType<A, V> type, final A value) {
+        this.ensureExclusive(); // PlayLand - copy-on-write item stacks
         this.handle.set(type.getHandle(), type.getAdapter().toVanilla(value));
     }
 
@@ -585,6 +641,7 @@ public final class CraftItemStack extends ItemStack {
         if (this.isEmpty()) {
             return;
         }
+        this.ensureExclusive(); // PlayLand - copy-on-write item stacks
         this.handle.remove(io.papermc.paper.datacomponent.PaperDataComponentType.bukkitToMinecraft(type));
     }
 
@@ -601,6 +658,7 @@ public final class CraftItemStack extends ItemStack {
         final M nmsValue = this.handle.getItem().components().get(nms);
         // if nmsValue is null, it will clear any set patch
         // if nmsValue is not null, it will still clear any set patch because it will equal the default value
+        this.ensureExclusive(); // PlayLand - copy-on-write item stacks
         this.handle.set(nms, nmsValue);
     }
 
@@ -614,6 +672,7 @@ public final class CraftItemStack extends ItemStack {
 
         final Predicate<DataComponentType<?>> nmsFilter = nms -> filter.test(io.papermc.paper.datacomponent.PaperDataComponentType.minecraftToBukkit(nms));
         net.minecraft.world.item.ItemStack sourceNmsStack = getCraftStack(source).handle;
+        this.ensureExclusive(); // PlayLand - copy-on-write item stacks
         this.handle.applyComponents(sourceNmsStack.getPrototype().filter(nmsType -> {
             return !sourceNmsStack.hasNonDefault(nmsType) && nmsFilter.test(nmsType);
         }));
@@ -19,7 +19,7 @@ import org.jetbrains.annotations.NotNull;
 
 public class CraftPersistentDataContainer extends io.papermc.paper.persistence.PaperPersistentDataContainerView implements PersistentDataContainer { // Paper - split up view and mutable
 
-    private final Map<String, Tag> customDataTags = new HashMap<>();
+    private final Map<String, Tag> customDataTags = ru.playland.core.optimization.CompactDataMap.ENABLED ? new ru.playland.core.optimization.CompactDataMap() : new HashMap<>(); // PlayLand - compact persistent data
 
     public CraftPersistentDataContainer(Map<String, Tag> customTags, CraftPersistentDataTypeRegistry registry) {
         this(registry);
@@ -41,12 +41,61 @@ public class CraftPersistentDataContainer extends io.papermc.paper.persistence.P
         Preconditions.checkArgument(type != null, "The provided type cannot be null");
         Preconditions.checkArgument(value != null, "The provided value cannot be null");
 
-        this.customDataTags.put(key.toString(), this.registry.wrap(type, type.toPrimitive(value, this.adapterContext)));
+        // PlayLand start - compact persistent data
+        final T primitive = type.toPrimitive(value, this.adapterContext);
+        if (this.customDataTags instanceof final ru.playland.core.optimization.CompactDataMap compact
+            && primitive != null && primitive.getClass() == type.getPrimitiveType() && compact.putPrimitive(key, primitive)) {
+            return;
+        }
+        this.customDataTags.put(key.toString(), this.registry.wrap(type, primitive));
+        // PlayLand end - compact persistent data
+    }
+
+    // PlayLand start - compact persistent data
+    @Override
+    public <P, C> boolean has(@NotNull NamespacedKey key, @NotNull PersistentDataType<P, C> type) {
+        if (key != null && type != null && this.customDataTags instanceof final ru.playland.core.optimization.CompactDataMap compact) {
+            final Object value = compact.getPrimitive(key, type.getPrimitiveType());
+            if (value != ru.playland.core.optimization.CompactDataMap.NOT_INLINE) {
+                return value != null;
+            }
+        }
+        return super.has(key, type);
+    }
+
+    @Override
+    public boolean has(@NotNull NamespacedKey key) {
+        Preconditions.checkArgument(key != null, "The provided key for the custom value was null");
+        if (this.customDataTags instanceof final ru.playland.core.optimization.CompactDataMap compact) {
+            return compact.containsKey(key);
+        }
+        return super.has(key);
     }
 
+    @Override
+    @SuppressWarnings("unchecked")
+    public <P, C> C get(@NotNull NamespacedKey key, @NotNull PersistentDataType<P, C> type) {
+        if (key != null && type != null && this.customDataTags instanceof final ru.playland.core.optimization.CompactDataMap compact) {
+            final Object value = compact.getPrimitive(key, type.getPrimitiveType());
+            if (value == null) {
+                return null;
+            }
+            if (value != ru.playland.core.optimization.CompactDataMap.NOT_INLINE) {
+                return type.fromPrimitive((P) value, this.adapterContext);
+            }
+        }
+        return super.get(key, type);
+    }
+    // PlayLand end - compact persistent data
+
     @NotNull
     @Override
     public Set<NamespacedKey> getKeys() {
+        // PlayLand start - compact persistent data
+        if (this.customDataTags instanceof final ru.playland.core.optimization.CompactDataMap compact) {
+            return compact.getKeys();
+        }
+        // PlayLand end - compact persistent data
         Set<NamespacedKey> keys = new HashSet<>();
 
         this.customDataTags.keySet().forEach(key -> {
@@ -63,6 +112,12 @@ public class CraftPersistentDataContainer extends io.papermc.paper.persistence.P
     public void remove(@NotNull NamespacedKey key) {
         Preconditions.checkArgument(key != null, "The NamespacedKey key cannot be null");
 
+        // PlayLand start - compact persistent data
+        if (this.customDataTags instanceof final ru.playland.core.optimization.CompactDataMap compact) {
+            compact.remove(key);
+            return;
+        }
+        // PlayLand end - compact persistent data
         this.customDataTags.remove(key.toString());
     }
 
@@ -158,6 +213,11 @@ public class CraftPersistentDataContainer extends io.papermc.paper.persistence.P
     }
 
     public Map<String, Tag> getTagsCloned() {
+        // PlayLand start - compact persistent data
+        if (this.customDataTags instanceof final ru.playland.core.optimization.CompactDataMap compact) {
+            return compact.deepCopy();
+        }
+        // PlayLand end - compact persistent data
         final Map<String, Tag> tags = new HashMap<>();
         this.customDataTags.forEach((key, tag) -> tags.put(key, tag.copy()));
         return tags;
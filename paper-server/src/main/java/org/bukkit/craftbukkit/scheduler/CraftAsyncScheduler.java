@@ -48,7 +48,11 @@ public class CraftAsyncScheduler extends CraftScheduler {
     CraftAsyncScheduler() {
         super(true);
         executor.allowCoreThreadTimeOut(true);
-        executor.prestartAllCoreThreads();
+        // PlayLand start - virtual thread async tasks
+        if (!ru.playland.core.optimization.VirtualThreadTaskExecutor.ENABLED) {
+            executor.prestartAllCoreThreads();
+        }
+        // PlayLand end - virtual thread async tasks
     }
 
     @Override
@@ -75,7 +79,7 @@ public class CraftAsyncScheduler extends CraftScheduler {
 
     private synchronized void runTasks(int currentTick) {
         parsePending();
-        while (!this.pending.isEmpty() && this.pending.peek().getNextRun() <= currentTick) {
+        while (this.isReady(currentTick)) { // PlayLand - scheduler timing wheel
             CraftTask task = this.pending.remove();
             if (executeTask(task)) {
                 final long period = task.getPeriod();
@@ -93,6 +97,12 @@ public class CraftAsyncScheduler extends CraftScheduler {
     private boolean executeTask(CraftTask task) {
         if (isValid(task)) {
             this.runners.put(task.getTaskId(), task);
+            // PlayLand start - virtual thread async tasks
+            if (ru.playland.core.optimization.VirtualThreadTaskExecutor.ENABLED) {
+                ru.playland.core.optimization.VirtualThreadTaskExecutor.execute(task.getOwner(), new ServerSchedulerReportingWrapper(task));
+                return true;
+            }
+            // PlayLand end - virtual thread async tasks
             this.executor.execute(new ServerSchedulerReportingWrapper(task));
             return true;
         }
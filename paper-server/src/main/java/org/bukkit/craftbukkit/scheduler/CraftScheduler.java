@@ -7,6 +7,7 @@ import java.util.Comparator;
 import java.util.Iterator;
 import java.util.List;
 import java.util.PriorityQueue;
+import java.util.Queue;
 import java.util.concurrent.Callable;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.Executor;
@@ -75,7 +76,7 @@ public class CraftScheduler implements BukkitScheduler {
     /**
      * Main thread logic only
      */
-    final PriorityQueue<CraftTask> pending = new PriorityQueue<CraftTask>(10, // Paper
+    final Queue<CraftTask> pending = ru.playland.core.optimization.TaskTimingWheel.ENABLED ? new ru.playland.core.optimization.TaskTimingWheel<>() : new PriorityQueue<CraftTask>(10, // Paper // PlayLand - scheduler timing wheel
             new Comparator<CraftTask>() {
                 @Override
                 public int compare(final CraftTask o1, final CraftTask o2) {
@@ -277,6 +278,17 @@ public class CraftScheduler implements BukkitScheduler {
                 new Runnable() {
                     @Override
                     public void run() {
+                        // PlayLand start - scheduler timing wheel
+                        final CraftTask pendingTask = CraftScheduler.this.runners.get(taskId);
+                        if (pendingTask != null && CraftScheduler.this.pending instanceof ru.playland.core.optimization.TaskTimingWheel<CraftTask> wheel && wheel.remove(pendingTask)) {
+                            // Unlinked from the wheel without searching, sync tasks are in runners while pending
+                            pendingTask.cancel0();
+                            if (pendingTask.isSync()) {
+                                CraftScheduler.this.runners.remove(taskId);
+                            }
+                            return;
+                        }
+                        // PlayLand end - scheduler timing wheel
                         if (!this.check(CraftScheduler.this.temp)) {
                             this.check(CraftScheduler.this.pending);
                         }
@@ -458,6 +470,12 @@ public class CraftScheduler implements BukkitScheduler {
         }
         // Paper end
         final List<CraftTask> temp = this.temp;
+        // PlayLand start - scheduler tick budget
+        final boolean budgeted = ru.playland.core.optimization.SchedulerTickBudget.ENABLED;
+        if (budgeted) {
+            ru.playland.core.optimization.SchedulerTickBudget.beginTick(this.currentTick);
+        }
+        // PlayLand end - scheduler tick budget
         this.parsePending();
         while (this.isReady(this.currentTick)) {
             final CraftTask task = this.pending.remove();
@@ -468,6 +486,16 @@ public class CraftScheduler implements BukkitScheduler {
                 this.parsePending();
                 continue;
             }
+            // PlayLand start - scheduler tick budget
+            if (budgeted && task.isSync() && !ru.playland.core.optimization.SchedulerTickBudget.tryRun(task.getOwner())) {
+                // Still due next tick, its next run sorts it before the tasks due then
+                temp.add(task);
+                if (ru.playland.core.optimization.SchedulerTickBudget.isExhausted()) {
+                    break;
+                }
+                continue;
+            }
+            // PlayLand end - scheduler tick budget
             if (task.isSync()) {
                 this.currentTask = task;
                 try {
@@ -488,6 +516,11 @@ public class CraftScheduler implements BukkitScheduler {
                 } finally {
                     this.currentTask = null;
                 }
+                // PlayLand start - scheduler tick budget
+                if (budgeted) {
+                    ru.playland.core.optimization.SchedulerTickBudget.finish(this.currentTick - task.getNextRun());
+                }
+                // PlayLand end - scheduler tick budget
                 this.parsePending();
             } else {
                 // this.debugTail = this.debugTail.setNext(new CraftAsyncDebugger(this.currentTick + CraftScheduler.RECENT_TICKS, task.getOwner(), task.getTaskClass())); // Paper
@@ -563,7 +596,12 @@ public class CraftScheduler implements BukkitScheduler {
         this.head = lastTask;
     }
 
-    private boolean isReady(final int currentTick) {
+    boolean isReady(final int currentTick) { // PlayLand - scheduler timing wheel
+        // PlayLand start - scheduler timing wheel
+        if (this.pending instanceof ru.playland.core.optimization.TaskTimingWheel<CraftTask> wheel) {
+            return wheel.isReady(currentTick);
+        }
+        // PlayLand end - scheduler timing wheel
         return !this.pending.isEmpty() && this.pending.peek().getNextRun() <= currentTick;
     }
 
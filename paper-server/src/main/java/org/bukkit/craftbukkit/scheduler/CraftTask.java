@@ -6,7 +6,7 @@ import org.bukkit.Bukkit;
 import org.bukkit.plugin.Plugin;
 import org.bukkit.scheduler.BukkitTask;
 
-public class CraftTask implements BukkitTask, Runnable { // Spigot
+public class CraftTask extends ru.playland.core.optimization.TaskTimingWheel.Node implements BukkitTask, Runnable { // Spigot // PlayLand - scheduler timing wheel
 
     private volatile CraftTask next = null;
     public static final int ERROR = 0;
@@ -101,6 +101,18 @@ public class CraftTask implements BukkitTask, Runnable { // Spigot
         this.nextRun = nextRun;
     }
 
+    // PlayLand start - scheduler timing wheel
+    @Override
+    protected long getWheelTick() {
+        return this.nextRun;
+    }
+
+    @Override
+    protected long getWheelOrder() {
+        return this.createdAt;
+    }
+    // PlayLand end - scheduler timing wheel
+
     CraftTask getNext() {
         return this.next;
     }
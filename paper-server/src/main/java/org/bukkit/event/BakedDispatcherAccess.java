@@ -0,0 +1,23 @@
+package org.bukkit.event;
+
+import org.bukkit.plugin.RegisteredListener;
+import org.jspecify.annotations.NullMarked;
+import org.jspecify.annotations.Nullable;
+
+/**
+ * Reaches the baked dispatcher slot of a {@link HandlerList}, which is package-private so it stays out of the API.
+ */
+@NullMarked
+public final class BakedDispatcherAccess {
+
+    private BakedDispatcherAccess() {
+    }
+
+    public static @Nullable Object get(final HandlerList handlers) {
+        return handlers.getBakedDispatcher();
+    }
+
+    public static void set(final HandlerList handlers, final RegisteredListener[] listeners, final Object dispatcher) {
+        handlers.setBakedDispatcher(listeners, dispatcher);
+    }
+}
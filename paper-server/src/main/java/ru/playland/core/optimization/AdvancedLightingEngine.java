@@ -1,6 +1,12 @@
 package ru.playland.core.optimization;
 
+import ca.spottedleaf.moonrise.common.util.CoordinateUtils;
+import it.unimi.dsi.fastutil.longs.LongIterator;
+import it.unimi.dsi.fastutil.longs.LongOpenHashSet;
+import it.unimi.dsi.fastutil.longs.LongSet;
+
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
 import java.util.logging.Logger;
 import java.util.Map;
@@ -37,6 +43,7 @@ public class AdvancedLightingEngine {
     private final ScheduledExecutorService lightingOptimizer = Executors.newScheduledThreadPool(4);
     private final Map<String, Long> lastLightUpdates = new ConcurrentHashMap<>();
     private final List<LightingTask> pendingTasks = new ArrayList<>();
+    private final ChunkInvalidationBus.Listener invalidationListener = this::onChunkInvalidation;
     
     // Configuration
     private boolean enableAdvancedLighting = true;
@@ -60,6 +67,7 @@ public class AdvancedLightingEngine {
         initializeShadowMaps();
         startLightingOptimization();
         startDynamicLighting();
+        ChunkInvalidationBus.register(invalidationListener);
         
         LOGGER.info("✅ Advanced Lighting Engine initialized!");
         LOGGER.info("💡 Advanced lighting: " + (enableAdvancedLighting ? "ENABLED" : "DISABLED"));
@@ -78,13 +86,27 @@ public class AdvancedLightingEngine {
     }
     
     private void initializeLightCaches() {
-        // Initialize light caches for different areas
-        lightCaches.put("overworld", new LightCache("overworld", 10000));
-        lightCaches.put("nether", new LightCache("nether", 5000));
-        lightCaches.put("end", new LightCache("end", 3000));
-        lightCaches.put("custom", new LightCache("custom", 2000));
+        // Light caches are created per world name on first use, the same names invalidation batches carry
+        LOGGER.info("🗄️ Light caches initialized: per world");
+    }
+    
+    /**
+     * Light cache of a world, keyed by the world name invalidation batches carry and sized by its environment
+     */
+    private LightCache getLightCache(String world) {
+        return lightCaches.computeIfAbsent(world, name -> new LightCache(name, getLightCacheSize(name)));
+    }
+    
+    private int getLightCacheSize(String worldName) {
+        org.bukkit.World bukkitWorld = org.bukkit.Bukkit.getServer() != null ? org.bukkit.Bukkit.getWorld(worldName) : null;
+        if (bukkitWorld == null) return 2000;
         
-        LOGGER.info("🗄️ Light caches initialized: " + lightCaches.size());
+        return switch (bukkitWorld.getEnvironment()) {
+            case NORMAL -> 10000;
+            case NETHER -> 5000;
+            case THE_END -> 3000;
+            default -> 2000;
+        };
     }
     
     private void initializeShadowMaps() {
@@ -158,10 +180,7 @@ public class AdvancedLightingEngine {
             
             // Cache the result
             if (enableLightCaching) {
-                LightCache cache = lightCaches.get(world);
-                if (cache != null) {
-                    cache.setLightLevel(x, y, z, lightLevel);
-                }
+                getLightCache(world).setLightLevel(x, y, z, lightLevel);
             }
             
             return lightLevel;
@@ -502,6 +521,34 @@ public class AdvancedLightingEngine {
         }
     }
     
+    /**
+     * Drop cached light levels around changed sections and of unloaded chunks
+     * A block change can alter light up to 15 blocks away, so the neighbouring sections are dropped as well
+     */
+    private void onChunkInvalidation(ChunkInvalidationBus.Batch batch) {
+        LightCache cache = lightCaches.get(batch.getWorld());
+        if (cache == null) {
+            return;
+        }
+        
+        LongSet affectedSections = new LongOpenHashSet();
+        for (LongIterator iterator = batch.getSections().keySet().iterator(); iterator.hasNext();) {
+            long sectionKey = iterator.nextLong();
+            int sectionX = CoordinateUtils.getChunkSectionX(sectionKey);
+            int sectionY = CoordinateUtils.getChunkSectionY(sectionKey);
+            int sectionZ = CoordinateUtils.getChunkSectionZ(sectionKey);
+            for (int dx = -1; dx <= 1; ++dx) {
+                for (int dy = -1; dy <= 1; ++dy) {
+                    for (int dz = -1; dz <= 1; ++dz) {
+                        affectedSections.add(CoordinateUtils.getChunkSectionKey(sectionX + dx, sectionY + dy, sectionZ + dz));
+                    }
+                }
+            }
+        }
+        
+        cache.invalidateSections(affectedSections, batch.getUnloadedChunks());
+    }
+    
     /**
      * Invalidate light cache in area
      */
@@ -668,6 +715,7 @@ public class AdvancedLightingEngine {
     public long getLightPredictions() { return lightPredictions.get(); }
     
     public void shutdown() {
+        ChunkInvalidationBus.unregister(invalidationListener);
         lightingOptimizer.shutdown();
         
         // Clear all data
@@ -682,9 +730,14 @@ public class AdvancedLightingEngine {
     }
     
     // Helper classes
+    /**
+     * Cached light levels of one world, indexed by chunk section so invalidations only visit the affected sections
+     */
     private static class LightCache {
         private final String world;
-        private final Map<String, CacheEntry> cache = new ConcurrentHashMap<>();
+        // Section key -> block index within the section -> entry
+        private final Map<Long, Map<Integer, CacheEntry>> sections = new ConcurrentHashMap<>();
+        private final AtomicInteger size = new AtomicInteger();
         private final int maxSize;
         
         public LightCache(String world, int maxSize) {
@@ -692,53 +745,124 @@ public class AdvancedLightingEngine {
             this.maxSize = maxSize;
         }
         
+        private static long sectionKey(int x, int y, int z) {
+            return CoordinateUtils.getChunkSectionKey(x >> 4, y >> 4, z >> 4);
+        }
+        
+        private static int blockIndex(int x, int y, int z) {
+            return (x & 15) | (z & 15) << 4 | (y & 15) << 8;
+        }
+        
         public Integer getLightLevel(int x, int y, int z) {
-            String key = x + "," + y + "," + z;
-            CacheEntry entry = cache.get(key);
+            Map<Integer, CacheEntry> section = sections.get(sectionKey(x, y, z));
+            CacheEntry entry = section != null ? section.get(blockIndex(x, y, z)) : null;
             return entry != null && !entry.isExpired() ? entry.getLightLevel() : null;
         }
         
         public void setLightLevel(int x, int y, int z, int lightLevel) {
-            if (cache.size() >= maxSize) {
+            if (size.get() >= maxSize) {
                 evictOldest();
             }
             
-            String key = x + "," + y + "," + z;
-            cache.put(key, new CacheEntry(lightLevel));
+            Map<Integer, CacheEntry> section = sections.computeIfAbsent(sectionKey(x, y, z), key -> new ConcurrentHashMap<>());
+            if (section.put(blockIndex(x, y, z), new CacheEntry(lightLevel)) == null) {
+                size.incrementAndGet();
+            }
         }
         
         public void invalidateArea(int x, int y, int z, int range) {
-            cache.entrySet().removeIf(entry -> {
-                String[] coords = entry.getKey().split(",");
-                int ex = Integer.parseInt(coords[0]);
-                int ey = Integer.parseInt(coords[1]);
-                int ez = Integer.parseInt(coords[2]);
-                
-                int distance = Math.abs(ex - x) + Math.abs(ey - y) + Math.abs(ez - z);
-                return distance <= range;
-            });
+            for (int sectionX = (x - range) >> 4; sectionX <= (x + range) >> 4; ++sectionX) {
+                for (int sectionY = (y - range) >> 4; sectionY <= (y + range) >> 4; ++sectionY) {
+                    for (int sectionZ = (z - range) >> 4; sectionZ <= (z + range) >> 4; ++sectionZ) {
+                        Map<Integer, CacheEntry> section = sections.get(CoordinateUtils.getChunkSectionKey(sectionX, sectionY, sectionZ));
+                        if (section == null) {
+                            continue;
+                        }
+                        int baseX = sectionX << 4;
+                        int baseY = sectionY << 4;
+                        int baseZ = sectionZ << 4;
+                        section.keySet().removeIf(index -> {
+                            int distance = Math.abs(baseX + (index & 15) - x) + Math.abs(baseY + (index >> 8) - y) + Math.abs(baseZ + (index >> 4 & 15) - z);
+                            if (distance <= range) {
+                                size.decrementAndGet();
+                                return true;
+                            }
+                            return false;
+                        });
+                    }
+                }
+            }
+        }
+        
+        public void invalidateSections(LongSet sectionKeys, LongSet unloadedChunks) {
+            if (!sectionKeys.isEmpty()) {
+                for (LongIterator iterator = sectionKeys.iterator(); iterator.hasNext();) {
+                    removeSection(iterator.nextLong());
+                }
+            }
+            if (!unloadedChunks.isEmpty()) {
+                sections.keySet().removeIf(key -> {
+                    if (unloadedChunks.contains(CoordinateUtils.getChunkKey(CoordinateUtils.getChunkSectionX(key), CoordinateUtils.getChunkSectionZ(key)))) {
+                        Map<Integer, CacheEntry> section = sections.get(key);
+                        if (section != null) {
+                            size.addAndGet(-section.size());
+                        }
+                        return true;
+                    }
+                    return false;
+                });
+            }
+        }
+        
+        private void removeSection(long key) {
+            Map<Integer, CacheEntry> section = sections.remove(key);
+            if (section != null) {
+                size.addAndGet(-section.size());
+            }
         }
         
         public void optimize() {
             // Remove expired entries
-            cache.entrySet().removeIf(entry -> entry.getValue().isExpired());
+            removeExpired();
         }
         
         public void cleanup(long currentTime) {
-            cache.entrySet().removeIf(entry -> entry.getValue().isExpired());
+            removeExpired();
+        }
+        
+        private void removeExpired() {
+            for (Map<Integer, CacheEntry> section : sections.values()) {
+                section.values().removeIf(entry -> {
+                    if (entry.isExpired()) {
+                        size.decrementAndGet();
+                        return true;
+                    }
+                    return false;
+                });
+            }
+            sections.values().removeIf(Map::isEmpty);
         }
         
         private void evictOldest() {
-            String oldestKey = cache.entrySet().stream()
-                .min((e1, e2) -> Long.compare(e1.getValue().getTimestamp(), e2.getValue().getTimestamp()))
-                .map(Map.Entry::getKey)
-                .orElse(null);
+            Map<Integer, CacheEntry> oldestSection = null;
+            Integer oldestIndex = null;
+            long oldestTimestamp = Long.MAX_VALUE;
+            for (Map<Integer, CacheEntry> section : sections.values()) {
+                for (Map.Entry<Integer, CacheEntry> entry : section.entrySet()) {
+                    if (entry.getValue().getTimestamp() < oldestTimestamp) {
+                        oldestTimestamp = entry.getValue().getTimestamp();
+                        oldestSection = section;
+                        oldestIndex = entry.getKey();
+                    }
+                }
+            }
             
-            if (oldestKey != null) {
-                cache.remove(oldestKey);
+            if (oldestSection != null && oldestSection.remove(oldestIndex) != null) {
+                size.decrementAndGet();
             }
         }
         
+        public int size() { return size.get(); }
         public String getWorld() { return world; }
     }
     
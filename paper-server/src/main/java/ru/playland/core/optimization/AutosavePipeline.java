@@ -0,0 +1,156 @@
+package ru.playland.core.optimization;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Logger;
+import net.minecraft.world.level.Level;
+
+/**
+ * Autosave Pipeline
+ * Бюджет времени автосохранения чанков и метрики конвейера сохранения
+ *
+ * <p>The chunk system already splits a chunk save in two: {@code NewChunkHolder#saveChunk} snapshots the chunk
+ * into {@code SerializableChunkData} on the main thread, then {@code SerializableChunkData#write} builds the NBT
+ * on the save executor and {@code MoonriseRegionFileIO} compresses and writes it on the IO threads. Only the
+ * snapshot (plus entity and POI saves) costs tick time, but {@code ChunkHolderManager#autoSave} limits it by
+ * chunk count alone.</p>
+ *
+ * <p>With {@code playland.autosave.budget.ms} above zero an autosave tick also stops once the budget is spent,
+ * after at least one chunk so the queue always moves. Chunks left over stay at the head of the queue for the
+ * next tick. The counters show whether the off-thread stages keep up: the queue depth is the sum over all worlds
+ * of the chunks waiting for an autosave, and the serializations in flight are the snapshots handed to the save
+ * executor that are not serialized yet.</p>
+ */
+public final class AutosavePipeline {
+
+    private static final Logger LOGGER = Logger.getLogger("PlayLand-Autosave");
+
+    private static final long BUDGET_NANOS = (long) (Double.parseDouble(System.getProperty("playland.autosave.budget.ms", "0")) * 1_000_000.0);
+
+    // Statistics
+    private static final LongAdder autosaveTicks = new LongAdder();
+    private static final LongAdder budgetExhaustedTicks = new LongAdder();
+    private static final LongAdder chunksSaved = new LongAdder();
+    private static final LongAdder onThreadNanos = new LongAdder();
+    private static final AtomicLong maxOnThreadNanos = new AtomicLong();
+    private static final Map<Level, Integer> QUEUE_DEPTHS = new ConcurrentHashMap<>();
+    private static final AtomicLong maxQueueDepth = new AtomicLong();
+    private static final LongAdder serializationsScheduled = new LongAdder();
+    private static final LongAdder serializationsCompleted = new LongAdder();
+    private static final LongAdder serializationNanos = new LongAdder();
+    private static final LongAdder chunksWritten = new LongAdder();
+    private static final LongAdder bytesWritten = new LongAdder();
+
+    static {
+        if (BUDGET_NANOS > 0L) {
+            LOGGER.info("💾 Autosave budget: " + (BUDGET_NANOS / 1_000_000.0) + "ms per tick");
+        }
+    }
+
+    private AutosavePipeline() {}
+
+    /**
+     * Whether the autosave of this tick, started at {@code startNanos}, used up its time budget
+     */
+    public static boolean isBudgetExhausted(final long startNanos) {
+        return BUDGET_NANOS > 0L && System.nanoTime() - startNanos >= BUDGET_NANOS;
+    }
+
+    /**
+     * Called once per autosave tick of a world, on the main thread
+     *
+     * @param remaining chunks still waiting in the autosave queue of {@code world}
+     * @param saved chunks saved this tick
+     * @param nanos main thread time spent
+     */
+    public static void recordTick(final Level world, final int remaining, final int saved, final long nanos, final boolean budgetExhausted) {
+        autosaveTicks.increment();
+        QUEUE_DEPTHS.put(world, remaining);
+        maxQueueDepth.accumulateAndGet(getQueueDepth(), Math::max);
+        if (saved == 0) {
+            return;
+        }
+        chunksSaved.add(saved);
+        onThreadNanos.add(nanos);
+        maxOnThreadNanos.accumulateAndGet(nanos, Math::max);
+        if (budgetExhausted) {
+            budgetExhaustedTicks.increment();
+        }
+    }
+
+    /**
+     * Forgets a world, called when it is unloaded
+     */
+    public static void clear(final Level world) {
+        QUEUE_DEPTHS.remove(world);
+    }
+
+    /**
+     * A chunk snapshot was handed to the save executor for serialization
+     */
+    public static void onSerializationScheduled() {
+        serializationsScheduled.increment();
+    }
+
+    /**
+     * A chunk snapshot was serialized to NBT off the main thread
+     */
+    public static void onSerializationComplete(final long nanos) {
+        serializationsCompleted.increment();
+        serializationNanos.add(nanos);
+    }
+
+    /**
+     * Compressed chunk data was written to a region file
+     */
+    public static void recordBytesWritten(final int bytes) {
+        chunksWritten.increment();
+        bytesWritten.add(bytes);
+    }
+
+    public static Map<String, Object> getStats() {
+        final Map<String, Object> stats = new ConcurrentHashMap<>();
+        final long ticks = autosaveTicks.sum();
+        final long saved = chunksSaved.sum();
+        final long serialized = serializationsCompleted.sum();
+        final long written = chunksWritten.sum();
+        stats.put("budget_ms", BUDGET_NANOS / 1_000_000.0);
+        stats.put("autosave_ticks", ticks);
+        stats.put("budget_exhausted_ticks", budgetExhaustedTicks.sum());
+        final Map<String, Integer> depths = new ConcurrentHashMap<>();
+        int depth = 0;
+        for (final Map.Entry<Level, Integer> entry : QUEUE_DEPTHS.entrySet()) {
+            depths.put(entry.getKey().getWorld().getName(), entry.getValue());
+            depth += entry.getValue();
+        }
+        stats.put("queue_depth", depth);
+        stats.put("queue_depth_by_world", depths);
+        stats.put("max_queue_depth", maxQueueDepth.get());
+        stats.put("chunks_saved", saved);
+        stats.put("avg_on_thread_us_per_chunk", saved == 0L ? 0.0 : onThreadNanos.sum() / 1000.0 / saved);
+        stats.put("max_on_thread_us_per_tick", maxOnThreadNanos.get() / 1000.0);
+        final long scheduled = serializationsScheduled.sum();
+        stats.put("serializations_scheduled", scheduled);
+        stats.put("serializations_completed", serialized);
+        stats.put("serializations_in_flight", Math.max(0L, scheduled - serialized));
+        stats.put("avg_serialization_us", serialized == 0L ? 0.0 : serializationNanos.sum() / 1000.0 / serialized);
+        stats.put("chunks_written", written);
+        stats.put("bytes_written", bytesWritten.sum());
+        stats.put("avg_bytes_per_chunk", written == 0L ? 0L : bytesWritten.sum() / written);
+        return stats;
+    }
+
+    public static int getQueueDepth() {
+        int depth = 0;
+        for (final int remaining : QUEUE_DEPTHS.values()) {
+            depth += remaining;
+        }
+        return depth;
+    }
+
+    public static long getChunksSaved() { return chunksSaved.sum(); }
+    public static long getBytesWritten() { return bytesWritten.sum(); }
+    public static long getSerializationsInFlight() { return Math.max(0L, serializationsScheduled.sum() - serializationsCompleted.sum()); }
+}
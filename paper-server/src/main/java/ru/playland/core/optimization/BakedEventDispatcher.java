@@ -0,0 +1,291 @@
+package ru.playland.core.optimization;
+
+import co.aikar.timings.TimedEventExecutor;
+import co.aikar.timings.Timings;
+import java.lang.invoke.MethodHandles;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import org.bukkit.event.BakedDispatcherAccess;
+import org.bukkit.event.Cancellable;
+import org.bukkit.event.Event;
+import org.bukkit.event.HandlerList;
+import org.bukkit.event.Listener;
+import org.bukkit.plugin.EventExecutor;
+import org.bukkit.plugin.Plugin;
+import org.bukkit.plugin.RegisteredListener;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.ConstantDynamic;
+import org.objectweb.asm.Handle;
+import org.objectweb.asm.Label;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.Type;
+
+/**
+ * Baked Event Dispatcher
+ * Сгенерированный байткод вызова всех слушателей события без цикла
+ *
+ * <p>{@code PaperEventManager#callEvent} walks the {@code RegisteredListener[]} of a {@link HandlerList} and calls
+ * every listener through the same {@code EventExecutor#execute} call site. With many plugins listening that call
+ * site sees dozens of executor classes, the JIT can't inline any of them and every call is a megamorphic
+ * dispatch, for events like {@code PlayerMoveEvent} or {@code BlockPhysicsEvent} thousands of times per tick.</p>
+ *
+ * <p>This bakes the listeners of a handler list into one hidden class per event type. Its {@code dispatch}
+ * method calls the listeners one after the other in priority order, each from its own call site with its
+ * plugin, executor and listener as constants, and with the {@code ignoreCancelled} check only where the
+ * listener asked for it. Every call site is monomorphic, so the JIT can inline the executor and usually the
+ * handler method itself. The plugin enabled check stays, it is a field read once inlined.</p>
+ *
+ * <p>The dispatcher is cached in the handler list next to the baked listener array it was generated from. Any
+ * register or unregister makes the handler list bake a new array and the next event call generates a new
+ * class, the old one is unloaded with its last use. Custom {@code RegisteredListener} subclasses are called
+ * through {@code callEvent} as before, and {@code TimedEventExecutor}s are skipped while timings are off, which
+ * is always the case since they are a no-op. Handler lists with more than {@value #MAX_LISTENERS} listeners, or
+ * that fail to generate, use the loop.</p>
+ *
+ * <p>On by default, {@code -Dplayland.events.baked=false} goes back to the loop.</p>
+ */
+public final class BakedEventDispatcher {
+
+    private static final Logger LOGGER = Logger.getLogger("PlayLand-BakedEvents");
+
+    public static final boolean ENABLED = Boolean.parseBoolean(System.getProperty("playland.events.baked", "true"));
+    // Keeps the generated method well below the 64 KiB limit
+    static final int MAX_LISTENERS = 512;
+
+    private static final MethodHandles.Lookup LOOKUP = MethodHandles.lookup();
+    private static final String CLASS_NAME_PREFIX = Type.getInternalName(BakedEventDispatcher.class) + "$";
+    private static final String DISPATCH = Type.getInternalName(Dispatch.class);
+    private static final String FAILURE_HANDLER = Type.getInternalName(FailureHandler.class);
+    private static final String EVENT = Type.getInternalName(Event.class);
+    private static final String CANCELLABLE = Type.getInternalName(Cancellable.class);
+    private static final String PLUGIN = Type.getInternalName(Plugin.class);
+    private static final String EXECUTOR = Type.getInternalName(EventExecutor.class);
+    private static final String REGISTERED_LISTENER = Type.getInternalName(RegisteredListener.class);
+    private static final Handle CLASS_DATA_AT = new Handle(
+        Opcodes.H_INVOKESTATIC, "java/lang/invoke/MethodHandles", "classDataAt",
+        "(Ljava/lang/invoke/MethodHandles$Lookup;Ljava/lang/String;Ljava/lang/Class;I)Ljava/lang/Object;", false
+    );
+
+    // Statistics
+    private static final LongAdder bakes = new LongAdder();
+    private static final LongAdder generatedClasses = new LongAdder();
+    private static final LongAdder loopFallbacks = new LongAdder();
+    private static final LongAdder bakeNanos = new LongAdder();
+
+    static {
+        if (ENABLED) {
+            LOGGER.info("⚡ Baked event dispatch enabled");
+        }
+    }
+
+    /**
+     * Calls the listeners of one baked handler list
+     */
+    public interface Dispatch {
+        void dispatch(Event event, FailureHandler failureHandler);
+    }
+
+    /**
+     * Reports a listener that threw, the dispatch continues with the next listener
+     */
+    public interface FailureHandler {
+        void handle(RegisteredListener registration, Event event, Throwable throwable);
+    }
+
+    private final RegisteredListener[] listeners;
+    private final Dispatch dispatch;
+
+    private BakedEventDispatcher(final RegisteredListener[] listeners, final Dispatch dispatch) {
+        this.listeners = listeners;
+        this.dispatch = dispatch;
+    }
+
+    public void dispatch(final Event event, final FailureHandler failureHandler) {
+        this.dispatch.dispatch(event, failureHandler);
+    }
+
+    /**
+     * The dispatcher for the current listeners of a handler list, generated if they changed since the last call
+     *
+     * @param listeners the baked listeners of {@code handlers}
+     */
+    public static BakedEventDispatcher get(final HandlerList handlers, final RegisteredListener[] listeners, final Class<? extends Event> eventClass) {
+        if (BakedDispatcherAccess.get(handlers) instanceof final BakedEventDispatcher dispatcher && dispatcher.listeners == listeners) {
+            return dispatcher;
+        }
+        // Racing event calls may both bake, either result is valid, one for listeners changed meanwhile is not kept
+        final BakedEventDispatcher dispatcher = bake(listeners, eventClass);
+        BakedDispatcherAccess.set(handlers, listeners, dispatcher);
+        return dispatcher;
+    }
+
+    static BakedEventDispatcher bake(final RegisteredListener[] listeners, final Class<? extends Event> eventClass) {
+        final long start = System.nanoTime();
+        bakes.increment();
+        Dispatch dispatch = null;
+        if (listeners.length <= MAX_LISTENERS) {
+            try {
+                dispatch = generate(listeners, eventClass);
+                generatedClasses.increment();
+            } catch (final Throwable throwable) {
+                LOGGER.log(Level.WARNING, "⚠️ Failed to bake listeners of " + eventClass.getName() + ", using the loop", throwable);
+            }
+        }
+        if (dispatch == null) {
+            loopFallbacks.increment();
+            dispatch = new LoopDispatch(listeners);
+        }
+        bakeNanos.add(System.nanoTime() - start);
+        return new BakedEventDispatcher(listeners, dispatch);
+    }
+
+    /**
+     * The loop a handler list falls back to, without trying to generate a class
+     */
+    static BakedEventDispatcher loop(final RegisteredListener[] listeners) {
+        return new BakedEventDispatcher(listeners, new LoopDispatch(listeners));
+    }
+
+    private static Dispatch generate(final RegisteredListener[] listeners, final Class<? extends Event> eventClass) throws ReflectiveOperationException {
+        final String simpleName = eventClass.getSimpleName();
+        final String className = CLASS_NAME_PREFIX + (simpleName.isEmpty() ? "Event" : simpleName);
+
+        final ClassWriter writer = new ClassWriter(ClassWriter.COMPUTE_FRAMES | ClassWriter.COMPUTE_MAXS) {
+            @Override
+            protected String getCommonSuperClass(final String type1, final String type2) {
+                // Only interface types meet in the frames, don't load classes through the wrong loader
+                return "java/lang/Object";
+            }
+        };
+        writer.visit(Opcodes.V21, Opcodes.ACC_FINAL | Opcodes.ACC_SUPER | Opcodes.ACC_SYNTHETIC, className, null, "java/lang/Object", new String[] {DISPATCH});
+
+        final MethodVisitor constructor = writer.visitMethod(Opcodes.ACC_PUBLIC, "<init>", "()V", null, null);
+        constructor.visitCode();
+        constructor.visitVarInsn(Opcodes.ALOAD, 0);
+        constructor.visitMethodInsn(Opcodes.INVOKESPECIAL, "java/lang/Object", "<init>", "()V", false);
+        constructor.visitInsn(Opcodes.RETURN);
+        constructor.visitMaxs(0, 0);
+        constructor.visitEnd();
+
+        // Locals: 0 this, 1 event, 2 failure handler, 3 event is cancellable, 4 caught throwable
+        final MethodVisitor method = writer.visitMethod(Opcodes.ACC_PUBLIC, "dispatch", "(L" + EVENT + ";L" + FAILURE_HANDLER + ";)V", null, null);
+        method.visitCode();
+
+        boolean checksCancelled = false;
+        for (final RegisteredListener listener : listeners) {
+            checksCancelled |= listener.isIgnoringCancelled();
+        }
+        if (checksCancelled) {
+            method.visitVarInsn(Opcodes.ALOAD, 1);
+            method.visitTypeInsn(Opcodes.INSTANCEOF, CANCELLABLE);
+            method.visitVarInsn(Opcodes.ISTORE, 3);
+        }
+
+        final List<Object> classData = new ArrayList<>(listeners.length * 4);
+        for (final RegisteredListener listener : listeners) {
+            final Label call = new Label();
+            final Label called = new Label();
+            final Label failed = new Label();
+            final Label next = new Label();
+            method.visitTryCatchBlock(call, called, failed, "java/lang/Throwable");
+
+            method.visitLdcInsn(constant(classData, listener.getPlugin(), PLUGIN));
+            method.visitMethodInsn(Opcodes.INVOKEINTERFACE, PLUGIN, "isEnabled", "()Z", true);
+            method.visitJumpInsn(Opcodes.IFEQ, next);
+
+            final boolean custom = listener.getClass() != RegisteredListener.class;
+            if (listener.isIgnoringCancelled() && !custom) {
+                method.visitVarInsn(Opcodes.ILOAD, 3);
+                method.visitJumpInsn(Opcodes.IFEQ, call);
+                method.visitVarInsn(Opcodes.ALOAD, 1);
+                method.visitTypeInsn(Opcodes.CHECKCAST, CANCELLABLE);
+                method.visitMethodInsn(Opcodes.INVOKEINTERFACE, CANCELLABLE, "isCancelled", "()Z", true);
+                method.visitJumpInsn(Opcodes.IFNE, next);
+            }
+
+            method.visitLabel(call);
+            final ConstantDynamic registration = constant(classData, listener, REGISTERED_LISTENER);
+            if (custom) {
+                // May override callEvent, keep calling it
+                method.visitLdcInsn(registration);
+                method.visitVarInsn(Opcodes.ALOAD, 1);
+                method.visitMethodInsn(Opcodes.INVOKEVIRTUAL, REGISTERED_LISTENER, "callEvent", "(L" + EVENT + ";)V", false);
+            } else {
+                method.visitLdcInsn(constant(classData, unwrap(listener.getExecutor()), EXECUTOR));
+                method.visitLdcInsn(constant(classData, listener.getListener(), Type.getInternalName(Listener.class)));
+                method.visitVarInsn(Opcodes.ALOAD, 1);
+                method.visitMethodInsn(Opcodes.INVOKEINTERFACE, EXECUTOR, "execute", "(L" + Type.getInternalName(Listener.class) + ";L" + EVENT + ";)V", true);
+            }
+            method.visitLabel(called);
+            method.visitJumpInsn(Opcodes.GOTO, next);
+
+            method.visitLabel(failed);
+            method.visitVarInsn(Opcodes.ASTORE, 4);
+            method.visitVarInsn(Opcodes.ALOAD, 2);
+            method.visitLdcInsn(registration);
+            method.visitVarInsn(Opcodes.ALOAD, 1);
+            method.visitVarInsn(Opcodes.ALOAD, 4);
+            method.visitMethodInsn(Opcodes.INVOKEINTERFACE, FAILURE_HANDLER, "handle", "(L" + REGISTERED_LISTENER + ";L" + EVENT + ";Ljava/lang/Throwable;)V", true);
+
+            method.visitLabel(next);
+        }
+        method.visitInsn(Opcodes.RETURN);
+        method.visitMaxs(0, 0);
+        method.visitEnd();
+        writer.visitEnd();
+
+        // Not strong, the class is unloaded once the handler list bakes a new one
+        final MethodHandles.Lookup lookup = LOOKUP.defineHiddenClassWithClassData(writer.toByteArray(), List.copyOf(classData), true);
+        return lookup.lookupClass().asSubclass(Dispatch.class).getDeclaredConstructor().newInstance();
+    }
+
+    /**
+     * Loads {@code value} from the class data, constant to the JIT
+     */
+    private static ConstantDynamic constant(final List<Object> classData, final Object value, final String type) {
+        classData.add(value);
+        return new ConstantDynamic("_", "L" + type + ";", CLASS_DATA_AT, classData.size() - 1);
+    }
+
+    private static EventExecutor unwrap(final EventExecutor executor) {
+        if (executor instanceof final TimedEventExecutor timed && timed.getClass() == TimedEventExecutor.class && !Timings.isTimingsEnabled()) {
+            return timed.getExecutor();
+        }
+        return executor;
+    }
+
+    /**
+     * Same as the loop of {@code PaperEventManager#callEvent}, for handler lists that can't be baked
+     */
+    private record LoopDispatch(RegisteredListener[] listeners) implements Dispatch {
+        @Override
+        public void dispatch(final Event event, final FailureHandler failureHandler) {
+            for (final RegisteredListener registration : this.listeners) {
+                if (!registration.getPlugin().isEnabled()) {
+                    continue;
+                }
+                try {
+                    registration.callEvent(event);
+                } catch (final Throwable throwable) {
+                    failureHandler.handle(registration, event, throwable);
+                }
+            }
+        }
+    }
+
+    public static Map<String, Object> getStats() {
+        final Map<String, Object> stats = new ConcurrentHashMap<>();
+        stats.put("enabled", ENABLED);
+        stats.put("bakes", bakes.sum());
+        stats.put("generated_classes", generatedClasses.sum());
+        stats.put("loop_fallbacks", loopFallbacks.sum());
+        stats.put("bake_time_ms", bakeNanos.sum() / 1_000_000.0);
+        return stats;
+    }
+}
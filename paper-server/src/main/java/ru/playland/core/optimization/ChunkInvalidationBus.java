@@ -0,0 +1,254 @@
+package ru.playland.core.optimization;
+
+import ca.spottedleaf.moonrise.common.util.CoordinateUtils;
+import it.unimi.dsi.fastutil.longs.Long2ObjectMap;
+import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
+import it.unimi.dsi.fastutil.longs.LongOpenHashSet;
+import it.unimi.dsi.fastutil.longs.LongSet;
+import it.unimi.dsi.fastutil.objects.ObjectIterator;
+import it.unimi.dsi.fastutil.objects.Reference2ObjectOpenHashMap;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongConsumer;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import net.minecraft.core.BlockPos;
+
+/**
+ * Chunk Invalidation Bus
+ * Центральная шина инвалидации кэшей по реальным изменениям блоков
+ *
+ * <p>Fed from {@code LevelChunk#setBlockState} and {@code LevelChunk#unloadCallback}. Changes are
+ * collected as a 4096 bit dirty set per chunk section and delivered to listeners once per tick from
+ * {@code MinecraftServer#tickChildren}, so caches can drop exactly the affected entries instead of
+ * relying on short expiration times.</p>
+ *
+ * <p>While no listener is registered the hooks return after a single volatile read.</p>
+ */
+public final class ChunkInvalidationBus {
+
+    private static final Logger LOGGER = Logger.getLogger("PlayLand-InvalidationBus");
+
+    private static final int SECTION_WORDS = 16 * 16 * 16 / Long.SIZE;
+    private static final int MAX_POOLED_SECTIONS = 1024;
+
+    private static final List<Listener> LISTENERS = new CopyOnWriteArrayList<>();
+    private static volatile boolean active;
+
+    // guarded by LOCK
+    private static final Object LOCK = new Object();
+    private static Reference2ObjectOpenHashMap<net.minecraft.world.level.Level, PendingWorld> pending = new Reference2ObjectOpenHashMap<>();
+    private static final ArrayDeque<long[]> SECTION_POOL = new ArrayDeque<>();
+
+    // Statistics
+    private static final AtomicLong blockChanges = new AtomicLong();
+    private static final AtomicLong chunkUnloads = new AtomicLong();
+    private static final AtomicLong sectionsFlushed = new AtomicLong();
+    private static final AtomicLong batchesFlushed = new AtomicLong();
+    private static final AtomicLong listenerErrors = new AtomicLong();
+
+    private ChunkInvalidationBus() {}
+
+    /**
+     * Receives the changes of one world, once per tick, on the main thread
+     */
+    @FunctionalInterface
+    public interface Listener {
+
+        void onInvalidate(Batch batch);
+    }
+
+    public static void register(final Listener listener) {
+        if (!LISTENERS.contains(listener)) {
+            LISTENERS.add(listener);
+        }
+        active = true;
+    }
+
+    public static void unregister(final Listener listener) {
+        LISTENERS.remove(listener);
+        if (LISTENERS.isEmpty()) {
+            active = false;
+            synchronized (LOCK) {
+                pending.clear();
+            }
+        }
+    }
+
+    /**
+     * Called after a block state was replaced in a loaded chunk
+     */
+    public static void onBlockChange(final net.minecraft.world.level.Level level, final BlockPos pos) {
+        if (!active) {
+            return;
+        }
+        final int x = pos.getX();
+        final int y = pos.getY();
+        final int z = pos.getZ();
+        final long sectionKey = CoordinateUtils.getChunkSectionKey(x >> 4, y >> 4, z >> 4);
+        final int index = (y & 15) << 8 | (z & 15) << 4 | (x & 15);
+        synchronized (LOCK) {
+            final PendingWorld world = pending.computeIfAbsent(level, k -> new PendingWorld());
+            long[] bits = world.sections.get(sectionKey);
+            if (bits == null) {
+                bits = SECTION_POOL.isEmpty() ? new long[SECTION_WORDS] : SECTION_POOL.poll();
+                world.sections.put(sectionKey, bits);
+            }
+            bits[index >>> 6] |= 1L << index;
+        }
+        blockChanges.incrementAndGet();
+    }
+
+    /**
+     * Called when a full chunk is unloaded
+     */
+    public static void onChunkUnload(final net.minecraft.world.level.Level level, final int chunkX, final int chunkZ) {
+        if (!active) {
+            return;
+        }
+        synchronized (LOCK) {
+            pending.computeIfAbsent(level, k -> new PendingWorld()).unloadedChunks.add(CoordinateUtils.getChunkKey(chunkX, chunkZ));
+        }
+        chunkUnloads.incrementAndGet();
+    }
+
+    /**
+     * Deliver the changes collected since the last call, called once per tick
+     */
+    public static void flush() {
+        if (!active) {
+            return;
+        }
+        final Reference2ObjectOpenHashMap<net.minecraft.world.level.Level, PendingWorld> toFlush;
+        synchronized (LOCK) {
+            if (pending.isEmpty()) {
+                return;
+            }
+            toFlush = pending;
+            pending = new Reference2ObjectOpenHashMap<>();
+        }
+
+        final List<long[]> released = new ArrayList<>();
+        for (final Map.Entry<net.minecraft.world.level.Level, PendingWorld> entry : toFlush.entrySet()) {
+            final PendingWorld world = entry.getValue();
+            final Batch batch = new Batch(entry.getKey().getWorld().getName(), world.sections, world.unloadedChunks);
+            for (final Listener listener : LISTENERS) {
+                try {
+                    listener.onInvalidate(batch);
+                } catch (final Throwable throwable) {
+                    listenerErrors.incrementAndGet();
+                    LOGGER.log(Level.WARNING, "Invalidation listener " + listener + " failed", throwable);
+                }
+            }
+            sectionsFlushed.addAndGet(world.sections.size());
+            batchesFlushed.incrementAndGet();
+            released.addAll(world.sections.values());
+        }
+
+        synchronized (LOCK) {
+            for (final long[] bits : released) {
+                if (SECTION_POOL.size() >= MAX_POOLED_SECTIONS) {
+                    break;
+                }
+                Arrays.fill(bits, 0L);
+                SECTION_POOL.add(bits);
+            }
+        }
+    }
+
+    public static Map<String, Object> getStats() {
+        final Map<String, Object> stats = new ConcurrentHashMap<>();
+        stats.put("listeners", LISTENERS.size());
+        stats.put("block_changes", blockChanges.get());
+        stats.put("chunk_unloads", chunkUnloads.get());
+        stats.put("sections_flushed", sectionsFlushed.get());
+        stats.put("batches_flushed", batchesFlushed.get());
+        stats.put("listener_errors", listenerErrors.get());
+        return stats;
+    }
+
+    public static boolean isActive() { return active; }
+    public static long getBlockChanges() { return blockChanges.get(); }
+    public static long getChunkUnloads() { return chunkUnloads.get(); }
+    public static long getSectionsFlushed() { return sectionsFlushed.get(); }
+
+    private static final class PendingWorld {
+
+        final Long2ObjectOpenHashMap<long[]> sections = new Long2ObjectOpenHashMap<>();
+        final LongOpenHashSet unloadedChunks = new LongOpenHashSet();
+    }
+
+    /**
+     * Changes of one world since the previous tick. Only valid during {@link Listener#onInvalidate(Batch)}
+     */
+    public static final class Batch {
+
+        private final String world;
+        private final Long2ObjectOpenHashMap<long[]> sections;
+        private final LongSet unloadedChunks;
+
+        Batch(final String world, final Long2ObjectOpenHashMap<long[]> sections, final LongSet unloadedChunks) {
+            this.world = world;
+            this.sections = sections;
+            this.unloadedChunks = unloadedChunks;
+        }
+
+        public String getWorld() { return world; }
+
+        /**
+         * Dirty sections keyed by {@link CoordinateUtils#getChunkSectionKey(int, int, int)}, the bitset index
+         * of a block is {@code (y & 15) << 8 | (z & 15) << 4 | (x & 15)}
+         */
+        public Long2ObjectMap<long[]> getSections() { return sections; }
+
+        /**
+         * Unloaded chunks keyed by {@link CoordinateUtils#getChunkKey(int, int)}
+         */
+        public LongSet getUnloadedChunks() { return unloadedChunks; }
+
+        public boolean isSectionDirty(final int sectionX, final int sectionY, final int sectionZ) {
+            return this.sections.containsKey(CoordinateUtils.getChunkSectionKey(sectionX, sectionY, sectionZ));
+        }
+
+        public boolean isChunkUnloaded(final int chunkX, final int chunkZ) {
+            return this.unloadedChunks.contains(CoordinateUtils.getChunkKey(chunkX, chunkZ));
+        }
+
+        public boolean isBlockDirty(final int x, final int y, final int z) {
+            final long[] bits = this.sections.get(CoordinateUtils.getChunkSectionKey(x >> 4, y >> 4, z >> 4));
+            if (bits == null) {
+                return false;
+            }
+            final int index = (y & 15) << 8 | (z & 15) << 4 | (x & 15);
+            return (bits[index >>> 6] & (1L << index)) != 0L;
+        }
+
+        /**
+         * Iterate every changed block as a packed {@link BlockPos#asLong(int, int, int)} position
+         */
+        public void forEachDirtyBlock(final LongConsumer action) {
+            for (final ObjectIterator<Long2ObjectMap.Entry<long[]>> iterator = this.sections.long2ObjectEntrySet().fastIterator(); iterator.hasNext();) {
+                final Long2ObjectMap.Entry<long[]> entry = iterator.next();
+                final long sectionKey = entry.getLongKey();
+                final int baseX = CoordinateUtils.getChunkSectionX(sectionKey) << 4;
+                final int baseY = CoordinateUtils.getChunkSectionY(sectionKey) << 4;
+                final int baseZ = CoordinateUtils.getChunkSectionZ(sectionKey) << 4;
+                final long[] bits = entry.getValue();
+                for (int word = 0; word < bits.length; ++word) {
+                    long value = bits[word];
+                    while (value != 0L) {
+                        final int index = word << 6 | Long.numberOfTrailingZeros(value);
+                        value &= value - 1L;
+                        action.accept(BlockPos.asLong(baseX | (index & 15), baseY | (index >>> 8), baseZ | ((index >>> 4) & 15)));
+                    }
+                }
+            }
+        }
+    }
+}
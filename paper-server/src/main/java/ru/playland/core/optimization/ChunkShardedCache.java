@@ -0,0 +1,223 @@
+package ru.playland.core.optimization;
+
+import ca.spottedleaf.concurrentutil.map.ConcurrentLong2ReferenceChainedHashTable;
+import ca.spottedleaf.moonrise.common.util.CoordinateUtils;
+import it.unimi.dsi.fastutil.longs.Long2ObjectMap;
+import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
+import it.unimi.dsi.fastutil.objects.ObjectIterator;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import net.minecraft.core.BlockPos;
+
+/**
+ * Chunk Sharded Cache
+ * Типизированный кэш по упакованным координатам блока ({@link BlockPos#asLong()})
+ *
+ * <p>Entries are sharded per world and per chunk, so dropping a chunk on unload or block change
+ * only touches the entries of that chunk instead of scanning every key.</p>
+ */
+public final class ChunkShardedCache<V> {
+
+    private final String name;
+    private final int maxSize;
+    private final long expiration;
+
+    private final Map<String, ConcurrentLong2ReferenceChainedHashTable<ChunkShard<V>>> worlds = new ConcurrentHashMap<>();
+    private final AtomicInteger size = new AtomicInteger();
+
+    /**
+     * @param name domain name used in statistics
+     * @param maxSize maximum number of entries over all worlds, new entries are not cached past it
+     * @param expiration entry lifetime in milliseconds
+     */
+    public ChunkShardedCache(final String name, final int maxSize, final long expiration) {
+        this.name = name;
+        this.maxSize = maxSize;
+        this.expiration = expiration;
+    }
+
+    private static long chunkKeyOf(final long blockPos) {
+        return CoordinateUtils.getChunkKey(BlockPos.getX(blockPos) >> 4, BlockPos.getZ(blockPos) >> 4);
+    }
+
+    private ConcurrentLong2ReferenceChainedHashTable<ChunkShard<V>> world(final String world) {
+        return this.worlds.computeIfAbsent(world, k -> new ConcurrentLong2ReferenceChainedHashTable<>());
+    }
+
+    /**
+     * Get cached value, or {@code null} if absent or expired
+     */
+    public V get(final String world, final long blockPos) {
+        final ConcurrentLong2ReferenceChainedHashTable<ChunkShard<V>> chunks = this.worlds.get(world);
+        if (chunks == null) {
+            return null;
+        }
+        final ChunkShard<V> shard = chunks.get(chunkKeyOf(blockPos));
+        if (shard == null) {
+            return null;
+        }
+        return shard.get(blockPos, System.currentTimeMillis(), this.expiration);
+    }
+
+    /**
+     * Store value, returns false if the cache is full
+     */
+    public boolean put(final String world, final long blockPos, final V value) {
+        if (this.size.get() >= this.maxSize) {
+            return false;
+        }
+        final ConcurrentLong2ReferenceChainedHashTable<ChunkShard<V>> chunks = this.world(world);
+        final long chunkKey = chunkKeyOf(blockPos);
+        for (;;) {
+            final ChunkShard<V> shard = chunks.computeIfAbsent(chunkKey, k -> new ChunkShard<>());
+            final int result = shard.put(blockPos, value, System.currentTimeMillis());
+            if (result == ChunkShard.PUT_RETIRED) {
+                // raced with an invalidation of this chunk, the shard is no longer mapped
+                continue;
+            }
+            if (result == ChunkShard.PUT_ADDED) {
+                this.size.incrementAndGet();
+            }
+            return true;
+        }
+    }
+
+    /**
+     * Drop a single block position
+     */
+    public void invalidateBlock(final String world, final long blockPos) {
+        final ConcurrentLong2ReferenceChainedHashTable<ChunkShard<V>> chunks = this.worlds.get(world);
+        if (chunks == null) {
+            return;
+        }
+        final ChunkShard<V> shard = chunks.get(chunkKeyOf(blockPos));
+        if (shard != null && shard.remove(blockPos)) {
+            this.size.decrementAndGet();
+        }
+    }
+
+    /**
+     * Drop every entry of a chunk, O(entries in that chunk). Returns the amount removed
+     */
+    public int invalidateChunk(final String world, final int chunkX, final int chunkZ) {
+        final ConcurrentLong2ReferenceChainedHashTable<ChunkShard<V>> chunks = this.worlds.get(world);
+        if (chunks == null) {
+            return 0;
+        }
+        final ChunkShard<V> shard = chunks.remove(CoordinateUtils.getChunkKey(chunkX, chunkZ));
+        if (shard == null) {
+            return 0;
+        }
+        final int removed = shard.retire();
+        this.size.addAndGet(-removed);
+        return removed;
+    }
+
+    /**
+     * Drop every entry of a world, e.g. on world unload
+     */
+    public int invalidateWorld(final String world) {
+        final ConcurrentLong2ReferenceChainedHashTable<ChunkShard<V>> chunks = this.worlds.remove(world);
+        if (chunks == null) {
+            return 0;
+        }
+        int removed = 0;
+        for (final Iterator<ChunkShard<V>> iterator = chunks.valueIterator(); iterator.hasNext();) {
+            removed += iterator.next().retire();
+        }
+        this.size.addAndGet(-removed);
+        return removed;
+    }
+
+    /**
+     * Remove expired entries and empty shards, returns the amount removed
+     */
+    public int cleanupExpired() {
+        final long now = System.currentTimeMillis();
+        int removed = 0;
+        for (final ConcurrentLong2ReferenceChainedHashTable<ChunkShard<V>> chunks : this.worlds.values()) {
+            for (final Iterator<ConcurrentLong2ReferenceChainedHashTable.TableEntry<ChunkShard<V>>> iterator = chunks.entryIterator(); iterator.hasNext();) {
+                final ConcurrentLong2ReferenceChainedHashTable.TableEntry<ChunkShard<V>> entry = iterator.next();
+                final ChunkShard<V> shard = entry.getValue();
+                removed += shard.removeExpired(now, this.expiration);
+                if (shard.retireIfEmpty()) {
+                    chunks.remove(entry.getKey(), shard);
+                }
+            }
+        }
+        this.size.addAndGet(-removed);
+        return removed;
+    }
+
+    public void clear() {
+        for (final String world : this.worlds.keySet()) {
+            this.invalidateWorld(world);
+        }
+    }
+
+    public String getName() { return name; }
+    public int size() { return size.get(); }
+    public int getMaxSize() { return maxSize; }
+
+    /**
+     * Entries of one chunk, guarded by the shard monitor
+     */
+    private static final class ChunkShard<V> {
+
+        static final int PUT_ADDED = 0;
+        static final int PUT_REPLACED = 1;
+        static final int PUT_RETIRED = 2;
+
+        private final Long2ObjectOpenHashMap<Entry<V>> entries = new Long2ObjectOpenHashMap<>();
+        private boolean retired; // unmapped from its world, writers must look the shard up again
+
+        synchronized V get(final long blockPos, final long now, final long expiration) {
+            final Entry<V> entry = this.entries.get(blockPos);
+            if (entry == null || now - entry.creationTime > expiration) {
+                return null;
+            }
+            return entry.value;
+        }
+
+        synchronized int put(final long blockPos, final V value, final long now) {
+            if (this.retired) {
+                return PUT_RETIRED;
+            }
+            return this.entries.put(blockPos, new Entry<>(value, now)) == null ? PUT_ADDED : PUT_REPLACED;
+        }
+
+        synchronized boolean remove(final long blockPos) {
+            return this.entries.remove(blockPos) != null;
+        }
+
+        synchronized int retire() {
+            this.retired = true;
+            final int size = this.entries.size();
+            this.entries.clear();
+            return size;
+        }
+
+        synchronized boolean retireIfEmpty() {
+            if (this.entries.isEmpty()) {
+                this.retired = true;
+                return true;
+            }
+            return false;
+        }
+
+        synchronized int removeExpired(final long now, final long expiration) {
+            int removed = 0;
+            for (final ObjectIterator<Long2ObjectMap.Entry<Entry<V>>> iterator = this.entries.long2ObjectEntrySet().fastIterator(); iterator.hasNext();) {
+                if (now - iterator.next().getValue().creationTime > expiration) {
+                    iterator.remove();
+                    ++removed;
+                }
+            }
+            return removed;
+        }
+    }
+
+    private record Entry<V>(V value, long creationTime) {}
+}
@@ -0,0 +1,723 @@
+package ru.playland.core.optimization;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.ConcurrentModificationException;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Logger;
+import net.minecraft.nbt.ByteTag;
+import net.minecraft.nbt.DoubleTag;
+import net.minecraft.nbt.FloatTag;
+import net.minecraft.nbt.IntTag;
+import net.minecraft.nbt.LongTag;
+import net.minecraft.nbt.ShortTag;
+import net.minecraft.nbt.StringTag;
+import net.minecraft.nbt.Tag;
+import org.bukkit.NamespacedKey;
+
+/**
+ * Compact Data Map
+ * Компактное хранение PersistentDataContainer с интернированными ключами и примитивами без NBT
+ *
+ * <p>Storage of {@code CraftPersistentDataContainer} in place of a {@code HashMap<String, Tag>} per item, entity,
+ * chunk and world. Key names are interned once into global ids, an entry is a single int of key id and value
+ * type, kept sorted by id. Numbers are stored inline in a {@code long[]}, strings as the plain {@link String},
+ * only lists, compounds and arrays keep their {@link Tag}. An empty map allocates nothing but itself.</p>
+ *
+ * <p>Tags of inline values are only built when asked for through the {@link Map} view, which serialization and
+ * the raw map users go through. {@link #getPrimitive} and {@link #putPrimitive} let the container read and write
+ * the primitive {@code PersistentDataType}s without a tag, looked up by {@link NamespacedKey} without building
+ * its string. Comparing two maps compares their arrays, the hash code is cached while all values are
+ * inline.</p>
+ *
+ * <p>At most {@code playland.pdc.compact.max-keys} distinct key names are interned, keys past that, like
+ * plugins writing one key per player, are kept in a plain map of the container. On by default,
+ * {@code -Dplayland.pdc.compact=false} brings the {@code HashMap} back.</p>
+ */
+public final class CompactDataMap extends AbstractMap<String, Tag> {
+
+    private static final Logger LOGGER = Logger.getLogger("PlayLand-CompactPDC");
+
+    public static final boolean ENABLED = Boolean.parseBoolean(System.getProperty("playland.pdc.compact", "true"));
+    private static final int TYPE_BITS = 4;
+    // Key ids are shifted past the type and must stay positive
+    private static final int MAX_KEYS = Math.clamp(Integer.getInteger("playland.pdc.compact.max-keys", 65536), 16, 1 << (Integer.SIZE - 1 - TYPE_BITS));
+
+    /**
+     * Returned by {@link #getPrimitive} for an entry that has to be read through its tag
+     */
+    public static final Object NOT_INLINE = new Object();
+
+    private static final int TYPE_MASK = (1 << TYPE_BITS) - 1;
+    private static final int BYTE = 1;
+    private static final int SHORT = 2;
+    private static final int INT = 3;
+    private static final int LONG = 4;
+    private static final int FLOAT = 5;
+    private static final int DOUBLE = 6;
+    private static final int STRING = 7;
+    private static final int TAG = 8;
+
+    private static final int[] NO_ENTRIES = {};
+    private static final long[] NO_VALUES = {};
+
+    // Interned key names, ids only ever grow
+    private static final Map<String, Integer> NAME_IDS = new ConcurrentHashMap<>();
+    private static final Map<NamespacedKey, Integer> KEY_IDS = new ConcurrentHashMap<>();
+    private static final Object INTERN_LOCK = new Object();
+    private static volatile String[] names = new String[256];
+    // Null for names that are no valid namespaced key
+    private static volatile NamespacedKey[] keys = new NamespacedKey[256];
+
+    // Statistics
+    private static final LongAdder inlineReads = new LongAdder();
+    private static final LongAdder inlineWrites = new LongAdder();
+    private static final LongAdder materializedTags = new LongAdder();
+    private static final LongAdder overflowEntries = new LongAdder();
+    private static volatile boolean overflowWarned;
+
+    static {
+        if (ENABLED) {
+            LOGGER.info("📦 Compact PersistentDataContainer storage enabled");
+        }
+    }
+
+    // (key id << TYPE_BITS) | type, sorted, the first size are in use and the arrays grow geometrically
+    private int[] entries = NO_ENTRIES;
+    private long[] values = NO_VALUES;
+    // Strings and tags, null until an entry needs one, as long as entries
+    private Object[] objects;
+    private int size;
+    // Entries of keys past MAX_KEYS
+    private Map<String, Tag> overflow;
+    private int hash;
+    private boolean hashValid;
+    // Adds and removes, iterators fail fast like the ones of HashMap
+    private int modCount;
+    private Set<Entry<String, Tag>> entrySet;
+
+    public CompactDataMap() {
+    }
+
+    private static int intern(final String name) {
+        final Integer id = NAME_IDS.get(name);
+        if (id != null) {
+            return id;
+        }
+        synchronized (INTERN_LOCK) {
+            final Integer existing = NAME_IDS.get(name);
+            if (existing != null) {
+                return existing;
+            }
+            final int next = NAME_IDS.size();
+            if (next >= MAX_KEYS) {
+                if (!overflowWarned) {
+                    overflowWarned = true;
+                    LOGGER.warning("⚠️ More than " + MAX_KEYS + " distinct persistent data keys, further keys are stored uncompacted");
+                }
+                return -1;
+            }
+            if (next == names.length) {
+                keys = Arrays.copyOf(keys, next << 1);
+                names = Arrays.copyOf(names, next << 1);
+            }
+            keys[next] = toKey(name);
+            names[next] = name;
+            // Publishes the arrays above
+            NAME_IDS.put(name, next);
+            return next;
+        }
+    }
+
+    private static NamespacedKey toKey(final String name) {
+        final String[] parts = name.split(":", 2);
+        if (parts.length != 2) {
+            return null;
+        }
+        try {
+            return new NamespacedKey(parts[0], parts[1]);
+        } catch (final IllegalArgumentException exception) {
+            // Raw tags may carry any name, getKeys() reports it
+            return null;
+        }
+    }
+
+    private static int intern(final NamespacedKey key) {
+        final Integer id = KEY_IDS.get(key);
+        if (id != null) {
+            return id;
+        }
+        final int interned = intern(key.toString());
+        if (interned >= 0) {
+            KEY_IDS.put(key, interned);
+        }
+        return interned;
+    }
+
+    private static int lookup(final NamespacedKey key) {
+        final Integer id = KEY_IDS.get(key);
+        if (id != null) {
+            return id;
+        }
+        final Integer named = NAME_IDS.get(key.toString());
+        return named == null ? -1 : named;
+    }
+
+    private int indexOf(final int id) {
+        final int[] entries = this.entries;
+        int low = 0;
+        int high = this.size - 1;
+        while (low <= high) {
+            final int mid = (low + high) >>> 1;
+            final int midId = entries[mid] >>> TYPE_BITS;
+            if (midId < id) {
+                low = mid + 1;
+            } else if (midId > id) {
+                high = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+        return -(low + 1);
+    }
+
+    private int indexOfName(final Object name) {
+        if (!(name instanceof final String string)) {
+            return -1;
+        }
+        final Integer id = NAME_IDS.get(string);
+        return id == null ? -1 : this.indexOf(id.intValue());
+    }
+
+    private Tag materialize(final int index) {
+        final long value = this.values[index];
+        final int type = this.entries[index] & TYPE_MASK;
+        if (type == TAG) {
+            return (Tag) this.objects[index];
+        }
+        materializedTags.increment();
+        return switch (type) {
+            case BYTE -> ByteTag.valueOf((byte) value);
+            case SHORT -> ShortTag.valueOf((short) value);
+            case INT -> IntTag.valueOf((int) value);
+            case LONG -> LongTag.valueOf(value);
+            case FLOAT -> FloatTag.valueOf(Float.intBitsToFloat((int) value));
+            case DOUBLE -> DoubleTag.valueOf(Double.longBitsToDouble(value));
+            case STRING -> StringTag.valueOf((String) this.objects[index]);
+            default -> throw new IllegalStateException("Unknown entry type " + type);
+        };
+    }
+
+    private Object boxed(final int index) {
+        final long value = this.values[index];
+        return switch (this.entries[index] & TYPE_MASK) {
+            case BYTE -> (byte) value;
+            case SHORT -> (short) value;
+            case INT -> (int) value;
+            case LONG -> value;
+            case FLOAT -> Float.intBitsToFloat((int) value);
+            case DOUBLE -> Double.longBitsToDouble(value);
+            case STRING -> this.objects[index];
+            default -> NOT_INLINE;
+        };
+    }
+
+    /**
+     * Stores {@code value} at {@code id}, {@code type} and the inline value or object describing it
+     */
+    private void store(final int id, final int type, final long value, final Object object) {
+        int index = this.indexOf(id);
+        if (index < 0) {
+            index = -(index + 1);
+            final int size = this.size;
+            if (size == this.entries.length) {
+                final int capacity = Math.max(2, size + (size >> 1));
+                this.entries = Arrays.copyOf(this.entries, capacity);
+                this.values = Arrays.copyOf(this.values, capacity);
+                if (this.objects != null) {
+                    this.objects = Arrays.copyOf(this.objects, capacity);
+                }
+            }
+            System.arraycopy(this.entries, index, this.entries, index + 1, size - index);
+            System.arraycopy(this.values, index, this.values, index + 1, size - index);
+            if (this.objects != null) {
+                System.arraycopy(this.objects, index, this.objects, index + 1, size - index);
+            }
+            this.size = size + 1;
+            ++this.modCount;
+        }
+        this.entries[index] = (id << TYPE_BITS) | type;
+        this.values[index] = value;
+        if (object != null && this.objects == null) {
+            this.objects = new Object[this.entries.length];
+        }
+        if (this.objects != null) {
+            this.objects[index] = object;
+        }
+        this.hashValid = false;
+    }
+
+    private void store(final int id, final Tag tag) {
+        switch (tag) {
+            case final ByteTag byteTag -> this.store(id, BYTE, byteTag.value(), null);
+            case final ShortTag shortTag -> this.store(id, SHORT, shortTag.value(), null);
+            case final IntTag intTag -> this.store(id, INT, intTag.value(), null);
+            case final LongTag longTag -> this.store(id, LONG, longTag.value(), null);
+            // Canonical bits, like the records compare them
+            case final FloatTag floatTag -> this.store(id, FLOAT, Float.floatToIntBits(floatTag.value()), null);
+            case final DoubleTag doubleTag -> this.store(id, DOUBLE, Double.doubleToLongBits(doubleTag.value()), null);
+            case final StringTag stringTag -> this.store(id, STRING, 0L, stringTag.value());
+            default -> this.store(id, TAG, 0L, tag);
+        }
+    }
+
+    private void removeAt(final int index) {
+        final int size = this.size - 1;
+        System.arraycopy(this.entries, index + 1, this.entries, index, size - index);
+        System.arraycopy(this.values, index + 1, this.values, index, size - index);
+        if (this.objects != null) {
+            System.arraycopy(this.objects, index + 1, this.objects, index, size - index);
+            // Let go of the string or tag
+            this.objects[size] = null;
+        }
+        this.size = size;
+        ++this.modCount;
+        this.hashValid = false;
+    }
+
+    /**
+     * The value of {@code key} if it is stored inline as {@code primitiveType}, null if there is no such key,
+     * {@link #NOT_INLINE} if it has to be read through its tag
+     */
+    public Object getPrimitive(final NamespacedKey key, final Class<?> primitiveType) {
+        final int id = lookup(key);
+        final int index = id < 0 ? -1 : this.indexOf(id);
+        if (index < 0) {
+            return this.overflow != null && this.overflow.containsKey(key.toString()) ? NOT_INLINE : null;
+        }
+        final Object value = this.boxed(index);
+        if (value == NOT_INLINE || value.getClass() != primitiveType) {
+            return NOT_INLINE;
+        }
+        inlineReads.increment();
+        return value;
+    }
+
+    /**
+     * Stores a boxed primitive or string without building its tag
+     *
+     * @return false if {@code value} is no inline type, the caller has to store its tag
+     */
+    public boolean putPrimitive(final NamespacedKey key, final Object value) {
+        final int type;
+        final long bits;
+        Object object = null;
+        switch (value) {
+            case final Byte b -> {
+                type = BYTE;
+                bits = b;
+            }
+            case final Short s -> {
+                type = SHORT;
+                bits = s;
+            }
+            case final Integer i -> {
+                type = INT;
+                bits = i;
+            }
+            case final Long l -> {
+                type = LONG;
+                bits = l;
+            }
+            case final Float f -> {
+                type = FLOAT;
+                bits = Float.floatToIntBits(f);
+            }
+            case final Double d -> {
+                type = DOUBLE;
+                bits = Double.doubleToLongBits(d);
+            }
+            case final String string -> {
+                type = STRING;
+                bits = 0L;
+                object = string;
+            }
+            default -> {
+                return false;
+            }
+        }
+        final int id = intern(key);
+        if (id < 0) {
+            return false;
+        }
+        this.store(id, type, bits, object);
+        inlineWrites.increment();
+        return true;
+    }
+
+    public boolean containsKey(final NamespacedKey key) {
+        final int id = lookup(key);
+        if (id >= 0 && this.indexOf(id) >= 0) {
+            return true;
+        }
+        return this.overflow != null && this.overflow.containsKey(key.toString());
+    }
+
+    public void remove(final NamespacedKey key) {
+        final int id = lookup(key);
+        final int index = id < 0 ? -1 : this.indexOf(id);
+        if (index >= 0) {
+            this.removeAt(index);
+        } else if (this.overflow != null && this.overflow.remove(key.toString()) != null) {
+            ++this.modCount;
+        }
+    }
+
+    /**
+     * Keys that are namespaced keys, see {@code PersistentDataContainer#getKeys()}. Like the {@code HashMap} it
+     * replaces, a name with a colon that is no valid key throws
+     */
+    public Set<NamespacedKey> getKeys() {
+        final Set<NamespacedKey> result = new HashSet<>();
+        final NamespacedKey[] keys = CompactDataMap.keys;
+        for (int i = 0; i < this.size; ++i) {
+            final int id = this.entries[i] >>> TYPE_BITS;
+            final NamespacedKey key = keys[id];
+            if (key != null) {
+                result.add(key);
+                continue;
+            }
+            final String[] parts = names[id].split(":", 2);
+            if (parts.length == 2) {
+                result.add(new NamespacedKey(parts[0], parts[1]));
+            }
+        }
+        if (this.overflow != null) {
+            for (final String name : this.overflow.keySet()) {
+                final String[] parts = name.split(":", 2);
+                if (parts.length == 2) {
+                    result.add(new NamespacedKey(parts[0], parts[1]));
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Copy with all tags copied, inline values are shared as they are immutable
+     */
+    public CompactDataMap deepCopy() {
+        final CompactDataMap copy = new CompactDataMap();
+        copy.copyArrays(this);
+        if (copy.objects != null) {
+            for (int i = 0; i < copy.size; ++i) {
+                if (copy.objects[i] instanceof final Tag tag) {
+                    copy.objects[i] = tag.copy();
+                }
+            }
+        }
+        if (this.overflow != null) {
+            copy.overflow = new HashMap<>(this.overflow.size());
+            this.overflow.forEach((key, tag) -> copy.overflow.put(key, tag.copy()));
+        }
+        copy.hash = this.hash;
+        copy.hashValid = this.hashValid;
+        return copy;
+    }
+
+    // Trimmed to size, a copy rarely grows further
+    private void copyArrays(final CompactDataMap other) {
+        final int size = other.size;
+        if (size == 0) {
+            this.entries = NO_ENTRIES;
+            this.values = NO_VALUES;
+            this.objects = null;
+        } else {
+            this.entries = Arrays.copyOf(other.entries, size);
+            this.values = Arrays.copyOf(other.values, size);
+            this.objects = other.objects == null ? null : Arrays.copyOf(other.objects, size);
+        }
+        this.size = size;
+    }
+
+    @Override
+    public int size() {
+        return this.size + (this.overflow == null ? 0 : this.overflow.size());
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return this.size == 0 && (this.overflow == null || this.overflow.isEmpty());
+    }
+
+    @Override
+    public boolean containsKey(final Object key) {
+        return this.indexOfName(key) >= 0 || this.overflow != null && this.overflow.containsKey(key);
+    }
+
+    @Override
+    public Tag get(final Object key) {
+        final int index = this.indexOfName(key);
+        if (index >= 0) {
+            return this.materialize(index);
+        }
+        return this.overflow == null ? null : this.overflow.get(key);
+    }
+
+    @Override
+    public Tag put(final String key, final Tag value) {
+        Objects.requireNonNull(value, "value");
+        final int id = intern(key);
+        if (id < 0) {
+            if (this.overflow == null) {
+                this.overflow = new HashMap<>();
+            }
+            overflowEntries.increment();
+            final Tag previous = this.overflow.put(key, value);
+            if (previous == null) {
+                ++this.modCount;
+            }
+            return previous;
+        }
+        final int index = this.indexOf(id);
+        final Tag previous = index >= 0 ? this.materialize(index) : null;
+        this.store(id, value);
+        return previous;
+    }
+
+    @Override
+    public Tag remove(final Object key) {
+        final int index = this.indexOfName(key);
+        if (index >= 0) {
+            final Tag previous = this.materialize(index);
+            this.removeAt(index);
+            return previous;
+        }
+        if (this.overflow == null || !this.overflow.containsKey(key)) {
+            return null;
+        }
+        ++this.modCount;
+        return this.overflow.remove(key);
+    }
+
+    @Override
+    public void putAll(final Map<? extends String, ? extends Tag> map) {
+        if (map instanceof final CompactDataMap other && other.overflow == null && this.size == 0 && this.overflow == null) {
+            // Same layout, share the immutable parts, tags are shared like HashMap#putAll does
+            this.copyArrays(other);
+            ++this.modCount;
+            this.hash = other.hash;
+            this.hashValid = other.hashValid;
+            return;
+        }
+        super.putAll(map);
+    }
+
+    @Override
+    public void clear() {
+        this.entries = NO_ENTRIES;
+        this.values = NO_VALUES;
+        this.objects = null;
+        this.size = 0;
+        this.overflow = null;
+        ++this.modCount;
+        this.hashValid = false;
+    }
+
+    @Override
+    public boolean equals(final Object object) {
+        if (object == this) {
+            return true;
+        }
+        if (object instanceof final CompactDataMap other && this.overflow == null && other.overflow == null) {
+            final int size = this.size;
+            if (size != other.size || !Arrays.equals(this.entries, 0, size, other.entries, 0, size)
+                || !Arrays.equals(this.values, 0, size, other.values, 0, size)) {
+                return false;
+            }
+            if (this.objects == null && other.objects == null) {
+                return true;
+            }
+            return this.objectsEqual(other);
+        }
+        return super.equals(object);
+    }
+
+    // Either side may have an objects array holding only nulls
+    private boolean objectsEqual(final CompactDataMap other) {
+        for (int i = 0; i < this.size; ++i) {
+            final Object mine = this.objects == null ? null : this.objects[i];
+            final Object theirs = other.objects == null ? null : other.objects[i];
+            if (!Objects.equals(mine, theirs)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public int hashCode() {
+        if (this.hashValid) {
+            return this.hash;
+        }
+        // Same as AbstractMap so it matches a HashMap of the same tags
+        int hash = 0;
+        boolean inline = true;
+        final String[] names = CompactDataMap.names;
+        for (int i = 0; i < this.size; ++i) {
+            inline &= (this.entries[i] & TYPE_MASK) != TAG;
+            hash += names[this.entries[i] >>> TYPE_BITS].hashCode() ^ this.materialize(i).hashCode();
+        }
+        if (this.overflow != null) {
+            hash += this.overflow.hashCode();
+            inline = false;
+        }
+        // Tags may change behind our back
+        if (inline) {
+            this.hash = hash;
+            this.hashValid = true;
+        }
+        return hash;
+    }
+
+    @Override
+    public Set<Entry<String, Tag>> entrySet() {
+        if (this.entrySet == null) {
+            this.entrySet = new AbstractSet<>() {
+                @Override
+                public Iterator<Entry<String, Tag>> iterator() {
+                    return new EntryIterator();
+                }
+
+                @Override
+                public int size() {
+                    return CompactDataMap.this.size();
+                }
+
+                @Override
+                public void clear() {
+                    CompactDataMap.this.clear();
+                }
+            };
+        }
+        return this.entrySet;
+    }
+
+    public static Map<String, Object> getStats() {
+        final Map<String, Object> stats = new ConcurrentHashMap<>();
+        stats.put("enabled", ENABLED);
+        stats.put("interned_keys", NAME_IDS.size());
+        stats.put("max_keys", MAX_KEYS);
+        stats.put("inline_reads", inlineReads.sum());
+        stats.put("inline_writes", inlineWrites.sum());
+        stats.put("materialized_tags", materializedTags.sum());
+        stats.put("overflow_entries", overflowEntries.sum());
+        return stats;
+    }
+
+    private final class EntryIterator implements Iterator<Entry<String, Tag>> {
+        private int index;
+        private boolean removable;
+        private int expectedModCount = CompactDataMap.this.modCount;
+        private Iterator<Entry<String, Tag>> overflow;
+
+        private void checkModCount() {
+            if (CompactDataMap.this.modCount != this.expectedModCount) {
+                throw new ConcurrentModificationException();
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            if (this.index < CompactDataMap.this.size) {
+                return true;
+            }
+            if (this.overflow == null) {
+                this.overflow = CompactDataMap.this.overflow == null ? Collections.emptyIterator() : CompactDataMap.this.overflow.entrySet().iterator();
+            }
+            return this.overflow.hasNext();
+        }
+
+        @Override
+        public Entry<String, Tag> next() {
+            this.checkModCount();
+            if (!this.hasNext()) {
+                throw new NoSuchElementException();
+            }
+            if (this.overflow != null) {
+                this.removable = false;
+                return this.overflow.next();
+            }
+            final String name = names[CompactDataMap.this.entries[this.index++] >>> TYPE_BITS];
+            this.removable = true;
+            return new LazyEntry(name);
+        }
+
+        @Override
+        public void remove() {
+            this.checkModCount();
+            if (this.overflow != null) {
+                this.overflow.remove();
+                this.expectedModCount = ++CompactDataMap.this.modCount;
+                return;
+            }
+            if (!this.removable) {
+                throw new IllegalStateException();
+            }
+            CompactDataMap.this.removeAt(--this.index);
+            this.expectedModCount = CompactDataMap.this.modCount;
+            this.removable = false;
+        }
+    }
+
+    /**
+     * Builds the tag when asked for, a key only iteration builds none
+     */
+    private final class LazyEntry implements Entry<String, Tag> {
+        private final String name;
+
+        private LazyEntry(final String name) {
+            this.name = name;
+        }
+
+        @Override
+        public String getKey() {
+            return this.name;
+        }
+
+        @Override
+        public Tag getValue() {
+            return CompactDataMap.this.get(this.name);
+        }
+
+        @Override
+        public Tag setValue(final Tag value) {
+            return CompactDataMap.this.put(this.name, value);
+        }
+
+        @Override
+        public boolean equals(final Object object) {
+            return object instanceof final Entry<?, ?> entry && this.name.equals(entry.getKey()) && Objects.equals(this.getValue(), entry.getValue());
+        }
+
+        @Override
+        public int hashCode() {
+            return this.name.hashCode() ^ Objects.hashCode(this.getValue());
+        }
+
+        @Override
+        public String toString() {
+            return this.name + "=" + this.getValue();
+        }
+    }
+}
@@ -0,0 +1,81 @@
+package ru.playland.core.optimization;
+
+import io.netty.buffer.ByteBuf;
+import java.nio.ByteBuffer;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Dictionary Compressor
+ * zlib сжатие ByteBuf с общим словарём {@link PacketDictionary}
+ *
+ * <p>Produces standard zlib streams with a preset dictionary, the receiving side needs the same dictionary
+ * to inflate them. One instance per channel, not thread safe.</p>
+ */
+public final class DictionaryCompressor implements AutoCloseable {
+
+    private static final int MIN_WRITABLE = 256;
+
+    private final PacketDictionary dictionary;
+    private final Deflater deflater;
+    private final Inflater inflater = new Inflater();
+
+    public DictionaryCompressor(final PacketDictionary dictionary, final int level) {
+        this.dictionary = dictionary;
+        this.deflater = new Deflater(level);
+    }
+
+    public PacketDictionary getDictionary() {
+        return this.dictionary;
+    }
+
+    /**
+     * Compress all readable bytes of {@code source} into {@code destination}
+     */
+    public void deflate(final ByteBuf source, final ByteBuf destination) {
+        this.deflater.reset();
+        this.deflater.setDictionary(this.dictionary.bytes());
+        this.deflater.setInput(source.nioBuffer());
+        this.deflater.finish();
+        while (!this.deflater.finished()) {
+            destination.ensureWritable(MIN_WRITABLE);
+            final ByteBuffer out = destination.nioBuffer(destination.writerIndex(), destination.writableBytes());
+            destination.writerIndex(destination.writerIndex() + this.deflater.deflate(out));
+        }
+        source.skipBytes(source.readableBytes());
+    }
+
+    /**
+     * Inflate all readable bytes of {@code source} into {@code destination}, which must be able to grow to
+     * {@code uncompressedSize} more bytes
+     */
+    public void inflate(final ByteBuf source, final ByteBuf destination, final int uncompressedSize) throws DataFormatException {
+        this.inflater.reset();
+        this.inflater.setInput(source.nioBuffer());
+        destination.ensureWritable(uncompressedSize);
+        final int start = destination.writerIndex();
+        while (!this.inflater.finished() && destination.writerIndex() - start < uncompressedSize) {
+            final ByteBuffer out = destination.nioBuffer(destination.writerIndex(), start + uncompressedSize - destination.writerIndex());
+            final int inflated = this.inflater.inflate(out);
+            if (inflated == 0 && this.inflater.needsDictionary()) {
+                this.inflater.setDictionary(this.dictionary.bytes());
+                continue;
+            }
+            if (inflated == 0 && this.inflater.needsInput()) {
+                throw new DataFormatException("Truncated compressed packet");
+            }
+            destination.writerIndex(destination.writerIndex() + inflated);
+        }
+        if (destination.writerIndex() - start != uncompressedSize) {
+            throw new DataFormatException("Badly compressed packet - expected " + uncompressedSize + " bytes, got " + (destination.writerIndex() - start));
+        }
+        source.skipBytes(source.readableBytes());
+    }
+
+    @Override
+    public void close() {
+        this.deflater.end();
+        this.inflater.end();
+    }
+}
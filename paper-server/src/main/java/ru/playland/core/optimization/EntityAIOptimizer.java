@@ -30,6 +30,9 @@ import java.util.HashSet;
 public class EntityAIOptimizer {
     
     private static final Logger LOGGER = Logger.getLogger("PlayLand-EntityAI");
+
+    // Player proximity ranges
+    private static final PlayerProximityIndex.Range LOOK_AT_PLAYER_RANGE = PlayerProximityIndex.range("entity-ai-look", 8.0, false, false);
     
     // Optimization statistics
     private final AtomicLong entitiesOptimized = new AtomicLong(0);
@@ -53,6 +56,8 @@ public class EntityAIOptimizer {
     
     private double nearDistance = 32.0; // Blocks
     private double farDistance = 128.0; // Blocks
+    // Nearest player distances are compared up to the far distance, a shorter range would make closer players very far
+    private final PlayerProximityIndex.Range nearestPlayerRange = PlayerProximityIndex.rangeAtLeast("entity-ai", farDistance);
     private long nearUpdateInterval = 50; // milliseconds
     private long farUpdateInterval = 500; // milliseconds
     private long veryFarUpdateInterval = 2000; // milliseconds
@@ -171,6 +176,12 @@ public class EntityAIOptimizer {
     }
     
     private double getNearestPlayerDistance(Entity entity) {
+        if (PlayerProximityIndex.isIndexed(entity.level())) {
+            // Anything beyond the far distance is very far, no need to look further
+            double distanceSqr = PlayerProximityIndex.nearestDistanceSqr(entity.level(), entity.getX(), entity.getY(), entity.getZ(), nearestPlayerRange);
+            return distanceSqr == Double.MAX_VALUE ? Double.MAX_VALUE : Math.sqrt(distanceSqr);
+        }
+
         double minDistance = Double.MAX_VALUE;
         
         for (Player player : entity.level().players()) {
@@ -488,6 +499,9 @@ public class EntityAIOptimizer {
 
             // Social behavior - medium priority when players nearby
             if (goalClass.contains("LookAt")) {
+                if (PlayerProximityIndex.isIndexed(mob.level())) {
+                    return PlayerProximityIndex.any(mob.level(), mob.getX(), mob.getY(), mob.getZ(), LOOK_AT_PLAYER_RANGE) ? 4 : 1;
+                }
                 return mob.level().getNearestPlayer(mob, 8.0) != null ? 4 : 1;
             }
 
@@ -0,0 +1,86 @@
+package ru.playland.core.optimization;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Logger;
+import org.bukkit.event.Event;
+import org.bukkit.event.HandlerList;
+
+/**
+ * Event Elision
+ * Пропуск создания событий, которые никто не слушает
+ *
+ * <p>The hot methods of {@code CraftEventFactory}, block spread, grow and form, entity change block, item merge,
+ * entity spawns and the like, build the Bukkit event with its {@code CraftBlockState} snapshot,
+ * {@code CraftBlock} and {@code CraftEntity} wrappers and item mirrors even when no plugin listens, only to call
+ * an empty handler list. They ask {@link #shouldCall} first and, when nobody listens, apply the outcome of an
+ * uncancelled event directly.</p>
+ *
+ * <p>The check is {@link HandlerList#hasListeners()}, a single read kept up to date on every registration change.
+ * Listeners of disabled plugins still count, which only means the event is built as before. Per event type this
+ * counts the events fired and elided.</p>
+ *
+ * <p>On by default, {@code -Dplayland.events.elide=false} builds and calls every event again.</p>
+ */
+public final class EventElision {
+
+    private static final Logger LOGGER = Logger.getLogger("PlayLand-EventElision");
+
+    public static final boolean ENABLED = Boolean.parseBoolean(System.getProperty("playland.events.elide", "true"));
+
+    // Statistics
+    private static final Map<Class<?>, Counters> TYPES = new ConcurrentHashMap<>();
+    // Avoids a map lookup per event
+    private static final ClassValue<Counters> COUNTERS = new ClassValue<>() {
+        @Override
+        protected Counters computeValue(final Class<?> type) {
+            return TYPES.computeIfAbsent(type, key -> new Counters());
+        }
+    };
+    private static final LongAdder totalFired = new LongAdder();
+    private static final LongAdder totalElided = new LongAdder();
+
+    static {
+        if (ENABLED) {
+            LOGGER.info("✂️ Event elision enabled for events without listeners");
+        }
+    }
+
+    private EventElision() {}
+
+    /**
+     * Whether an event of {@code type} has to be built and called, {@code false} if nobody listens to it
+     *
+     * @param handlers the handler list events of {@code type} are called on
+     */
+    public static boolean shouldCall(final HandlerList handlers, final Class<? extends Event> type) {
+        final boolean call = !ENABLED || handlers.hasListeners();
+        final Counters counters = COUNTERS.get(type);
+        if (call) {
+            counters.fired.increment();
+            totalFired.increment();
+        } else {
+            counters.elided.increment();
+            totalElided.increment();
+        }
+        return call;
+    }
+
+    public static Map<String, Object> getStats() {
+        final Map<String, Object> stats = new ConcurrentHashMap<>();
+        stats.put("enabled", ENABLED);
+        stats.put("fired", totalFired.sum());
+        stats.put("elided", totalElided.sum());
+        for (final Map.Entry<Class<?>, Counters> entry : TYPES.entrySet()) {
+            stats.put(entry.getKey().getSimpleName() + "_fired", entry.getValue().fired.sum());
+            stats.put(entry.getKey().getSimpleName() + "_elided", entry.getValue().elided.sum());
+        }
+        return stats;
+    }
+
+    private static final class Counters {
+        final LongAdder fired = new LongAdder();
+        final LongAdder elided = new LongAdder();
+    }
+}
@@ -0,0 +1,281 @@
+package ru.playland.core.optimization;
+
+import ca.spottedleaf.moonrise.common.util.CoordinateUtils;
+import it.unimi.dsi.fastutil.longs.Long2ObjectMap;
+import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
+import it.unimi.dsi.fastutil.longs.LongIterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Logger;
+import javax.annotation.Nullable;
+import net.minecraft.core.BlockPos;
+import net.minecraft.core.Direction;
+import net.minecraft.world.CompoundContainer;
+import net.minecraft.world.Container;
+import net.minecraft.world.WorldlyContainerHolder;
+import net.minecraft.world.level.Level;
+import net.minecraft.world.level.block.ChestBlock;
+import net.minecraft.world.level.block.entity.BlockEntity;
+import net.minecraft.world.level.block.entity.HopperBlockEntity;
+import net.minecraft.world.level.block.state.BlockState;
+import org.bukkit.event.inventory.HopperInventorySearchEvent;
+
+/**
+ * Hopper Container Cache
+ * Кэш графа контейнеров для цепочек воронок и сортировщиков
+ *
+ * <p>Every hopper resolves the container it pushes into and the one it pulls from on every transfer attempt: a
+ * block state lookup, a block entity lookup in the chunk, and for chests a new {@link CompoundContainer} after
+ * looking at the neighbouring chest. In a hopper chain or item sorter none of that changes between ticks. This
+ * keeps the resolved block container per position and world, so a static chain resolves every link once.</p>
+ *
+ * <p>An entry is only used while the block state at its position is the same instance it was resolved for and
+ * none of its block entities has been removed. Placing, breaking or pairing a chest changes the state, replacing
+ * a block entity removes the old one, so a changed graph is never used even in the tick it changed. Block
+ * changes and chunk unloads from {@link ChunkInvalidationBus} drop entries of changed positions and their
+ * horizontal neighbours, which a double chest may pair with.</p>
+ *
+ * <p>Only block entity containers and double chests are kept. Composters build their container from the state
+ * each time, entity containers move, both are resolved as before. A lookup also wraps its result in a
+ * {@code HopperInventorySearchEvent} with two {@code CraftBlock}s; with no listener the event hands back the
+ * container it was given, so it is left out then.</p>
+ *
+ * <p>Moves themselves are not touched and are not batched: items still move one transfer per hopper and cooldown
+ * in block entity tick order, and {@code InventoryMoveItemEvent} fires as before. Main thread only, on by default,
+ * {@code -Dplayland.hopper.container-cache=false} turns it off.</p>
+ */
+public final class HopperContainerCache {
+
+    private static final Logger LOGGER = Logger.getLogger("PlayLand-HopperCache");
+
+    public static final boolean ENABLED = Boolean.parseBoolean(System.getProperty("playland.hopper.container-cache", "true"));
+
+    private static final Map<Level, Graph> GRAPHS = new ConcurrentHashMap<>();
+    private static final ChunkInvalidationBus.Listener INVALIDATION_LISTENER = HopperContainerCache::onInvalidation;
+
+    // Last graph used, hoppers of one world tick together
+    private static Level lastLevel;
+    private static Graph lastGraph;
+
+    // Statistics
+    private static final LongAdder hits = new LongAdder();
+    private static final LongAdder misses = new LongAdder();
+    private static final LongAdder stale = new LongAdder();
+    private static final LongAdder invalidated = new LongAdder();
+
+    static {
+        if (ENABLED) {
+            ChunkInvalidationBus.register(INVALIDATION_LISTENER);
+            LOGGER.info("🔗 Hopper container cache enabled");
+        }
+    }
+
+    private HopperContainerCache() {}
+
+    /**
+     * Resolves the block container at a position the way {@code HopperBlockEntity#getBlockContainer} does
+     */
+    @FunctionalInterface
+    public interface Resolver {
+
+        @Nullable
+        Container resolve(Level level, BlockPos pos, BlockState state);
+    }
+
+    /**
+     * The block container at {@code pos}, from the cache if it is still valid, otherwise from {@code resolver}
+     */
+    @Nullable
+    public static Container getBlockContainer(final Level level, final BlockPos pos, final BlockState state, final Resolver resolver) {
+        if (!state.hasBlockEntity() || state.getBlock() instanceof WorldlyContainerHolder) {
+            return resolver.resolve(level, pos, state);
+        }
+        return graph(level).getBlockContainer(level, pos, state, resolver);
+    }
+
+    /**
+     * Whether a container lookup can skip its {@code HopperInventorySearchEvent}, nothing listens to it
+     */
+    public static boolean skipSearchEvent() {
+        return ENABLED && HopperInventorySearchEvent.getHandlerList().getRegisteredListeners().length == 0;
+    }
+
+    @Nullable
+    private static Link link(final Level level, final BlockPos pos, final BlockState state, @Nullable final Container container) {
+        if (container instanceof final BlockEntity blockEntity) {
+            return new Link(container, state, blockEntity, null);
+        }
+        if (container instanceof CompoundContainer && state.getBlock() instanceof ChestBlock) {
+            final BlockEntity primary = level.getBlockEntity(pos);
+            final BlockEntity secondary = level.getBlockEntity(pos.relative(ChestBlock.getConnectedDirection(state)));
+            if (primary != null && secondary != null) {
+                return new Link(container, state, primary, secondary);
+            }
+        }
+        // Anything else may depend on more than the block, resolve it every time
+        return null;
+    }
+
+    private static Graph graph(final Level level) {
+        if (level == lastLevel) {
+            return lastGraph;
+        }
+        final Graph graph = GRAPHS.computeIfAbsent(level, key -> new Graph());
+        lastLevel = level;
+        lastGraph = graph;
+        return graph;
+    }
+
+    /**
+     * Forgets a world, called when it is unloaded
+     */
+    public static void clear(final Level level) {
+        GRAPHS.remove(level);
+        if (lastLevel == level) {
+            lastLevel = null;
+            lastGraph = null;
+        }
+    }
+
+    private static void onInvalidation(final ChunkInvalidationBus.Batch batch) {
+        for (final Map.Entry<Level, Graph> entry : GRAPHS.entrySet()) {
+            if (!entry.getKey().getWorld().getName().equals(batch.getWorld())) {
+                continue;
+            }
+            final Graph graph = entry.getValue();
+            if (graph.chunks.isEmpty()) {
+                return;
+            }
+            for (final LongIterator iterator = batch.getUnloadedChunks().iterator(); iterator.hasNext();) {
+                final Long2ObjectMap<Link> chunk = graph.chunks.remove(iterator.nextLong());
+                if (chunk != null) {
+                    graph.size -= chunk.size();
+                    invalidated.add(chunk.size());
+                }
+            }
+            batch.forEachDirtyBlock(blockPos -> {
+                graph.invalidate(blockPos);
+                for (final Direction direction : Direction.Plane.HORIZONTAL) {
+                    graph.invalidate(BlockPos.offset(blockPos, direction));
+                }
+            });
+            return;
+        }
+    }
+
+    public static Map<String, Object> getStats() {
+        final Map<String, Object> stats = new ConcurrentHashMap<>();
+        stats.put("enabled", ENABLED);
+        stats.put("hits", hits.sum());
+        stats.put("misses", misses.sum());
+        stats.put("stale", stale.sum());
+        stats.put("invalidated", invalidated.sum());
+        final long lookups = hits.sum() + misses.sum();
+        stats.put("hit_rate", lookups == 0L ? 0.0 : (double) hits.sum() / lookups);
+        int links = 0;
+        int hopperLinks = 0;
+        for (final Graph graph : GRAPHS.values()) {
+            links += graph.size;
+            hopperLinks += graph.countHoppers();
+        }
+        stats.put("links", links);
+        // Links into other hoppers, the chains
+        stats.put("hopper_links", hopperLinks);
+        return stats;
+    }
+
+    /**
+     * A resolved container and what it was resolved from
+     */
+    private record Link(Container container, BlockState state, BlockEntity primary, @Nullable BlockEntity secondary) {
+
+        boolean isValid(final BlockState state) {
+            return this.state == state && !this.primary.isRemoved() && (this.secondary == null || !this.secondary.isRemoved());
+        }
+    }
+
+    /**
+     * The resolved containers of one world, by chunk so an unloaded chunk is dropped at once
+     */
+    public static final class Graph {
+        private final Long2ObjectOpenHashMap<Long2ObjectOpenHashMap<Link>> chunks = new Long2ObjectOpenHashMap<>();
+        private int size;
+
+        private static long chunkKey(final long pos) {
+            return CoordinateUtils.getChunkKey(BlockPos.getX(pos) >> 4, BlockPos.getZ(pos) >> 4);
+        }
+
+        /**
+         * The block container at {@code pos} of a block with a block entity, cached or resolved
+         */
+        @Nullable
+        public Container getBlockContainer(final Level level, final BlockPos pos, final BlockState state, final Resolver resolver) {
+            final long key = pos.asLong();
+            final Link cached = this.get(key);
+            if (cached != null) {
+                if (cached.isValid(state)) {
+                    hits.increment();
+                    return cached.container;
+                }
+                this.remove(key);
+                stale.increment();
+            }
+
+            misses.increment();
+            final Container container = resolver.resolve(level, pos, state);
+            final Link link = link(level, pos, state, container);
+            if (link != null) {
+                this.put(key, link);
+            }
+            return container;
+        }
+
+        @Nullable
+        Link get(final long pos) {
+            final Long2ObjectOpenHashMap<Link> chunk = this.chunks.get(chunkKey(pos));
+            return chunk == null ? null : chunk.get(pos);
+        }
+
+        void put(final long pos, final Link link) {
+            if (this.chunks.computeIfAbsent(chunkKey(pos), key -> new Long2ObjectOpenHashMap<>()).put(pos, link) == null) {
+                ++this.size;
+            }
+        }
+
+        void remove(final long pos) {
+            final long chunkKey = chunkKey(pos);
+            final Long2ObjectOpenHashMap<Link> chunk = this.chunks.get(chunkKey);
+            if (chunk != null && chunk.remove(pos) != null) {
+                --this.size;
+                if (chunk.isEmpty()) {
+                    this.chunks.remove(chunkKey);
+                }
+            }
+        }
+
+        void invalidate(final long pos) {
+            final int size = this.size;
+            this.remove(pos);
+            if (this.size != size) {
+                invalidated.increment();
+            }
+        }
+
+        int countHoppers() {
+            int hoppers = 0;
+            for (final Long2ObjectOpenHashMap<Link> chunk : this.chunks.values()) {
+                for (final Link link : chunk.values()) {
+                    if (link.container instanceof HopperBlockEntity) {
+                        ++hoppers;
+                    }
+                }
+            }
+            return hoppers;
+        }
+
+        public int size() {
+            return this.size;
+        }
+    }
+}
@@ -0,0 +1,197 @@
+package ru.playland.core.optimization;
+
+import io.papermc.paper.entity.activation.ActivationRange;
+import it.unimi.dsi.fastutil.objects.Reference2ObjectOpenHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Logger;
+import net.minecraft.server.MinecraftServer;
+import net.minecraft.world.entity.Entity;
+import net.minecraft.world.level.Level;
+import net.minecraft.world.phys.Vec3;
+
+/**
+ * Inactive Wake Queue
+ * Событийное пробуждение неактивных сущностей Entity Activation Range
+ *
+ * <p>An entity out of activation range only runs {@code ActivationRange#checkEntityImmunities} once every 20 ticks
+ * of inactivity, so a mob that is hit, pushed or picks a target keeps standing still for up to a second until the
+ * next check notices. These events now put the entity into a {@link TaskTimingWheel} of its world, keyed on the tick
+ * its immunities are due: the next one, once the event is over. The activation pass of that tick checks the due
+ * entities that are still inactive right away, and an immunity that applies keeps the entity active for as long as
+ * the regular check would have. When none applies nothing happens: no extra temporary tick, the entity keeps its
+ * 20 tick cycle.</p>
+ *
+ * <p>The periodic inactive wake up ({@code wake-up-inactive} in spigot.yml) is left out of this check: it takes from
+ * the per-world wake up budgets, which are meant for the regular check, and an event is no reason to spend them.</p>
+ *
+ * <p>Events are damage, velocity changes with horizontal motion from outside the entity's own tick and new
+ * targets, set by goals or plugins. Players coming close need no queue, the activation pass activates those
+ * entities itself. The regular check stays for immunities without an event, like fire, water or villager
+ * activities, so no entity is checked later than before.</p>
+ *
+ * <p>Main thread only, on by default, {@code -Dplayland.activation.wake-queue=false} leaves waking to the regular
+ * check.</p>
+ */
+public final class InactiveWakeQueue {
+
+    private static final Logger LOGGER = Logger.getLogger("PlayLand-InactiveWake");
+
+    public static final boolean ENABLED = Boolean.parseBoolean(System.getProperty("playland.activation.wake-queue", "true"));
+
+    // The horizontal speed checkEntityImmunities wakes an entity for
+    private static final double MIN_HORIZONTAL_SPEED_SQR = 9.999999747378752E-6D;
+
+    private static final Reference2ObjectOpenHashMap<Level, Queue> QUEUES = new Reference2ObjectOpenHashMap<>();
+
+    // Statistics
+    private static final LongAdder scheduled = new LongAdder();
+    private static final LongAdder checked = new LongAdder();
+    private static final LongAdder woken = new LongAdder();
+    private static final LongAdder dropped = new LongAdder();
+
+    static {
+        if (ENABLED) {
+            LOGGER.info("⏰ Inactive entity wake queue enabled");
+        }
+    }
+
+    private InactiveWakeQueue() {}
+
+    /**
+     * An inactive entity was damaged or got a target, its immunities are checked next tick
+     */
+    public static void wake(final Entity entity) {
+        if (!ENABLED || entity.activatedTick >= MinecraftServer.currentTick || entity.defaultActivationState) {
+            return;
+        }
+        schedule(entity, MinecraftServer.currentTick + 1L);
+    }
+
+    /**
+     * The velocity of an entity was set, an inactive entity moved by something else wakes like {@link #wake}
+     */
+    public static void velocityChanged(final Entity entity, final Vec3 deltaMovement) {
+        // Its own temporary tick sets the velocity as well, the regular check covers that
+        if (!ENABLED || entity.activatedTick >= MinecraftServer.currentTick || entity.isTemporarilyActive
+            || deltaMovement.horizontalDistanceSqr() <= MIN_HORIZONTAL_SPEED_SQR) {
+            return;
+        }
+        wake(entity);
+    }
+
+    /**
+     * Queues the immunity check of {@code entity} for {@code tick}, an earlier tick already queued is kept
+     */
+    static void schedule(final Entity entity, final long tick) {
+        final Level level = entity.level();
+        if (level.isClientSide) {
+            return;
+        }
+        Queue queue = QUEUES.get(level);
+        if (queue == null) {
+            queue = new Queue();
+            QUEUES.put(level, queue);
+        }
+        if (queue.pending.isEmpty()) {
+            // Not advanced while empty, start over instead of catching up tick by tick
+            queue.wheel = new TaskTimingWheel<>(MinecraftServer.currentTick);
+        }
+        final Wake pending = queue.pending.get(entity);
+        if (pending != null) {
+            if (pending.tick <= tick) {
+                return;
+            }
+            queue.wheel.remove(pending);
+        }
+        final Wake wake = new Wake(entity, tick, queue.order++);
+        queue.pending.put(entity, wake);
+        queue.wheel.offer(wake);
+        scheduled.increment();
+    }
+
+    /**
+     * Checks the immunities of the entities of {@code world} due this tick, after the activation pass
+     */
+    public static void wakeDue(final Level world) {
+        if (!ENABLED) {
+            return;
+        }
+        final Queue queue = QUEUES.get(world);
+        if (queue == null || queue.pending.isEmpty()) {
+            return;
+        }
+        final long tick = MinecraftServer.currentTick;
+        while (queue.wheel.isReady(tick)) {
+            final Wake wake = queue.wheel.poll();
+            final Entity entity = wake.entity;
+            queue.pending.remove(entity);
+            if (entity.isRemoved() || entity.level() != world || entity.activatedTick >= tick) {
+                // Gone, or activated by a player or an immunity in the meantime
+                dropped.increment();
+                continue;
+            }
+            checked.increment();
+            final int immunity = ActivationRange.checkEntityImmunities(entity, false);
+            if (immunity >= 0) {
+                entity.activatedTick = tick + immunity;
+                woken.increment();
+            }
+        }
+    }
+
+    /**
+     * Forgets a world, when it is unloaded
+     */
+    public static void clear(final Level world) {
+        final Queue queue = QUEUES.remove(world);
+        if (queue != null) {
+            queue.wheel.clear();
+            queue.pending.clear();
+        }
+    }
+
+    public static Map<String, Object> getStats() {
+        final Map<String, Object> stats = new ConcurrentHashMap<>();
+        stats.put("enabled", ENABLED);
+        int pending = 0;
+        for (final Queue queue : QUEUES.values()) {
+            pending += queue.pending.size();
+        }
+        stats.put("pending", pending);
+        stats.put("scheduled", scheduled.sum());
+        stats.put("checked", checked.sum());
+        stats.put("woken", woken.sum());
+        stats.put("dropped", dropped.sum());
+        return stats;
+    }
+
+    private static final class Queue {
+        final Reference2ObjectOpenHashMap<Entity, Wake> pending = new Reference2ObjectOpenHashMap<>();
+        TaskTimingWheel<Wake> wheel;
+        long order;
+    }
+
+    private static final class Wake extends TaskTimingWheel.Node {
+        final Entity entity;
+        final long tick;
+        final long order;
+
+        Wake(final Entity entity, final long tick, final long order) {
+            this.entity = entity;
+            this.tick = tick;
+            this.order = order;
+        }
+
+        @Override
+        protected long getWheelTick() {
+            return this.tick;
+        }
+
+        @Override
+        protected long getWheelOrder() {
+            return this.order;
+        }
+    }
+}
@@ -0,0 +1,99 @@
+package ru.playland.core.optimization;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Logger;
+
+/**
+ * Item Stack Copy On Write
+ * Копирование ItemStack при записи вместо клонирования при каждом доступе
+ *
+ * <p>Every {@code ItemStack#clone()}, {@code CraftItemStack.asCraftCopy} and {@code InventoryMoveItemEvent#setItem}
+ * copies the NMS stack behind the Bukkit one. Shop and hopper plugins clone stacks all the time only to read
+ * them, compare them or hand them on. With copy on write, a copy of a stack shares the NMS stack of its source,
+ * both hold the same {@link Share}. The first of them to be changed copies the NMS stack and leaves the share,
+ * the last one left keeps the NMS stack without copying.</p>
+ *
+ * <p>Only stacks owned by Bukkit are shared. Mirrors of stacks in inventories or entities, and stacks whose NMS
+ * stack was handed to the game through {@code CraftItemStack.unwrap}, are changed by the game behind our back, so
+ * copies of them are still taken right away. Vanilla already shares the component map of a copied NMS stack until
+ * it changes, this saves the stack itself and the copy when nothing changes at all.</p>
+ *
+ * <p>On by default, {@code -Dplayland.itemstack.cow=false} copies on every clone again.</p>
+ */
+public final class ItemStackCopyOnWrite {
+
+    private static final Logger LOGGER = Logger.getLogger("PlayLand-ItemStackCOW");
+
+    public static final boolean ENABLED = Boolean.parseBoolean(System.getProperty("playland.itemstack.cow", "true"));
+
+    // Statistics
+    private static final LongAdder sharedCopies = new LongAdder();
+    private static final LongAdder eagerCopies = new LongAdder();
+    private static final LongAdder writeCopies = new LongAdder();
+    private static final LongAdder lastHolderWrites = new LongAdder();
+
+    static {
+        if (ENABLED) {
+            LOGGER.info("🐄 Copy-on-write item stacks enabled");
+        }
+    }
+
+    private ItemStackCopyOnWrite() {}
+
+    /**
+     * A copy of a mirror had to copy its NMS stack right away
+     */
+    public static void recordEagerCopy() {
+        eagerCopies.increment();
+    }
+
+    public static Map<String, Object> getStats() {
+        final Map<String, Object> stats = new ConcurrentHashMap<>();
+        stats.put("enabled", ENABLED);
+        stats.put("shared_copies", sharedCopies.sum());
+        stats.put("eager_copies", eagerCopies.sum());
+        stats.put("write_copies", writeCopies.sum());
+        stats.put("last_holder_writes", lastHolderWrites.sum());
+        final long shared = sharedCopies.sum();
+        stats.put("avoided_copies", shared - writeCopies.sum());
+        return stats;
+    }
+
+    /**
+     * The stacks sharing one NMS stack, stacks may be handed between threads so the count is atomic
+     *
+     * <p>Copies that are garbage collected never leave, a template cloned for years would overflow the count.
+     * It sticks at {@link Integer#MAX_VALUE} instead, every holder copies on write from then on.</p>
+     */
+    public static final class Share {
+        private static final int SATURATED = Integer.MAX_VALUE;
+
+        private final AtomicInteger holders = new AtomicInteger(1);
+
+        /**
+         * Adds the holder of a new copy
+         */
+        public Share retain() {
+            this.holders.updateAndGet(holders -> holders == SATURATED ? SATURATED : holders + 1);
+            sharedCopies.increment();
+            return this;
+        }
+
+        /**
+         * Leaves the share before writing
+         *
+         * @return true if others still hold the NMS stack and the caller has to copy it
+         */
+        public boolean release() {
+            if (this.holders.updateAndGet(holders -> holders == SATURATED ? SATURATED : holders - 1) > 0) {
+                writeCopies.increment();
+                return true;
+            }
+            lastHolderWrites.increment();
+            return false;
+        }
+    }
+}
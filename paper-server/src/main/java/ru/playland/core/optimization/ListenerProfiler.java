@@ -0,0 +1,231 @@
+package ru.playland.core.optimization;
+
+import co.aikar.timings.TimedEventExecutor;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Logger;
+import org.bukkit.event.Event;
+import org.bukkit.plugin.EventExecutor;
+import org.bukkit.plugin.Plugin;
+import org.bukkit.plugin.RegisteredListener;
+
+/**
+ * Listener Profiler
+ * Профилирование времени и аллокаций каждого слушателя событий
+ *
+ * <p>While running, {@code PaperEventManager#callEvent} calls listeners through {@link #dispatch} instead of the
+ * baked dispatcher, which records per {@link RegisteredListener}, so per listener method, the number of calls,
+ * total and maximum time and the bytes allocated by the calling thread. Times include events the listener calls
+ * itself. All counters are lock-free, a profiled call costs two {@link System#nanoTime()} and, where the JVM
+ * supports it, two reads of the thread's allocation counter.</p>
+ *
+ * <p>Off by default, started and stopped with {@code /paper profilelisteners} or from startup with
+ * {@code -Dplayland.events.profile=true}. Results are shown by the command and dumped as JSON.</p>
+ *
+ * <p>The counters hold their {@link RegisteredListener}, and with it the listener and its plugin, so a plugin's
+ * counters are dropped when it is disabled and don't keep its class loader reachable.</p>
+ */
+public final class ListenerProfiler {
+
+    private static final Logger LOGGER = Logger.getLogger("PlayLand-ListenerProfiler");
+
+    private static final com.sun.management.ThreadMXBean THREADS = getThreadBean();
+
+    private static volatile boolean running = Boolean.getBoolean("playland.events.profile");
+    private static volatile long startedAt = running ? System.currentTimeMillis() : 0L;
+    private static final Map<RegisteredListener, ListenerStats> STATS = new ConcurrentHashMap<>();
+
+    static {
+        if (running) {
+            LOGGER.info("⏱️ Listener profiler started");
+        }
+    }
+
+    private ListenerProfiler() {}
+
+    private static com.sun.management.ThreadMXBean getThreadBean() {
+        if (ManagementFactory.getThreadMXBean() instanceof final com.sun.management.ThreadMXBean bean && bean.isThreadAllocatedMemorySupported()) {
+            if (!bean.isThreadAllocatedMemoryEnabled()) {
+                bean.setThreadAllocatedMemoryEnabled(true);
+            }
+            return bean;
+        }
+        LOGGER.warning("⚠️ Thread allocation counters are not supported by this JVM, listener allocations are not profiled");
+        return null;
+    }
+
+    public static boolean isRunning() {
+        return running;
+    }
+
+    public static boolean isAllocationSupported() {
+        return THREADS != null;
+    }
+
+    public static void start() {
+        if (!running) {
+            startedAt = System.currentTimeMillis();
+            running = true;
+            LOGGER.info("⏱️ Listener profiler started");
+        }
+    }
+
+    public static void stop() {
+        if (running) {
+            running = false;
+            LOGGER.info("⏱️ Listener profiler stopped");
+        }
+    }
+
+    public static void reset() {
+        STATS.clear();
+        startedAt = System.currentTimeMillis();
+    }
+
+    /**
+     * Drops the counters of the listeners of {@code plugin}, when it is disabled
+     */
+    public static void removePlugin(final Plugin plugin) {
+        STATS.keySet().removeIf(registration -> registration.getPlugin() == plugin);
+    }
+
+    /**
+     * Time since the profiler was started or reset, 0 if it never ran
+     */
+    public static long getProfiledMillis() {
+        return startedAt == 0L ? 0L : System.currentTimeMillis() - startedAt;
+    }
+
+    /**
+     * Same as the loop of {@code PaperEventManager#callEvent}, recording every listener call
+     */
+    public static void dispatch(final RegisteredListener[] listeners, final Event event, final BakedEventDispatcher.FailureHandler failureHandler) {
+        final com.sun.management.ThreadMXBean threads = THREADS;
+        for (final RegisteredListener registration : listeners) {
+            if (!registration.getPlugin().isEnabled()) {
+                continue;
+            }
+
+            final long allocatedBefore = threads != null ? threads.getCurrentThreadAllocatedBytes() : 0L;
+            final long start = System.nanoTime();
+            try {
+                registration.callEvent(event);
+            } catch (final Throwable throwable) {
+                failureHandler.handle(registration, event, throwable);
+            } finally {
+                final long nanos = System.nanoTime() - start;
+                final long allocated = threads != null ? threads.getCurrentThreadAllocatedBytes() - allocatedBefore : 0L;
+                // A call still running while its plugin is disabled must not bring its counters back
+                if (registration.getPlugin().isEnabled()) {
+                    STATS.computeIfAbsent(registration, ListenerStats::new).record(nanos, allocated);
+                }
+            }
+        }
+    }
+
+    /**
+     * Snapshot of all profiled listeners, most total time first
+     */
+    public static List<ListenerStats> getListenerStats() {
+        final List<ListenerStats> stats = new ArrayList<>(STATS.values());
+        stats.sort(Comparator.comparingLong(ListenerStats::getTotalNanos).reversed());
+        return stats;
+    }
+
+    public static Map<String, Object> getStats() {
+        final Map<String, Object> stats = new ConcurrentHashMap<>();
+        stats.put("running", running);
+        stats.put("allocation_supported", THREADS != null);
+        stats.put("profiled_ms", getProfiledMillis());
+        stats.put("listeners", STATS.size());
+        long calls = 0L;
+        long nanos = 0L;
+        for (final ListenerStats listener : STATS.values()) {
+            calls += listener.getCalls();
+            nanos += listener.getTotalNanos();
+        }
+        stats.put("calls", calls);
+        stats.put("total_ms", nanos / 1_000_000.0);
+        return stats;
+    }
+
+    /**
+     * Counters of one registered listener
+     */
+    public static final class ListenerStats {
+
+        private final RegisteredListener registration;
+        private final LongAdder calls = new LongAdder();
+        private final LongAdder totalNanos = new LongAdder();
+        private final AtomicLong maxNanos = new AtomicLong();
+        private final LongAdder allocatedBytes = new LongAdder();
+
+        private ListenerStats(final RegisteredListener registration) {
+            this.registration = registration;
+        }
+
+        private void record(final long nanos, final long allocated) {
+            this.calls.increment();
+            this.totalNanos.add(nanos);
+            this.allocatedBytes.add(allocated);
+            this.maxNanos.accumulateAndGet(nanos, Math::max);
+        }
+
+        public String getPluginName() {
+            return this.registration.getPlugin().getName();
+        }
+
+        public String getListenerClass() {
+            return this.registration.getListener().getClass().getName();
+        }
+
+        /**
+         * The handler method as far as the executor tells, the listener class otherwise
+         */
+        public String getMethod() {
+            EventExecutor executor = this.registration.getExecutor();
+            if (executor instanceof final TimedEventExecutor timed) {
+                executor = timed.getExecutor();
+            }
+            final String description = executor.toString();
+            // Executors made by EventExecutor.create name their method
+            final int start = description.indexOf("['");
+            return start >= 0 && description.endsWith("']") ? description.substring(start + 2, description.length() - 2) : this.getListenerClass();
+        }
+
+        public String getPriority() {
+            return this.registration.getPriority().name();
+        }
+
+        public boolean isIgnoringCancelled() {
+            return this.registration.isIgnoringCancelled();
+        }
+
+        public long getCalls() {
+            return this.calls.sum();
+        }
+
+        public long getTotalNanos() {
+            return this.totalNanos.sum();
+        }
+
+        public long getMaxNanos() {
+            return this.maxNanos.get();
+        }
+
+        public long getAllocatedBytes() {
+            return this.allocatedBytes.sum();
+        }
+
+        public double getAverageNanos() {
+            final long calls = this.getCalls();
+            return calls == 0L ? 0.0 : (double) this.getTotalNanos() / calls;
+        }
+    }
+}
@@ -0,0 +1,661 @@
+package ru.playland.core.optimization;
+
+import java.lang.invoke.VarHandle;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Long Key Cache Tier
+ * Ограниченный кэш с примитивными long/int ключами и W-TinyLFU вытеснением
+ *
+ * <p>The tier is split into power-of-two stripes. Each stripe is an open addressed table with a fixed
+ * capacity (no resizing), a FIFO admission window holding ~1% of the entries and a main region guarded
+ * by a 4-bit count-min frequency sketch. When the window overflows, its oldest entry competes with a
+ * sampled victim from the main region and only the more frequently used key is kept.</p>
+ *
+ * <p>Reads are validated against a per-stripe sequence counter and retried if a writer raced them; only
+ * when writers keep racing a read does it take the stripe lock, so a present key is never reported as
+ * missing. Writes lock only their stripe. Neither path allocates.</p>
+ */
+public final class LongKeyCacheTier<V> {
+
+    @FunctionalInterface
+    public interface EvictionListener<V> {
+
+        /**
+         * Called with the stripe lock held, for entries dropped by the size bound or rejected on admission.
+         */
+        void onEvict(long key, V value);
+    }
+
+    private static final int SAMPLE_SIZE = 8;
+    private static final int READ_RETRIES = 4;
+
+    private static final byte REGION_WINDOW = 0;
+    private static final byte REGION_MAIN = 1;
+
+    private final String name;
+    private final Stripe[] stripes;
+    private final int stripeMask;
+    private final long ttl;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private final LongAdder rejections = new LongAdder();
+
+    /**
+     * @param name tier name used in statistics
+     * @param maxSize maximum number of entries over all stripes
+     * @param stripeCount number of stripes, rounded up to a power of two
+     * @param ttl entry lifetime in milliseconds, {@code <= 0} disables expiry
+     */
+    public LongKeyCacheTier(final String name, final int maxSize, final int stripeCount, final long ttl) {
+        if (maxSize <= 0) {
+            throw new IllegalArgumentException("maxSize must be positive, not " + maxSize);
+        }
+        final int stripeTotal = ceilPow2(Math.max(1, Math.min(stripeCount, maxSize)));
+        this.name = name;
+        this.ttl = ttl;
+        this.stripeMask = stripeTotal - 1;
+        this.stripes = new Stripe[stripeTotal];
+        final int perStripe = Math.max(1, (maxSize + stripeTotal - 1) / stripeTotal);
+        for (int i = 0; i < stripeTotal; ++i) {
+            this.stripes[i] = new Stripe(perStripe);
+        }
+    }
+
+    public LongKeyCacheTier(final String name, final int maxSize, final long ttl) {
+        this(name, maxSize, Runtime.getRuntime().availableProcessors() * 4, ttl);
+    }
+
+    private static int ceilPow2(final int value) {
+        return value <= 1 ? 1 : Integer.highestOneBit(value - 1) << 1;
+    }
+
+    private static long mix(long key) {
+        // murmur3 fmix64
+        key ^= key >>> 33;
+        key *= 0xFF51AFD7ED558CCDL;
+        key ^= key >>> 33;
+        key *= 0xC4CEB9FE1A85EC53L;
+        key ^= key >>> 33;
+        return key;
+    }
+
+    private Stripe stripeFor(final long hash) {
+        return this.stripes[(int)(hash >>> 40) & this.stripeMask];
+    }
+
+    private boolean isExpired(final long writeTime, final long now) {
+        return this.ttl > 0L && now - writeTime > this.ttl;
+    }
+
+    /**
+     * Get cached value, or {@code null} on miss
+     */
+    public V get(final long key) {
+        final long hash = mix(key);
+        final Stripe stripe = this.stripeFor(hash);
+        stripe.sketch.increment(hash);
+
+        final V value = stripe.read(key, hash, this.ttl > 0L ? System.currentTimeMillis() : 0L, this);
+        if (value == null) {
+            this.misses.increment();
+        } else {
+            this.hits.increment();
+        }
+        return value;
+    }
+
+    /**
+     * Check presence without touching statistics or frequencies
+     */
+    public boolean containsKey(final long key) {
+        final long hash = mix(key);
+        return this.stripeFor(hash).read(key, hash, this.ttl > 0L ? System.currentTimeMillis() : 0L, this) != null;
+    }
+
+    public void put(final long key, final V value) {
+        this.put(key, value, null);
+    }
+
+    /**
+     * Insert or replace a value. Entries pushed out by the size bound, including the new entry
+     * itself if it loses admission, are handed to {@code listener}.
+     */
+    public void put(final long key, final V value, final EvictionListener<? super V> listener) {
+        if (value == null) {
+            throw new NullPointerException("value");
+        }
+        final long hash = mix(key);
+        final Stripe stripe = this.stripeFor(hash);
+        stripe.sketch.increment(hash);
+
+        synchronized (stripe) {
+            stripe.beginWrite();
+            try {
+                stripe.insert(key, hash, value, System.currentTimeMillis(), listener, this);
+            } finally {
+                stripe.endWrite();
+            }
+        }
+    }
+
+    /**
+     * Insert a value unless the key still has one that has not expired, returns whether it was inserted
+     */
+    public boolean putIfAbsent(final long key, final V value, final EvictionListener<? super V> listener) {
+        if (value == null) {
+            throw new NullPointerException("value");
+        }
+        final long hash = mix(key);
+        final Stripe stripe = this.stripeFor(hash);
+        stripe.sketch.increment(hash);
+
+        synchronized (stripe) {
+            final long now = System.currentTimeMillis();
+            final int slot = stripe.find(key, hash);
+            if (slot >= 0 && !this.isExpired(stripe.writeTimes[slot], now)) {
+                return false;
+            }
+            stripe.beginWrite();
+            try {
+                stripe.insert(key, hash, value, now, listener, this);
+            } finally {
+                stripe.endWrite();
+            }
+            return true;
+        }
+    }
+
+    /**
+     * Remove key only while it still maps to this very {@code value}, returns whether it was removed
+     */
+    public boolean remove(final long key, final V value) {
+        final long hash = mix(key);
+        final Stripe stripe = this.stripeFor(hash);
+        synchronized (stripe) {
+            final int slot = stripe.find(key, hash);
+            if (slot < 0 || stripe.values[slot] != value) {
+                return false;
+            }
+            stripe.beginWrite();
+            try {
+                stripe.removeAt(slot);
+            } finally {
+                stripe.endWrite();
+            }
+            return true;
+        }
+    }
+
+    /**
+     * Remove key, returning the previous value
+     */
+    @SuppressWarnings("unchecked")
+    public V remove(final long key) {
+        final long hash = mix(key);
+        final Stripe stripe = this.stripeFor(hash);
+        synchronized (stripe) {
+            final int slot = stripe.find(key, hash);
+            if (slot < 0) {
+                return null;
+            }
+            stripe.beginWrite();
+            try {
+                return (V)stripe.removeAt(slot);
+            } finally {
+                stripe.endWrite();
+            }
+        }
+    }
+
+    /**
+     * Drop expired entries, returns the amount removed
+     */
+    public int cleanUp() {
+        if (this.ttl <= 0L) {
+            return 0;
+        }
+        final long now = System.currentTimeMillis();
+        int removed = 0;
+        for (final Stripe stripe : this.stripes) {
+            synchronized (stripe) {
+                stripe.beginWrite();
+                try {
+                    removed += stripe.removeExpired(now, this);
+                } finally {
+                    stripe.endWrite();
+                }
+            }
+        }
+        return removed;
+    }
+
+    public void clear() {
+        for (final Stripe stripe : this.stripes) {
+            synchronized (stripe) {
+                stripe.beginWrite();
+                try {
+                    stripe.clear();
+                } finally {
+                    stripe.endWrite();
+                }
+            }
+        }
+    }
+
+    public int size() {
+        int size = 0;
+        for (final Stripe stripe : this.stripes) {
+            size += stripe.size;
+        }
+        return size;
+    }
+
+    public int maxSize() {
+        return this.stripes.length * this.stripes[0].maxSize;
+    }
+
+    /**
+     * Entries in the admission windows of all stripes
+     */
+    int windowSize() {
+        int size = 0;
+        for (final Stripe stripe : this.stripes) {
+            synchronized (stripe) {
+                size += stripe.windowSize;
+            }
+        }
+        return size;
+    }
+
+    public String getName() { return name; }
+    public long getHits() { return hits.sum(); }
+    public long getMisses() { return misses.sum(); }
+    public long getEvictions() { return evictions.sum(); }
+    public long getRejections() { return rejections.sum(); }
+
+    public double getHitRate() {
+        final long hits = this.hits.sum();
+        final long total = hits + this.misses.sum();
+        return total == 0L ? 0.0 : (hits * 100.0) / total;
+    }
+
+    /**
+     * Single stripe: open addressed table (linear probing, backward shift deletion) plus window ring
+     */
+    private static final class Stripe {
+
+        private final int maxSize;
+        private final int windowMax;
+        private final int mask;
+
+        private final long[] keys;
+        private final Object[] values; // null marks an empty slot
+        private final long[] writeTimes;
+        private final byte[] regions;
+
+        // FIFO of the keys in the window, oldest at the head, always the same keys as the window region
+        private final long[] windowRing;
+        private int windowHead;
+        private int windowTail;
+        private int windowRingSize;
+
+        private final FrequencySketch sketch;
+
+        private volatile int version; // odd while a write is in progress
+        private int size;
+        private int windowSize;
+        private int sampleCursor;
+
+        Stripe(final int maxSize) {
+            this.maxSize = maxSize;
+            this.windowMax = Math.max(1, maxSize / 100);
+            final int capacity = ceilPow2(Math.max(4, maxSize * 2));
+            this.mask = capacity - 1;
+            this.keys = new long[capacity];
+            this.values = new Object[capacity];
+            this.writeTimes = new long[capacity];
+            this.regions = new byte[capacity];
+            // the window briefly holds one entry more than windowMax until the insert ages one out
+            this.windowRing = new long[this.windowMax + 1];
+            this.sketch = new FrequencySketch(maxSize);
+        }
+
+        void beginWrite() {
+            this.version = this.version + 1;
+            VarHandle.storeStoreFence();
+        }
+
+        void endWrite() {
+            this.version = this.version + 1;
+        }
+
+        @SuppressWarnings("unchecked")
+        <V> V read(final long key, final long hash, final long now, final LongKeyCacheTier<V> tier) {
+            for (int attempt = 0; attempt < READ_RETRIES; ++attempt) {
+                final int startVersion = this.version;
+                if ((startVersion & 1) != 0) {
+                    Thread.onSpinWait();
+                    continue;
+                }
+
+                Object found = null;
+                long writeTime = 0L;
+                for (int slot = (int)hash & this.mask, probes = 0; probes <= this.mask; slot = (slot + 1) & this.mask, ++probes) {
+                    final Object value = this.values[slot];
+                    if (value == null) {
+                        break;
+                    }
+                    if (this.keys[slot] == key) {
+                        found = value;
+                        writeTime = this.writeTimes[slot];
+                        break;
+                    }
+                }
+
+                VarHandle.loadLoadFence();
+                if (this.version != startVersion) {
+                    continue;
+                }
+                if (found == null || tier.isExpired(writeTime, now)) {
+                    return null;
+                }
+                return (V)found;
+            }
+            // Heavily contended, read under the lock: a false miss would let a caching layer above
+            // fall through to an older copy of the value
+            synchronized (this) {
+                final int slot = this.find(key, hash);
+                if (slot < 0 || tier.isExpired(this.writeTimes[slot], now)) {
+                    return null;
+                }
+                return (V)this.values[slot];
+            }
+        }
+
+        int find(final long key, final long hash) {
+            for (int slot = (int)hash & this.mask; ; slot = (slot + 1) & this.mask) {
+                if (this.values[slot] == null) {
+                    return -1;
+                }
+                if (this.keys[slot] == key) {
+                    return slot;
+                }
+            }
+        }
+
+        <V> void insert(final long key, final long hash, final V value, final long now,
+                        final EvictionListener<? super V> listener, final LongKeyCacheTier<V> tier) {
+            int slot = (int)hash & this.mask;
+            while (this.values[slot] != null) {
+                if (this.keys[slot] == key) {
+                    // replace in place, region is kept
+                    this.values[slot] = value;
+                    this.writeTimes[slot] = now;
+                    return;
+                }
+                slot = (slot + 1) & this.mask;
+            }
+
+            this.keys[slot] = key;
+            this.values[slot] = value;
+            this.writeTimes[slot] = now;
+            this.regions[slot] = REGION_WINDOW;
+            ++this.size;
+            ++this.windowSize;
+            this.pushWindow(key);
+
+            while (this.windowSize > this.windowMax) {
+                this.evictFromWindow(now, listener, tier);
+            }
+        }
+
+        private void pushWindow(final long key) {
+            this.windowRing[this.windowTail] = key;
+            this.windowTail = (this.windowTail + 1) % this.windowRing.length;
+            ++this.windowRingSize;
+        }
+
+        private void popWindow() {
+            this.windowHead = (this.windowHead + 1) % this.windowRing.length;
+            --this.windowRingSize;
+        }
+
+        /**
+         * Take a key out of the ring, the younger keys move up one place. The window is ~1% of the stripe and
+         * the key aging out of it is found at the head, so the scan stays short.
+         */
+        private void unlinkWindow(final long key) {
+            final int length = this.windowRing.length;
+            for (int i = 0, index = this.windowHead; i < this.windowRingSize; ++i, index = (index + 1) % length) {
+                if (this.windowRing[index] != key) {
+                    continue;
+                }
+                if (i == 0) {
+                    this.popWindow();
+                    return;
+                }
+                for (int next = (index + 1) % length; next != this.windowTail; index = next, next = (next + 1) % length) {
+                    this.windowRing[index] = this.windowRing[next];
+                }
+                this.windowTail = index;
+                --this.windowRingSize;
+                return;
+            }
+        }
+
+        @SuppressWarnings("unchecked")
+        private <V> void evictFromWindow(final long now, final EvictionListener<? super V> listener, final LongKeyCacheTier<V> tier) {
+            while (this.windowRingSize > 0) {
+                final long candidateKey = this.windowRing[this.windowHead];
+                final int candidate = this.find(candidateKey, mix(candidateKey));
+                if (candidate < 0 || this.regions[candidate] != REGION_WINDOW) {
+                    // cannot happen while removeAt keeps the ring in step, never let it wedge the window
+                    this.popWindow();
+                    continue;
+                }
+
+                if (this.size <= this.maxSize) {
+                    this.promote(candidate);
+                    return;
+                }
+
+                final int victim = this.sampleMainVictim(now, tier);
+                if (victim < 0) {
+                    // main region is empty, the window is the whole stripe and ages out in FIFO order
+                    final V candidateValue = (V)this.removeAt(candidate);
+                    tier.evictions.increment();
+                    if (listener != null) {
+                        listener.onEvict(candidateKey, candidateValue);
+                    }
+                    return;
+                }
+
+                final boolean victimExpired = tier.isExpired(this.writeTimes[victim], now);
+                if (victimExpired || this.sketch.frequency(mix(candidateKey)) > this.sketch.frequency(mix(this.keys[victim]))) {
+                    final long victimKey = this.keys[victim];
+                    this.promote(candidate);
+                    final V victimValue = (V)this.removeAt(victim);
+                    tier.evictions.increment();
+                    if (listener != null && !victimExpired) {
+                        listener.onEvict(victimKey, victimValue);
+                    }
+                } else {
+                    final V candidateValue = (V)this.removeAt(candidate);
+                    tier.rejections.increment();
+                    if (listener != null) {
+                        listener.onEvict(candidateKey, candidateValue);
+                    }
+                }
+                return;
+            }
+            // the ring lost track of the window: whatever the region bytes still mark as window can never age
+            // out through the ring, so hand it to the main region where sampling reaches it
+            for (int slot = 0; slot <= this.mask; ++slot) {
+                if (this.values[slot] != null && this.regions[slot] == REGION_WINDOW) {
+                    this.regions[slot] = REGION_MAIN;
+                }
+            }
+            this.windowSize = 0;
+        }
+
+        /**
+         * Move the oldest window entry, which sits at the head of the ring, into the main region
+         */
+        private void promote(final int slot) {
+            this.popWindow();
+            this.regions[slot] = REGION_MAIN;
+            --this.windowSize;
+        }
+
+        private <V> int sampleMainVictim(final long now, final LongKeyCacheTier<V> tier) {
+            int victim = -1;
+            int victimFrequency = Integer.MAX_VALUE;
+            int sampled = 0;
+            int slot = this.sampleCursor;
+            for (int scanned = 0; scanned <= this.mask && sampled < SAMPLE_SIZE; ++scanned, slot = (slot + 1) & this.mask) {
+                if (this.values[slot] == null || this.regions[slot] != REGION_MAIN) {
+                    continue;
+                }
+                ++sampled;
+                if (tier.isExpired(this.writeTimes[slot], now)) {
+                    victim = slot;
+                    break;
+                }
+                final int frequency = this.sketch.frequency(mix(this.keys[slot]));
+                if (frequency < victimFrequency) {
+                    victimFrequency = frequency;
+                    victim = slot;
+                }
+            }
+            // advance by a large odd stride so successive samples spread over the table
+            this.sampleCursor = (slot + 0x9E3779B9) & this.mask;
+            return victim;
+        }
+
+        Object removeAt(int slot) {
+            final Object removed = this.values[slot];
+            if (this.regions[slot] == REGION_WINDOW) {
+                this.unlinkWindow(this.keys[slot]);
+                --this.windowSize;
+            }
+            --this.size;
+
+            // backward shift deletion keeps probe sequences intact without tombstones
+            int next = slot;
+            for (;;) {
+                next = (next + 1) & this.mask;
+                if (this.values[next] == null) {
+                    break;
+                }
+                final int ideal = (int)mix(this.keys[next]) & this.mask;
+                final boolean between = slot <= next ? (slot < ideal && ideal <= next) : (slot < ideal || ideal <= next);
+                if (between) {
+                    continue;
+                }
+                this.keys[slot] = this.keys[next];
+                this.values[slot] = this.values[next];
+                this.writeTimes[slot] = this.writeTimes[next];
+                this.regions[slot] = this.regions[next];
+                slot = next;
+            }
+            this.values[slot] = null;
+            this.keys[slot] = 0L;
+            return removed;
+        }
+
+        <V> int removeExpired(final long now, final LongKeyCacheTier<V> tier) {
+            int removed = 0;
+            for (int slot = 0; slot <= this.mask; ) {
+                if (this.values[slot] != null && tier.isExpired(this.writeTimes[slot], now)) {
+                    this.removeAt(slot);
+                    ++removed;
+                    continue; // slot now holds a shifted entry, re-check it
+                }
+                ++slot;
+            }
+            return removed;
+        }
+
+        void clear() {
+            java.util.Arrays.fill(this.values, null);
+            this.size = 0;
+            this.windowSize = 0;
+            this.windowHead = this.windowTail = this.windowRingSize = 0;
+            this.sketch.clear();
+        }
+    }
+
+    /**
+     * 4-bit count-min sketch, counters are halved every 10 * maxSize increments so old popularity decays.
+     * Updates are racy on purpose, a lost increment only makes the estimate slightly lower.
+     */
+    private static final class FrequencySketch {
+
+        private static final long[] SEEDS = {
+            0xC3A5C85C97CB3127L, 0xB492B66FBE98F273L, 0x9AE16A3B2F90404FL, 0xCBF29CE484222325L
+        };
+        private static final long RESET_MASK = 0x7777777777777777L;
+
+        private final long[] table;
+        private final int tableMask;
+        private final int sampleSize;
+        private int additions;
+
+        FrequencySketch(final int maxSize) {
+            final int length = ceilPow2(Math.max(8, maxSize));
+            this.table = new long[length];
+            this.tableMask = length - 1;
+            this.sampleSize = Math.max(10, maxSize * 10);
+        }
+
+        private int indexOf(final long hash, final int depth) {
+            long h = (hash + SEEDS[depth]) * SEEDS[depth];
+            h += h >>> 32;
+            return (int)h & this.tableMask;
+        }
+
+        int frequency(final long hash) {
+            final int start = ((int)hash & 3) << 2;
+            int frequency = Integer.MAX_VALUE;
+            for (int depth = 0; depth < 4; ++depth) {
+                final int offset = (start + depth) << 2;
+                final int count = (int)((this.table[this.indexOf(hash, depth)] >>> offset) & 0xFL);
+                frequency = Math.min(frequency, count);
+            }
+            return frequency;
+        }
+
+        void increment(final long hash) {
+            final int start = ((int)hash & 3) << 2;
+            boolean added = false;
+            for (int depth = 0; depth < 4; ++depth) {
+                final int index = this.indexOf(hash, depth);
+                final int offset = (start + depth) << 2;
+                final long mask = 0xFL << offset;
+                final long current = this.table[index];
+                if ((current & mask) != mask) {
+                    this.table[index] = current + (1L << offset);
+                    added = true;
+                }
+            }
+            if (added && ++this.additions >= this.sampleSize) {
+                this.reset();
+            }
+        }
+
+        private void reset() {
+            for (int i = 0; i < this.table.length; ++i) {
+                this.table[i] = (this.table[i] >>> 1) & RESET_MASK;
+            }
+            this.additions = this.additions >>> 1;
+        }
+
+        void clear() {
+            java.util.Arrays.fill(this.table, 0L);
+            this.additions = 0;
+        }
+    }
+}
@@ -0,0 +1,200 @@
+package ru.playland.core.optimization;
+
+import java.io.IOException;
+import java.lang.reflect.Field;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Mapped Region Reader
+ * Чтение чанков из region-файлов через отображение файла в память
+ *
+ * <p>Replaces the {@code FileChannel#read} of {@code RegionFile#getChunkDataInputStream} with a copy out of a
+ * read-only mapping of the whole region file. A read no longer costs a system call, and only the declared
+ * payload is copied instead of zeroing and filling every sector of the chunk, which pays off for read-heavy
+ * work like mass teleports, map renders and pregeneration checks.</p>
+ *
+ * <p>The payload is copied to the heap on purpose: the chunk system decompresses it later on another thread,
+ * while writes of other chunks may already reuse the sectors it came from. The header and sector table are
+ * already kept in memory by {@code RegionFile}.</p>
+ *
+ * <p>Region files only grow while they are open, so a mapping never reaches past the end of the file. When a
+ * chunk lies beyond the current mapping the file is mapped again at its new size and the old mapping is
+ * released, as is the last one when the region file is closed, so unloaded regions don't keep address space
+ * and file handles until the next GC. Files larger than 2 GiB, files truncated behind the server's back and
+ * files the system refuses to map fall back to channel reads.</p>
+ *
+ * <p>Enabled with {@code -Dplayland.region.mmap=true}.</p>
+ */
+public final class MappedRegionReader {
+
+    private static final Logger LOGGER = Logger.getLogger("PlayLand-MappedRegion");
+
+    public static final boolean ENABLED = Boolean.getBoolean("playland.region.mmap");
+
+    // Statistics
+    private static final LongAdder mappedReads = new LongAdder();
+    private static final LongAdder fallbackReads = new LongAdder();
+    private static final LongAdder remaps = new LongAdder();
+    private static final LongAdder bytesCopied = new LongAdder();
+    private static final LongAdder mapFailures = new LongAdder();
+    private static final LongAdder releases = new LongAdder();
+
+    static {
+        if (ENABLED) {
+            LOGGER.info("🗺️ Memory mapped region file reads enabled");
+        }
+    }
+
+    private static final sun.misc.Unsafe UNSAFE = findUnsafe();
+
+    // Guarded by this reader, a mapping is only released while nothing copies from it
+    private MappedByteBuffer mapped;
+    private boolean disabled;
+
+    private MappedRegionReader() {}
+
+    private static sun.misc.Unsafe findUnsafe() {
+        try {
+            final Field field = sun.misc.Unsafe.class.getDeclaredField("theUnsafe");
+            field.setAccessible(true);
+            return (sun.misc.Unsafe) field.get(null);
+        } catch (final ReflectiveOperationException | RuntimeException e) {
+            LOGGER.log(Level.WARNING, "⚠️ Unable to release region mappings early, leaving them to the garbage collector", e);
+            return null;
+        }
+    }
+
+    /**
+     * Reader for one region file, {@code null} if mapped reads are disabled
+     */
+    public static MappedRegionReader create() {
+        return ENABLED ? new MappedRegionReader() : null;
+    }
+
+    /**
+     * Reads the sectors of a chunk like {@code channel.read(buffer, offset)} into a buffer of {@code length} bytes.
+     *
+     * @return a heap buffer positioned after the data read, to be flipped, or {@code null} to read from the channel instead
+     */
+    public synchronized ByteBuffer read(final FileChannel channel, final long offset, final int length) throws IOException {
+        if (this.disabled) {
+            fallbackReads.increment();
+            return null;
+        }
+
+        MappedByteBuffer mapped = this.mapped;
+        if (mapped == null || offset + length > mapped.capacity()) {
+            mapped = this.remap(channel, mapped);
+            if (mapped == null) {
+                fallbackReads.increment();
+                return null;
+            }
+        }
+
+        final long available = mapped.capacity() - offset;
+        if (available <= 0L) {
+            // Nothing there, same as reading at the end of the file
+            return ByteBuffer.allocate(0);
+        }
+
+        final int index = (int) offset;
+        int copy = (int) Math.min(length, available);
+        if (copy >= 4) {
+            // Copy the declared payload only, a broken length is left for the caller to report
+            final int declared = mapped.getInt(index);
+            if (declared > 0 && declared <= copy - 4) {
+                copy = declared + 4;
+            }
+        }
+
+        final byte[] bytes = new byte[copy];
+        try {
+            mapped.get(index, bytes, 0, copy);
+        } catch (final InternalError error) {
+            // The file was truncated under the mapping
+            LOGGER.log(Level.WARNING, "⚠️ Region file changed under its mapping, falling back to channel reads", error);
+            this.release();
+            this.disabled = true;
+            fallbackReads.increment();
+            return null;
+        }
+
+        mappedReads.increment();
+        bytesCopied.add(copy);
+        return ByteBuffer.wrap(bytes).position(copy);
+    }
+
+    private MappedByteBuffer remap(final FileChannel channel, final MappedByteBuffer current) throws IOException {
+        final long size = channel.size();
+        if (current != null && size <= current.capacity()) {
+            // Not grown, the chunk is at the end of an unpadded file
+            return current;
+        }
+        if (size > Integer.MAX_VALUE) {
+            LOGGER.warning("⚠️ Region file of " + size + " bytes is too large to map, falling back to channel reads");
+            this.release();
+            this.disabled = true;
+            return null;
+        }
+
+        final MappedByteBuffer mapped;
+        try {
+            mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0L, size);
+        } catch (final IOException | OutOfMemoryError e) {
+            // "Map failed", out of address space or map count
+            LOGGER.log(Level.WARNING, "⚠️ Unable to map region file of " + size + " bytes, falling back to channel reads", e);
+            this.release();
+            this.disabled = true;
+            mapFailures.increment();
+            return null;
+        }
+        this.release();
+        this.mapped = mapped;
+        remaps.increment();
+        return mapped;
+    }
+
+    /**
+     * Releases the mapping, when the region file is closed. Later reads use the channel.
+     */
+    public synchronized void close() {
+        this.release();
+        this.disabled = true;
+    }
+
+    private void release() {
+        final MappedByteBuffer mapped = this.mapped;
+        this.mapped = null;
+        if (mapped == null || UNSAFE == null) {
+            return;
+        }
+        try {
+            UNSAFE.invokeCleaner(mapped);
+            releases.increment();
+        } catch (final RuntimeException e) {
+            LOGGER.log(Level.WARNING, "⚠️ Unable to release region mapping, leaving it to the garbage collector", e);
+        }
+    }
+
+    public static Map<String, Object> getStats() {
+        final Map<String, Object> stats = new ConcurrentHashMap<>();
+        stats.put("enabled", ENABLED);
+        stats.put("mapped_reads", mappedReads.sum());
+        stats.put("fallback_reads", fallbackReads.sum());
+        stats.put("remaps", remaps.sum());
+        stats.put("bytes_copied", bytesCopied.sum());
+        stats.put("map_failures", mapFailures.sum());
+        stats.put("releases", releases.sum());
+        return stats;
+    }
+
+    public static long getMappedReads() { return mappedReads.sum(); }
+    public static long getRemaps() { return remaps.sum(); }
+}
@@ -0,0 +1,513 @@
+package ru.playland.core.optimization;
+
+import ca.spottedleaf.moonrise.common.list.EntityList;
+import ca.spottedleaf.moonrise.common.util.CoordinateUtils;
+import ca.spottedleaf.moonrise.patches.chunk_system.level.entity.ChunkEntitySlices;
+import ca.spottedleaf.moonrise.patches.chunk_system.level.entity.EntityLookup;
+import io.papermc.paper.entity.activation.ActivationType;
+import it.unimi.dsi.fastutil.longs.Long2IntOpenHashMap;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Logger;
+import javax.annotation.Nullable;
+import net.minecraft.server.MinecraftServer;
+import net.minecraft.server.level.FullChunkStatus;
+import net.minecraft.server.level.ServerLevel;
+import net.minecraft.server.level.ServerPlayer;
+import net.minecraft.util.Mth;
+import net.minecraft.world.entity.Entity;
+import net.minecraft.world.entity.Marker;
+import net.minecraft.world.level.Level;
+import net.minecraft.world.phys.AABB;
+import org.spigotmc.SpigotWorldConfig;
+
+/**
+ * Packed Activation Range
+ * Упакованная таблица активации сущностей для Entity Activation Range
+ *
+ * <p>{@code ActivationRange#activateEntities} collects the entities around every player into a new list and
+ * checks each one against the activation box of its type. In a mob farm with a few players nearby the same tens of
+ * thousands of entities are listed and walked once per player, every tick. This reads the entity slices of every
+ * chunk a player reaches once per tick, no matter how many players reach it, and checks each entity against the
+ * first player right away. Entities still inactive after that are kept in a {@link Table}, bounding box, activation
+ * type and whether the entity is always active as parallel primitive arrays grouped by chunk, and the next players
+ * only scan those plain arrays. Entities that became active are written back at the end.</p>
+ *
+ * <p>The result is the same as the vanilla loop: an entity is activated for the tick when it was not already
+ * active, it intersects the largest box of a player and, unless it is always active, the box of its type.
+ * Markers are left out unless they tick. Spectators are skipped the same way when configured. Immunities and
+ * {@code checkIfActive} are untouched.</p>
+ *
+ * <p>Keeping entities only pays off for chunks players share: with one player per area every entity is checked
+ * once either way, and storing the inactive ones made the pass about 1.3x slower than the vanilla loop. So the
+ * chunk areas of the players are compared first, and a player whose area overlaps nobody else's checks its
+ * entities straight from the slices and keeps none of them. {@code PackedActivationRangeBenchmark} has the
+ * numbers.</p>
+ *
+ * <p>Main thread only, on by default, {@code -Dplayland.activation.packed=false} goes back to the vanilla loop.</p>
+ */
+public final class PackedActivationRange {
+
+    private static final Logger LOGGER = Logger.getLogger("PlayLand-PackedActivation");
+
+    public static final boolean ENABLED = Boolean.parseBoolean(System.getProperty("playland.activation.packed", "true"));
+
+    private static final ActivationType[] TYPES = ActivationType.values();
+    private static final Map<Level, Table<Entity>> TABLES = new ConcurrentHashMap<>();
+    private static final Activator<Entity> ACTIVATOR = (entity, tick) -> entity.activatedTick = tick;
+    private static final int[] RANGES = new int[TYPES.length];
+    // Chunk area of each player and whether another player reaches into it, reused every tick
+    private static int[] areas = new int[4 * 16];
+    private static boolean[] shared = new boolean[16];
+
+    // Statistics
+    private static final LongAdder ticks = new LongAdder();
+    private static final LongAdder lonePlayers = new LongAdder();
+    private static final LongAdder entitiesPacked = new LongAdder();
+    private static final LongAdder entitiesScanned = new LongAdder();
+    private static final LongAdder entitiesActivated = new LongAdder();
+    private static final LongAdder nanos = new LongAdder();
+
+    static {
+        if (ENABLED) {
+            LOGGER.info("🧮 Packed entity activation range enabled");
+        }
+    }
+
+    private PackedActivationRange() {}
+
+    /**
+     * Sets the activation state of an entity once it turned out active this tick
+     */
+    @FunctionalInterface
+    public interface Activator<E> {
+
+        void activate(E entity, long tick);
+    }
+
+    /**
+     * Activates the entities in range of the players of {@code world}, like the player loop of
+     * {@code ActivationRange#activateEntities}
+     */
+    public static void activateEntities(final ServerLevel world, final int maxRange) {
+        final long start = System.nanoTime();
+        final SpigotWorldConfig config = world.spigotConfig;
+        final int[] ranges = RANGES;
+        for (final ActivationType type : TYPES) {
+            ranges[type.ordinal()] = switch (type) {
+                case WATER -> config.waterActivationRange;
+                case FLYING_MONSTER -> config.flyingMonsterActivationRange;
+                case VILLAGER -> config.villagerActivationRange;
+                case MONSTER -> config.monsterActivationRange;
+                case ANIMAL -> config.animalActivationRange;
+                case RAIDER -> config.raiderActivationRange;
+                case MISC -> config.miscActivationRange;
+            };
+        }
+
+        final long tick = MinecraftServer.currentTick;
+        final double height = world.getHeight();
+        final Table<Entity> table = TABLES.computeIfAbsent(world, key -> new Table<>());
+        final EntityLookup lookup = world.moonrise$getEntityLookup();
+        final boolean tickMarkers = world.paperConfig().entities.markers.tick;
+        final int count = shareChunks(world, maxRange);
+        int index = 0;
+        for (final ServerPlayer player : world.players()) {
+            player.activatedTick = tick;
+            if (config.ignoreSpectatorActivation && player.isSpectator()) {
+                continue;
+            }
+            final boolean shared = PackedActivationRange.shared[index++];
+            if (!shared) {
+                lonePlayers.increment();
+            }
+            final AABB box = player.getBoundingBox();
+            table.player(box.minX, box.minY, box.minZ, box.maxX, box.maxY, box.maxZ, maxRange, ranges, height, tick, shared);
+            for (int chunkZ = table.minChunkZ(); chunkZ <= table.maxChunkZ(); ++chunkZ) {
+                for (int chunkX = table.minChunkX(); chunkX <= table.maxChunkX(); ++chunkX) {
+                    if (table.startChunk(chunkX, chunkZ)) {
+                        pack(table, lookup.getChunk(chunkX, chunkZ), tickMarkers);
+                    }
+                }
+            }
+            entitiesScanned.add(table.activate());
+        }
+        if (count == 0) {
+            return;
+        }
+        entitiesPacked.add(table.size());
+        entitiesActivated.add(table.apply(ACTIVATOR));
+        ticks.increment();
+        nanos.add(System.nanoTime() - start);
+    }
+
+    // Fills the chunk areas of the players checked and whether they overlap, returns how many there are
+    private static int shareChunks(final ServerLevel world, final int maxRange) {
+        final boolean ignoreSpectators = world.spigotConfig.ignoreSpectatorActivation;
+        int count = 0;
+        for (final ServerPlayer player : world.players()) {
+            if (ignoreSpectators && player.isSpectator()) {
+                continue;
+            }
+            if (count == shared.length) {
+                areas = Arrays.copyOf(areas, count << 3);
+                shared = Arrays.copyOf(shared, count << 1);
+            }
+            final AABB box = player.getBoundingBox();
+            Table.area(areas, count++, box.minX - maxRange, box.minZ - maxRange, box.maxX + maxRange, box.maxZ + maxRange);
+        }
+        Table.overlap(areas, count, shared);
+        return count;
+    }
+
+    private static void pack(final Table<Entity> table, @Nullable final ChunkEntitySlices chunk, final boolean tickMarkers) {
+        // Like EntityLookup#getEntities, only chunks with full status
+        if (chunk == null || !chunk.status.isOrAfter(FullChunkStatus.FULL)) {
+            return;
+        }
+        final EntityList entities = chunk.getEntityList();
+        final Entity[] raw = entities.getRawData();
+        for (int i = 0, len = entities.size(); i < len; ++i) {
+            final Entity entity = raw[i];
+            if (!tickMarkers && entity instanceof Marker) {
+                continue;
+            }
+            final AABB box = entity.getBoundingBox();
+            table.add(entity, box.minX, box.minY, box.minZ, box.maxX, box.maxY, box.maxZ, entity.activatedTick,
+                entity.activationType.ordinal(), entity.defaultActivationState);
+        }
+    }
+
+    /**
+     * Forgets a world, called when it is unloaded
+     */
+    public static void clear(final Level level) {
+        TABLES.remove(level);
+    }
+
+    public static Map<String, Object> getStats() {
+        final Map<String, Object> stats = new ConcurrentHashMap<>();
+        stats.put("enabled", ENABLED);
+        stats.put("ticks", ticks.sum());
+        stats.put("lone_players", lonePlayers.sum());
+        stats.put("entities_packed", entitiesPacked.sum());
+        stats.put("entities_scanned", entitiesScanned.sum());
+        stats.put("entities_activated", entitiesActivated.sum());
+        final long ticks = PackedActivationRange.ticks.sum();
+        stats.put("avg_activation_us", ticks == 0L ? 0.0 : nanos.sum() / 1000.0 / ticks);
+        return stats;
+    }
+
+    /**
+     * Activation state of the inactive entities around the players of one world, in columns and grouped by chunk,
+     * reused every tick
+     *
+     * <p>For each player in turn: {@link #player} sets its boxes, the chunks its largest box reaches into that no
+     * player reached before are added with {@link #startChunk} and {@link #add}, which checks every entity against
+     * this player right away, then {@link #activate()} scans the chunks added for earlier players. Only entities
+     * still inactive are kept, so later players scan what nobody activated yet, and only for players whose chunks
+     * are {@linkplain #overlap shared}.</p>
+     */
+    public static final class Table<E> {
+        private final Columns columns = new Columns();
+        private final Long2IntOpenHashMap slices = new Long2IntOpenHashMap();
+        private int[] sliceStarts = new int[16];
+        private int[] sliceEnds = new int[16];
+        // Player the chunk was added for, its entities were checked against it already
+        private int[] sliceOwners = new int[16];
+        private int sliceCount;
+        private int size;
+        private Object[] activated = new Object[16];
+        private int activatedCount;
+
+        // The current player
+        private int player;
+        private long tick;
+        private boolean shared;
+        private final double[] boxes = new double[(TYPES.length + 1) * 6];
+        private int minChunkX;
+        private int minChunkZ;
+        private int maxChunkX;
+        private int maxChunkZ;
+
+        public Table() {
+            this.slices.defaultReturnValue(-1);
+        }
+
+        /**
+         * First chunk of the chunks an area reaches into, with the same margin as {@code EntityLookup#getEntities}
+         */
+        public static int minChunk(final double min) {
+            return (Mth.floor(min) - 2) >> 4;
+        }
+
+        /**
+         * Last chunk of the chunks an area reaches into
+         */
+        public static int maxChunk(final double max) {
+            return (Mth.floor(max) + 2) >> 4;
+        }
+
+        /**
+         * Stores the chunks an area reaches into as the {@code index}th area of {@code areas}, four ints each
+         */
+        public static void area(final int[] areas, final int index, final double minX, final double minZ,
+                                final double maxX, final double maxZ) {
+            final int i = index * 4;
+            areas[i] = minChunk(minX);
+            areas[i + 1] = minChunk(minZ);
+            areas[i + 2] = maxChunk(maxX);
+            areas[i + 3] = maxChunk(maxZ);
+        }
+
+        /**
+         * Sets {@code shared[i]} for each of the first {@code count} areas of {@code areas} that reaches into a chunk
+         * of another one
+         */
+        public static void overlap(final int[] areas, final int count, final boolean[] shared) {
+            Arrays.fill(shared, 0, count, false);
+            for (int a = 0; a < count; ++a) {
+                final int i = a * 4;
+                for (int b = a + 1; b < count; ++b) {
+                    final int j = b * 4;
+                    if (areas[i] <= areas[j + 2] && areas[j] <= areas[i + 2]
+                        && areas[i + 1] <= areas[j + 3] && areas[j + 1] <= areas[i + 3]) {
+                        shared[a] = true;
+                        shared[b] = true;
+                    }
+                }
+            }
+        }
+
+        /**
+         * Moves on to the next player
+         *
+         * @param ranges activation range of each {@link ActivationType}
+         * @param height vertical inflation of the boxes
+         * @param shared whether the chunks of this player are reached by another one, otherwise its entities are
+         *               only checked and not kept
+         */
+        public void player(final double minX, final double minY, final double minZ, final double maxX, final double maxY,
+                           final double maxZ, final int maxRange, final int[] ranges, final double height, final long tick,
+                           final boolean shared) {
+            final double[] boxes = this.boxes;
+            for (int type = 0; type <= ranges.length; ++type) {
+                // The largest box comes last
+                final int range = type == ranges.length ? maxRange : ranges[type];
+                final int box = type * 6;
+                boxes[box] = minX - range;
+                boxes[box + 1] = minY - height;
+                boxes[box + 2] = minZ - range;
+                boxes[box + 3] = maxX + range;
+                boxes[box + 4] = maxY + height;
+                boxes[box + 5] = maxZ + range;
+            }
+            final int area = ranges.length * 6;
+            this.minChunkX = minChunk(boxes[area]);
+            this.minChunkZ = minChunk(boxes[area + 2]);
+            this.maxChunkX = maxChunk(boxes[area + 3]);
+            this.maxChunkZ = maxChunk(boxes[area + 5]);
+            this.tick = tick;
+            this.shared = shared;
+            ++this.player;
+        }
+
+        public int minChunkX() {
+            return this.minChunkX;
+        }
+
+        public int minChunkZ() {
+            return this.minChunkZ;
+        }
+
+        public int maxChunkX() {
+            return this.maxChunkX;
+        }
+
+        public int maxChunkZ() {
+            return this.maxChunkZ;
+        }
+
+        /**
+         * Starts the slice of a chunk, the entities added next belong to it
+         *
+         * @return false if the chunk was added for an earlier player
+         */
+        public boolean startChunk(final int chunkX, final int chunkZ) {
+            if (!this.shared) {
+                // Nothing is kept, no need to remember the chunk
+                return true;
+            }
+            final int slice = this.sliceCount;
+            if (this.slices.putIfAbsent(CoordinateUtils.getChunkKey(chunkX, chunkZ), slice) >= 0) {
+                return false;
+            }
+            if (slice == this.sliceStarts.length) {
+                this.sliceStarts = Arrays.copyOf(this.sliceStarts, slice << 1);
+                this.sliceEnds = Arrays.copyOf(this.sliceEnds, slice << 1);
+                this.sliceOwners = Arrays.copyOf(this.sliceOwners, slice << 1);
+            }
+            this.sliceStarts[slice] = this.size;
+            this.sliceEnds[slice] = this.size;
+            this.sliceOwners[slice] = this.player;
+            this.sliceCount = slice + 1;
+            return true;
+        }
+
+        /**
+         * Adds an entity of the current chunk, activated at once if it is in range of the current player
+         */
+        public void add(final E handle, final double minX, final double minY, final double minZ, final double maxX,
+                        final double maxY, final double maxZ, final long activatedTick, final int type, final boolean alwaysActive) {
+            if (this.tick <= activatedTick) {
+                // Active already, nothing can change that this tick
+                return;
+            }
+            if (this.inRange(minX, minY, minZ, maxX, maxY, maxZ, type, alwaysActive)) {
+                this.activated(handle);
+                return;
+            }
+            if (!this.shared) {
+                // No other player reaches this chunk
+                return;
+            }
+            final int i = this.size++;
+            if (i == this.columns.handles.length) {
+                this.columns.grow(Math.max(64, i + (i >> 1)));
+            }
+            this.columns.set(i, handle, minX, minY, minZ, maxX, maxY, maxZ, type, alwaysActive);
+            this.sliceEnds[this.sliceCount - 1] = this.size;
+        }
+
+        /**
+         * Activates the entities of the chunks added for earlier players in range of the current player
+         *
+         * @return the entities checked
+         */
+        public int activate() {
+            if (!this.shared) {
+                return 0;
+            }
+            final Columns columns = this.columns;
+            final double[] minX = columns.minX;
+            final double[] minY = columns.minY;
+            final double[] minZ = columns.minZ;
+            final double[] maxX = columns.maxX;
+            final double[] maxY = columns.maxY;
+            final double[] maxZ = columns.maxZ;
+            final byte[] types = columns.type;
+            final boolean[] alwaysActive = columns.alwaysActive;
+            final boolean[] active = columns.active;
+            int scanned = 0;
+            for (int chunkZ = this.minChunkZ; chunkZ <= this.maxChunkZ; ++chunkZ) {
+                for (int chunkX = this.minChunkX; chunkX <= this.maxChunkX; ++chunkX) {
+                    final int slice = this.slices.get(CoordinateUtils.getChunkKey(chunkX, chunkZ));
+                    if (slice < 0 || this.sliceOwners[slice] == this.player) {
+                        continue;
+                    }
+                    for (int i = this.sliceStarts[slice], to = this.sliceEnds[slice]; i < to; ++i) {
+                        if (!active[i] && this.inRange(minX[i], minY[i], minZ[i], maxX[i], maxY[i], maxZ[i], types[i], alwaysActive[i])) {
+                            active[i] = true;
+                            this.activated(columns.handles[i]);
+                        }
+                    }
+                    scanned += this.sliceEnds[slice] - this.sliceStarts[slice];
+                }
+            }
+            return scanned;
+        }
+
+        // Within the largest box and, unless always active, the box of its type
+        private boolean inRange(final double minX, final double minY, final double minZ, final double maxX, final double maxY,
+                                final double maxZ, final int type, final boolean alwaysActive) {
+            final double[] boxes = this.boxes;
+            final int area = TYPES.length * 6;
+            if (!(minX < boxes[area + 3] && maxX > boxes[area] && minY < boxes[area + 4] && maxY > boxes[area + 1]
+                && minZ < boxes[area + 5] && maxZ > boxes[area + 2])) {
+                return false;
+            }
+            if (alwaysActive) {
+                return true;
+            }
+            final int box = type * 6;
+            return minX < boxes[box + 3] && maxX > boxes[box] && minY < boxes[box + 4] && maxY > boxes[box + 1]
+                && minZ < boxes[box + 5] && maxZ > boxes[box + 2];
+        }
+
+        private void activated(final Object handle) {
+            if (this.activatedCount == this.activated.length) {
+                this.activated = Arrays.copyOf(this.activated, this.activatedCount << 1);
+            }
+            this.activated[this.activatedCount++] = handle;
+        }
+
+        /**
+         * Hands the entities activated since the last call to {@code activator} and lets go of all of them
+         *
+         * @return the entities activated
+         */
+        @SuppressWarnings("unchecked")
+        public int apply(final Activator<? super E> activator) {
+            final int count = this.activatedCount;
+            for (int i = 0; i < count; ++i) {
+                activator.activate((E) this.activated[i], this.tick);
+            }
+            Arrays.fill(this.activated, 0, count, null);
+            Arrays.fill(this.columns.handles, 0, this.size, null);
+            Arrays.fill(this.columns.active, 0, this.size, false);
+            this.activatedCount = 0;
+            this.slices.clear();
+            this.sliceCount = 0;
+            this.size = 0;
+            return count;
+        }
+
+        /**
+         * Entities kept for the scans of later players
+         */
+        public int size() {
+            return this.size;
+        }
+    }
+
+    private static final class Columns {
+        Object[] handles = new Object[0];
+        double[] minX = new double[0];
+        double[] minY = new double[0];
+        double[] minZ = new double[0];
+        double[] maxX = new double[0];
+        double[] maxY = new double[0];
+        double[] maxZ = new double[0];
+        byte[] type = new byte[0];
+        boolean[] alwaysActive = new boolean[0];
+        boolean[] active = new boolean[0];
+
+        void grow(final int capacity) {
+            this.handles = Arrays.copyOf(this.handles, capacity);
+            this.minX = Arrays.copyOf(this.minX, capacity);
+            this.minY = Arrays.copyOf(this.minY, capacity);
+            this.minZ = Arrays.copyOf(this.minZ, capacity);
+            this.maxX = Arrays.copyOf(this.maxX, capacity);
+            this.maxY = Arrays.copyOf(this.maxY, capacity);
+            this.maxZ = Arrays.copyOf(this.maxZ, capacity);
+            this.type = Arrays.copyOf(this.type, capacity);
+            this.alwaysActive = Arrays.copyOf(this.alwaysActive, capacity);
+            this.active = Arrays.copyOf(this.active, capacity);
+        }
+
+        void set(final int i, final Object handle, final double minX, final double minY, final double minZ, final double maxX,
+                 final double maxY, final double maxZ, final int type, final boolean alwaysActive) {
+            this.handles[i] = handle;
+            this.minX[i] = minX;
+            this.minY[i] = minY;
+            this.minZ[i] = minZ;
+            this.maxX[i] = maxX;
+            this.maxY[i] = maxY;
+            this.maxZ[i] = maxZ;
+            this.type[i] = (byte) type;
+            this.alwaysActive[i] = alwaysActive;
+        }
+    }
+}
@@ -0,0 +1,229 @@
+package ru.playland.core.optimization;
+
+import it.unimi.dsi.fastutil.ints.IntOpenHashSet;
+import it.unimi.dsi.fastutil.longs.LongOpenHashSet;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+/**
+ * Packet Dictionary
+ * Общий словарь сжатия для повторяющихся пакетов (чанки, метаданные сущностей)
+ *
+ * <p>A zlib preset dictionary trained offline from captured packet payloads. Chunk and entity metadata
+ * packets repeat the same palettes, heightmap headers and metadata layouts for every player, so priming
+ * the compressor with those byte sequences shrinks every packet, small ones the most.</p>
+ *
+ * <p>Training scores fixed size segments of the samples by how many other samples share their short
+ * substrings, picks the best ones greedily without counting the same content twice, and lays them out
+ * so the most common ones end up last, closest to the data, where zlib encodes back references most
+ * cheaply.</p>
+ *
+ * <p>Memory does not grow with the samples beyond the samples themselves: k-mer counts live in a fixed table of
+ * counters indexed by hash, where rare collisions only add a little to a count, and only the best scoring segments,
+ * a fixed multiple of what fits into the dictionary, are kept as candidates.</p>
+ *
+ * <p>Training runs from the server jar paperclip extracts, see {@link ZstdRegionConverter} for the class path:</p>
+ *
+ * <pre>
+ * java -cp "versions/&lt;version&gt;/paper-&lt;version&gt;.jar:$(find libraries -name '*.jar' | paste -sd:)" \
+ *     ru.playland.core.optimization.PacketDictionary &lt;samples dir&gt; &lt;dictionary file&gt; [size]
+ * </pre>
+ */
+public final class PacketDictionary {
+
+    /** Largest dictionary zlib can use, its window size */
+    public static final int MAX_SIZE = 32 * 1024;
+
+    private static final int KMER_SIZE = 6;
+    private static final int SEGMENT_SIZE = 32;
+    private static final int SEGMENT_STEP = 8;
+    // 4M counters, 16 MB
+    private static final int KMER_TABLE_BITS = 22;
+    // Candidates kept per dictionary segment, the greedy pass skips overlapping and duplicate ones
+    private static final int CANDIDATES_PER_SEGMENT = 16;
+
+    private final byte[] bytes;
+    private final int id;
+
+    private PacketDictionary(final byte[] bytes) {
+        this.bytes = bytes;
+        final CRC32 crc = new CRC32();
+        crc.update(bytes);
+        this.id = (int) crc.getValue();
+    }
+
+    public static PacketDictionary of(final byte[] bytes) {
+        if (bytes.length == 0 || bytes.length > MAX_SIZE) {
+            throw new IllegalArgumentException("Dictionary size must be between 1 and " + MAX_SIZE + ", got " + bytes.length);
+        }
+        return new PacketDictionary(bytes.clone());
+    }
+
+    public static PacketDictionary load(final Path file) throws IOException {
+        return of(Files.readAllBytes(file));
+    }
+
+    public void save(final Path file) throws IOException {
+        Files.write(file, this.bytes);
+    }
+
+    /**
+     * Dictionary bytes, must not be modified
+     */
+    public byte[] bytes() {
+        return this.bytes;
+    }
+
+    public int size() {
+        return this.bytes.length;
+    }
+
+    /**
+     * CRC32 of the dictionary bytes, both ends of a connection compare it to agree on the same dictionary
+     */
+    public int id() {
+        return this.id;
+    }
+
+    /**
+     * Train a dictionary of at most {@code maxSize} bytes from sample packet payloads
+     */
+    public static PacketDictionary train(final List<byte[]> samples, final int maxSize) {
+        if (samples.isEmpty()) {
+            throw new IllegalArgumentException("No samples to train from");
+        }
+        final int limit = Math.min(maxSize, MAX_SIZE);
+
+        // count in how many samples each k-mer occurs
+        final int[] kmerCounts = new int[1 << KMER_TABLE_BITS];
+        final IntOpenHashSet seenInSample = new IntOpenHashSet();
+        for (final byte[] sample : samples) {
+            seenInSample.clear();
+            for (int offset = 0; offset + KMER_SIZE <= sample.length; ++offset) {
+                final int index = kmerIndex(sample, offset);
+                if (seenInSample.add(index) && kmerCounts[index] < Integer.MAX_VALUE) {
+                    ++kmerCounts[index];
+                }
+            }
+        }
+
+        // candidate segments scored by the k-mers they share with other samples, only the top ones are kept and
+        // each content once, a header every sample starts with would fill them all otherwise
+        final int maxCandidates = Math.max(1, limit / SEGMENT_SIZE) * CANDIDATES_PER_SEGMENT;
+        final PriorityQueue<Segment> top = new PriorityQueue<>(maxCandidates + 1, Comparator.comparingLong(Segment::score));
+        final LongOpenHashSet topContent = new LongOpenHashSet();
+        for (final byte[] sample : samples) {
+            for (int offset = 0; offset + SEGMENT_SIZE <= sample.length; offset += SEGMENT_STEP) {
+                final long score = score(kmerCounts, sample, offset);
+                if (score <= 0 || (top.size() == maxCandidates && score <= top.peek().score)) {
+                    continue;
+                }
+                if (!topContent.add(hash(sample, offset, SEGMENT_SIZE))) {
+                    continue;
+                }
+                top.add(new Segment(score, sample, offset));
+                if (top.size() > maxCandidates) {
+                    final Segment dropped = top.poll();
+                    topContent.remove(hash(dropped.sample, dropped.offset, SEGMENT_SIZE));
+                }
+            }
+        }
+        final PriorityQueue<Segment> candidates = new PriorityQueue<>(Math.max(1, top.size()), Comparator.comparingLong(Segment::score).reversed());
+        candidates.addAll(top);
+        top.clear();
+
+        // greedy selection, k-mers of a selected segment no longer count, scores are refreshed lazily
+        final List<Segment> selected = new ArrayList<>();
+        final LongOpenHashSet selectedContent = new LongOpenHashSet();
+        while (!candidates.isEmpty() && (selected.size() + 1) * SEGMENT_SIZE <= limit) {
+            final Segment best = candidates.poll();
+            final long score = score(kmerCounts, best.sample, best.offset);
+            if (score <= 0) {
+                continue;
+            }
+            if (score < best.score && !candidates.isEmpty() && score < candidates.peek().score) {
+                candidates.add(new Segment(score, best.sample, best.offset));
+                continue;
+            }
+            if (!selectedContent.add(hash(best.sample, best.offset, SEGMENT_SIZE))) {
+                continue;
+            }
+            selected.add(best);
+            for (int offset = best.offset, end = best.offset + SEGMENT_SIZE - KMER_SIZE; offset <= end; ++offset) {
+                kmerCounts[kmerIndex(best.sample, offset)] = 0;
+            }
+        }
+
+        final int count = selected.size();
+        if (count == 0) {
+            throw new IllegalArgumentException("Samples share no content, nothing to train");
+        }
+        final byte[] dictionary = new byte[count * SEGMENT_SIZE];
+        // most common last
+        for (int i = 0; i < count; ++i) {
+            final Segment segment = selected.get(i);
+            System.arraycopy(segment.sample, segment.offset, dictionary, (count - 1 - i) * SEGMENT_SIZE, SEGMENT_SIZE);
+        }
+        return new PacketDictionary(dictionary);
+    }
+
+    private static long score(final int[] kmerCounts, final byte[] sample, final int offset) {
+        long score = 0L;
+        for (int i = offset, end = offset + SEGMENT_SIZE - KMER_SIZE; i <= end; ++i) {
+            final int count = kmerCounts[kmerIndex(sample, i)];
+            // content seen in a single sample carries no shared information
+            if (count > 1) {
+                score += count;
+            }
+        }
+        return score;
+    }
+
+    private static int kmerIndex(final byte[] data, final int offset) {
+        return (int) (hash(data, offset, KMER_SIZE) >>> (Long.SIZE - KMER_TABLE_BITS));
+    }
+
+    private static long hash(final byte[] data, final int offset, final int length) {
+        long hash = 0xcbf29ce484222325L;
+        for (int i = offset, end = offset + length; i < end; ++i) {
+            hash ^= data[i] & 0xFF;
+            hash *= 0x100000001b3L;
+        }
+        return hash;
+    }
+
+    private record Segment(long score, byte[] sample, int offset) {}
+
+    /**
+     * Offline training from a directory of captured payloads, one packet per file
+     */
+    public static void main(final String[] args) throws IOException {
+        if (args.length < 2) {
+            System.err.println("Usage: PacketDictionary <samples dir> <dictionary file> [size]");
+            System.exit(1);
+            return;
+        }
+        final List<byte[]> samples = new ArrayList<>();
+        try (Stream<Path> files = Files.list(Path.of(args[0]))) {
+            for (final Path file : (Iterable<Path>) files.filter(Files::isRegularFile)::iterator) {
+                samples.add(Files.readAllBytes(file));
+            }
+        }
+        final int size = args.length > 2 ? Integer.parseInt(args[2]) : MAX_SIZE;
+        final PacketDictionary dictionary = train(samples, size);
+        dictionary.save(Path.of(args[1]));
+        System.out.println("Trained " + dictionary.size() + " byte dictionary from " + samples.size() + " samples");
+    }
+
+    @Override
+    public String toString() {
+        return "PacketDictionary{size=" + this.bytes.length + ", id=" + Integer.toHexString(this.id) + "}";
+    }
+}
@@ -0,0 +1,177 @@
+package ru.playland.core.optimization;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Parallel Entity Tracker
+ * Параллельный расчёт видимости сущностей в трекере
+ *
+ * <p>The tracker tick of {@code ChunkMap} checks every tracked entity against every player in view distance of
+ * its chunk: distance, tracking range of the passengers, the Y range, whether the chunk was sent, the vanish API.
+ * With hundreds of players and tens of thousands of entities that is the largest part of the tick. When enabled,
+ * these checks run first for all entities at once on worker threads, each entity records its decision for every
+ * player of a snapshot of its player list. The main thread waits for them.</p>
+ *
+ * <p>Everything that changes state stays on the main thread and in the order it had: for each entity in tracker
+ * order the recorded decisions pair and unpair players, fire {@code PlayerTrackEntityEvent}, and
+ * {@code ServerEntity#sendChanges} builds and sends the movement and entity data packets. Packets therefore reach
+ * every connection in the same order as before. {@code sendChanges} is not run in parallel, it fires
+ * {@code PlayerVelocityEvent} and updates map data shared between item frames.</p>
+ *
+ * <p>The decisions are taken against the state at the start of the tracker tick. A plugin hiding an entity from a
+ * {@code PlayerTrackEntityEvent} handler takes effect for later entities of the same tick when serial, and on the
+ * next tick here. If a check throws, the tick falls back to the serial tracker.</p>
+ *
+ * <p>Off by default, enabled with {@code -Dplayland.tracker.parallel=true}. Worlds with fewer tracked entities
+ * than {@code playland.tracker.parallel.min-entities} stay serial, {@code playland.tracker.parallel.threads} sets
+ * the worker threads, the main thread works along.</p>
+ */
+public final class ParallelEntityTracker {
+
+    private static final Logger LOGGER = Logger.getLogger("PlayLand-ParallelTracker");
+
+    public static final boolean ENABLED = Boolean.getBoolean("playland.tracker.parallel");
+    private static final int MIN_ENTITIES = Math.max(1, Integer.getInteger("playland.tracker.parallel.min-entities", 512));
+    private static final int THREADS = Math.max(1, Integer.getInteger("playland.tracker.parallel.threads",
+        Math.max(1, Runtime.getRuntime().availableProcessors() / 2 - 1)));
+    // Entities taken by a thread at once, small enough to balance entities with many players around
+    private static final int BATCH = 64;
+
+    private static volatile ExecutorService workers;
+    private static volatile boolean failed;
+
+    // Statistics
+    private static final LongAdder parallelTicks = new LongAdder();
+    private static final LongAdder serialTicks = new LongAdder();
+    private static final LongAdder entitiesComputed = new LongAdder();
+    private static final LongAdder parallelNanos = new LongAdder();
+    private static final LongAdder failures = new LongAdder();
+
+    static {
+        if (ENABLED) {
+            LOGGER.info("🛰 Parallel entity tracker enabled, " + THREADS + " worker threads from " + MIN_ENTITIES + " entities");
+        }
+    }
+
+    private ParallelEntityTracker() {}
+
+    /**
+     * Whether the tracker tick of a world with {@code entities} tracked entities runs the parallel stage
+     */
+    public static boolean shouldRun(final int entities) {
+        if (!ENABLED || failed || entities < MIN_ENTITIES) {
+            serialTicks.increment();
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Runs {@code action} for the first {@code size} values on the worker threads and the calling thread, returns
+     * once all are done
+     *
+     * @return false if an action threw, the caller then has to run the tick serially
+     */
+    public static <T> boolean forEach(final T[] values, final int size, final Consumer<? super T> action) {
+        final long start = System.nanoTime();
+        final AtomicInteger cursor = new AtomicInteger();
+        final AtomicReference<Throwable> error = new AtomicReference<>();
+        final Runnable work = () -> {
+            try {
+                for (int from = cursor.getAndAdd(BATCH); from < size; from = cursor.getAndAdd(BATCH)) {
+                    for (int i = from, to = Math.min(size, from + BATCH); i < to; ++i) {
+                        action.accept(values[i]);
+                    }
+                }
+            } catch (final Throwable throwable) {
+                error.compareAndSet(null, throwable);
+                // Let the other threads stop early
+                cursor.set(size);
+            }
+        };
+
+        final int helpers = Math.min(THREADS, (size - 1) / BATCH);
+        final CountDownLatch done = new CountDownLatch(helpers);
+        final ExecutorService workers = workers();
+        for (int i = 0; i < helpers; ++i) {
+            workers.execute(() -> {
+                try {
+                    work.run();
+                } finally {
+                    done.countDown();
+                }
+            });
+        }
+        work.run();
+        boolean interrupted = false;
+        while (true) {
+            try {
+                done.await();
+                break;
+            } catch (final InterruptedException ex) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+
+        final Throwable throwable = error.get();
+        if (throwable != null) {
+            failures.increment();
+            serialTicks.increment();
+            if (!failed) {
+                failed = true;
+                LOGGER.log(Level.SEVERE, "❌ Parallel entity tracker failed, falling back to the serial tracker", throwable);
+            }
+            return false;
+        }
+        parallelTicks.increment();
+        entitiesComputed.add(size);
+        parallelNanos.add(System.nanoTime() - start);
+        return true;
+    }
+
+    private static ExecutorService workers() {
+        ExecutorService workers = ParallelEntityTracker.workers;
+        if (workers == null) {
+            synchronized (ParallelEntityTracker.class) {
+                workers = ParallelEntityTracker.workers;
+                if (workers == null) {
+                    final AtomicInteger id = new AtomicInteger();
+                    workers = Executors.newFixedThreadPool(THREADS, runnable -> {
+                        final Thread thread = new Thread(runnable, "PlayLand Tracker Worker #" + id.incrementAndGet());
+                        thread.setDaemon(true);
+                        return thread;
+                    });
+                    ParallelEntityTracker.workers = workers;
+                }
+            }
+        }
+        return workers;
+    }
+
+    public static Map<String, Object> getStats() {
+        final Map<String, Object> stats = new ConcurrentHashMap<>();
+        stats.put("enabled", ENABLED);
+        stats.put("failed", failed);
+        stats.put("threads", THREADS);
+        stats.put("parallel_ticks", parallelTicks.sum());
+        stats.put("serial_ticks", serialTicks.sum());
+        stats.put("entities_computed", entitiesComputed.sum());
+        stats.put("failures", failures.sum());
+        final long ticks = parallelTicks.sum();
+        stats.put("avg_parallel_stage_us", ticks == 0L ? 0.0 : parallelNanos.sum() / 1000.0 / ticks);
+        return stats;
+    }
+}
@@ -153,8 +153,13 @@ public class ParticleSystemManager {
             particlesOptimized.incrementAndGet();
 
             // Optimize particles for all online players
-            for (org.bukkit.entity.Player player : org.bukkit.Bukkit.getOnlinePlayers()) {
-                optimizeParticlesForPlayer(player);
+            if (PlayerProximityIndex.ENABLED) {
+                // Snapshot of the main thread, the live player list may change while this runs
+                PlayerProximityIndex.forEachPlayer((level, player, x, y, z) -> optimizeParticlesForPlayer(player.getBukkitEntity()));
+            } else {
+                for (org.bukkit.entity.Player player : org.bukkit.Bukkit.getOnlinePlayers()) {
+                    optimizeParticlesForPlayer(player);
+                }
             }
 
             // Clean up expired particle pools
@@ -364,12 +369,22 @@ public class ParticleSystemManager {
             // Group particles by type and location
             Map<String, Integer> particleGroups = new ConcurrentHashMap<>();
 
-            for (org.bukkit.entity.Player player : org.bukkit.Bukkit.getOnlinePlayers()) {
-                org.bukkit.Location loc = player.getLocation();
-                String locationKey = loc.getBlockX() + "," + loc.getBlockY() + "," + loc.getBlockZ();
+            if (PlayerProximityIndex.ENABLED) {
+                int[] players = new int[1];
+                PlayerProximityIndex.forEachPlayer((level, player, x, y, z) -> {
+                    String locationKey = net.minecraft.util.Mth.floor(x) + "," + net.minecraft.util.Mth.floor(y) + "," + net.minecraft.util.Mth.floor(z);
+                    particleGroups.merge(locationKey, 1, Integer::sum);
+                    players[0]++;
+                });
+                batchedCount += players[0];
+            } else {
+                for (org.bukkit.entity.Player player : org.bukkit.Bukkit.getOnlinePlayers()) {
+                    org.bukkit.Location loc = player.getLocation();
+                    String locationKey = loc.getBlockX() + "," + loc.getBlockY() + "," + loc.getBlockZ();
 
-                particleGroups.merge(locationKey, 1, Integer::sum);
-                batchedCount++;
+                    particleGroups.merge(locationKey, 1, Integer::sum);
+                    batchedCount++;
+                }
             }
 
             if (batchedCount > 0) {
@@ -0,0 +1,452 @@
+package ru.playland.core.optimization;
+
+import ca.spottedleaf.moonrise.common.util.CoordinateUtils;
+import it.unimi.dsi.fastutil.ints.IntArrays;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Logger;
+import javax.annotation.Nullable;
+import net.minecraft.server.level.ServerLevel;
+import net.minecraft.server.level.ServerPlayer;
+import net.minecraft.util.Mth;
+import net.minecraft.world.level.Level;
+
+/**
+ * Player Proximity Index
+ * Пространственный индекс игроков по ячейкам мира
+ *
+ * <p>PlayLand subsystems find the players near a position by walking {@code Bukkit.getOnlinePlayers()} or the
+ * player list of the world and measuring every player, some of them from their own executor threads where the live
+ * lists may change under them. Once per tick, before anything else runs, the main thread copies the players of
+ * every world into a snapshot sorted by cell of {@code playland.proximity.cell-size} blocks, positions included.
+ * Snapshots are never changed after they are published, so any thread may query them.</p>
+ *
+ * <p>A query looks up only the cells its radius covers, or walks all players of the world when there are fewer
+ * occupied cells than that. Every consumer queries through its own {@link Range}: a radius, which
+ * {@code -Dplayland.proximity.<name>.radius} overrides, whether the distance is horizontal or spherical and whether
+ * spectators count. {@link Cursor} walks the players in range without building a list, {@link #count},
+ * {@link #any} and {@link #nearestDistanceSqr} use a cursor of the calling thread.</p>
+ *
+ * <p>Positions are those at the start of the tick. The Moonrise {@code NearbyPlayers} map stays the source of
+ * the vanilla consumers, this one is for PlayLand. On by default, {@code -Dplayland.proximity.index=false} turns it
+ * off and consumers walk the player lists again.</p>
+ */
+public final class PlayerProximityIndex {
+
+    private static final Logger LOGGER = Logger.getLogger("PlayLand-ProximityIndex");
+
+    public static final boolean ENABLED = Boolean.parseBoolean(System.getProperty("playland.proximity.index", "true"));
+    private static final int CELL_SHIFT = 31 - Integer.numberOfLeadingZeros(
+        Mth.clamp(Integer.getInteger("playland.proximity.cell-size", 32), 16, 1024));
+    private static final double CELL_SIZE = 1 << CELL_SHIFT;
+
+    private static final Map<ServerLevel, Grid> GRIDS = new ConcurrentHashMap<>();
+    private static final Map<String, Range> RANGES = new ConcurrentHashMap<>();
+    private static final ThreadLocal<Cursor> CURSOR = ThreadLocal.withInitial(Cursor::new);
+
+    // Statistics
+    private static final LongAdder rebuilds = new LongAdder();
+    private static final LongAdder rebuildNanos = new LongAdder();
+    private static final LongAdder linearScans = new LongAdder();
+
+    static {
+        if (ENABLED) {
+            LOGGER.info("🧭 Player proximity index enabled, " + (1 << CELL_SHIFT) + " block cells");
+        }
+    }
+
+    private PlayerProximityIndex() {}
+
+    /**
+     * The range of a consumer, {@code -Dplayland.proximity.<name>.radius} overrides {@code defaultRadius}
+     */
+    public static Range range(final String name, final double defaultRadius) {
+        return range(name, defaultRadius, false, true);
+    }
+
+    /**
+     * The range of a consumer
+     *
+     * @param horizontal whether the distance ignores Y
+     * @param spectators whether players in spectator mode are found
+     */
+    public static Range range(final String name, final double defaultRadius, final boolean horizontal, final boolean spectators) {
+        return RANGES.computeIfAbsent(name, key -> {
+            final double radius = Double.parseDouble(System.getProperty("playland.proximity." + key + ".radius", Double.toString(defaultRadius)));
+            return new Range(key, Math.max(0.0, radius), horizontal, spectators);
+        });
+    }
+
+    /**
+     * The range of a consumer that compares distances up to {@code minRadius}, players beyond the radius are not
+     * found, so {@code -Dplayland.proximity.<name>.radius} may widen it but not shrink it below that
+     */
+    public static Range rangeAtLeast(final String name, final double minRadius) {
+        return RANGES.computeIfAbsent(name, key -> {
+            final double radius = Double.parseDouble(System.getProperty("playland.proximity." + key + ".radius", Double.toString(minRadius)));
+            return new Range(key, Math.max(minRadius, radius), false, true);
+        });
+    }
+
+    /**
+     * Publishes a new snapshot of the players of every world, main thread, once per tick
+     */
+    public static void rebuild(final Iterable<ServerLevel> levels) {
+        if (!ENABLED) {
+            return;
+        }
+        final long start = System.nanoTime();
+        for (final ServerLevel level : levels) {
+            final List<ServerPlayer> players = level.players();
+            if (players.isEmpty()) {
+                final Grid previous = GRIDS.get(level);
+                if (previous == null || previous.size != 0) {
+                    GRIDS.put(level, Grid.EMPTY);
+                }
+                continue;
+            }
+            GRIDS.put(level, Grid.build(players));
+        }
+        rebuilds.increment();
+        rebuildNanos.add(System.nanoTime() - start);
+    }
+
+    /**
+     * Forgets a world, called when it is unloaded
+     */
+    public static void clear(final Level level) {
+        GRIDS.remove(level);
+    }
+
+    /**
+     * Whether queries for {@code level} are answered from a snapshot, consumers walk the player list otherwise
+     */
+    public static boolean isIndexed(final Level level) {
+        return ENABLED && GRIDS.containsKey(level);
+    }
+
+    /**
+     * Players of the snapshot of {@code level}
+     */
+    public static int playerCount(final Level level) {
+        final Grid grid = GRIDS.get(level);
+        return grid == null ? 0 : grid.size;
+    }
+
+    /**
+     * Players of the snapshots of all worlds
+     */
+    public static int playerCount() {
+        int players = 0;
+        for (final Grid grid : GRIDS.values()) {
+            players += grid.size;
+        }
+        return players;
+    }
+
+    /**
+     * Players in {@code range} of a position
+     */
+    public static int count(final Level level, final double x, final double y, final double z, final Range range) {
+        final Cursor cursor = CURSOR.get().reset(level, x, y, z, range);
+        int count = 0;
+        while (cursor.next() != null) {
+            ++count;
+        }
+        return count;
+    }
+
+    /**
+     * Whether any player is in {@code range} of a position
+     */
+    public static boolean any(final Level level, final double x, final double y, final double z, final Range range) {
+        final Cursor cursor = CURSOR.get().reset(level, x, y, z, range);
+        final boolean any = cursor.next() != null;
+        cursor.close();
+        return any;
+    }
+
+    /**
+     * Squared distance to the nearest player in {@code range} of a position, {@link Double#MAX_VALUE} if there is none
+     */
+    public static double nearestDistanceSqr(final Level level, final double x, final double y, final double z, final Range range) {
+        final Cursor cursor = CURSOR.get().reset(level, x, y, z, range);
+        double nearest = Double.MAX_VALUE;
+        while (cursor.next() != null) {
+            nearest = Math.min(nearest, cursor.distanceSqr());
+        }
+        return nearest;
+    }
+
+    /**
+     * Visits every player of the snapshots of all worlds, with the position of the snapshot
+     */
+    public static void forEachPlayer(final PlayerVisitor visitor) {
+        for (final Map.Entry<ServerLevel, Grid> entry : GRIDS.entrySet()) {
+            final ServerLevel level = entry.getKey();
+            final Grid grid = entry.getValue();
+            for (int i = 0; i < grid.size; ++i) {
+                visitor.visit(level, grid.players[i], grid.x[i], grid.y[i], grid.z[i]);
+            }
+        }
+    }
+
+    public static Map<String, Object> getStats() {
+        final Map<String, Object> stats = new ConcurrentHashMap<>();
+        stats.put("enabled", ENABLED);
+        stats.put("cell_size", 1 << CELL_SHIFT);
+        stats.put("worlds", GRIDS.size());
+        stats.put("players", playerCount());
+        int cells = 0;
+        for (final Grid grid : GRIDS.values()) {
+            cells += grid.cells.length;
+        }
+        stats.put("cells", cells);
+        stats.put("rebuilds", rebuilds.sum());
+        final long rebuilds = PlayerProximityIndex.rebuilds.sum();
+        stats.put("avg_rebuild_us", rebuilds == 0L ? 0.0 : rebuildNanos.sum() / 1000.0 / rebuilds);
+        stats.put("linear_scans", linearScans.sum());
+        for (final Range range : RANGES.values()) {
+            stats.put("queries_" + range.name, range.queries.sum());
+        }
+        return stats;
+    }
+
+    @FunctionalInterface
+    public interface PlayerVisitor {
+
+        void visit(ServerLevel level, ServerPlayer player, double x, double y, double z);
+    }
+
+    /**
+     * How one consumer measures proximity
+     */
+    public static final class Range {
+        private final String name;
+        private final double radius;
+        private final double radiusSqr;
+        private final boolean horizontal;
+        private final boolean spectators;
+        private final LongAdder queries = new LongAdder();
+
+        Range(final String name, final double radius, final boolean horizontal, final boolean spectators) {
+            this.name = name;
+            this.radius = radius;
+            this.radiusSqr = radius * radius;
+            this.horizontal = horizontal;
+            this.spectators = spectators;
+        }
+
+        public String getName() {
+            return this.name;
+        }
+
+        public double getRadius() {
+            return this.radius;
+        }
+    }
+
+    /**
+     * Walks the players in range of a position without allocating, one instance per thread and query at a time
+     */
+    public static final class Cursor {
+        @Nullable
+        private Grid grid;
+        private Range range;
+        private double x;
+        private double y;
+        private double z;
+        private boolean linear;
+        private int minCellX;
+        private int maxCellX;
+        private int maxCellZ;
+        private int cellX;
+        private int cellZ;
+        private int index;
+        private int end;
+        private double distanceSqr;
+
+        public Cursor reset(final Level level, final double x, final double y, final double z, final Range range) {
+            final Grid grid = GRIDS.get(level);
+            this.grid = grid;
+            this.range = range;
+            this.x = x;
+            this.y = y;
+            this.z = z;
+            this.index = 0;
+            this.end = 0;
+            range.queries.increment();
+            if (grid == null || grid.size == 0) {
+                this.grid = null;
+                return this;
+            }
+
+            final double radius = range.radius;
+            final double minX = Math.floor((x - radius) / CELL_SIZE);
+            final double maxX = Math.floor((x + radius) / CELL_SIZE);
+            final double minZ = Math.floor((z - radius) / CELL_SIZE);
+            final double maxZ = Math.floor((z + radius) / CELL_SIZE);
+            // Looking up more cells than there are occupied ones is slower than checking every player
+            this.linear = (maxX - minX + 1.0) * (maxZ - minZ + 1.0) >= grid.cells.length;
+            if (this.linear) {
+                this.end = grid.size;
+                linearScans.increment();
+            } else {
+                this.minCellX = (int) minX;
+                this.maxCellX = (int) maxX;
+                this.maxCellZ = (int) maxZ;
+                this.cellX = (int) minX;
+                this.cellZ = (int) minZ;
+            }
+            return this;
+        }
+
+        /**
+         * The next player in range, null once there are no more
+         */
+        @Nullable
+        public ServerPlayer next() {
+            final Grid grid = this.grid;
+            if (grid == null) {
+                return null;
+            }
+            do {
+                while (this.index < this.end) {
+                    final int i = this.index++;
+                    if (this.matches(grid, i)) {
+                        return grid.players[i];
+                    }
+                }
+            } while (this.nextCell(grid));
+            this.close();
+            return null;
+        }
+
+        /**
+         * Squared distance to the player last returned by {@link #next()}
+         */
+        public double distanceSqr() {
+            return this.distanceSqr;
+        }
+
+        /**
+         * Lets go of the snapshot before the walk is over
+         */
+        public void close() {
+            this.grid = null;
+            this.range = null;
+        }
+
+        private boolean matches(final Grid grid, final int i) {
+            final Range range = this.range;
+            if (!range.spectators && grid.spectators[i]) {
+                return false;
+            }
+            final double dx = grid.x[i] - this.x;
+            final double dz = grid.z[i] - this.z;
+            double distanceSqr = dx * dx + dz * dz;
+            if (!range.horizontal) {
+                final double dy = grid.y[i] - this.y;
+                distanceSqr += dy * dy;
+            }
+            if (distanceSqr > range.radiusSqr) {
+                return false;
+            }
+            this.distanceSqr = distanceSqr;
+            return true;
+        }
+
+        private boolean nextCell(final Grid grid) {
+            if (this.linear) {
+                return false;
+            }
+            while (this.cellZ <= this.maxCellZ) {
+                final int cell = Arrays.binarySearch(grid.cells, CoordinateUtils.getChunkKey(this.cellX, this.cellZ));
+                if (++this.cellX > this.maxCellX) {
+                    this.cellX = this.minCellX;
+                    ++this.cellZ;
+                }
+                if (cell >= 0) {
+                    this.index = grid.starts[cell];
+                    this.end = grid.starts[cell + 1];
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+
+    /**
+     * Immutable snapshot of the players of one world, sorted by cell
+     */
+    private static final class Grid {
+        static final Grid EMPTY = new Grid(0, new ServerPlayer[0], new double[0], new double[0], new double[0], new boolean[0], new long[0], new int[1]);
+
+        final int size;
+        final ServerPlayer[] players;
+        final double[] x;
+        final double[] y;
+        final double[] z;
+        final boolean[] spectators;
+        // Occupied cells in ascending key order, players of cells[i] are starts[i] until starts[i + 1]
+        final long[] cells;
+        final int[] starts;
+
+        private Grid(final int size, final ServerPlayer[] players, final double[] x, final double[] y, final double[] z,
+                     final boolean[] spectators, final long[] cells, final int[] starts) {
+            this.size = size;
+            this.players = players;
+            this.x = x;
+            this.y = y;
+            this.z = z;
+            this.spectators = spectators;
+            this.cells = cells;
+            this.starts = starts;
+        }
+
+        static Grid build(final List<ServerPlayer> list) {
+            final int size = list.size();
+            final long[] keys = new long[size];
+            final int[] order = new int[size];
+            for (int i = 0; i < size; ++i) {
+                final ServerPlayer player = list.get(i);
+                keys[i] = CoordinateUtils.getChunkKey(Mth.floor(player.getX()) >> CELL_SHIFT, Mth.floor(player.getZ()) >> CELL_SHIFT);
+                order[i] = i;
+            }
+            IntArrays.quickSort(order, (left, right) -> Long.compare(keys[left], keys[right]));
+
+            final ServerPlayer[] players = new ServerPlayer[size];
+            final double[] x = new double[size];
+            final double[] y = new double[size];
+            final double[] z = new double[size];
+            final boolean[] spectators = new boolean[size];
+            int cellCount = 0;
+            for (int i = 0; i < size; ++i) {
+                final ServerPlayer player = list.get(order[i]);
+                players[i] = player;
+                x[i] = player.getX();
+                y[i] = player.getY();
+                z[i] = player.getZ();
+                spectators[i] = player.isSpectator();
+                if (i == 0 || keys[order[i]] != keys[order[i - 1]]) {
+                    ++cellCount;
+                }
+            }
+
+            final long[] cells = new long[cellCount];
+            final int[] starts = new int[cellCount + 1];
+            for (int i = 0, cell = -1; i < size; ++i) {
+                final long key = keys[order[i]];
+                if (cell < 0 || cells[cell] != key) {
+                    cells[++cell] = key;
+                    starts[cell] = i;
+                }
+            }
+            starts[cellCount] = size;
+            return new Grid(size, players, x, y, z, spectators, cells, starts);
+        }
+    }
+}
@@ -439,15 +439,26 @@ public class PredictiveEntitySpawning {
 
         try {
             // Get all online players for prediction
-            for (org.bukkit.entity.Player bukkitPlayer : org.bukkit.Bukkit.getOnlinePlayers()) {
-                try {
-                    // Convert Bukkit player to Minecraft player
-                    if (bukkitPlayer instanceof org.bukkit.craftbukkit.entity.CraftPlayer) {
-                        net.minecraft.server.level.ServerPlayer mcPlayer = ((org.bukkit.craftbukkit.entity.CraftPlayer) bukkitPlayer).getHandle();
-                        generatePredictionsForPlayer(mcPlayer, mcPlayer.serverLevel());
+            if (PlayerProximityIndex.ENABLED) {
+                // Snapshot of the main thread, the live player list may change while this runs
+                PlayerProximityIndex.forEachPlayer((level, player, x, y, z) -> {
+                    try {
+                        generatePredictionsForPlayer(player, level);
+                    } catch (Exception e) {
+                        LOGGER.fine("Player prediction error: " + e.getMessage());
+                    }
+                });
+            } else {
+                for (org.bukkit.entity.Player bukkitPlayer : org.bukkit.Bukkit.getOnlinePlayers()) {
+                    try {
+                        // Convert Bukkit player to Minecraft player
+                        if (bukkitPlayer instanceof org.bukkit.craftbukkit.entity.CraftPlayer) {
+                            net.minecraft.server.level.ServerPlayer mcPlayer = ((org.bukkit.craftbukkit.entity.CraftPlayer) bukkitPlayer).getHandle();
+                            generatePredictionsForPlayer(mcPlayer, mcPlayer.serverLevel());
+                        }
+                    } catch (Exception e) {
+                        LOGGER.fine("Player conversion error: " + e.getMessage());
                     }
-                } catch (Exception e) {
-                    LOGGER.fine("Player conversion error: " + e.getMessage());
                 }
             }
 
@@ -1,5 +1,7 @@
 package ru.playland.core.optimization;
 
+import ca.spottedleaf.moonrise.common.util.CoordinateUtils;
+import it.unimi.dsi.fastutil.longs.LongIterator;
 import net.minecraft.server.level.ServerLevel;
 import net.minecraft.core.BlockPos;
 import net.minecraft.core.Direction;
@@ -36,14 +38,15 @@ public class RedstonePerformanceEngine {
     private final AtomicLong updateOptimizations = new AtomicLong(0);
     
     // Redstone caches
-    private final Map<BlockPos, RedstoneSignalData> signalCache = new ConcurrentHashMap<>();
+    // By world and chunk, so a change or an unload in one world only drops entries of that world and chunk
+    private ChunkShardedCache<RedstoneSignalData> signalCache = new ChunkShardedCache<>("redstone_signals", 10000, RedstoneSignalData.EXPIRATION);
     private final Map<String, CircuitOptimizationData> circuitCache = new ConcurrentHashMap<>();
-    private final Map<BlockPos, Long> lastUpdateTimes = new ConcurrentHashMap<>();
     private final Set<BlockPos> optimizedBlocks = new HashSet<>();
     
     // Circuit analysis
     private final Map<BlockPos, Set<BlockPos>> circuitConnections = new ConcurrentHashMap<>();
     private final Map<String, List<BlockPos>> circuitComponents = new ConcurrentHashMap<>();
+    private final ChunkInvalidationBus.Listener invalidationListener = this::onChunkInvalidation;
     
     // Configuration
     private boolean enableSignalCaching = true;
@@ -64,8 +67,10 @@ public class RedstonePerformanceEngine {
         LOGGER.info("⚡ Initializing Redstone Performance Engine...");
         
         loadRedstoneSettings();
+        signalCache = new ChunkShardedCache<>("redstone_signals", maxCachedSignals, RedstoneSignalData.EXPIRATION);
         initializeRedstoneCaches();
         startRedstoneMonitoring();
+        ChunkInvalidationBus.register(invalidationListener);
         
         LOGGER.info("✅ Redstone Performance Engine initialized!");
         LOGGER.info("📡 Signal caching: " + (enableSignalCaching ? "ENABLED" : "DISABLED"));
@@ -157,8 +162,8 @@ public class RedstonePerformanceEngine {
         try {
             // Check cache first
             if (enableSignalCaching) {
-                RedstoneSignalData cachedSignal = signalCache.get(pos);
-                if (cachedSignal != null && !cachedSignal.isExpired()) {
+                RedstoneSignalData cachedSignal = signalCache.get(level.getWorld().getName(), pos.asLong());
+                if (cachedSignal != null) {
                     applyCachedSignal(level, pos, cachedSignal);
                     cacheHits.incrementAndGet();
                     return;
@@ -170,7 +175,7 @@ public class RedstonePerformanceEngine {
             
             // Cache the result
             if (enableSignalCaching && signalData != null) {
-                signalCache.put(pos, signalData);
+                signalCache.put(level.getWorld().getName(), pos.asLong(), signalData);
             }
             
             // Apply circuit optimizations
@@ -381,8 +386,8 @@ public class RedstonePerformanceEngine {
         try {
             // Проверяем кэш сначала
             if (enableSignalCaching) {
-                RedstoneSignalData cached = signalCache.get(pos);
-                if (cached != null && !cached.isExpired()) {
+                RedstoneSignalData cached = signalCache.get(level.getWorld().getName(), pos.asLong());
+                if (cached != null) {
                     cacheHits.incrementAndGet();
                     return cached.getSignalStrength();
                 }
@@ -397,12 +402,12 @@ public class RedstonePerformanceEngine {
             int signal = calculateOptimizedSignalStrength(level, pos, state, blockType);
 
             // Кэшируем результат
-            if (enableSignalCaching && signalCache.size() < maxCachedSignals) {
+            if (enableSignalCaching) {
                 RedstoneSignalData signalData = new RedstoneSignalData();
                 signalData.setPosition(pos);
                 signalData.setSignalStrength(signal);
                 signalData.setTimestamp(System.currentTimeMillis());
-                signalCache.put(pos, signalData);
+                signalCache.put(level.getWorld().getName(), pos.asLong(), signalData);
             }
 
             return signal;
@@ -569,14 +574,15 @@ public class RedstonePerformanceEngine {
         
         try {
             // Предварительно рассчитываем сигналы для соседних блоков
+            String world = level.getWorld().getName();
             for (BlockPos outputPos : signalData.getOutputPositions()) {
-                if (!signalCache.containsKey(outputPos)) {
+                if (signalCache.get(world, outputPos.asLong()) == null) {
                     // Асинхронно рассчитываем сигнал для соседнего блока
                     BlockState neighborState = level.getBlockState(outputPos);
                     RedstoneSignalData predictedSignal = calculateOptimizedSignal(level, outputPos, neighborState);
                     
                     if (predictedSignal != null) {
-                        signalCache.put(outputPos, predictedSignal);
+                        signalCache.put(world, outputPos.asLong(), predictedSignal);
                     }
                 }
             }
@@ -625,17 +631,30 @@ public class RedstonePerformanceEngine {
         long currentTime = System.currentTimeMillis();
         
         // Remove expired signal cache
-        signalCache.entrySet().removeIf(entry -> entry.getValue().isExpired());
+        signalCache.cleanupExpired();
         
         // Remove expired circuit cache
         circuitCache.entrySet().removeIf(entry -> {
             return currentTime - entry.getValue().getTimestamp() > 60000; // 1 minute
         });
-        
-        // Clean up old update times
-        lastUpdateTimes.entrySet().removeIf(entry -> {
-            return currentTime - entry.getValue() > 300000; // 5 minutes
+    }
+    
+    /**
+     * Drop cached signals of changed blocks and their direct neighbours, and the chunks unloaded, in the world of the batch
+     */
+    private void onChunkInvalidation(ChunkInvalidationBus.Batch batch) {
+        String world = batch.getWorld();
+        batch.forEachDirtyBlock(blockPos -> {
+            signalCache.invalidateBlock(world, blockPos);
+            for (Direction direction : Direction.values()) {
+                signalCache.invalidateBlock(world, BlockPos.offset(blockPos, direction));
+            }
         });
+        
+        for (LongIterator iterator = batch.getUnloadedChunks().iterator(); iterator.hasNext();) {
+            long chunkKey = iterator.nextLong();
+            signalCache.invalidateChunk(world, CoordinateUtils.getChunkX(chunkKey), CoordinateUtils.getChunkZ(chunkKey));
+        }
     }
     
     /**
@@ -673,16 +692,14 @@ public class RedstonePerformanceEngine {
      * Redstone signal data container
      */
     private static class RedstoneSignalData {
+        static final long EXPIRATION = 1000; // 1 second
+        
         private BlockPos position;
         private int signalStrength;
         private String blockType;
         private Set<BlockPos> outputPositions = new HashSet<>();
         private long timestamp = System.currentTimeMillis();
         
-        public boolean isExpired() {
-            return System.currentTimeMillis() - timestamp > 1000; // 1 second
-        }
-        
         // Getters and setters
         public BlockPos getPosition() { return position; }
         public void setPosition(BlockPos position) { this.position = position; }
@@ -773,10 +790,11 @@ public class RedstonePerformanceEngine {
     }
 
     public void shutdown() {
+        ChunkInvalidationBus.unregister(invalidationListener);
+
         // Clear all caches
         signalCache.clear();
         circuitCache.clear();
-        lastUpdateTimes.clear();
         optimizedBlocks.clear();
         circuitConnections.clear();
         circuitComponents.clear();
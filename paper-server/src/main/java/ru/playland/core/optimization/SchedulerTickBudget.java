@@ -0,0 +1,238 @@
+package ru.playland.core.optimization;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Logger;
+import net.minecraft.server.MinecraftServer;
+import org.bukkit.plugin.Plugin;
+
+/**
+ * Scheduler Tick Budget
+ * Ограничение времени синхронных задач за тик со справедливым разделением между плагинами
+ *
+ * <p>{@code CraftScheduler#mainThreadHeartbeat} normally runs every due task, so a plugin scheduling a burst of
+ * {@code runTask} work, a world edit or mass teleport, can take a whole tick. With a budget the heartbeat stops
+ * once {@code playland.scheduler.budget-ms} have passed, the remaining due tasks run first on the next tick, in
+ * their usual order since their next run tick sorts them before newer tasks.</p>
+ *
+ * <p>Within the budget every plugin gets an equal share, the budget divided by the number of plugins that had
+ * due tasks on the previous tick. A plugin past its share has the rest of its due tasks moved to the next tick
+ * while others still run. The first task of every plugin in a tick runs as long as the budget lasts, so nobody
+ * starves.</p>
+ *
+ * <p>The budget follows the server's 5 second average tick time: when ticks take longer than 50ms, it shrinks by
+ * the same ratio, down to a quarter.</p>
+ *
+ * <p>Per plugin this keeps histograms of task run time and of how many ticks tasks ran after their due tick.
+ * Main thread only, off by default.</p>
+ */
+public final class SchedulerTickBudget {
+
+    private static final Logger LOGGER = Logger.getLogger("PlayLand-SchedulerBudget");
+
+    private static final long BUDGET_NANOS = (long) (Double.parseDouble(System.getProperty("playland.scheduler.budget-ms", "0")) * 1_000_000.0);
+    public static final boolean ENABLED = BUDGET_NANOS > 0L;
+    private static final double TICK_MILLIS = 50.0;
+
+    private static final Map<String, PluginShare> SHARES = new ConcurrentHashMap<>();
+
+    // Current tick, main thread only
+    private static int tick;
+    private static long tickStart;
+    private static long tickBudget = BUDGET_NANOS;
+    private static long pluginShare = BUDGET_NANOS;
+    private static int activePlugins;
+    private static int lastActivePlugins = 1;
+    private static boolean exhausted;
+    private static PluginShare running;
+    private static long runningStart;
+
+    // Statistics
+    private static final LongAdder totalRun = new LongAdder();
+    private static final LongAdder totalDeferred = new LongAdder();
+    private static final LongAdder exhaustedTicks = new LongAdder();
+
+    static {
+        if (ENABLED) {
+            LOGGER.info("⏳ Scheduler tick budget enabled: " + BUDGET_NANOS / 1_000_000.0 + "ms per tick");
+        }
+    }
+
+    private SchedulerTickBudget() {}
+
+    /**
+     * Starts the budget of a heartbeat
+     */
+    public static void beginTick(final int currentTick) {
+        tick = currentTick;
+        tickStart = System.nanoTime();
+        exhausted = false;
+        lastActivePlugins = Math.max(1, activePlugins);
+        activePlugins = 0;
+
+        long budget = BUDGET_NANOS;
+        final MinecraftServer server = MinecraftServer.getServer();
+        if (server != null) {
+            final double mspt = server.tickTimes5s.getAverage();
+            if (mspt > TICK_MILLIS) {
+                budget = Math.max(BUDGET_NANOS / 4L, (long) (BUDGET_NANOS * (TICK_MILLIS / mspt)));
+            }
+        }
+        tickBudget = budget;
+        pluginShare = budget / lastActivePlugins;
+    }
+
+    /**
+     * Whether a due task of {@code plugin} may run now, if not it waits for the next tick
+     */
+    public static boolean tryRun(final Plugin plugin) {
+        final PluginShare share = SHARES.computeIfAbsent(plugin.getName(), PluginShare::new);
+        if (share.tick != tick) {
+            share.tick = tick;
+            share.used = 0L;
+            share.ran = false;
+            ++activePlugins;
+        }
+
+        final long now = System.nanoTime();
+        if (now - tickStart >= tickBudget) {
+            if (!exhausted) {
+                exhausted = true;
+                exhaustedTicks.increment();
+            }
+            share.deferred.increment();
+            totalDeferred.increment();
+            return false;
+        }
+        if (share.ran && share.used >= pluginShare) {
+            share.deferred.increment();
+            totalDeferred.increment();
+            return false;
+        }
+
+        running = share;
+        runningStart = now;
+        return true;
+    }
+
+    /**
+     * The tick's budget is used up, no further task runs this tick
+     */
+    public static boolean isExhausted() {
+        return exhausted;
+    }
+
+    /**
+     * Records the task started by the last {@link #tryRun}
+     *
+     * @param delayTicks ticks between the task's due tick and now
+     */
+    public static void finish(final long delayTicks) {
+        final PluginShare share = running;
+        if (share == null) {
+            return;
+        }
+        running = null;
+        final long nanos = System.nanoTime() - runningStart;
+        share.used += nanos;
+        share.ran = true;
+        share.runMicros.record(nanos / 1000L);
+        share.delayTicks.record(delayTicks);
+        totalRun.increment();
+    }
+
+    public static Map<String, Object> getStats() {
+        final Map<String, Object> stats = new ConcurrentHashMap<>();
+        stats.put("enabled", ENABLED);
+        stats.put("budget_ms", BUDGET_NANOS / 1_000_000.0);
+        stats.put("current_budget_ms", tickBudget / 1_000_000.0);
+        stats.put("run", totalRun.sum());
+        stats.put("deferred", totalDeferred.sum());
+        stats.put("exhausted_ticks", exhaustedTicks.sum());
+        for (final PluginShare share : SHARES.values()) {
+            stats.put(share.name + "_deferred", share.deferred.sum());
+            stats.put(share.name + "_run_us_p50", share.runMicros.percentile(0.50));
+            stats.put(share.name + "_run_us_p99", share.runMicros.percentile(0.99));
+            stats.put(share.name + "_delay_ticks_p99", share.delayTicks.percentile(0.99));
+        }
+        return stats;
+    }
+
+    /**
+     * Run time histogram of {@code plugin}'s tasks in microseconds, see {@link Histogram#getBuckets()}
+     */
+    public static long[] getRunHistogram(final String plugin) {
+        final PluginShare share = SHARES.get(plugin);
+        return share == null ? new long[Histogram.BUCKETS] : share.runMicros.getBuckets();
+    }
+
+    /**
+     * Histogram of how many ticks after their due tick {@code plugin}'s tasks ran, see {@link Histogram#getBuckets()}
+     */
+    public static long[] getDelayHistogram(final String plugin) {
+        final PluginShare share = SHARES.get(plugin);
+        return share == null ? new long[Histogram.BUCKETS] : share.delayTicks.getBuckets();
+    }
+
+    private static final class PluginShare {
+        final String name;
+        final LongAdder deferred = new LongAdder();
+        final Histogram runMicros = new Histogram();
+        final Histogram delayTicks = new Histogram();
+        // Main thread only
+        int tick = Integer.MIN_VALUE;
+        long used;
+        boolean ran;
+
+        PluginShare(final String name) {
+            this.name = name;
+        }
+    }
+
+    /**
+     * Power of two histogram, bucket 0 counts 0, bucket {@code i} counts values in {@code [2^(i-1), 2^i)}
+     */
+    public static final class Histogram {
+        public static final int BUCKETS = 32;
+
+        private final AtomicLongArray buckets = new AtomicLongArray(BUCKETS);
+
+        void record(final long value) {
+            final int bucket = Math.min(BUCKETS - 1, 64 - Long.numberOfLeadingZeros(Math.max(0L, value)));
+            this.buckets.incrementAndGet(bucket);
+        }
+
+        public long[] getBuckets() {
+            final long[] counts = new long[BUCKETS];
+            for (int i = 0; i < BUCKETS; ++i) {
+                counts[i] = this.buckets.get(i);
+            }
+            return counts;
+        }
+
+        /**
+         * Upper bound of the bucket holding the given percentile, 0 without values
+         */
+        public long percentile(final double percentile) {
+            final long[] counts = this.getBuckets();
+            long total = 0L;
+            for (final long count : counts) {
+                total += count;
+            }
+            if (total == 0L) {
+                return 0L;
+            }
+            final long target = (long) Math.ceil(total * percentile);
+            long seen = 0L;
+            for (int i = 0; i < BUCKETS; ++i) {
+                seen += counts[i];
+                if (seen >= target) {
+                    return i == 0 ? 0L : (1L << i) - 1L;
+                }
+            }
+            return Long.MAX_VALUE;
+        }
+    }
+}
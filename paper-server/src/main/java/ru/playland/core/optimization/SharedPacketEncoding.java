@@ -0,0 +1,358 @@
+package ru.playland.core.optimization;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.buffer.ByteBufUtil;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelHandler;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.util.AttributeKey;
+import java.util.Iterator;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Logger;
+import javax.annotation.Nullable;
+import net.minecraft.network.CompressionEncoder;
+import net.minecraft.network.ConnectionProtocol;
+import net.minecraft.network.protocol.BundlePacket;
+import net.minecraft.network.protocol.Packet;
+import net.minecraft.network.protocol.game.ClientboundEntityPositionSyncPacket;
+import net.minecraft.network.protocol.game.ClientboundMoveEntityPacket;
+import net.minecraft.network.protocol.game.ClientboundRotateHeadPacket;
+import net.minecraft.network.protocol.game.ClientboundSetEntityMotionPacket;
+import net.minecraft.network.protocol.game.ClientboundTeleportEntityPacket;
+import net.minecraft.network.protocol.game.ClientboundUpdateAttributesPacket;
+import net.minecraft.server.MinecraftServer;
+
+/**
+ * Shared Packet Encoding
+ * Однократная сериализация пакетов, рассылаемых всем наблюдателям сущности
+ *
+ * <p>{@code ServerEntity} hands the same move, rotation and entity data packet to every player tracking the
+ * entity, and each connection encodes it again on its event loop. Packets broadcast to at least two viewers are
+ * registered here with the number of viewers. The first {@code PacketEncoder} to encode one keeps a copy of the
+ * bytes in a pooled buffer, the others copy those bytes instead of running the codec. When the next stage of
+ * the pipeline is the vanilla {@code CompressionEncoder}, the compressed form is shared the same way between
+ * connections with the same threshold, as long as the bytes reaching it are still the shared ones. Encryption
+ * stays per connection.</p>
+ *
+ * <p>Only connections in the same protocol share bytes. Packets that may carry text, like entity data or
+ * equipment, are only shared between viewers with the same locale, since Adventure renders components for the locale of
+ * each player while encoding. The last viewer to encode frees the buffers, packets some viewer never encodes
+ * because it disconnected are freed after {@code EXPIRE_TICKS}.</p>
+ *
+ * <p>On by default, {@code -Dplayland.network.shared-encoding=false} encodes every packet per connection again.</p>
+ */
+public final class SharedPacketEncoding {
+
+    private static final Logger LOGGER = Logger.getLogger("PlayLand-SharedEncoding");
+
+    public static final boolean ENABLED = Boolean.parseBoolean(System.getProperty("playland.network.shared-encoding", "true"));
+    private static final int MIN_VIEWERS = 2;
+    private static final int EXPIRE_TICKS = 40;
+    private static final int SWEEP_INTERVAL = 20;
+
+    private static final AttributeKey<Shared> PENDING_COMPRESSION = AttributeKey.valueOf("playland_shared_compression");
+
+    private static final Map<Key, Shared> SHARED = new ConcurrentHashMap<>();
+    // Classes of shared packets, skips the lookup for everything else
+    private static final Set<Class<?>> SHARED_TYPES = ConcurrentHashMap.newKeySet();
+
+    private static int lastTick = Integer.MIN_VALUE;
+    private static int lastSweep;
+
+    // Statistics
+    private static final LongAdder sharedPackets = new LongAdder();
+    private static final LongAdder encodes = new LongAdder();
+    private static final LongAdder reusedEncodes = new LongAdder();
+    private static final LongAdder reusedBytes = new LongAdder();
+    private static final LongAdder compressions = new LongAdder();
+    private static final LongAdder reusedCompressions = new LongAdder();
+    private static final LongAdder mismatchedCompressions = new LongAdder();
+    private static final LongAdder expired = new LongAdder();
+    private static final LongAdder ticks = new LongAdder();
+
+    static {
+        if (ENABLED) {
+            LOGGER.info("📡 Shared broadcast packet encoding enabled");
+        }
+    }
+
+    private SharedPacketEncoding() {}
+
+    /**
+     * Registers a packet about to be sent to {@code viewers} connections, main thread
+     */
+    public static void share(final Packet<?> packet, final int viewers) {
+        if (!ENABLED || viewers < MIN_VIEWERS) {
+            return;
+        }
+        final int tick = MinecraftServer.currentTick;
+        if (tick != lastTick) {
+            lastTick = tick;
+            ticks.increment();
+            if (tick - lastSweep >= SWEEP_INTERVAL) {
+                lastSweep = tick;
+                sweep(tick);
+            }
+        }
+        if (packet instanceof final BundlePacket<?> bundle) {
+            // The unbundler hands the sub packets to the encoder one by one
+            for (final Packet<?> subPacket : bundle.subPackets()) {
+                register(subPacket, viewers, tick);
+            }
+            return;
+        }
+        register(packet, viewers, tick);
+    }
+
+    private static void register(final Packet<?> packet, final int viewers, final int tick) {
+        final boolean localeSensitive = !(packet instanceof ClientboundMoveEntityPacket
+            || packet instanceof ClientboundRotateHeadPacket
+            || packet instanceof ClientboundSetEntityMotionPacket
+            || packet instanceof ClientboundTeleportEntityPacket
+            || packet instanceof ClientboundEntityPositionSyncPacket
+            || packet instanceof ClientboundUpdateAttributesPacket);
+        final Shared previous = SHARED.put(new Key(packet), new Shared(packet, viewers, localeSensitive, tick));
+        if (previous != null) {
+            // Sent again before every viewer encoded it, the old count is useless
+            previous.free();
+        }
+        SHARED_TYPES.add(packet.getClass());
+        sharedPackets.increment();
+    }
+
+    private static void sweep(final int tick) {
+        for (final Iterator<Shared> iterator = SHARED.values().iterator(); iterator.hasNext();) {
+            final Shared shared = iterator.next();
+            if (tick - shared.tick > EXPIRE_TICKS) {
+                iterator.remove();
+                shared.free();
+                expired.increment();
+            }
+        }
+    }
+
+    /**
+     * The shared encoding of a packet, taken by the encoder of one viewer, which has to {@link Shared#release()}
+     * it or {@link #handOver} it to the compression stage
+     */
+    @Nullable
+    public static Shared lookup(final Packet<?> packet) {
+        if (!ENABLED || SHARED.isEmpty() || !SHARED_TYPES.contains(packet.getClass())) {
+            return null;
+        }
+        return SHARED.get(new Key(packet));
+    }
+
+    /**
+     * Called by the encoder after it wrote the packet, the compression stage releases the shared encoding if it
+     * can share its work, otherwise it is released here
+     *
+     * @param sharedBytes whether the encoder wrote the shared bytes or stored its own as them
+     */
+    public static void handOver(final ChannelHandlerContext context, final Shared shared, final boolean sharedBytes) {
+        final ChannelHandler compress = sharedBytes ? context.pipeline().get("compress") : null;
+        // Subclasses like SmartCompressionEncoder compress differently
+        if (compress != null && compress.getClass() == CompressionEncoder.class) {
+            final Shared previous = context.channel().attr(PENDING_COMPRESSION).getAndSet(shared);
+            if (previous != null) {
+                previous.release();
+            }
+            return;
+        }
+        shared.release();
+    }
+
+    /**
+     * The shared encoding handed over for the packet being compressed on {@code channel}, to be released by the
+     * caller
+     */
+    @Nullable
+    public static Shared takePending(final Channel channel) {
+        if (!ENABLED) {
+            return null;
+        }
+        return channel.attr(PENDING_COMPRESSION).getAndSet(null);
+    }
+
+    public static Map<String, Object> getStats() {
+        final Map<String, Object> stats = new ConcurrentHashMap<>();
+        stats.put("enabled", ENABLED);
+        stats.put("pending", SHARED.size());
+        stats.put("shared_packets", sharedPackets.sum());
+        stats.put("encodes", encodes.sum());
+        stats.put("reused_encodes", reusedEncodes.sum());
+        stats.put("reused_bytes", reusedBytes.sum());
+        stats.put("compressions", compressions.sum());
+        stats.put("reused_compressions", reusedCompressions.sum());
+        stats.put("mismatched_compressions", mismatchedCompressions.sum());
+        stats.put("expired", expired.sum());
+        final long ticks = Math.max(1L, SharedPacketEncoding.ticks.sum());
+        // Codec and deflate runs saved, per tick with shared packets
+        stats.put("reused_encodes_per_tick", (double) reusedEncodes.sum() / ticks);
+        stats.put("reused_bytes_per_tick", (double) reusedBytes.sum() / ticks);
+        stats.put("reused_compressions_per_tick", (double) reusedCompressions.sum() / ticks);
+        return stats;
+    }
+
+    // Packets are records, equal packets of different entities must not share a viewer count
+    private record Key(Packet<?> packet) {
+
+        @Override
+        public boolean equals(final Object other) {
+            return other instanceof final Key key && key.packet == this.packet;
+        }
+
+        @Override
+        public int hashCode() {
+            return System.identityHashCode(this.packet);
+        }
+    }
+
+    /**
+     * The encoding of one broadcast packet, used from the event loops of all viewers
+     */
+    public static final class Shared {
+        private final Key key;
+        private final boolean localeSensitive;
+        private final int tick;
+        private int viewers;
+        private boolean freed;
+
+        @Nullable
+        private ByteBuf encoded;
+        @Nullable
+        private ConnectionProtocol protocol;
+        @Nullable
+        private Locale locale;
+
+        @Nullable
+        private ByteBuf compressed;
+        private int compressionThreshold;
+
+        Shared(final Packet<?> packet, final int viewers, final boolean localeSensitive, final int tick) {
+            this.key = new Key(packet);
+            this.viewers = viewers;
+            this.localeSensitive = localeSensitive;
+            this.tick = tick;
+        }
+
+        private boolean matches(final ConnectionProtocol protocol, @Nullable final Locale locale) {
+            return this.protocol == protocol && (!this.localeSensitive || Objects.equals(this.locale, locale));
+        }
+
+        /**
+         * Writes the encoded packet if another viewer encoded it for the same protocol and locale
+         */
+        public synchronized boolean write(final ConnectionProtocol protocol, @Nullable final Locale locale, final ByteBuf out) {
+            final ByteBuf encoded = this.encoded;
+            if (this.freed || encoded == null || !this.matches(protocol, locale)) {
+                return false;
+            }
+            out.writeBytes(encoded, encoded.readerIndex(), encoded.readableBytes());
+            reusedEncodes.increment();
+            reusedBytes.add(encoded.readableBytes());
+            return true;
+        }
+
+        /**
+         * Keeps the packet {@code in} was just encoded to for the other viewers
+         *
+         * @return false if another viewer stored its encoding first
+         */
+        public synchronized boolean store(final ConnectionProtocol protocol, @Nullable final Locale locale, final ByteBufAllocator allocator, final ByteBuf in) {
+            if (this.freed || this.encoded != null) {
+                return false;
+            }
+            final int length = in.readableBytes();
+            final ByteBuf encoded = allocator.directBuffer(length, length);
+            encoded.writeBytes(in, in.readerIndex(), length);
+            this.encoded = encoded;
+            this.protocol = protocol;
+            this.locale = locale;
+            encodes.increment();
+            return true;
+        }
+
+        /**
+         * Writes the compressed packet if another viewer compressed it with the same threshold, only called once
+         * {@link #isEncoding} confirmed the compression stage got the shared bytes
+         */
+        public synchronized boolean writeCompressed(final int threshold, final ByteBuf out) {
+            final ByteBuf compressed = this.compressed;
+            if (this.freed || compressed == null || this.compressionThreshold != threshold) {
+                return false;
+            }
+            out.writeBytes(compressed, compressed.readerIndex(), compressed.readableBytes());
+            reusedCompressions.increment();
+            return true;
+        }
+
+        /**
+         * Whether the compression stage got the shared bytes. The handover only goes by channel, a handler between
+         * the encoder and the compression stage, like ViaVersion, may rewrite the packet, or drop it so the share is
+         * taken by the next packet of the channel instead. The compare is a pass over bytes about to be deflated.
+         */
+        public synchronized boolean isEncoding(final ByteBuf in) {
+            final ByteBuf encoded = this.encoded;
+            if (this.freed || encoded == null) {
+                return false;
+            }
+            if (!ByteBufUtil.equals(encoded, in)) {
+                mismatchedCompressions.increment();
+                return false;
+            }
+            return true;
+        }
+
+        /**
+         * Keeps the compressed packet written to {@code out} from {@code start} for the other viewers, only called
+         * for the shared bytes
+         */
+        public synchronized void storeCompressed(final int threshold, final ByteBufAllocator allocator, final ByteBuf out, final int start) {
+            if (this.freed || this.compressed != null) {
+                return;
+            }
+            final int length = out.writerIndex() - start;
+            final ByteBuf compressed = allocator.directBuffer(length, length);
+            compressed.writeBytes(out, start, length);
+            this.compressed = compressed;
+            this.compressionThreshold = threshold;
+            compressions.increment();
+        }
+
+        /**
+         * One viewer is done with the packet, the last one frees it
+         */
+        public void release() {
+            final boolean last;
+            synchronized (this) {
+                last = !this.freed && --this.viewers <= 0;
+            }
+            if (last) {
+                SHARED.remove(this.key, this);
+                this.free();
+            }
+        }
+
+        synchronized void free() {
+            if (this.freed) {
+                return;
+            }
+            this.freed = true;
+            if (this.encoded != null) {
+                this.encoded.release();
+                this.encoded = null;
+            }
+            if (this.compressed != null) {
+                this.compressed.release();
+                this.compressed = null;
+            }
+        }
+    }
+}
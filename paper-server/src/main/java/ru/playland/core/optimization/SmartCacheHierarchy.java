@@ -1,5 +1,6 @@
 package ru.playland.core.optimization;
 
+import it.unimi.dsi.fastutil.HashCommon;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.atomic.AtomicLong;
 import java.util.logging.Logger;
@@ -11,6 +12,7 @@ import java.util.ArrayList;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
 
 /**
  * Smart Cache Hierarchy
@@ -42,6 +44,16 @@ public class SmartCacheHierarchy {
     private final Map<String, CacheEntry> l3Cache = new ConcurrentHashMap<>();
     private final Queue<String> l3AccessOrder = new ConcurrentLinkedQueue<>();
     
+    // Primitive keyed tiers - W-TinyLFU, no per-access allocation or bookkeeping maps
+    // Final and sized from the settings in the constructor, so every thread sees the same tiers
+    private final LongKeyCacheTier<Object> primitiveL1;
+    private final LongKeyCacheTier<Object> primitiveL2;
+    private final LongKeyCacheTier<Object> primitiveL3;
+    // Writes and promotions of a key are serialized, otherwise a promotion could move a value over a newer one
+    private final Object[] primitiveKeyLocks = new Object[64];
+    private final LongAdder primitiveRequests = new LongAdder();
+    private final LongAdder primitiveMisses = new LongAdder();
+    
     // Cache management
     private final ScheduledExecutorService cacheManager = Executors.newSingleThreadScheduledExecutor();
     private final Map<String, Long> accessFrequency = new ConcurrentHashMap<>();
@@ -62,10 +74,37 @@ public class SmartCacheHierarchy {
     private long l2TTL = 300000;       // 5 minutes
     private long l3TTL = 3600000;      // 1 hour
     
+    // Demotion chain for primitive tiers: L1 -> L2 -> L3 -> dropped
+    private final LongKeyCacheTier.EvictionListener<Object> demoteToL3;
+    private final LongKeyCacheTier.EvictionListener<Object> demoteToL2;
+    
+    public SmartCacheHierarchy() {
+        loadCacheSettings();
+        
+        for (int i = 0; i < primitiveKeyLocks.length; i++) {
+            primitiveKeyLocks[i] = new Object();
+        }
+        
+        primitiveL1 = new LongKeyCacheTier<>("L1", l1MaxSize, l1TTL);
+        primitiveL2 = new LongKeyCacheTier<>("L2", l2MaxSize, l2TTL);
+        primitiveL3 = new LongKeyCacheTier<>("L3", l3MaxSize, l3TTL);
+        demoteToL3 = (key, value) -> {
+            if (enableL3Cache) {
+                primitiveL3.put(key, value);
+            }
+        };
+        demoteToL2 = (key, value) -> {
+            if (enableL2Cache) {
+                primitiveL2.put(key, value, demoteToL3);
+            } else {
+                demoteToL3.onEvict(key, value);
+            }
+        };
+    }
+    
     public void initialize() {
         LOGGER.info("💾 Initializing Smart Cache Hierarchy...");
         
-        loadCacheSettings();
         startCacheManagement();
         startCacheOptimization();
         
@@ -227,6 +266,94 @@ public class SmartCacheHierarchy {
         lastAccessTime.put(key, currentTime);
     }
     
+    /**
+     * Get value from the primitive keyed tiers (int keys widen to long)
+     * Hits in L2/L3 are promoted one level up, W-TinyLFU admission decides what stays
+     */
+    public Object get(long key) {
+        primitiveRequests.increment();
+        
+        if (enableL1Cache) {
+            Object value = primitiveL1.get(key);
+            if (value != null) {
+                return value;
+            }
+        }
+        
+        if (enableL2Cache) {
+            Object value = primitiveL2.get(key);
+            if (value != null) {
+                if (enableL1Cache) {
+                    promote(key, value, primitiveL2, primitiveL1, demoteToL2);
+                }
+                return value;
+            }
+        }
+        
+        if (enableL3Cache) {
+            Object value = primitiveL3.get(key);
+            if (value != null) {
+                if (enableL2Cache) {
+                    promote(key, value, primitiveL3, primitiveL2, demoteToL3);
+                }
+                return value;
+            }
+        }
+        
+        primitiveMisses.increment();
+        return null;
+    }
+    
+    /**
+     * Move a value one tier up, unless a put replaced it since it was read. A value already in the upper tier
+     * is newer, an eviction racing a put can leave an older copy below it, so that copy is just dropped.
+     */
+    private void promote(long key, Object value, LongKeyCacheTier<Object> from, LongKeyCacheTier<Object> to,
+                         LongKeyCacheTier.EvictionListener<Object> demote) {
+        synchronized (primitiveKeyLock(key)) {
+            if (from.remove(key, value) && to.putIfAbsent(key, value, demote)) {
+                cachePromotions.incrementAndGet();
+            }
+        }
+    }
+    
+    private Object primitiveKeyLock(long key) {
+        return primitiveKeyLocks[(int) HashCommon.mix(key) & (primitiveKeyLocks.length - 1)];
+    }
+    
+    /**
+     * Put value into the primitive keyed tiers
+     * New entries enter the highest enabled tier, entries it rejects or evicts are demoted
+     */
+    public void put(long key, Object value) {
+        synchronized (primitiveKeyLock(key)) {
+            putPrimitive(key, value);
+        }
+    }
+    
+    private void putPrimitive(long key, Object value) {
+        if (enableL1Cache) {
+            // drop stale copies so a demoted older value can never shadow this one
+            if (enableL2Cache && primitiveL2.containsKey(key)) primitiveL2.remove(key);
+            if (enableL3Cache && primitiveL3.containsKey(key)) primitiveL3.remove(key);
+            primitiveL1.put(key, value, demoteToL2);
+        } else if (enableL2Cache) {
+            if (enableL3Cache && primitiveL3.containsKey(key)) primitiveL3.remove(key);
+            primitiveL2.put(key, value, demoteToL3);
+        } else if (enableL3Cache) {
+            primitiveL3.put(key, value);
+        }
+    }
+    
+    /**
+     * Remove primitive key from all cache levels
+     */
+    public void remove(long key) {
+        primitiveL1.remove(key);
+        primitiveL2.remove(key);
+        primitiveL3.remove(key);
+    }
+    
     /**
      * Put value directly in L1 cache
      */
@@ -374,6 +501,11 @@ public class SmartCacheHierarchy {
         // Clean expired entries from L3
         l3Cache.entrySet().removeIf(entry -> entry.getValue().isExpired(currentTime, l3TTL));
         
+        // Clean expired primitive entries
+        primitiveL1.cleanUp();
+        primitiveL2.cleanUp();
+        primitiveL3.cleanUp();
+        
         // Clean old access tracking
         long cutoffTime = currentTime - 3600000; // 1 hour
         lastAccessTime.entrySet().removeIf(entry -> entry.getValue() < cutoffTime);
@@ -550,6 +682,10 @@ public class SmartCacheHierarchy {
         
         accessFrequency.clear();
         lastAccessTime.clear();
+        
+        primitiveL1.clear();
+        primitiveL2.clear();
+        primitiveL3.clear();
     }
     
     /**
@@ -584,6 +720,23 @@ public class SmartCacheHierarchy {
             stats.put("l3_hit_rate", (l3Hits.get() * 100.0) / totalOps);
         }
         
+        // Primitive tiers - tier hit rate is hits / lookups that reached that tier
+        long primitiveTotal = primitiveRequests.sum();
+        stats.put("primitive_requests", primitiveTotal);
+        stats.put("primitive_misses", primitiveMisses.sum());
+        if (primitiveTotal > 0) {
+            stats.put("primitive_hit_rate", ((primitiveTotal - primitiveMisses.sum()) * 100.0) / primitiveTotal);
+        }
+        for (LongKeyCacheTier<Object> tier : List.of(primitiveL1, primitiveL2, primitiveL3)) {
+            String prefix = "primitive_" + tier.getName().toLowerCase() + "_";
+            stats.put(prefix + "hits", tier.getHits());
+            stats.put(prefix + "hit_rate", tier.getHitRate());
+            stats.put(prefix + "size", tier.size());
+            stats.put(prefix + "max_size", tier.maxSize());
+            stats.put(prefix + "evictions", tier.getEvictions());
+            stats.put(prefix + "rejections", tier.getRejections());
+        }
+        
         return stats;
     }
     
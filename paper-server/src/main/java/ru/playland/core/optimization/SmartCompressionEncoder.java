@@ -0,0 +1,292 @@
+package ru.playland.core.optimization;
+
+import com.velocitypowered.natives.compression.VelocityCompressor;
+import com.velocitypowered.natives.util.MoreByteBufUtils;
+import com.velocitypowered.natives.util.Natives;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.util.AttributeKey;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import net.minecraft.network.CompressionEncoder;
+import net.minecraft.network.FriendlyByteBuf;
+import net.minecraft.network.VarInt;
+import net.minecraft.network.protocol.login.ClientboundCustomQueryPacket;
+import net.minecraft.network.protocol.login.ServerboundCustomQueryAnswerPacket;
+import net.minecraft.network.protocol.login.custom.CustomQueryAnswerPayload;
+import net.minecraft.resources.ResourceLocation;
+
+/**
+ * Smart Compression Encoder
+ * Адаптивное сжатие пакетов прямо в Netty pipeline, без копирования в byte[]
+ *
+ * <p>Replaces the {@code compress} stage installed by {@code Connection#setupCompression} when
+ * {@code -Dplayland.network.pipeline.enabled=true}. The wire format is the vanilla one, so clients and
+ * proxies need no changes. The compression level is picked per packet by size the same way
+ * {@link SmartNetworkCompression} picks its algorithm, and a packet that does not compress below the
+ * ratio threshold is sent uncompressed instead.</p>
+ *
+ * <p>Input and output stay in the pooled direct buffers provided by the channel allocator and the
+ * compressors of each level are created once per channel, so a packet adds no heap garbage.</p>
+ *
+ * <p>Shared dictionary mode ({@code -Dplayland.network.dictionary.file=<file>}) compresses packets with a
+ * {@link PacketDictionary} trained offline, small ones below the compression threshold included, since those gain
+ * the most from it. Vanilla clients cannot inflate such packets, so every connection is asked first: a login query
+ * on the {@code playland:packet_dictionary} channel carries the dictionary id, and only a connection that answers
+ * with the same id, a proxy that loads the same dictionary, gets dictionary compressed packets. An answer must
+ * arrive before compression is set up at the end of the login, anything else keeps the vanilla format. Samples for
+ * training are captured with {@code -Dplayland.network.dictionary.capture=<dir>}.</p>
+ */
+public final class SmartCompressionEncoder extends CompressionEncoder {
+
+    private static final boolean ENABLED = Boolean.parseBoolean(System.getProperty("playland.network.pipeline.enabled", "false"));
+    private static final double COMPRESSION_THRESHOLD = Double.parseDouble(System.getProperty("playland.network.compression.threshold", "0.8"));
+    private static final int MAXIMUM_UNCOMPRESSED_LENGTH = 8388608;
+
+    private static final Logger LOGGER = Logger.getLogger("PlayLand-SmartNetwork");
+
+    // Shared dictionary mode
+    private static final PacketDictionary DICTIONARY = loadDictionary(System.getProperty("playland.network.dictionary.file"));
+    private static final int DICTIONARY_LEVEL = Integer.getInteger("playland.network.dictionary.level", 6);
+    // Smaller packets gain nothing even with a dictionary, zlib adds 6 bytes
+    private static final int DICTIONARY_MIN_SIZE = Integer.getInteger("playland.network.dictionary.min-size", 16);
+    public static final ResourceLocation DICTIONARY_CHANNEL = ResourceLocation.fromNamespaceAndPath("playland", "packet_dictionary");
+    private static final AttributeKey<Boolean> DICTIONARY_ACCEPTED = AttributeKey.valueOf("playland:packet_dictionary");
+
+    // Sample capture for dictionary training
+    private static final Path CAPTURE_DIRECTORY = captureDirectory(System.getProperty("playland.network.dictionary.capture"));
+    private static final int CAPTURE_INTERVAL = Integer.getInteger("playland.network.dictionary.capture.interval", 16);
+    private static final int CAPTURE_LIMIT = Integer.getInteger("playland.network.dictionary.capture.limit", 20000);
+    private static final AtomicInteger captureCounter = new AtomicInteger();
+    private static final AtomicInteger capturedSamples = new AtomicInteger();
+    private static ExecutorService captureWriter;
+
+    private static final int FAST_LEVEL = 1;
+    private static final int BEST_LEVEL = 9;
+
+    // Pipeline statistics
+    private static final LongAdder packetsCompressed = new LongAdder();
+    private static final LongAdder packetsFallback = new LongAdder();
+    private static final LongAdder bytesIn = new LongAdder();
+    private static final LongAdder bytesOut = new LongAdder();
+    private static final LongAdder packetsDictionary = new LongAdder();
+    private static final LongAdder dictionaryConnections = new LongAdder();
+
+    private final VelocityCompressor defaultCompressor;
+    private VelocityCompressor fastCompressor;
+    private VelocityCompressor bestCompressor;
+    private DictionaryCompressor dictionaryCompressor;
+    private boolean dictionaryAccepted;
+
+    /**
+     * @param compressor the compressor created by {@code Connection#setupCompression}, shared with the decoder
+     * @param threshold the vanilla compression threshold
+     */
+    public SmartCompressionEncoder(final VelocityCompressor compressor, final int threshold) {
+        super(compressor, threshold);
+        this.defaultCompressor = compressor;
+    }
+
+    public static boolean isEnabled() {
+        return ENABLED;
+    }
+
+    public static boolean isDictionaryMode() {
+        return ENABLED && DICTIONARY != null;
+    }
+
+    /**
+     * The login query asking a connection whether it inflates packets with the loaded dictionary
+     */
+    public static ClientboundCustomQueryPacket createDictionaryQuery(final int transactionId) {
+        final FriendlyByteBuf buf = new FriendlyByteBuf(Unpooled.buffer());
+        buf.writeInt(DICTIONARY.id());
+        buf.writeVarInt(DICTIONARY.size());
+        return new ClientboundCustomQueryPacket(transactionId, new ClientboundCustomQueryPacket.PlayerInfoChannelPayload(DICTIONARY_CHANNEL, buf));
+    }
+
+    /**
+     * Marks {@code channel} for dictionary compression if the answer to {@link #createDictionaryQuery} names the
+     * loaded dictionary. Clients that don't know the channel answer without a payload.
+     */
+    public static void handleDictionaryAnswer(final Channel channel, final CustomQueryAnswerPayload payload) {
+        if (payload instanceof final ServerboundCustomQueryAnswerPacket.QueryAnswerPayload answer
+            && answer.buffer.readableBytes() >= Integer.BYTES && answer.buffer.readInt() == DICTIONARY.id()) {
+            channel.attr(DICTIONARY_ACCEPTED).set(Boolean.TRUE);
+        }
+    }
+
+    private static PacketDictionary loadDictionary(final String file) {
+        if (file == null || file.isEmpty()) {
+            return null;
+        }
+        try {
+            final PacketDictionary dictionary = PacketDictionary.load(Path.of(file));
+            LOGGER.info("📚 Shared compression dictionary loaded: " + dictionary.size() + " bytes");
+            return dictionary;
+        } catch (final Exception e) {
+            LOGGER.log(Level.WARNING, "Failed to load compression dictionary " + file + ", dictionary mode disabled", e);
+            return null;
+        }
+    }
+
+    private static Path captureDirectory(final String directory) {
+        if (directory == null || directory.isEmpty()) {
+            return null;
+        }
+        try {
+            return Files.createDirectories(Path.of(directory));
+        } catch (final Exception e) {
+            LOGGER.log(Level.WARNING, "Failed to create packet capture directory " + directory, e);
+            return null;
+        }
+    }
+
+    /**
+     * Copy every {@code CAPTURE_INTERVAL}th compressible payload to the capture directory, off the event loop
+     */
+    private static void captureSample(final ByteBuf payload, final int readerIndex, final int size) {
+        if (captureCounter.incrementAndGet() % CAPTURE_INTERVAL != 0) {
+            return;
+        }
+        final int sample = capturedSamples.incrementAndGet();
+        if (sample > CAPTURE_LIMIT) {
+            return;
+        }
+        final byte[] bytes = new byte[size];
+        payload.getBytes(readerIndex, bytes);
+        synchronized (SmartCompressionEncoder.class) {
+            if (captureWriter == null) {
+                captureWriter = Executors.newSingleThreadExecutor(runnable -> {
+                    final Thread thread = new Thread(runnable, "PlayLand-PacketCapture");
+                    thread.setDaemon(true);
+                    return thread;
+                });
+            }
+        }
+        captureWriter.execute(() -> {
+            try {
+                Files.write(CAPTURE_DIRECTORY.resolve("packet-" + sample + ".bin"), bytes);
+            } catch (final Exception e) {
+                LOGGER.log(Level.FINE, "Failed to write packet sample", e);
+            }
+        });
+    }
+
+    private VelocityCompressor compressorFor(final int size) {
+        if (size > SmartNetworkCompression.LARGE_PACKET_SIZE) {
+            if (this.bestCompressor == null) {
+                this.bestCompressor = Natives.compress.get().create(BEST_LEVEL);
+            }
+            return this.bestCompressor;
+        } else if (size < SmartNetworkCompression.SMALL_PACKET_SIZE) {
+            if (this.fastCompressor == null) {
+                this.fastCompressor = Natives.compress.get().create(FAST_LEVEL);
+            }
+            return this.fastCompressor;
+        }
+        return this.defaultCompressor;
+    }
+
+    @Override
+    public void handlerAdded(final ChannelHandlerContext ctx) throws Exception {
+        super.handlerAdded(ctx);
+        // Compression starts now, an answer arriving later can't change the format any more
+        this.dictionaryAccepted = DICTIONARY != null && Boolean.TRUE.equals(ctx.channel().attr(DICTIONARY_ACCEPTED).get());
+        if (this.dictionaryAccepted) {
+            dictionaryConnections.increment();
+        }
+    }
+
+    @Override
+    protected void encode(final ChannelHandlerContext context, final ByteBuf encodingByteBuf, final ByteBuf byteBuf) throws Exception {
+        final int size = encodingByteBuf.readableBytes();
+        if (size > MAXIMUM_UNCOMPRESSED_LENGTH) {
+            throw new IllegalArgumentException("Packet too big (is " + size + ", should be less than " + MAXIMUM_UNCOMPRESSED_LENGTH + ")");
+        }
+        if (size < (this.dictionaryAccepted ? DICTIONARY_MIN_SIZE : this.getThreshold())) {
+            VarInt.write(byteBuf, 0);
+            byteBuf.writeBytes(encodingByteBuf);
+            return;
+        }
+
+        final int readerIndex = encodingByteBuf.readerIndex();
+        final int writerIndex = byteBuf.writerIndex();
+        if (CAPTURE_DIRECTORY != null) {
+            captureSample(encodingByteBuf, readerIndex, size);
+        }
+        VarInt.write(byteBuf, size);
+        if (this.dictionaryAccepted) {
+            if (this.dictionaryCompressor == null) {
+                this.dictionaryCompressor = new DictionaryCompressor(DICTIONARY, DICTIONARY_LEVEL);
+            }
+            this.dictionaryCompressor.deflate(encodingByteBuf, byteBuf);
+            packetsDictionary.increment();
+        } else {
+            final VelocityCompressor compressor = this.compressorFor(size);
+            final ByteBuf compatibleIn = MoreByteBufUtils.ensureCompatible(context.alloc(), compressor, encodingByteBuf);
+            try {
+                compressor.deflate(compatibleIn, byteBuf);
+            } finally {
+                compatibleIn.release();
+            }
+        }
+
+        bytesIn.add(size);
+        if (byteBuf.writerIndex() - writerIndex >= size * COMPRESSION_THRESHOLD) {
+            // did not compress well enough, a zero length prefix tells the receiver the payload is raw
+            byteBuf.writerIndex(writerIndex);
+            VarInt.write(byteBuf, 0);
+            byteBuf.writeBytes(encodingByteBuf, readerIndex, size);
+            encodingByteBuf.readerIndex(readerIndex + size);
+            packetsFallback.increment();
+        } else {
+            packetsCompressed.increment();
+        }
+        bytesOut.add(byteBuf.writerIndex() - writerIndex);
+    }
+
+    @Override
+    public void handlerRemoved(final ChannelHandlerContext ctx) {
+        super.handlerRemoved(ctx);
+        if (this.fastCompressor != null) {
+            this.fastCompressor.close();
+            this.fastCompressor = null;
+        }
+        if (this.bestCompressor != null) {
+            this.bestCompressor.close();
+            this.bestCompressor = null;
+        }
+        if (this.dictionaryCompressor != null) {
+            this.dictionaryCompressor.close();
+            this.dictionaryCompressor = null;
+        }
+    }
+
+    public static Map<String, Object> getStats() {
+        final Map<String, Object> stats = new ConcurrentHashMap<>();
+        final long in = bytesIn.sum();
+        final long out = bytesOut.sum();
+        stats.put("pipeline_enabled", ENABLED);
+        stats.put("pipeline_packets_compressed", packetsCompressed.sum());
+        stats.put("pipeline_packets_fallback", packetsFallback.sum());
+        stats.put("pipeline_packets_dictionary", packetsDictionary.sum());
+        stats.put("pipeline_dictionary_size", DICTIONARY != null ? DICTIONARY.size() : 0);
+        stats.put("pipeline_dictionary_connections", dictionaryConnections.sum());
+        stats.put("pipeline_captured_samples", Math.min(capturedSamples.get(), CAPTURE_LIMIT));
+        stats.put("pipeline_bytes_in", in);
+        stats.put("pipeline_bytes_out", out);
+        stats.put("pipeline_compression_ratio", in > 0 ? (double) out / in : 1.0);
+        return stats;
+    }
+}
@@ -23,6 +23,10 @@ public class SmartNetworkCompression {
     
     private static final Logger LOGGER = Logger.getLogger("PlayLand-SmartNetwork");
     
+    // Packet size classes used to pick the compression level, shared with SmartCompressionEncoder
+    static final int LARGE_PACKET_SIZE = 1024;
+    static final int SMALL_PACKET_SIZE = 256;
+    
     // Network compression statistics
     private final AtomicLong packetsCompressed = new AtomicLong(0);
     private final AtomicLong bytesCompressed = new AtomicLong(0);
@@ -334,13 +338,13 @@ public class SmartNetworkCompression {
         }
         
         // Analyze data characteristics
-        if (data.length > 1024) {
+        if (data.length > LARGE_PACKET_SIZE) {
             // Large packets - use best compression
             return algorithms.stream()
                 .filter(a -> a.getName().equals("BEST_COMPRESSION"))
                 .findFirst()
                 .orElse(algorithms.get(0));
-        } else if (data.length < 256) {
+        } else if (data.length < SMALL_PACKET_SIZE) {
             // Small packets - use fast compression
             return algorithms.stream()
                 .filter(a -> a.getName().equals("BEST_SPEED"))
@@ -647,6 +651,9 @@ public class SmartNetworkCompression {
             stats.put("bandwidth_savings_percent", bandwidthSavings);
         }
         
+        // Netty pipeline stage
+        stats.putAll(SmartCompressionEncoder.getStats());
+        
         return stats;
     }
     
@@ -0,0 +1,397 @@
+package ru.playland.core.optimization;
+
+import java.util.AbstractQueue;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Logger;
+
+/**
+ * Task Timing Wheel
+ * Иерархическое колесо таймеров для задач планировщика по номеру тика
+ *
+ * <p>Drop-in for the {@code PriorityQueue} of pending tasks in {@code CraftScheduler}. Tasks are bucketed by the
+ * tick they run on: the first level has one slot per tick for the next 256 ticks, three more levels of 64 slots
+ * each cover up to 2^26 ticks, later tasks wait in an overflow list. Whenever the tick counter crosses a slot
+ * boundary of a higher level, that slot is cascaded down. Scheduling, rescheduling and polling a task are O(1)
+ * instead of a heap sift over every pending task.</p>
+ *
+ * <p>Tasks carry their own links ({@link Node}), so removing one, e.g. on cancellation, unlinks it right away
+ * instead of leaving a tombstone behind, and needs no search when the task is known.</p>
+ *
+ * <p>Order is the same as the queue's comparator: by tick, then by {@link Node#getWheelOrder()}, the creation
+ * time of the task. Tasks of one tick are sorted when their slot comes due, tasks that are already due are
+ * inserted in order. {@link #poll()} returns the first due task in O(1), {@link #peek()} of a wheel without due
+ * tasks has to scan it.</p>
+ *
+ * <p>Not thread-safe, owned by the thread running the scheduler like the queue it replaces. On by default,
+ * {@code -Dplayland.scheduler.timingwheel=false} brings the priority queue back.</p>
+ */
+public final class TaskTimingWheel<T extends TaskTimingWheel.Node> extends AbstractQueue<T> {
+
+    private static final Logger LOGGER = Logger.getLogger("PlayLand-TaskTimingWheel");
+
+    public static final boolean ENABLED = Boolean.parseBoolean(System.getProperty("playland.scheduler.timingwheel", "true"));
+
+    private static final int ROOT_BITS = 8;
+    private static final int ROOT_SIZE = 1 << ROOT_BITS;
+    private static final int LEVEL_BITS = 6;
+    private static final int LEVEL_SIZE = 1 << LEVEL_BITS;
+    private static final int LEVELS = 3;
+    private static final int WHEEL_BITS = ROOT_BITS + LEVELS * LEVEL_BITS;
+    // Slot ids: the root level, the upper levels, then the overflow and due lists
+    private static final int OVERFLOW = ROOT_SIZE + LEVELS * LEVEL_SIZE;
+    private static final int DUE = OVERFLOW + 1;
+    private static final int SLOTS = DUE + 1;
+
+    private static final Comparator<Node> ORDER = Comparator.comparingLong(Node::getWheelOrder);
+
+    // Statistics
+    private static final LongAdder totalScheduled = new LongAdder();
+    private static final LongAdder totalCascaded = new LongAdder();
+    private static final LongAdder totalRemoved = new LongAdder();
+    private static final LongAdder totalSorted = new LongAdder();
+
+    static {
+        if (ENABLED) {
+            LOGGER.info("🕰️ Scheduler timing wheel enabled");
+        }
+    }
+
+    private final Node[] heads = new Node[SLOTS];
+    private final Node[] tails = new Node[SLOTS];
+    // Next tick to move into the due list, everything before is due
+    private long cursor;
+    private int size;
+    private Node[] scratch = new Node[16];
+
+    public TaskTimingWheel() {
+        this(0L);
+    }
+
+    /**
+     * @param firstTick the first tick {@link #isReady(long)} will be asked about
+     */
+    public TaskTimingWheel(final long firstTick) {
+        this.cursor = firstTick;
+    }
+
+    /**
+     * Advances the wheel to {@code tick} and tells whether a task is due on it
+     */
+    public boolean isReady(final long tick) {
+        this.advance(tick);
+        return this.heads[DUE] != null;
+    }
+
+    @Override
+    public boolean offer(final T task) {
+        if (task.wheel != null) {
+            throw new IllegalStateException("Task is already scheduled");
+        }
+        task.wheel = this;
+        this.insert(task);
+        ++this.size;
+        totalScheduled.increment();
+        return true;
+    }
+
+    /**
+     * The first due task, or the earliest task if none is due yet
+     */
+    @Override
+    public T poll() {
+        final T task = this.peek();
+        if (task != null) {
+            this.unlink(task);
+        }
+        return task;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public T peek() {
+        final Node due = this.heads[DUE];
+        if (due != null) {
+            return (T) due;
+        }
+        // Nothing is due, only the tick is known, not where the earliest task went
+        Node first = null;
+        for (int slot = 0; slot < DUE; ++slot) {
+            for (Node node = this.heads[slot]; node != null; node = node.next) {
+                if (first == null || compare(node, first) < 0) {
+                    first = node;
+                }
+            }
+        }
+        return (T) first;
+    }
+
+    @Override
+    public boolean remove(final Object object) {
+        if (object instanceof final Node node && node.wheel == this) {
+            this.unlink(node);
+            totalRemoved.increment();
+            return true;
+        }
+        return false;
+    }
+
+    @Override
+    public boolean contains(final Object object) {
+        return object instanceof final Node node && node.wheel == this;
+    }
+
+    @Override
+    public int size() {
+        return this.size;
+    }
+
+    @Override
+    public void clear() {
+        for (int slot = 0; slot < SLOTS; ++slot) {
+            for (Node node = this.heads[slot], next; node != null; node = next) {
+                next = node.next;
+                node.wheel = null;
+                node.prev = null;
+                node.next = null;
+            }
+            this.heads[slot] = null;
+            this.tails[slot] = null;
+        }
+        this.size = 0;
+    }
+
+    /**
+     * All tasks in no particular order, {@link Iterator#remove()} unlinks the last one
+     */
+    @Override
+    public Iterator<T> iterator() {
+        return new Iterator<>() {
+            private int slot = -1;
+            private Node next;
+            private Node last;
+
+            {
+                this.findNext(null);
+            }
+
+            private void findNext(final Node current) {
+                this.next = current == null ? null : current.next;
+                while (this.next == null && ++this.slot < SLOTS) {
+                    this.next = TaskTimingWheel.this.heads[this.slot];
+                }
+            }
+
+            @Override
+            public boolean hasNext() {
+                return this.next != null;
+            }
+
+            @Override
+            @SuppressWarnings("unchecked")
+            public T next() {
+                final Node node = this.next;
+                if (node == null) {
+                    throw new NoSuchElementException();
+                }
+                this.findNext(node);
+                this.last = node;
+                return (T) node;
+            }
+
+            @Override
+            public void remove() {
+                if (this.last == null || this.last.wheel != TaskTimingWheel.this) {
+                    throw new IllegalStateException();
+                }
+                TaskTimingWheel.this.unlink(this.last);
+                totalRemoved.increment();
+                this.last = null;
+            }
+        };
+    }
+
+    private static int compare(final Node first, final Node second) {
+        final int value = Long.compare(first.getWheelTick(), second.getWheelTick());
+        return value != 0 ? value : Long.compare(first.getWheelOrder(), second.getWheelOrder());
+    }
+
+    private void advance(final long tick) {
+        for (; this.cursor <= tick; ++this.cursor) {
+            final long cursor = this.cursor;
+            if ((cursor & (ROOT_SIZE - 1)) == 0) {
+                // Top down, a task cascaded from one level may land in the slot cascaded next
+                if ((cursor & ((1L << WHEEL_BITS) - 1)) == 0) {
+                    this.cascade(OVERFLOW);
+                }
+                for (int level = LEVELS - 1; level >= 0; --level) {
+                    final int shift = ROOT_BITS + level * LEVEL_BITS;
+                    if ((cursor & ((1L << shift) - 1)) == 0) {
+                        this.cascade(ROOT_SIZE + level * LEVEL_SIZE + (int) ((cursor >>> shift) & (LEVEL_SIZE - 1)));
+                    }
+                }
+            }
+            this.drain((int) (cursor & (ROOT_SIZE - 1)));
+        }
+    }
+
+    private void cascade(final int slot) {
+        Node node = this.heads[slot];
+        this.heads[slot] = null;
+        this.tails[slot] = null;
+        while (node != null) {
+            final Node next = node.next;
+            node.prev = null;
+            node.next = null;
+            this.insert(node);
+            totalCascaded.increment();
+            node = next;
+        }
+    }
+
+    /**
+     * Moves the tasks of the current tick into the due list, they all run after the tasks already due
+     */
+    private void drain(final int slot) {
+        Node node = this.heads[slot];
+        if (node == null) {
+            return;
+        }
+        this.heads[slot] = null;
+        this.tails[slot] = null;
+
+        int count = 0;
+        boolean sorted = true;
+        Node[] nodes = this.scratch;
+        for (; node != null; node = node.next) {
+            if (count == nodes.length) {
+                nodes = this.scratch = Arrays.copyOf(nodes, count << 1);
+            }
+            if (count > 0 && nodes[count - 1].getWheelOrder() > node.getWheelOrder()) {
+                sorted = false;
+            }
+            nodes[count++] = node;
+        }
+        if (!sorted) {
+            // Cascaded and rescheduled tasks arrive out of creation order
+            Arrays.sort(nodes, 0, count, ORDER);
+            totalSorted.increment();
+        }
+        for (int i = 0; i < count; ++i) {
+            final Node due = nodes[i];
+            nodes[i] = null;
+            due.prev = null;
+            due.next = null;
+            this.append(DUE, due);
+        }
+    }
+
+    private void insert(final Node node) {
+        final long tick = node.getWheelTick();
+        final long delta = tick - this.cursor;
+        if (delta < 0) {
+            this.insertDue(node);
+        } else if (delta < ROOT_SIZE) {
+            this.append((int) (tick & (ROOT_SIZE - 1)), node);
+        } else if (delta < 1L << WHEEL_BITS) {
+            int level = 0;
+            while (delta >= 1L << (ROOT_BITS + (level + 1) * LEVEL_BITS)) {
+                ++level;
+            }
+            final int shift = ROOT_BITS + level * LEVEL_BITS;
+            this.append(ROOT_SIZE + level * LEVEL_SIZE + (int) ((tick >>> shift) & (LEVEL_SIZE - 1)), node);
+        } else {
+            this.append(OVERFLOW, node);
+        }
+    }
+
+    /**
+     * Due tasks stay sorted, new ones usually belong at the end
+     */
+    private void insertDue(final Node node) {
+        Node before = this.tails[DUE];
+        while (before != null && compare(before, node) > 0) {
+            before = before.prev;
+        }
+        node.slot = DUE;
+        node.prev = before;
+        if (before == null) {
+            node.next = this.heads[DUE];
+            this.heads[DUE] = node;
+        } else {
+            node.next = before.next;
+            before.next = node;
+        }
+        if (node.next == null) {
+            this.tails[DUE] = node;
+        } else {
+            node.next.prev = node;
+        }
+    }
+
+    private void append(final int slot, final Node node) {
+        final Node tail = this.tails[slot];
+        node.slot = slot;
+        node.prev = tail;
+        node.next = null;
+        if (tail == null) {
+            this.heads[slot] = node;
+        } else {
+            tail.next = node;
+        }
+        this.tails[slot] = node;
+    }
+
+    private void unlink(final Node node) {
+        final int slot = node.slot;
+        if (node.prev == null) {
+            this.heads[slot] = node.next;
+        } else {
+            node.prev.next = node.next;
+        }
+        if (node.next == null) {
+            this.tails[slot] = node.prev;
+        } else {
+            node.next.prev = node.prev;
+        }
+        node.wheel = null;
+        node.prev = null;
+        node.next = null;
+        --this.size;
+    }
+
+    public static Map<String, Object> getStats() {
+        final Map<String, Object> stats = new ConcurrentHashMap<>();
+        stats.put("enabled", ENABLED);
+        stats.put("scheduled", totalScheduled.sum());
+        stats.put("cascaded", totalCascaded.sum());
+        stats.put("removed", totalRemoved.sum());
+        stats.put("sorted_slots", totalSorted.sum());
+        return stats;
+    }
+
+    /**
+     * Links of a task in a wheel, the tick and order must not change while it is scheduled
+     */
+    public abstract static class Node {
+        TaskTimingWheel<?> wheel;
+        Node prev;
+        Node next;
+        int slot;
+
+        /**
+         * Tick the task runs on
+         */
+        protected abstract long getWheelTick();
+
+        /**
+         * Orders tasks running on the same tick, lowest first
+         */
+        protected abstract long getWheelOrder();
+    }
+}
@@ -1,5 +1,11 @@
 package ru.playland.core.optimization;
 
+import ca.spottedleaf.moonrise.common.util.CoordinateUtils;
+import it.unimi.dsi.fastutil.longs.LongIterator;
+import it.unimi.dsi.fastutil.longs.LongOpenHashSet;
+import net.minecraft.core.BlockPos;
+import net.minecraft.core.Direction;
+
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.atomic.AtomicLong;
 import java.util.logging.Logger;
@@ -22,6 +28,7 @@ public class VanillaSafeCaching {
     private final AtomicLong cacheMisses = new AtomicLong(0);
     private final AtomicLong cacheEvictions = new AtomicLong(0);
     private final AtomicLong computationsSaved = new AtomicLong(0);
+    private final AtomicLong blockInvalidations = new AtomicLong(0);
     
     // Safe caches for different data types
     private final Map<String, Object> blockStateCache = new ConcurrentHashMap<>();
@@ -30,6 +37,16 @@ public class VanillaSafeCaching {
     private final Map<String, Object> biomeCache = new ConcurrentHashMap<>();
     private final Map<String, Object> redstoneCache = new ConcurrentHashMap<>();
     
+    // Typed caches keyed by packed block position, sharded per world and chunk
+    private final ChunkShardedCache<Object> blockStateDomain = new ChunkShardedCache<>("blockstate", 10000, 30000);
+    private final ChunkShardedCache<Object> pathfindingDomain = new ChunkShardedCache<>("pathfinding", 10000, 30000);
+    private final ChunkShardedCache<Object> lightLevelDomain = new ChunkShardedCache<>("light", 10000, 30000);
+    private final ChunkShardedCache<Object> biomeDomain = new ChunkShardedCache<>("biome", 10000, 30000);
+    private final ChunkShardedCache<Object> redstoneDomain = new ChunkShardedCache<>("redstone", 10000, 5000);
+    
+    // Exact invalidation of the typed domains on block change and chunk unload
+    private final ChunkInvalidationBus.Listener invalidationListener = this::onChunkInvalidation;
+    
     // Weak reference caches for memory safety
     private final Map<Object, Object> weakCache = new WeakHashMap<>();
     
@@ -54,6 +71,7 @@ public class VanillaSafeCaching {
         
         loadCacheSettings();
         startCacheCleanup();
+        ChunkInvalidationBus.register(invalidationListener);
         
         LOGGER.info("✅ Vanilla-Safe Caching System initialized!");
         LOGGER.info("🧱 Block state cache: " + (enableBlockStateCache ? "ENABLED" : "DISABLED"));
@@ -66,6 +84,11 @@ public class VanillaSafeCaching {
         LOGGER.info("⏰ Cache expiration: " + (cacheExpirationTime / 1000) + " seconds");
     }
     
+    public void shutdown() {
+        ChunkInvalidationBus.unregister(invalidationListener);
+        clearAllCaches();
+    }
+    
     private void loadCacheSettings() {
         // Load vanilla-safe caching settings
         LOGGER.info("⚙️ Loading cache settings...");
@@ -147,6 +170,86 @@ public class VanillaSafeCaching {
         return getCachedValue("redstone_" + key, computation, redstoneCache, 5000); // 5 seconds
     }
     
+    /**
+     * Get or compute block state keyed by packed position ({@code BlockPos.asLong})
+     */
+    public <T> T getBlockState(String world, long blockPos, Supplier<T> computation) {
+        if (!enableBlockStateCache) {
+            return computation.get();
+        }
+        
+        return getCachedValue(world, blockPos, computation, blockStateDomain);
+    }
+    
+    /**
+     * Get or compute pathfinding result keyed by packed position
+     */
+    public <T> T getPathfinding(String world, long blockPos, Supplier<T> computation) {
+        if (!enablePathfindingCache) {
+            return computation.get();
+        }
+        
+        return getCachedValue(world, blockPos, computation, pathfindingDomain);
+    }
+    
+    /**
+     * Get or compute light level keyed by packed position
+     */
+    public <T> T getLightLevel(String world, long blockPos, Supplier<T> computation) {
+        if (!enableLightLevelCache) {
+            return computation.get();
+        }
+        
+        return getCachedValue(world, blockPos, computation, lightLevelDomain);
+    }
+    
+    /**
+     * Get or compute biome data keyed by packed position
+     */
+    public <T> T getBiome(String world, long blockPos, Supplier<T> computation) {
+        if (!enableBiomeCache) {
+            return computation.get();
+        }
+        
+        return getCachedValue(world, blockPos, computation, biomeDomain);
+    }
+    
+    /**
+     * Get or compute redstone signal keyed by packed position (5 second expiration)
+     */
+    public <T> T getRedstoneSignal(String world, long blockPos, Supplier<T> computation) {
+        if (!enableRedstoneCache) {
+            return computation.get();
+        }
+        
+        return getCachedValue(world, blockPos, computation, redstoneDomain);
+    }
+    
+    /**
+     * Typed cached value getter
+     * Unlike the String keyed path there is no minimum computation time: lookups here are cheap
+     * but hot, the vanilla safety check still decides what may be stored
+     */
+    @SuppressWarnings("unchecked")
+    private <T> T getCachedValue(String world, long blockPos, Supplier<T> computation, ChunkShardedCache<Object> domain) {
+        totalRequests.incrementAndGet();
+        
+        Object cachedValue = domain.get(world, blockPos);
+        if (cachedValue != null) {
+            cacheHits.incrementAndGet();
+            return (T) cachedValue;
+        }
+        
+        cacheMisses.incrementAndGet();
+        T result = computation.get();
+        
+        if (isCacheable(result) && domain.put(world, blockPos, result)) {
+            computationsSaved.incrementAndGet();
+        }
+        
+        return result;
+    }
+    
     /**
      * Generic cached value getter
      */
@@ -262,6 +365,13 @@ public class VanillaSafeCaching {
         cleanupCache(biomeCache, currentTime, cacheExpirationTime);
         cleanupCache(redstoneCache, currentTime, 5000); // Shorter expiration for redstone
         
+        // Typed domains track their own expiration
+        cacheEvictions.addAndGet(blockStateDomain.cleanupExpired());
+        cacheEvictions.addAndGet(pathfindingDomain.cleanupExpired());
+        cacheEvictions.addAndGet(lightLevelDomain.cleanupExpired());
+        cacheEvictions.addAndGet(biomeDomain.cleanupExpired());
+        cacheEvictions.addAndGet(redstoneDomain.cleanupExpired());
+        
         // Clean up metadata for removed entries
         cacheMetadata.entrySet().removeIf(entry -> {
             String key = entry.getKey();
@@ -309,6 +419,81 @@ public class VanillaSafeCaching {
         cache.entrySet().removeIf(entry -> entry.getKey().startsWith(prefix));
     }
     
+    /**
+     * Invalidate typed entries of a chunk, e.g. on chunk unload
+     * Cost is proportional to the entries in that chunk only
+     */
+    public int invalidateChunk(String world, int chunkX, int chunkZ) {
+        return blockStateDomain.invalidateChunk(world, chunkX, chunkZ) +
+               pathfindingDomain.invalidateChunk(world, chunkX, chunkZ) +
+               lightLevelDomain.invalidateChunk(world, chunkX, chunkZ) +
+               biomeDomain.invalidateChunk(world, chunkX, chunkZ) +
+               redstoneDomain.invalidateChunk(world, chunkX, chunkZ);
+    }
+    
+    /**
+     * Invalidate typed entries of a single block, e.g. on block change
+     */
+    public void invalidateBlock(String world, long blockPos) {
+        blockStateDomain.invalidateBlock(world, blockPos);
+        pathfindingDomain.invalidateBlock(world, blockPos);
+        lightLevelDomain.invalidateBlock(world, blockPos);
+        biomeDomain.invalidateBlock(world, blockPos);
+        redstoneDomain.invalidateBlock(world, blockPos);
+    }
+    
+    /**
+     * Apply a tick worth of block changes and chunk unloads
+     * Block state and biome entries are dropped exactly, redstone entries together with their direct neighbours,
+     * pathfinding and light results depend on their surroundings so the affected chunks are dropped
+     */
+    private void onChunkInvalidation(ChunkInvalidationBus.Batch batch) {
+        String world = batch.getWorld();
+        
+        for (LongIterator iterator = batch.getUnloadedChunks().iterator(); iterator.hasNext();) {
+            long chunkKey = iterator.nextLong();
+            cacheEvictions.addAndGet(invalidateChunk(world, CoordinateUtils.getChunkX(chunkKey), CoordinateUtils.getChunkZ(chunkKey)));
+        }
+        
+        batch.forEachDirtyBlock(blockPos -> {
+            blockStateDomain.invalidateBlock(world, blockPos);
+            biomeDomain.invalidateBlock(world, blockPos);
+            redstoneDomain.invalidateBlock(world, blockPos);
+            for (Direction direction : Direction.values()) {
+                redstoneDomain.invalidateBlock(world, BlockPos.offset(blockPos, direction));
+            }
+            blockInvalidations.incrementAndGet();
+        });
+        
+        LongOpenHashSet chunks = new LongOpenHashSet();
+        for (LongIterator iterator = batch.getSections().keySet().iterator(); iterator.hasNext();) {
+            long sectionKey = iterator.nextLong();
+            int chunkX = CoordinateUtils.getChunkSectionX(sectionKey);
+            int chunkZ = CoordinateUtils.getChunkSectionZ(sectionKey);
+            if (!chunks.add(CoordinateUtils.getChunkKey(chunkX, chunkZ))) {
+                continue;
+            }
+            cacheEvictions.addAndGet(pathfindingDomain.invalidateChunk(world, chunkX, chunkZ));
+            // light propagates up to 15 blocks, which can reach into the neighbouring chunks
+            for (int dx = -1; dx <= 1; ++dx) {
+                for (int dz = -1; dz <= 1; ++dz) {
+                    cacheEvictions.addAndGet(lightLevelDomain.invalidateChunk(world, chunkX + dx, chunkZ + dz));
+                }
+            }
+        }
+    }
+    
+    /**
+     * Invalidate typed entries of a world, e.g. on world unload
+     */
+    public int invalidateWorld(String world) {
+        return blockStateDomain.invalidateWorld(world) +
+               pathfindingDomain.invalidateWorld(world) +
+               lightLevelDomain.invalidateWorld(world) +
+               biomeDomain.invalidateWorld(world) +
+               redstoneDomain.invalidateWorld(world);
+    }
+    
     /**
      * Clear all caches
      */
@@ -320,6 +505,12 @@ public class VanillaSafeCaching {
         redstoneCache.clear();
         weakCache.clear();
         
+        blockStateDomain.clear();
+        pathfindingDomain.clear();
+        lightLevelDomain.clear();
+        biomeDomain.clear();
+        redstoneDomain.clear();
+        
         cacheMetadata.clear();
         cacheAccessTimes.clear();
         
@@ -346,6 +537,7 @@ public class VanillaSafeCaching {
         stats.put("cache_misses", cacheMisses.get());
         stats.put("cache_evictions", cacheEvictions.get());
         stats.put("computations_saved", computationsSaved.get());
+        stats.put("block_invalidations", blockInvalidations.get());
         
         stats.put("hit_rate", getCacheHitRate());
         
@@ -355,6 +547,12 @@ public class VanillaSafeCaching {
         stats.put("biome_cache_size", biomeCache.size());
         stats.put("redstone_cache_size", redstoneCache.size());
         
+        stats.put("blockstate_domain_size", blockStateDomain.size());
+        stats.put("pathfinding_domain_size", pathfindingDomain.size());
+        stats.put("light_domain_size", lightLevelDomain.size());
+        stats.put("biome_domain_size", biomeDomain.size());
+        stats.put("redstone_domain_size", redstoneDomain.size());
+        
         stats.put("total_cache_size", getTotalCacheSize());
         stats.put("max_cache_size", maxCacheSize);
         
@@ -366,7 +564,12 @@ public class VanillaSafeCaching {
                pathfindingCache.size() +
                lightLevelCache.size() +
                biomeCache.size() +
-               redstoneCache.size();
+               redstoneCache.size() +
+               blockStateDomain.size() +
+               pathfindingDomain.size() +
+               lightLevelDomain.size() +
+               biomeDomain.size() +
+               redstoneDomain.size();
     }
     
     // Getters
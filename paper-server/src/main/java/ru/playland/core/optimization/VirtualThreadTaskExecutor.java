@@ -0,0 +1,227 @@
+package ru.playland.core.optimization;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordedFrame;
+import jdk.jfr.consumer.RecordedThread;
+import jdk.jfr.consumer.RecordingStream;
+import org.bukkit.plugin.Plugin;
+
+/**
+ * Virtual Thread Task Executor
+ * Выполнение асинхронных задач плагинов на виртуальных потоках
+ *
+ * <p>When enabled, async Bukkit tasks of {@code CraftAsyncScheduler} and tasks of {@code FoliaAsyncScheduler} run
+ * on virtual threads instead of the cached platform thread pools. A plugin blocking on JDBC or HTTP then parks a
+ * virtual thread instead of holding a platform thread each, so load spikes no longer pile up hundreds of
+ * platform threads.</p>
+ *
+ * <p>Every plugin gets a lane that runs at most {@code playland.scheduler.virtualthreads.plugin-limit} of its
+ * tasks at once (0 for no limit), further tasks wait in the lane's queue and start as running ones finish, in
+ * submission order. One plugin flooding the scheduler can not starve the others or the carrier threads.</p>
+ *
+ * <p>A task blocking inside {@code synchronized} or native code pins its carrier thread, which defeats the point.
+ * A JFR stream on {@code jdk.VirtualThreadPinned} counts pins longer than
+ * {@code playland.scheduler.virtualthreads.pin-threshold-ms} per plugin and logs the stack of the first pin of
+ * every plugin.</p>
+ *
+ * <p>Off by default, enabled with {@code -Dplayland.scheduler.virtualthreads=true}.</p>
+ */
+public final class VirtualThreadTaskExecutor {
+
+    private static final Logger LOGGER = Logger.getLogger("PlayLand-VirtualThreads");
+
+    public static final boolean ENABLED = Boolean.getBoolean("playland.scheduler.virtualthreads");
+    private static final int PLUGIN_LIMIT = Math.max(0, Integer.getInteger("playland.scheduler.virtualthreads.plugin-limit", 128));
+    private static final long PIN_THRESHOLD_MS = Math.max(1L, Long.getLong("playland.scheduler.virtualthreads.pin-threshold-ms", 20L));
+    private static final String THREAD_PREFIX = "Virtual Async Task - ";
+    private static final String THREAD_SUFFIX = " #";
+    private static final int PIN_STACK_DEPTH = 12;
+
+    private static final Map<String, Lane> LANES = new ConcurrentHashMap<>();
+    private static final Set<String> REPORTED_PINS = ConcurrentHashMap.newKeySet();
+
+    // Statistics
+    private static final LongAdder totalSubmitted = new LongAdder();
+    private static final LongAdder totalCompleted = new LongAdder();
+    private static final LongAdder totalPinned = new LongAdder();
+    private static final LongAdder totalPinnedNanos = new LongAdder();
+
+    private static volatile boolean pinDetection;
+
+    static {
+        if (ENABLED) {
+            startPinDetection();
+            LOGGER.info("🧵 Async tasks run on virtual threads, " + (PLUGIN_LIMIT == 0 ? "no limit per plugin" : PLUGIN_LIMIT + " at once per plugin"));
+        }
+    }
+
+    private VirtualThreadTaskExecutor() {}
+
+    private static void startPinDetection() {
+        try {
+            final RecordingStream stream = new RecordingStream();
+            stream.enable("jdk.VirtualThreadPinned").withThreshold(Duration.ofMillis(PIN_THRESHOLD_MS)).withStackTrace();
+            stream.onEvent("jdk.VirtualThreadPinned", VirtualThreadTaskExecutor::onPinned);
+            // startAsync would keep the JVM alive on shutdown
+            final Thread thread = new Thread(stream::start, "PlayLand Virtual Thread Pin Detector");
+            thread.setDaemon(true);
+            thread.start();
+            pinDetection = true;
+        } catch (final Throwable throwable) {
+            // JFR is an optional module
+            LOGGER.log(Level.WARNING, "⚠️ Could not start JFR, pinned virtual threads are not detected", throwable);
+        }
+    }
+
+    /**
+     * Runs {@code task} on a virtual thread once {@code plugin} has a free slot
+     */
+    public static void execute(final Plugin plugin, final Runnable task) {
+        final Lane lane = LANES.computeIfAbsent(plugin.getName(), Lane::new);
+        lane.queue.add(new QueuedTask(task, System.nanoTime()));
+        lane.submitted.increment();
+        totalSubmitted.increment();
+        lane.drain();
+    }
+
+    private static void onPinned(final RecordedEvent event) {
+        final RecordedThread thread = event.getThread();
+        final String name = thread == null ? null : thread.getJavaName();
+        if (name == null || !name.startsWith(THREAD_PREFIX)) {
+            // Not one of ours
+            return;
+        }
+        final int end = name.indexOf(THREAD_SUFFIX, THREAD_PREFIX.length());
+        final String pluginName = end < 0 ? name.substring(THREAD_PREFIX.length()) : name.substring(THREAD_PREFIX.length(), end);
+        final long nanos = event.getDuration().toNanos();
+        totalPinned.increment();
+        totalPinnedNanos.add(nanos);
+        final Lane lane = LANES.get(pluginName);
+        if (lane != null) {
+            lane.pinned.increment();
+            lane.pinnedNanos.add(nanos);
+        }
+
+        if (REPORTED_PINS.add(pluginName)) {
+            final StringBuilder stack = new StringBuilder();
+            if (event.getStackTrace() != null) {
+                int depth = 0;
+                for (final RecordedFrame frame : event.getStackTrace().getFrames()) {
+                    if (depth++ == PIN_STACK_DEPTH) {
+                        stack.append("\n\t...");
+                        break;
+                    }
+                    stack.append("\n\tat ").append(frame.getMethod().getType().getName()).append('.').append(frame.getMethod().getName())
+                        .append(':').append(frame.getLineNumber());
+                }
+            }
+            LOGGER.warning("📌 A task of " + pluginName + " pinned its carrier thread for " + nanos / 1_000_000L
+                + "ms, blocking inside synchronized or native code. Further pins are only counted." + stack);
+        }
+    }
+
+    public static Map<String, Object> getStats() {
+        final Map<String, Object> stats = new ConcurrentHashMap<>();
+        stats.put("enabled", ENABLED);
+        stats.put("plugin_limit", PLUGIN_LIMIT);
+        stats.put("pin_detection", pinDetection);
+        stats.put("submitted", totalSubmitted.sum());
+        stats.put("completed", totalCompleted.sum());
+        stats.put("pinned", totalPinned.sum());
+        stats.put("pinned_ms", totalPinnedNanos.sum() / 1_000_000L);
+        int running = 0;
+        int queued = 0;
+        for (final Lane lane : LANES.values()) {
+            running += lane.running.get();
+            queued += lane.queue.size();
+            stats.put(lane.name + "_running", lane.running.get());
+            stats.put(lane.name + "_peak_running", lane.peakRunning.get());
+            stats.put(lane.name + "_queued", lane.queue.size());
+            stats.put(lane.name + "_completed", lane.completed.sum());
+            stats.put(lane.name + "_avg_wait_us", lane.completed.sum() == 0L ? 0.0 : lane.waitNanos.sum() / 1000.0 / lane.completed.sum());
+            stats.put(lane.name + "_max_wait_ms", lane.maxWaitNanos.get() / 1_000_000L);
+            stats.put(lane.name + "_pinned", lane.pinned.sum());
+        }
+        stats.put("running", running);
+        stats.put("queued", queued);
+        return stats;
+    }
+
+    private record QueuedTask(Runnable task, long queuedAt) {}
+
+    /**
+     * Tasks of one plugin, at most {@link #PLUGIN_LIMIT} of them running
+     */
+    private static final class Lane {
+        final String name;
+        final ThreadFactory threads;
+        final Queue<QueuedTask> queue = new ConcurrentLinkedQueue<>();
+        final AtomicInteger running = new AtomicInteger();
+        final AtomicInteger peakRunning = new AtomicInteger();
+        final LongAdder submitted = new LongAdder();
+        final LongAdder completed = new LongAdder();
+        final LongAdder waitNanos = new LongAdder();
+        final AtomicLong maxWaitNanos = new AtomicLong();
+        final LongAdder pinned = new LongAdder();
+        final LongAdder pinnedNanos = new LongAdder();
+
+        Lane(final String name) {
+            this.name = name;
+            // The plugin name in the thread name attributes pins to the plugin
+            this.threads = Thread.ofVirtual()
+                .name(THREAD_PREFIX + name + THREAD_SUFFIX, 0L)
+                .uncaughtExceptionHandler((thread, throwable) -> LOGGER.log(Level.SEVERE, "Uncaught exception in thread: " + thread.getName(), throwable))
+                .factory();
+        }
+
+        /**
+         * Starts queued tasks while there are free slots, called on every submit and every finished task
+         */
+        void drain() {
+            while (!this.queue.isEmpty()) {
+                final int running = this.running.get();
+                if (PLUGIN_LIMIT != 0 && running >= PLUGIN_LIMIT) {
+                    // A running task starts the next one when it finishes
+                    return;
+                }
+                if (!this.running.compareAndSet(running, running + 1)) {
+                    continue;
+                }
+                final QueuedTask task = this.queue.poll();
+                if (task == null) {
+                    // Taken by a concurrent drain, check again
+                    this.running.decrementAndGet();
+                    continue;
+                }
+                this.peakRunning.accumulateAndGet(running + 1, Math::max);
+                this.threads.newThread(() -> this.run(task)).start();
+            }
+        }
+
+        private void run(final QueuedTask task) {
+            final long wait = System.nanoTime() - task.queuedAt();
+            this.waitNanos.add(wait);
+            this.maxWaitNanos.accumulateAndGet(wait, Math::max);
+            try {
+                task.task().run();
+            } finally {
+                this.completed.increment();
+                totalCompleted.increment();
+                this.running.decrementAndGet();
+                this.drain();
+            }
+        }
+    }
+}
@@ -0,0 +1,273 @@
+package ru.playland.core.optimization;
+
+import com.github.luben.zstd.RecyclingBufferPool;
+import com.github.luben.zstd.ZstdDictCompress;
+import com.github.luben.zstd.ZstdDictDecompress;
+import com.github.luben.zstd.ZstdDictTrainer;
+import com.github.luben.zstd.ZstdInputStreamNoFinalizer;
+import com.github.luben.zstd.ZstdOutputStreamNoFinalizer;
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.stream.Stream;
+
+/**
+ * Zstd Region Compression
+ * Сжатие region-файлов через zstd с обученными словарями для каждого мира
+ *
+ * <p>Backs the zstd {@code RegionFileVersion}. Chunks are written as plain zstd frames at the configured level,
+ * optionally with a dictionary trained from a sample of the world's own chunks. Chunk NBT repeats the same tag
+ * names, block names and heightmap layouts in every chunk, a dictionary holding them makes every chunk smaller
+ * and faster to decompress.</p>
+ *
+ * <p>Dictionaries of a storage folder, for example {@code world/region}, live next to it in
+ * {@code world/region-zstd}, one {@code <id>.dict} file per dictionary and a {@code current} file naming the one
+ * new chunks are written with. Every zstd frame carries the id of its dictionary, so chunks written with an older
+ * dictionary stay readable as long as its file is kept. Dictionaries are trained and installed offline by
+ * {@link ZstdRegionConverter}.</p>
+ */
+public final class ZstdRegionCompression {
+
+    private static final Logger LOGGER = Logger.getLogger("PlayLand-ZstdRegion");
+
+    /** Version byte of zstd chunks in region files, well away from the ids vanilla uses */
+    public static final int VERSION_ID = 53;
+    public static final int DEFAULT_LEVEL = 3;
+    public static final int MIN_LEVEL = 1;
+    public static final int MAX_LEVEL = 22;
+    public static final int DEFAULT_DICTIONARY_SIZE = 112 * 1024;
+
+    private static final int FRAME_MAGIC = 0xFD2FB528;
+    private static final int DICTIONARY_MAGIC = 0xEC30A437;
+    private static final int FRAME_HEADER_MAX = 18;
+    private static final String FOLDER_SUFFIX = "-zstd";
+    private static final String CURRENT_FILE = "current";
+    private static final String DICTIONARY_EXTENSION = ".dict";
+
+    // All dictionaries seen so far by id, frames name the dictionary they need
+    private static final Map<Long, Dictionary> DICTIONARIES = new ConcurrentHashMap<>();
+    // Dictionary new chunks of a storage folder are written with
+    private static final Map<Path, Optional<Dictionary>> FOLDERS = new ConcurrentHashMap<>();
+
+    private ZstdRegionCompression() {}
+
+    public static InputStream wrapInput(final InputStream stream) throws IOException {
+        final InputStream in = stream.markSupported() ? stream : new BufferedInputStream(stream, FRAME_HEADER_MAX);
+        final byte[] header = new byte[FRAME_HEADER_MAX];
+        in.mark(FRAME_HEADER_MAX);
+        final int length = in.readNBytes(header, 0, FRAME_HEADER_MAX);
+        in.reset();
+
+        final ZstdInputStreamNoFinalizer zstd = new ZstdInputStreamNoFinalizer(in, RecyclingBufferPool.INSTANCE);
+        final long dictionaryId = getFrameDictionaryId(header, length);
+        if (dictionaryId != 0L) {
+            final Dictionary dictionary = DICTIONARIES.get(dictionaryId);
+            if (dictionary == null) {
+                zstd.close();
+                throw new IOException("Chunk was compressed with zstd dictionary " + dictionaryId + ", which is not installed");
+            }
+            zstd.setDict(dictionary.decompressDictionary());
+        }
+        return zstd;
+    }
+
+    /**
+     * @param dictionary dictionary to compress with, {@code null} for none
+     */
+    public static OutputStream wrapOutput(final OutputStream stream, final int level, final Dictionary dictionary) throws IOException {
+        final ZstdOutputStreamNoFinalizer zstd = new ZstdOutputStreamNoFinalizer(stream, RecyclingBufferPool.INSTANCE);
+        if (dictionary != null) {
+            zstd.setDict(dictionary.compressDictionary(level));
+        } else {
+            zstd.setLevel(level);
+        }
+        return zstd;
+    }
+
+    /**
+     * Id of the dictionary a frame was compressed with, 0 if none, from the first bytes of the frame
+     */
+    static long getFrameDictionaryId(final byte[] header, final int length) {
+        if (length < 5 || readIntLE(header, 0) != FRAME_MAGIC) {
+            return 0L;
+        }
+        final int descriptor = header[4] & 0xFF;
+        final int idSize = switch (descriptor & 3) {
+            case 0 -> 0;
+            case 1 -> 1;
+            case 2 -> 2;
+            default -> 4;
+        };
+        // The window descriptor is only there for frames that are not single segment
+        final int offset = 5 + ((descriptor & 0x20) == 0 ? 1 : 0);
+        if (idSize == 0 || offset + idSize > length) {
+            return 0L;
+        }
+        long id = 0L;
+        for (int i = 0; i < idSize; ++i) {
+            id |= (header[offset + i] & 0xFFL) << (i * 8);
+        }
+        return id;
+    }
+
+    private static int readIntLE(final byte[] bytes, final int offset) {
+        return (bytes[offset] & 0xFF) | (bytes[offset + 1] & 0xFF) << 8 | (bytes[offset + 2] & 0xFF) << 16 | (bytes[offset + 3] & 0xFF) << 24;
+    }
+
+    public static Path getDictionaryFolder(final Path storageFolder) {
+        return storageFolder.resolveSibling(storageFolder.getFileName() + FOLDER_SUFFIX);
+    }
+
+    /**
+     * Loads the dictionaries of a storage folder once, so its chunks can be read whatever format is configured
+     *
+     * @return the dictionary to write new chunks with, {@code null} if there is none
+     */
+    public static Dictionary loadDictionaries(final Path storageFolder) {
+        return FOLDERS.computeIfAbsent(storageFolder.toAbsolutePath().normalize(), folder -> {
+            final Path dictionaryFolder = getDictionaryFolder(folder);
+            if (!Files.isDirectory(dictionaryFolder)) {
+                return Optional.empty();
+            }
+            try (Stream<Path> files = Files.list(dictionaryFolder)) {
+                for (final Path file : (Iterable<Path>) files.filter(path -> path.getFileName().toString().endsWith(DICTIONARY_EXTENSION))::iterator) {
+                    register(Files.readAllBytes(file));
+                }
+
+                final Path current = dictionaryFolder.resolve(CURRENT_FILE);
+                if (!Files.isRegularFile(current)) {
+                    return Optional.empty();
+                }
+                final long id = Long.parseLong(Files.readString(current, StandardCharsets.UTF_8).trim());
+                final Dictionary dictionary = DICTIONARIES.get(id);
+                if (dictionary == null) {
+                    LOGGER.warning("⚠️ Current zstd dictionary " + id + " of " + folder + " is missing, writing without a dictionary");
+                    return Optional.empty();
+                }
+                LOGGER.info("🗜️ Using zstd dictionary " + id + " (" + dictionary.size() + " bytes) for " + folder);
+                return Optional.of(dictionary);
+            } catch (final IOException | RuntimeException e) {
+                LOGGER.log(Level.SEVERE, "❌ Failed to load zstd dictionaries of " + folder, e);
+                return Optional.empty();
+            }
+        }).orElse(null);
+    }
+
+    /**
+     * Stores a dictionary next to a storage folder and makes it the one new chunks are written with
+     */
+    public static Dictionary install(final Path storageFolder, final byte[] bytes) throws IOException {
+        final Dictionary dictionary = register(bytes);
+        final Path dictionaryFolder = getDictionaryFolder(storageFolder);
+        Files.createDirectories(dictionaryFolder);
+        Files.write(dictionaryFolder.resolve(dictionary.id() + DICTIONARY_EXTENSION), bytes);
+
+        final Path current = dictionaryFolder.resolve(CURRENT_FILE);
+        final Path temp = dictionaryFolder.resolve(CURRENT_FILE + ".tmp");
+        Files.writeString(temp, Long.toString(dictionary.id()), StandardCharsets.UTF_8);
+        Files.move(temp, current, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        FOLDERS.put(storageFolder.toAbsolutePath().normalize(), Optional.of(dictionary));
+        return dictionary;
+    }
+
+    /**
+     * Makes a dictionary known to reads, without storing it anywhere
+     */
+    public static Dictionary register(final byte[] bytes) {
+        if (bytes.length < 8 || readIntLE(bytes, 0) != DICTIONARY_MAGIC) {
+            throw new IllegalArgumentException("Not a trained zstd dictionary");
+        }
+        final long id = readIntLE(bytes, 4) & 0xFFFFFFFFL;
+        return DICTIONARIES.computeIfAbsent(id, key -> new Dictionary(key, bytes.clone()));
+    }
+
+    /**
+     * Train a dictionary of at most {@code maxSize} bytes from uncompressed chunk NBT
+     */
+    public static byte[] train(final List<byte[]> samples, final int maxSize) {
+        long totalSize = 0L;
+        for (final byte[] sample : samples) {
+            totalSize += sample.length;
+        }
+        final ZstdDictTrainer trainer = new ZstdDictTrainer((int) Math.min(Integer.MAX_VALUE - 8, totalSize), maxSize);
+        for (final byte[] sample : samples) {
+            if (!trainer.addSample(sample)) {
+                break;
+            }
+        }
+        return trainer.trainSamples();
+    }
+
+    public static Map<String, Object> getStats() {
+        final Map<String, Object> stats = new ConcurrentHashMap<>();
+        stats.put("dictionaries", DICTIONARIES.size());
+        stats.put("folders_with_dictionary", FOLDERS.values().stream().filter(Optional::isPresent).count());
+        return stats;
+    }
+
+    /**
+     * A trained dictionary, the native compression tables are built on first use
+     */
+    public static final class Dictionary {
+
+        private final long id;
+        private final byte[] bytes;
+        private volatile ZstdDictDecompress decompress;
+        // Built for one level, the configured level only changes on reload
+        private volatile ZstdDictCompress compress;
+        private volatile int compressLevel;
+
+        private Dictionary(final long id, final byte[] bytes) {
+            this.id = id;
+            this.bytes = bytes;
+        }
+
+        public long id() {
+            return this.id;
+        }
+
+        public int size() {
+            return this.bytes.length;
+        }
+
+        ZstdDictDecompress decompressDictionary() {
+            ZstdDictDecompress decompress = this.decompress;
+            if (decompress == null) {
+                synchronized (this) {
+                    decompress = this.decompress;
+                    if (decompress == null) {
+                        this.decompress = decompress = new ZstdDictDecompress(this.bytes);
+                    }
+                }
+            }
+            return decompress;
+        }
+
+        ZstdDictCompress compressDictionary(final int level) {
+            ZstdDictCompress compress = this.compress;
+            if (compress == null || this.compressLevel != level) {
+                synchronized (this) {
+                    compress = this.compress;
+                    if (compress == null || this.compressLevel != level) {
+                        // The old tables may still be in use by a running write, leave them to the cleaner
+                        compress = new ZstdDictCompress(this.bytes, level);
+                        this.compressLevel = level;
+                        this.compress = compress;
+                    }
+                }
+            }
+            return compress;
+        }
+    }
+}
@@ -0,0 +1,349 @@
+package ru.playland.core.optimization;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+import java.util.zip.InflaterInputStream;
+import net.jpountz.lz4.LZ4BlockInputStream;
+import net.jpountz.lz4.LZ4BlockOutputStream;
+
+/**
+ * Zstd Region Converter
+ * Офлайн-конвертер region-файлов между форматами сжатия и обучение словарей zstd
+ *
+ * <p>Rewrites every region file of a storage folder ({@code region}, {@code entities} or {@code poi}) with another
+ * compression format, oversized chunks in {@code .mcc} files included. With {@code --train} it first trains a zstd
+ * dictionary from a sample of the folder's chunks and installs it next to the folder, see
+ * {@link ZstdRegionCompression}. Converting back to {@code zlib} makes the world readable by any server again.</p>
+ *
+ * <p>The server must not be running. Every region file and its new {@code .mcc} files are written to temporary
+ * files first. The region file is moved over the old one, then the new {@code .mcc} files are moved into place and
+ * only then the ones no longer used are deleted. A run interrupted before the region file was moved leaves the old
+ * files intact, one interrupted after it leaves {@code .mcc.tmp} files that the next run moves into place before it
+ * reads the region file, so run it again before starting the server.</p>
+ *
+ * <p>The paperclip jar only holds a patcher, the converter runs from the server jar it extracts, with the libraries
+ * next to it on the class path:</p>
+ *
+ * <pre>
+ * java -Dpaperclip.patchonly=true -jar paper.jar
+ * java -cp "versions/&lt;version&gt;/paper-&lt;version&gt;.jar:$(find libraries -name '*.jar' | paste -sd:)" \
+ *     ru.playland.core.optimization.ZstdRegionConverter &lt;world&gt;/region [--format zstd|zlib|gzip|lz4|none] [--level 1-22] [--train [size]] [--samples n]
+ * </pre>
+ */
+public final class ZstdRegionConverter {
+
+    private static final int SECTOR_BYTES = 4096;
+    private static final int SECTOR_INTS = 1024;
+    private static final int EXTERNAL_FLAG = 128;
+    private static final int MAX_SECTORS = 255;
+    private static final Pattern REGION_NAME = Pattern.compile("r\\.(-?\\d+)\\.(-?\\d+)\\.mca");
+
+    private static final int GZIP = 1;
+    private static final int ZLIB = 2;
+    private static final int NONE = 3;
+    private static final int LZ4 = 4;
+
+    private final Path folder;
+    private final int format;
+    private final int level;
+    private ZstdRegionCompression.Dictionary dictionary;
+
+    // Statistics
+    private long chunks;
+    private long bytesBefore;
+    private long bytesAfter;
+
+    public ZstdRegionConverter(final Path folder, final int format, final int level) {
+        this.folder = folder;
+        this.format = format;
+        this.level = level;
+        // Also needed to read chunks already written with a dictionary
+        final ZstdRegionCompression.Dictionary dictionary = ZstdRegionCompression.loadDictionaries(folder);
+        if (format == ZstdRegionCompression.VERSION_ID) {
+            this.dictionary = dictionary;
+        }
+    }
+
+    /**
+     * Train a dictionary from up to {@code maxSamples} chunks spread over the folder and write new chunks with it
+     */
+    public ZstdRegionCompression.Dictionary train(final int maxSamples, final int dictionarySize) throws IOException {
+        final List<Path> regionFiles = this.listRegionFiles();
+        final List<byte[]> samples = new ArrayList<>();
+        final int perFile = Math.max(1, maxSamples / Math.max(1, regionFiles.size()));
+        for (final Path regionFile : regionFiles) {
+            final byte[][] data;
+            try {
+                data = this.readRegion(regionFile);
+            } catch (final IOException e) {
+                System.err.println("Not sampling " + regionFile + ": " + e.getMessage());
+                continue;
+            }
+            final int present = countPresent(data);
+            final int step = Math.max(1, present / perFile);
+            for (int i = 0, seen = 0; i < SECTOR_INTS && samples.size() < maxSamples; ++i) {
+                if (data[i] != null && seen++ % step == 0) {
+                    samples.add(data[i]);
+                }
+            }
+        }
+        if (samples.isEmpty()) {
+            throw new IllegalStateException("No chunks to train from in " + this.folder);
+        }
+        this.dictionary = ZstdRegionCompression.install(this.folder, ZstdRegionCompression.train(samples, dictionarySize));
+        System.out.println("Trained " + this.dictionary.size() + " byte dictionary " + this.dictionary.id() + " from " + samples.size() + " chunks");
+        return this.dictionary;
+    }
+
+    public void convert() throws IOException {
+        for (final Path regionFile : this.listRegionFiles()) {
+            try {
+                this.convert(regionFile);
+            } catch (final IOException e) {
+                System.err.println("Left " + regionFile + " unchanged: " + e.getMessage());
+            }
+        }
+        System.out.println("Converted " + this.chunks + " chunks, region files " + this.bytesBefore + " -> " + this.bytesAfter + " bytes");
+    }
+
+    private List<Path> listRegionFiles() throws IOException {
+        try (Stream<Path> files = Files.list(this.folder)) {
+            return files.filter(file -> REGION_NAME.matcher(file.getFileName().toString()).matches()).sorted().toList();
+        }
+    }
+
+    private static int countPresent(final byte[][] data) {
+        int present = 0;
+        for (final byte[] chunk : data) {
+            if (chunk != null) {
+                ++present;
+            }
+        }
+        return present;
+    }
+
+    private Path getExternalPath(final Path regionFile, final int index) {
+        final Matcher matcher = REGION_NAME.matcher(regionFile.getFileName().toString());
+        if (!matcher.matches()) {
+            throw new IllegalArgumentException(regionFile.toString());
+        }
+        final int chunkX = Integer.parseInt(matcher.group(1)) * 32 + (index & 31);
+        final int chunkZ = Integer.parseInt(matcher.group(2)) * 32 + (index >> 5);
+        return this.folder.resolve("c." + chunkX + "." + chunkZ + ".mcc");
+    }
+
+    private static Path getTempPath(final Path file) {
+        return file.resolveSibling(file.getFileName() + ".tmp");
+    }
+
+    private static void moveIntoPlace(final Path temp, final Path file) throws IOException {
+        Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Finishes or rolls back a conversion of {@code regionFile} that was interrupted. Its temporary region file
+     * still existing means the old region file was never replaced, the old {@code .mcc} files still belong to it.
+     * Otherwise the region file was replaced and its new {@code .mcc} files still have to be moved into place.
+     */
+    private void recover(final Path regionFile) throws IOException {
+        final Path temp = getTempPath(regionFile);
+        final boolean replaced = !Files.deleteIfExists(temp);
+        for (int i = 0; i < SECTOR_INTS; ++i) {
+            final Path external = this.getExternalPath(regionFile, i);
+            final Path externalTemp = getTempPath(external);
+            if (!Files.exists(externalTemp)) {
+                continue;
+            }
+            if (replaced) {
+                moveIntoPlace(externalTemp, external);
+            } else {
+                Files.delete(externalTemp);
+            }
+        }
+    }
+
+    /**
+     * Uncompressed NBT of every chunk of a region file, {@code null} where there is none. Fails on any chunk that
+     * can't be read, so a conversion never drops one.
+     */
+    private byte[][] readRegion(final Path regionFile) throws IOException {
+        this.recover(regionFile);
+        final ByteBuffer file = ByteBuffer.wrap(Files.readAllBytes(regionFile));
+        final byte[][] data = new byte[SECTOR_INTS][];
+        if (file.capacity() < 2 * SECTOR_BYTES) {
+            return data;
+        }
+        for (int i = 0; i < SECTOR_INTS; ++i) {
+            final int offset = file.getInt(i * 4);
+            if (offset == 0) {
+                continue;
+            }
+            final int start = (offset >>> 8) * SECTOR_BYTES;
+            if (start + 5 > file.capacity()) {
+                throw new IOException("Chunk " + i + " lies outside of the file");
+            }
+            final int length = file.getInt(start) - 1;
+            final int version = file.get(start + 4) & 0xFF;
+            try {
+                if ((version & EXTERNAL_FLAG) != 0) {
+                    data[i] = decompress(version & ~EXTERNAL_FLAG, Files.newInputStream(this.getExternalPath(regionFile, i)));
+                } else if (length > 0 && start + 5 + length <= file.capacity()) {
+                    data[i] = decompress(version, new ByteArrayInputStream(file.array(), start + 5, length));
+                } else {
+                    throw new IOException("bad length " + length);
+                }
+            } catch (final IOException e) {
+                throw new IOException("Failed to read chunk " + i + ": " + e.getMessage(), e);
+            }
+        }
+        return data;
+    }
+
+    private void convert(final Path regionFile) throws IOException {
+        final byte[][] data = this.readRegion(regionFile);
+        this.bytesBefore += Files.size(regionFile);
+        final ByteBuffer header = ByteBuffer.allocate(2 * SECTOR_BYTES);
+        try (InputStream in = Files.newInputStream(regionFile)) {
+            // Keep the timestamps
+            in.readNBytes(header.array(), 0, header.capacity());
+        }
+
+        final ByteArrayOutputStream out = new ByteArrayOutputStream(Math.toIntExact(Math.max(Files.size(regionFile), 2 * SECTOR_BYTES)));
+        out.write(new byte[2 * SECTOR_BYTES]);
+        // Nothing is replaced or deleted before the new region file is in place
+        final List<Path> written = new ArrayList<>();
+        final List<byte[]> writtenData = new ArrayList<>();
+        final List<Path> obsolete = new ArrayList<>();
+        int sector = 2;
+        for (int i = 0; i < SECTOR_INTS; ++i) {
+            final Path external = this.getExternalPath(regionFile, i);
+            if (data[i] == null) {
+                header.putInt(i * 4, 0);
+                obsolete.add(external);
+                continue;
+            }
+
+            final byte[] compressed = this.compress(data[i]);
+            ++this.chunks;
+            final int sectors = (compressed.length + 5 + SECTOR_BYTES - 1) / SECTOR_BYTES;
+            final ByteBuffer chunk;
+            if (sectors > MAX_SECTORS) {
+                // Too large for the region file, same stub the server writes
+                written.add(external);
+                writtenData.add(compressed);
+                chunk = ByteBuffer.allocate(SECTOR_BYTES).putInt(1).put((byte) (this.format | EXTERNAL_FLAG));
+            } else {
+                obsolete.add(external);
+                chunk = ByteBuffer.allocate(sectors * SECTOR_BYTES).putInt(compressed.length + 1).put((byte) this.format).put(compressed);
+            }
+            out.write(chunk.array());
+            header.putInt(i * 4, sector << 8 | chunk.capacity() / SECTOR_BYTES);
+            sector += chunk.capacity() / SECTOR_BYTES;
+        }
+
+        final byte[] bytes = out.toByteArray();
+        System.arraycopy(header.array(), 0, bytes, 0, header.capacity());
+        final Path temp = getTempPath(regionFile);
+        // The temporary region file goes first, while it exists a restart discards the temporary .mcc files
+        Files.write(temp, bytes);
+        for (int i = 0; i < written.size(); ++i) {
+            Files.write(getTempPath(written.get(i)), writtenData.get(i));
+        }
+        moveIntoPlace(temp, regionFile);
+        this.bytesAfter += bytes.length;
+
+        for (final Path external : written) {
+            moveIntoPlace(getTempPath(external), external);
+        }
+        for (final Path external : obsolete) {
+            Files.deleteIfExists(external);
+        }
+    }
+
+    private static byte[] decompress(final int version, final InputStream stream) throws IOException {
+        try (InputStream in = switch (version) {
+            case GZIP -> new GZIPInputStream(stream);
+            case ZLIB -> new InflaterInputStream(stream);
+            case NONE -> stream;
+            case LZ4 -> new LZ4BlockInputStream(stream);
+            case ZstdRegionCompression.VERSION_ID -> ZstdRegionCompression.wrapInput(stream);
+            default -> throw new IOException("Unknown compression version " + version);
+        }) {
+            return in.readAllBytes();
+        }
+    }
+
+    private byte[] compress(final byte[] data) throws IOException {
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream(data.length / 4);
+        try (OutputStream out = switch (this.format) {
+            case GZIP -> new GZIPOutputStream(bytes);
+            case ZLIB -> new DeflaterOutputStream(bytes);
+            case NONE -> bytes;
+            case LZ4 -> new LZ4BlockOutputStream(bytes);
+            default -> ZstdRegionCompression.wrapOutput(bytes, this.level, this.dictionary);
+        }) {
+            out.write(data);
+        }
+        return bytes.toByteArray();
+    }
+
+    private static int parseFormat(final String name) {
+        return switch (name.toLowerCase(Locale.ROOT)) {
+            case "gzip" -> GZIP;
+            case "zlib", "deflate" -> ZLIB;
+            case "none" -> NONE;
+            case "lz4" -> LZ4;
+            case "zstd" -> ZstdRegionCompression.VERSION_ID;
+            default -> throw new IllegalArgumentException("Unknown format " + name);
+        };
+    }
+
+    public static void main(final String[] args) throws IOException {
+        if (args.length < 1) {
+            System.err.println("Usage: ZstdRegionConverter <storage folder> [--format zstd|zlib|gzip|lz4|none] [--level 1-22] [--train [size]] [--samples n]");
+            System.exit(1);
+            return;
+        }
+        final Path folder = Path.of(args[0]);
+        int format = ZstdRegionCompression.VERSION_ID;
+        int level = ZstdRegionCompression.DEFAULT_LEVEL;
+        int dictionarySize = -1;
+        int samples = 4096;
+        for (int i = 1; i < args.length; ++i) {
+            switch (args[i]) {
+                case "--format" -> format = parseFormat(args[++i]);
+                case "--level" -> {
+                    level = Integer.parseInt(args[++i]);
+                    if (level < ZstdRegionCompression.MIN_LEVEL || level > ZstdRegionCompression.MAX_LEVEL) {
+                        throw new IllegalArgumentException("Level " + level + " is outside of " + ZstdRegionCompression.MIN_LEVEL + "-" + ZstdRegionCompression.MAX_LEVEL);
+                    }
+                }
+                case "--samples" -> samples = Integer.parseInt(args[++i]);
+                case "--train" -> dictionarySize = i + 1 < args.length && !args[i + 1].startsWith("--") ? Integer.parseInt(args[++i]) : ZstdRegionCompression.DEFAULT_DICTIONARY_SIZE;
+                default -> throw new IllegalArgumentException("Unknown option " + args[i]);
+            }
+        }
+
+        final ZstdRegionConverter converter = new ZstdRegionConverter(folder, format, level);
+        if (dictionarySize > 0) {
+            converter.train(samples, dictionarySize);
+        }
+        converter.convert();
+    }
+}
@@ -0,0 +1,61 @@
+package io.papermc.paper.antixray;
+
+import org.bukkit.support.environment.Normal;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@Normal
+public class ObfuscatedSectionCacheTest {
+
+    @Test
+    public void testDataLength() {
+        // 16 entries per long, 256 longs
+        assertEquals(2048, ObfuscatedSectionCache.getDataLength(4));
+        // 12 entries per long, the last long is partially used
+        assertEquals(342 * Long.BYTES, ObfuscatedSectionCache.getDataLength(5));
+        assertEquals(4096 * Long.BYTES, ObfuscatedSectionCache.getDataLength(64));
+    }
+
+    @Test
+    public void testSingleValueSection() {
+        // A section with a single value palette, like an all stone section in engine mode HIDE, is written with 0 bits and no data
+        assertEquals(0, ObfuscatedSectionCache.getDataLength(0));
+    }
+
+    @Test
+    public void testRestoreStored() {
+        ObfuscatedSectionCache cache = new ObfuscatedSectionCache(16);
+        int length = ObfuscatedSectionCache.getDataLength(4);
+        byte[] original = new byte[length];
+        byte[] buffer = new byte[length + 10];
+        original[0] = 1;
+        buffer[10] = 2;
+        long modificationCount = cache.getModificationCount();
+
+        cache.store(1L, modificationCount, null, 0, original, buffer, 10, length);
+
+        byte[] packet = new byte[length + 10];
+        System.arraycopy(original, 0, packet, 10, length);
+        assertTrue(cache.restore(1L, null, 0, packet, 10, length));
+        assertArrayEquals(buffer, packet);
+        // Other nearby chunks loaded
+        System.arraycopy(original, 0, packet, 10, length);
+        assertFalse(cache.restore(1L, null, 1, packet, 10, length));
+    }
+
+    @Test
+    public void testChangedWhileObfuscating() {
+        ObfuscatedSectionCache cache = new ObfuscatedSectionCache(16);
+        int length = ObfuscatedSectionCache.getDataLength(4);
+        long modificationCount = cache.getModificationCount();
+
+        cache.invalidate(1L);
+        cache.store(1L, modificationCount, null, 0, new byte[length], new byte[length], 0, length);
+
+        assertFalse(cache.restore(1L, null, 0, new byte[length], 0, length));
+    }
+}
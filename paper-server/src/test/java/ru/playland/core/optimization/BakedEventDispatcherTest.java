@@ -0,0 +1,202 @@
+package ru.playland.core.optimization;
+
+import com.destroystokyo.paper.event.server.ServerExceptionEvent;
+import com.destroystokyo.paper.exception.ServerEventException;
+import io.papermc.paper.plugin.PaperTestPlugin;
+import io.papermc.paper.plugin.manager.PaperPluginManagerImpl;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+import org.bukkit.Bukkit;
+import org.bukkit.event.Cancellable;
+import org.bukkit.event.Event;
+import org.bukkit.event.EventException;
+import org.bukkit.event.EventPriority;
+import org.bukkit.event.HandlerList;
+import org.bukkit.event.Listener;
+import org.bukkit.plugin.RegisteredListener;
+import org.bukkit.support.environment.Normal;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Every case runs through the generated class and through the loop it falls back to, both have to call listeners
+ * like {@code PaperEventManager#callEvent} did
+ */
+@Normal
+public class BakedEventDispatcherTest {
+
+    private final PaperTestPlugin plugin = new PaperTestPlugin("baked");
+    private final PaperTestPlugin other = new PaperTestPlugin("other");
+
+    @AfterEach
+    public void tearDown() {
+        TestEvent.HANDLERS.unregister(this.plugin);
+        TestEvent.HANDLERS.unregister(this.other);
+        ServerExceptionEvent.getHandlerList().unregister(this.plugin);
+    }
+
+    @Test
+    public void testPriorityOrder() {
+        final List<EventPriority> calls = new ArrayList<>();
+        final EventPriority[] priorities = EventPriority.values();
+        // Registered backwards and from two plugins, the handler list bakes them in priority order
+        for (int i = priorities.length - 1; i >= 0; --i) {
+            final EventPriority priority = priorities[i];
+            register(i % 2 == 0 ? this.plugin : this.other, priority, false, event -> calls.add(priority));
+            register(this.plugin, priority, true, event -> calls.add(priority));
+        }
+        final List<EventPriority> expected = new ArrayList<>();
+        for (final EventPriority priority : priorities) {
+            expected.add(priority);
+            expected.add(priority);
+        }
+
+        for (final BakedEventDispatcher dispatcher : dispatchers()) {
+            calls.clear();
+            dispatcher.dispatch(new TestEvent(), failFast());
+            assertEquals(expected, calls);
+        }
+
+        // A disabled plugin is skipped, the others still run
+        this.other.setEnabled(false);
+        try {
+            for (final BakedEventDispatcher dispatcher : dispatchers()) {
+                calls.clear();
+                dispatcher.dispatch(new TestEvent(), failFast());
+                assertEquals(expected.size() - priorities.length / 2, calls.size());
+            }
+        } finally {
+            this.other.setEnabled(true);
+        }
+    }
+
+    @Test
+    public void testCancellation() {
+        final List<String> calls = new ArrayList<>();
+        register(this.plugin, EventPriority.LOW, true, event -> calls.add("low"));
+        register(this.plugin, EventPriority.NORMAL, false, event -> {
+            calls.add("cancel");
+            event.setCancelled(true);
+        });
+        register(this.plugin, EventPriority.HIGH, true, event -> calls.add("high ignoring cancelled"));
+        register(this.plugin, EventPriority.HIGH, false, event -> calls.add("high"));
+        register(this.plugin, EventPriority.MONITOR, false, event -> calls.add("monitor " + event.isCancelled()));
+        register(this.plugin, EventPriority.MONITOR, true, event -> calls.add("monitor ignoring cancelled"));
+
+        for (final BakedEventDispatcher dispatcher : dispatchers()) {
+            calls.clear();
+            final TestEvent event = new TestEvent();
+            dispatcher.dispatch(event, failFast());
+            assertEquals(List.of("low", "cancel", "high", "monitor true"), calls);
+            assertTrue(event.isCancelled());
+        }
+
+        // Uncancelled again before the monitors, the ones ignoring cancelled events run as well
+        register(this.plugin, EventPriority.HIGHEST, false, event -> event.setCancelled(false));
+        for (final BakedEventDispatcher dispatcher : dispatchers()) {
+            calls.clear();
+            dispatcher.dispatch(new TestEvent(), failFast());
+            assertEquals(List.of("low", "cancel", "high", "monitor false", "monitor ignoring cancelled"), calls);
+        }
+    }
+
+    @Test
+    public void testFailures() {
+        final List<String> calls = new ArrayList<>();
+        final IllegalStateException thrown = new IllegalStateException("listener");
+        register(this.plugin, EventPriority.LOW, false, event -> {
+            throw thrown;
+        });
+        // An executor wrapping what its handler threw, like the ones plugins write
+        final Listener listener = new Listener() {};
+        TestEvent.HANDLERS.register(new RegisteredListener(listener, (ignored, event) -> {
+            throw new EventException(thrown, "wrapped");
+        }, EventPriority.NORMAL, this.other, false));
+        register(this.plugin, EventPriority.HIGH, false, event -> calls.add("after"));
+
+        for (final BakedEventDispatcher dispatcher : dispatchers()) {
+            calls.clear();
+            final List<RegisteredListener> failed = new ArrayList<>();
+            final List<Throwable> failures = new ArrayList<>();
+            dispatcher.dispatch(new TestEvent(), (registration, event, throwable) -> {
+                failed.add(registration);
+                failures.add(throwable);
+            });
+            // Every failure is reported with its listener and the dispatch goes on
+            assertEquals(List.of("after"), calls);
+            assertEquals(2, failed.size());
+            assertSame(this.plugin, failed.get(0).getPlugin());
+            assertSame(thrown, failures.get(0));
+            assertSame(this.other, failed.get(1).getPlugin());
+            assertSame(listener, failed.get(1).getListener());
+            assertSame(thrown, assertInstanceOf(EventException.class, failures.get(1)).getCause());
+        }
+
+        // Through the event manager, the exception event names the plugin of the listener that threw
+        final List<ServerEventException> reported = new ArrayList<>();
+        ServerExceptionEvent.getHandlerList().register(new RegisteredListener(new Listener() {}, (ignored, event) -> {
+            if (((ServerExceptionEvent) event).getException() instanceof final ServerEventException exception) {
+                reported.add(exception);
+            }
+        }, EventPriority.NORMAL, this.plugin, false));
+        final PaperPluginManagerImpl pluginManager = new PaperPluginManagerImpl(Bukkit.getServer(), null, null);
+        calls.clear();
+        pluginManager.callEvent(new TestEvent());
+        assertEquals(List.of("after"), calls);
+        assertEquals(2, reported.size());
+        assertSame(this.plugin, reported.get(0).getResponsiblePlugin());
+        assertSame(thrown, reported.get(0).getCause());
+        assertSame(this.other, reported.get(1).getResponsiblePlugin());
+        assertSame(listener, reported.get(1).getListener());
+        assertInstanceOf(EventException.class, reported.get(1).getCause());
+    }
+
+    private static void register(final PaperTestPlugin plugin, final EventPriority priority, final boolean ignoreCancelled, final Consumer<TestEvent> handler) {
+        TestEvent.HANDLERS.register(new RegisteredListener(new Listener() {}, (listener, event) -> handler.accept((TestEvent) event), priority, plugin, ignoreCancelled));
+    }
+
+    // The cached generated dispatcher of the handler list and the loop for the same listeners
+    private static List<BakedEventDispatcher> dispatchers() {
+        final RegisteredListener[] listeners = TestEvent.HANDLERS.getRegisteredListeners();
+        final BakedEventDispatcher generated = BakedEventDispatcher.get(TestEvent.HANDLERS, listeners, TestEvent.class);
+        assertSame(generated, BakedEventDispatcher.get(TestEvent.HANDLERS, listeners, TestEvent.class));
+        return List.of(generated, BakedEventDispatcher.loop(listeners));
+    }
+
+    private static BakedEventDispatcher.FailureHandler failFast() {
+        return (registration, event, throwable) -> {
+            throw new AssertionError("listener of " + registration.getPlugin().getName() + " failed", throwable);
+        };
+    }
+
+    public static final class TestEvent extends Event implements Cancellable {
+        private static final HandlerList HANDLERS = new HandlerList();
+
+        private boolean cancelled;
+
+        @Override
+        public boolean isCancelled() {
+            return this.cancelled;
+        }
+
+        @Override
+        public void setCancelled(final boolean cancel) {
+            this.cancelled = cancel;
+        }
+
+        @Override
+        public HandlerList getHandlers() {
+            return HANDLERS;
+        }
+
+        public static HandlerList getHandlerList() {
+            return HANDLERS;
+        }
+    }
+}
@@ -0,0 +1,227 @@
+package ru.playland.core.optimization;
+
+import java.util.ConcurrentModificationException;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Random;
+import net.minecraft.nbt.ByteTag;
+import net.minecraft.nbt.CompoundTag;
+import net.minecraft.nbt.DoubleTag;
+import net.minecraft.nbt.FloatTag;
+import net.minecraft.nbt.IntArrayTag;
+import net.minecraft.nbt.IntTag;
+import net.minecraft.nbt.ListTag;
+import net.minecraft.nbt.LongTag;
+import net.minecraft.nbt.ShortTag;
+import net.minecraft.nbt.StringTag;
+import net.minecraft.nbt.Tag;
+import org.bukkit.NamespacedKey;
+import org.bukkit.support.environment.Normal;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Runs random operations against the compact map and a {@link HashMap}, the storage it replaces
+ */
+@Normal
+public class CompactDataMapTest {
+
+    private static final int KEYS = 40;
+
+    @Test
+    public void testRandomOperations() {
+        final Random random = new Random(1);
+        final CompactDataMap compact = new CompactDataMap();
+        final Map<String, Tag> reference = new HashMap<>();
+
+        for (int i = 0; i < 50_000; ++i) {
+            final String name = name(random.nextInt(KEYS));
+            switch (random.nextInt(8)) {
+                case 0, 1 -> {
+                    final Tag tag = randomTag(random);
+                    assertEquals(reference.put(name, tag), compact.put(name, tag), name);
+                }
+                case 2 -> assertEquals(reference.remove(name), compact.remove(name), name);
+                case 3 -> {
+                    // The container's tagless path for primitive types
+                    final Tag tag = randomTag(random);
+                    final Object value = primitive(tag);
+                    if (value != null) {
+                        assertTrue(compact.putPrimitive(NamespacedKey.fromString(name), value));
+                        reference.put(name, tag);
+                    }
+                }
+                case 4 -> {
+                    final Tag expected = reference.get(name);
+                    final Object value = expected == null ? null : primitive(expected);
+                    final Object read = compact.getPrimitive(NamespacedKey.fromString(name), value == null ? Integer.class : value.getClass());
+                    if (expected == null) {
+                        assertEquals(null, read, name);
+                    } else if (value != null) {
+                        assertEquals(value, read, name);
+                    } else {
+                        assertSame(CompactDataMap.NOT_INLINE, read, name);
+                    }
+                }
+                case 5 -> {
+                    // Remove every entry of one key through the iterators of both
+                    removeIf(reference.entrySet().iterator(), name);
+                    removeIf(compact.entrySet().iterator(), name);
+                }
+                case 6 -> {
+                    final Tag tag = randomTag(random);
+                    for (final Map.Entry<String, Tag> entry : compact.entrySet()) {
+                        if (entry.getKey().equals(name)) {
+                            assertEquals(reference.put(name, tag), entry.setValue(tag));
+                        }
+                    }
+                }
+                default -> {
+                    assertEquals(reference.get(name), compact.get(name), name);
+                    assertEquals(reference.containsKey(name), compact.containsKey(name), name);
+                    assertEquals(reference.containsKey(name), compact.containsKey(NamespacedKey.fromString(name)), name);
+                }
+            }
+            assertSameMap(reference, compact);
+        }
+    }
+
+    @Test
+    public void testCopies() {
+        final Random random = new Random(2);
+        final CompactDataMap compact = new CompactDataMap();
+        for (int i = 0; i < KEYS; ++i) {
+            compact.put(name(i), randomTag(random));
+        }
+        final ListTag list = new ListTag();
+        list.add(IntTag.valueOf(1));
+        compact.put(name(0), list);
+
+        final CompactDataMap copy = compact.deepCopy();
+        assertEquals(compact, copy);
+        assertEquals(compact.hashCode(), copy.hashCode());
+        assertNotSame(compact.get(name(0)), copy.get(name(0)));
+        // Copies own their arrays
+        copy.remove(name(1));
+        copy.put(name(2), StringTag.valueOf("changed"));
+        assertEquals(KEYS, compact.size());
+        assertFalse(compact.equals(copy));
+
+        final CompactDataMap added = new CompactDataMap();
+        added.putAll(compact);
+        assertEquals(compact, added);
+        added.put(name(KEYS), IntTag.valueOf(1));
+        assertFalse(compact.containsKey(name(KEYS)));
+        added.remove(name(KEYS));
+        assertEquals(compact, added);
+    }
+
+    @Test
+    public void testIteratorFailsFast() {
+        final CompactDataMap compact = new CompactDataMap();
+        for (int i = 0; i < 4; ++i) {
+            compact.put(name(i), IntTag.valueOf(i));
+        }
+
+        final Iterator<Map.Entry<String, Tag>> added = compact.entrySet().iterator();
+        added.next();
+        compact.put(name(10), IntTag.valueOf(10));
+        assertThrows(ConcurrentModificationException.class, added::next);
+
+        final Iterator<Map.Entry<String, Tag>> removed = compact.entrySet().iterator();
+        removed.next();
+        compact.remove(name(3));
+        assertThrows(ConcurrentModificationException.class, removed::next);
+        assertThrows(ConcurrentModificationException.class, removed::remove);
+
+        // Replacing a value is no structural change, neither is removing through the iterator itself
+        final Iterator<Map.Entry<String, Tag>> iterator = compact.entrySet().iterator();
+        iterator.next().setValue(IntTag.valueOf(100));
+        compact.put(name(1), IntTag.valueOf(101));
+        iterator.next();
+        iterator.remove();
+        assertThrows(IllegalStateException.class, iterator::remove);
+        iterator.next();
+        assertEquals(3, compact.size());
+    }
+
+    @Test
+    public void testGetKeys() {
+        final CompactDataMap compact = new CompactDataMap();
+        compact.put("test:a", IntTag.valueOf(1));
+        compact.put("test:b/c", IntTag.valueOf(2));
+        // No namespaced key, skipped like before
+        compact.put("plain", IntTag.valueOf(3));
+        assertEquals(2, compact.getKeys().size());
+        assertTrue(compact.getKeys().contains(new NamespacedKey("test", "b/c")));
+
+        // A name that looks like a key but is none throws, like the HashMap backed container did
+        compact.put("Test:Invalid Key", IntTag.valueOf(4));
+        assertThrows(IllegalArgumentException.class, compact::getKeys);
+    }
+
+    private static void removeIf(final Iterator<Map.Entry<String, Tag>> iterator, final String name) {
+        while (iterator.hasNext()) {
+            if (iterator.next().getKey().equals(name)) {
+                iterator.remove();
+            }
+        }
+    }
+
+    private static void assertSameMap(final Map<String, Tag> reference, final CompactDataMap compact) {
+        assertEquals(reference.size(), compact.size());
+        assertEquals(reference.isEmpty(), compact.isEmpty());
+        assertTrue(compact.equals(reference));
+        assertTrue(reference.equals(compact));
+        assertEquals(reference.hashCode(), compact.hashCode());
+        assertEquals(reference.entrySet(), compact.entrySet());
+    }
+
+    private static String name(final int index) {
+        return "test:key_" + index;
+    }
+
+    private static Tag randomTag(final Random random) {
+        return switch (random.nextInt(10)) {
+            case 0 -> ByteTag.valueOf((byte) random.nextInt());
+            case 1 -> ShortTag.valueOf((short) random.nextInt());
+            case 2 -> IntTag.valueOf(random.nextInt(4));
+            case 3 -> LongTag.valueOf(random.nextLong());
+            case 4 -> FloatTag.valueOf(random.nextBoolean() ? Float.NaN : random.nextFloat());
+            case 5 -> DoubleTag.valueOf(random.nextBoolean() ? -0.0 : random.nextDouble());
+            case 6 -> StringTag.valueOf("value" + random.nextInt(4));
+            case 7 -> new IntArrayTag(new int[] {random.nextInt(4), 1});
+            case 8 -> {
+                final CompoundTag compound = new CompoundTag();
+                compound.putInt("value", random.nextInt(4));
+                yield compound;
+            }
+            default -> {
+                final ListTag list = new ListTag();
+                list.add(StringTag.valueOf("value" + random.nextInt(4)));
+                yield list;
+            }
+        };
+    }
+
+    // The boxed value the container would write for a primitive type, null if it writes a tag
+    private static Object primitive(final Tag tag) {
+        return switch (tag) {
+            case final ByteTag byteTag -> byteTag.value();
+            case final ShortTag shortTag -> shortTag.value();
+            case final IntTag intTag -> intTag.value();
+            case final LongTag longTag -> longTag.value();
+            case final FloatTag floatTag -> floatTag.value();
+            case final DoubleTag doubleTag -> doubleTag.value();
+            case final StringTag stringTag -> stringTag.value();
+            default -> null;
+        };
+    }
+}
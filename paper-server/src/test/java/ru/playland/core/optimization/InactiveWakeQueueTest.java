@@ -0,0 +1,98 @@
+package ru.playland.core.optimization;
+
+import net.minecraft.server.MinecraftServer;
+import net.minecraft.world.entity.Entity;
+import net.minecraft.world.level.Level;
+import org.bukkit.support.environment.Normal;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * An inactive entity that is neither on the ground nor removed gets the immunity of 100 ticks of a moving entity,
+ * so the activated tick tells whether its check ran and on which tick
+ */
+@Normal
+public class InactiveWakeQueueTest {
+
+    private static final int START = 1_000;
+    private static final long INACTIVE = START - 50L;
+
+    private Level level;
+
+    @BeforeEach
+    public void setUp() {
+        MinecraftServer.currentTick = START;
+        this.level = mock(Level.class);
+    }
+
+    @AfterEach
+    public void tearDown() {
+        InactiveWakeQueue.clear(this.level);
+    }
+
+    @Test
+    public void testScheduleKeepsEarliestTick() {
+        final Entity entity = this.entity();
+        InactiveWakeQueue.schedule(entity, START + 5L);
+        InactiveWakeQueue.schedule(entity, START + 3L);
+        // Later than the one queued, ignored
+        InactiveWakeQueue.schedule(entity, START + 8L);
+        assertEquals(1, pending());
+
+        this.runUntil(START + 2);
+        assertEquals(INACTIVE, entity.activatedTick);
+        this.runUntil(START + 3);
+        assertEquals(START + 3L + 100L, entity.activatedTick);
+        assertEquals(0, pending());
+    }
+
+    @Test
+    public void testRemovedAndActiveAreDropped() {
+        final Entity removed = this.entity();
+        final Entity active = this.entity();
+        final Entity inactive = this.entity();
+        for (final Entity entity : new Entity[] {removed, active, inactive}) {
+            InactiveWakeQueue.schedule(entity, START + 1L);
+        }
+        when(removed.isRemoved()).thenReturn(true);
+        // Activated by a player in the meantime
+        active.activatedTick = START + 1L;
+
+        final long dropped = stat("dropped");
+        final long checked = stat("checked");
+        this.runUntil(START + 1);
+        assertEquals(dropped + 2, stat("dropped"));
+        assertEquals(checked + 1, stat("checked"));
+        assertEquals(INACTIVE, removed.activatedTick);
+        assertEquals(START + 1L, active.activatedTick);
+        assertEquals(START + 1L + 100L, inactive.activatedTick);
+        assertEquals(0, pending());
+    }
+
+    private Entity entity() {
+        final Entity entity = mock(Entity.class);
+        when(entity.level()).thenReturn(this.level);
+        entity.activatedTick = INACTIVE;
+        return entity;
+    }
+
+    private void runUntil(final int tick) {
+        while (MinecraftServer.currentTick < tick) {
+            ++MinecraftServer.currentTick;
+            InactiveWakeQueue.wakeDue(this.level);
+        }
+    }
+
+    private static int pending() {
+        return (Integer) InactiveWakeQueue.getStats().get("pending");
+    }
+
+    private static long stat(final String name) {
+        return (Long) InactiveWakeQueue.getStats().get(name);
+    }
+}
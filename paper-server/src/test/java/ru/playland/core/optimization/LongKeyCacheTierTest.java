@@ -0,0 +1,137 @@
+package ru.playland.core.optimization;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import org.bukkit.support.environment.Normal;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@Normal
+public class LongKeyCacheTierTest {
+
+    @Test
+    public void testRemoveKeepsBounds() {
+        // One stripe with a window of two, removals hit the window all the time
+        final LongKeyCacheTier<Long> tier = new LongKeyCacheTier<>("test", 200, 1, 0L);
+        final Random random = new Random(1);
+        final Map<Long, Long> written = new HashMap<>();
+        long newest = 0;
+
+        for (int i = 0; i < 200_000; ++i) {
+            // Mostly keys that were just written and still sit in the window
+            final long key = random.nextBoolean() ? Math.max(0, newest - random.nextInt(4)) : random.nextInt(1_000);
+            switch (random.nextInt(3)) {
+                case 0 -> assertSameAsWritten(written, key, tier.get(key));
+                case 1 -> tier.remove(key);
+                default -> {
+                    final Long value = (long) i;
+                    tier.put(key, value);
+                    written.put(key, value);
+                    newest = key == newest ? newest + 1 : newest;
+                }
+            }
+            assertBounds(tier);
+        }
+    }
+
+    @Test
+    public void testExpiryKeepsBounds() throws InterruptedException {
+        final LongKeyCacheTier<Long> tier = new LongKeyCacheTier<>("test", 200, 1, 1L);
+        final Random random = new Random(2);
+        final Map<Long, Long> written = new HashMap<>();
+
+        long newest = 0;
+
+        for (int i = 0; i < 50_000; ++i) {
+            final long key = random.nextBoolean() ? Math.max(0, newest - random.nextInt(4)) : random.nextInt(1_000);
+            if (key == newest) {
+                ++newest;
+            }
+            switch (random.nextInt(4)) {
+                case 0 -> assertSameAsWritten(written, key, tier.get(key));
+                case 1 -> tier.remove(key);
+                case 2 -> tier.putIfAbsent(key, (long) i, null);
+                default -> tier.put(key, (long) i);
+            }
+            if (tier.containsKey(key)) {
+                written.put(key, tier.get(key));
+            }
+            if (i % 1_000 == 0) {
+                // Let the entries written so far expire, on read and on clean up
+                Thread.sleep(2L);
+                if (i % 2_000 == 0) {
+                    tier.cleanUp();
+                }
+            }
+            assertBounds(tier);
+        }
+
+        Thread.sleep(2L);
+        tier.cleanUp();
+        assertEquals(0, tier.size());
+        assertEquals(0, tier.windowSize());
+    }
+
+    @Test
+    public void testRemovedKeyIsGone() {
+        final LongKeyCacheTier<Long> tier = new LongKeyCacheTier<>("test", 100, 1, 0L);
+        for (long key = 0; key < 100; ++key) {
+            tier.put(key, key);
+            assertEquals(Long.valueOf(key), tier.remove(key));
+            assertNull(tier.get(key));
+        }
+        assertEquals(0, tier.size());
+        assertEquals(0, tier.windowSize());
+
+        // Still fills up to its bound and ages entries out afterwards
+        for (long key = 0; key < 1_000; ++key) {
+            tier.put(key, key);
+            assertBounds(tier);
+        }
+        assertEquals(tier.maxSize(), tier.size());
+    }
+
+    @Test
+    public void testWindowAgesOutAfterRemovals() {
+        // Window of ten, each key is followed by more removed keys than the window holds
+        final LongKeyCacheTier<Long> tier = new LongKeyCacheTier<>("test", 1_000, 1, 0L);
+        long removed = 1_000_000;
+        for (long key = 0; key < 10; ++key) {
+            tier.put(key, key);
+            for (int i = 0; i < 30; ++i, ++removed) {
+                tier.put(removed, removed);
+                tier.remove(removed);
+            }
+        }
+
+        // Ten new keys push the old ones into the main region, so removing them empties the window
+        for (long key = 100; key < 110; ++key) {
+            tier.put(key, key);
+        }
+        for (long key = 100; key < 110; ++key) {
+            tier.remove(key);
+        }
+        assertEquals(10, tier.size());
+        assertEquals(0, tier.windowSize());
+        for (long key = 0; key < 10; ++key) {
+            assertEquals(Long.valueOf(key), tier.get(key));
+        }
+    }
+
+    private static void assertSameAsWritten(final Map<Long, Long> written, final long key, final Long value) {
+        if (value != null) {
+            assertSame(written.get(key), value, "key " + key);
+        }
+    }
+
+    private static void assertBounds(final LongKeyCacheTier<?> tier) {
+        assertTrue(tier.size() <= tier.maxSize(), "size " + tier.size());
+        assertTrue(tier.windowSize() >= 0, "window " + tier.windowSize());
+        assertTrue(tier.windowSize() <= tier.size(), "window " + tier.windowSize() + " of " + tier.size());
+    }
+}
@@ -0,0 +1,246 @@
+package ru.playland.core.optimization;
+
+import io.papermc.paper.entity.activation.ActivationType;
+import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import org.bukkit.support.environment.Normal;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Runs {@link PackedActivationRange.Table} against the vanilla loop: for every player, every entity in the chunks
+ * its largest box reaches into is activated if it is not active yet, it intersects the largest box and, unless it
+ * is always active, the box of its type
+ */
+@Normal
+public class PackedActivationRangeTest {
+
+    private static final int TYPES = ActivationType.values().length;
+    private static final double HEIGHT = 384.0;
+
+    @Test
+    public void testRandomWorlds() {
+        final Random random = new Random(1);
+        final PackedActivationRange.Table<Mob> table = new PackedActivationRange.Table<>();
+        for (int world = 0; world < 200; ++world) {
+            final int[] ranges = new int[TYPES];
+            int maxRange = 0;
+            for (int type = 0; type < TYPES; ++type) {
+                ranges[type] = 8 + random.nextInt(40);
+                maxRange = Math.max(maxRange, ranges[type]);
+            }
+
+            final List<Mob> mobs = new ArrayList<>();
+            for (int i = 0, count = random.nextInt(2_000); i < count; ++i) {
+                mobs.add(Mob.random(random, 300.0));
+            }
+            final List<double[]> players = new ArrayList<>();
+            for (int i = 0, count = random.nextInt(8); i < count; ++i) {
+                // Some close together, some on their own
+                players.add(player(random, random.nextBoolean() ? 40.0 : 2_000.0));
+            }
+
+            // The same table is reused every tick, like for a world
+            for (long tick = 1; tick <= 3; ++tick) {
+                for (final Mob mob : mobs) {
+                    // Active already this tick, like entities woken by an immunity
+                    mob.activatedTick = random.nextInt(10) == 0 ? tick : tick - 1 - random.nextInt(2);
+                }
+                assertSameActivated(table, mobs, players, ranges, maxRange, tick);
+            }
+        }
+    }
+
+    @Test
+    public void testLoneAndSharedPlayers() {
+        final Random random = new Random(2);
+        final PackedActivationRange.Table<Mob> table = new PackedActivationRange.Table<>();
+        final int[] ranges = {32, 32, 32, 32, 16, 48, 16};
+        final List<Mob> mobs = new ArrayList<>();
+        for (int i = 0; i < 5_000; ++i) {
+            final Mob mob = Mob.random(random, 200.0);
+            // A farm right on top of both players sharing it
+            mob.minX = mob.minX / 10.0;
+            mob.maxX = mob.minX + 0.6;
+            mobs.add(mob);
+        }
+        for (int i = 0; i < 500; ++i) {
+            final Mob mob = Mob.random(random, 2_000.0);
+            mob.minX += 10_000.0;
+            mob.maxX += 10_000.0;
+            mobs.add(mob);
+        }
+        final List<double[]> players = List.of(
+            box(0.0, 64.0, 0.0),
+            box(20.0, 64.0, 5.0),
+            box(10_000.0, 64.0, 0.0)
+        );
+
+        final int[] areas = new int[players.size() * 4];
+        for (int i = 0; i < players.size(); ++i) {
+            final double[] player = players.get(i);
+            PackedActivationRange.Table.area(areas, i, player[0] - 48, player[2] - 48, player[3] + 48, player[5] + 48);
+        }
+        final boolean[] shared = new boolean[players.size()];
+        PackedActivationRange.Table.overlap(areas, players.size(), shared);
+        assertTrue(shared[0]);
+        assertTrue(shared[1]);
+        assertFalse(shared[2]);
+
+        assertSameActivated(table, mobs, players, ranges, 48, 1L);
+    }
+
+    @Test
+    public void testAlwaysActive() {
+        final PackedActivationRange.Table<Mob> table = new PackedActivationRange.Table<>();
+        final int[] ranges = new int[TYPES];
+        Arrays.fill(ranges, 8);
+        // Out of the box of its type, in the largest box
+        final Mob always = new Mob(30.0, 64.0, 0.0, 1, true);
+        final Mob notAlways = new Mob(30.0, 64.0, 0.0, 1, false);
+        final Mob near = new Mob(4.0, 64.0, 0.0, 1, false);
+        final Mob active = new Mob(4.0, 64.0, 0.0, 1, false);
+        active.activatedTick = 5L;
+        final List<Mob> mobs = List.of(always, notAlways, near, active);
+
+        final Set<Mob> activated = assertSameActivated(table, mobs, List.of(box(0.0, 64.0, 0.0), box(1.0, 64.0, 1.0)), ranges, 40, 5L);
+        assertEquals(Set.of(always, near), activated);
+    }
+
+    /**
+     * Runs one tick through the table like {@code PackedActivationRange#activateEntities} and checks it against the
+     * vanilla loop, returns the entities activated
+     */
+    private static Set<Mob> assertSameActivated(final PackedActivationRange.Table<Mob> table, final List<Mob> mobs, final List<double[]> players,
+                                                final int[] ranges, final int maxRange, final long tick) {
+        final Set<Mob> expected = vanilla(mobs, players, ranges, maxRange, tick);
+
+        final Long2ObjectOpenHashMap<List<Mob>> chunks = new Long2ObjectOpenHashMap<>();
+        for (final Mob mob : mobs) {
+            chunks.computeIfAbsent(chunkKey(chunk(mob.minX), chunk(mob.minZ)), key -> new ArrayList<>()).add(mob);
+        }
+        final int count = players.size();
+        final int[] areas = new int[Math.max(1, count) * 4];
+        final boolean[] shared = new boolean[Math.max(1, count)];
+        for (int i = 0; i < count; ++i) {
+            final double[] player = players.get(i);
+            PackedActivationRange.Table.area(areas, i, player[0] - maxRange, player[2] - maxRange, player[3] + maxRange, player[5] + maxRange);
+        }
+        PackedActivationRange.Table.overlap(areas, count, shared);
+
+        for (int i = 0; i < count; ++i) {
+            final double[] player = players.get(i);
+            table.player(player[0], player[1], player[2], player[3], player[4], player[5], maxRange, ranges, HEIGHT, tick, shared[i]);
+            for (int chunkZ = table.minChunkZ(); chunkZ <= table.maxChunkZ(); ++chunkZ) {
+                for (int chunkX = table.minChunkX(); chunkX <= table.maxChunkX(); ++chunkX) {
+                    if (!table.startChunk(chunkX, chunkZ)) {
+                        continue;
+                    }
+                    for (final Mob mob : chunks.getOrDefault(chunkKey(chunkX, chunkZ), List.of())) {
+                        table.add(mob, mob.minX, mob.minY, mob.minZ, mob.maxX, mob.maxY, mob.maxZ, mob.activatedTick, mob.type, mob.alwaysActive);
+                    }
+                }
+            }
+            table.activate();
+        }
+
+        final Set<Mob> activated = new HashSet<>();
+        final int applied = table.apply((mob, activatedTick) -> {
+            assertTrue(activated.add(mob), "activated twice");
+            mob.activatedTick = activatedTick;
+        });
+        assertEquals(activated.size(), applied);
+        assertEquals(0, table.size());
+        assertEquals(expected, activated, "tick " + tick);
+        return activated;
+    }
+
+    // The player loop of ActivationRange#activateEntities, entities listed per player like getEntities
+    private static Set<Mob> vanilla(final List<Mob> mobs, final List<double[]> players, final int[] ranges, final int maxRange, final long tick) {
+        final Set<Mob> activated = new HashSet<>();
+        final long[] activatedTicks = new long[mobs.size()];
+        for (int i = 0; i < mobs.size(); ++i) {
+            activatedTicks[i] = mobs.get(i).activatedTick;
+        }
+        for (final double[] player : players) {
+            final double[] largest = inflate(player, maxRange);
+            final int minChunkX = PackedActivationRange.Table.minChunk(largest[0]);
+            final int minChunkZ = PackedActivationRange.Table.minChunk(largest[2]);
+            final int maxChunkX = PackedActivationRange.Table.maxChunk(largest[3]);
+            final int maxChunkZ = PackedActivationRange.Table.maxChunk(largest[5]);
+            for (int i = 0; i < mobs.size(); ++i) {
+                final Mob mob = mobs.get(i);
+                final int chunkX = chunk(mob.minX);
+                final int chunkZ = chunk(mob.minZ);
+                if (chunkX < minChunkX || chunkX > maxChunkX || chunkZ < minChunkZ || chunkZ > maxChunkZ || !mob.intersects(largest)) {
+                    continue;
+                }
+                if (tick > activatedTicks[i] && (mob.alwaysActive || mob.intersects(inflate(player, ranges[mob.type])))) {
+                    activatedTicks[i] = tick;
+                    activated.add(mob);
+                }
+            }
+        }
+        return activated;
+    }
+
+    private static double[] inflate(final double[] box, final int range) {
+        return new double[] {box[0] - range, box[1] - HEIGHT, box[2] - range, box[3] + range, box[4] + HEIGHT, box[5] + range};
+    }
+
+    private static double[] player(final Random random, final double spread) {
+        return box((random.nextDouble() - 0.5) * spread, -64.0 + random.nextDouble() * 384.0, (random.nextDouble() - 0.5) * spread);
+    }
+
+    private static double[] box(final double x, final double y, final double z) {
+        return new double[] {x - 0.3, y, z - 0.3, x + 0.3, y + 1.8, z + 0.3};
+    }
+
+    private static int chunk(final double coordinate) {
+        return (int) Math.floor(coordinate) >> 4;
+    }
+
+    private static long chunkKey(final int chunkX, final int chunkZ) {
+        return ((long) chunkZ << 32) | (chunkX & 0xFFFFFFFFL);
+    }
+
+    private static final class Mob {
+        private double minX;
+        private final double minY;
+        private final double minZ;
+        private double maxX;
+        private final double maxY;
+        private final double maxZ;
+        private final int type;
+        private final boolean alwaysActive;
+        private long activatedTick;
+
+        private Mob(final double x, final double y, final double z, final int type, final boolean alwaysActive) {
+            this.minX = x;
+            this.minY = y;
+            this.minZ = z;
+            this.maxX = x + 0.6;
+            this.maxY = y + 1.8;
+            this.maxZ = z + 0.6;
+            this.type = type;
+            this.alwaysActive = alwaysActive;
+        }
+
+        private static Mob random(final Random random, final double spread) {
+            return new Mob((random.nextDouble() - 0.5) * spread, -64.0 + random.nextDouble() * 384.0, (random.nextDouble() - 0.5) * spread,
+                random.nextInt(TYPES), random.nextInt(8) == 0);
+        }
+
+        private boolean intersects(final double[] box) {
+            return this.minX < box[3] && this.maxX > box[0] && this.minY < box[4] && this.maxY > box[1] && this.minZ < box[5] && this.maxZ > box[2];
+        }
+    }
+}
@@ -0,0 +1,106 @@
+package ru.playland.core.optimization;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.zip.Deflater;
+import org.bukkit.support.environment.Normal;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@Normal
+public class PacketDictionaryTest {
+
+    private static final int TEMPLATE_SIZE = 64;
+
+    @Test
+    public void testTrainManySamples() {
+        // 3000 samples of 8 KB: 24 MB of payloads, millions of distinct k-mers and 3M segments, which an unbounded
+        // candidate set keeps hundreds of MB for
+        final Random random = new Random(1);
+        final byte[][] templates = new byte[16][TEMPLATE_SIZE];
+        for (final byte[] template : templates) {
+            random.nextBytes(template);
+        }
+        final List<byte[]> samples = new ArrayList<>();
+        for (int i = 0; i < 3_000; ++i) {
+            samples.add(sample(random, templates, 8 * 1024));
+        }
+
+        final PacketDictionary dictionary = PacketDictionary.train(samples, 4096);
+        assertTrue(dictionary.size() <= 4096, "size " + dictionary.size());
+        for (final byte[] template : templates) {
+            assertTrue(contains(dictionary.bytes(), template, 32), "template missing from the dictionary");
+        }
+
+        // The point of it all, a new packet of the same kind compresses better
+        final byte[] packet = sample(random, templates, 2048);
+        assertTrue(deflate(packet, dictionary.bytes()) < deflate(packet, null));
+    }
+
+    @Test
+    public void testSizeLimit() {
+        final Random random = new Random(2);
+        final byte[][] templates = new byte[64][TEMPLATE_SIZE];
+        for (final byte[] template : templates) {
+            random.nextBytes(template);
+        }
+        final List<byte[]> samples = new ArrayList<>();
+        for (int i = 0; i < 200; ++i) {
+            samples.add(sample(random, templates, 4096));
+        }
+        assertTrue(PacketDictionary.train(samples, 256).size() <= 256);
+        assertTrue(PacketDictionary.train(samples, 1 << 20).size() <= PacketDictionary.MAX_SIZE);
+    }
+
+    @Test
+    public void testNoSamples() {
+        assertThrows(IllegalArgumentException.class, () -> PacketDictionary.train(List.of(), 4096));
+    }
+
+    // Random bytes with a template every few hundred bytes, like palettes and headers between block data
+    private static byte[] sample(final Random random, final byte[][] templates, final int size) {
+        final byte[] sample = new byte[size];
+        random.nextBytes(sample);
+        for (int offset = random.nextInt(256); offset + TEMPLATE_SIZE <= size; offset += TEMPLATE_SIZE + random.nextInt(512)) {
+            System.arraycopy(templates[random.nextInt(templates.length)], 0, sample, offset, TEMPLATE_SIZE);
+        }
+        return sample;
+    }
+
+    private static boolean contains(final byte[] data, final byte[] template, final int length) {
+        for (int start = 0; start + length <= template.length; ++start) {
+            search:
+            for (int offset = 0; offset + length <= data.length; ++offset) {
+                for (int i = 0; i < length; ++i) {
+                    if (data[offset + i] != template[start + i]) {
+                        continue search;
+                    }
+                }
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static int deflate(final byte[] data, final byte[] dictionary) {
+        final Deflater deflater = new Deflater();
+        try {
+            if (dictionary != null) {
+                deflater.setDictionary(dictionary);
+            }
+            deflater.setInput(data);
+            deflater.finish();
+            final byte[] out = new byte[data.length * 2];
+            int length = 0;
+            while (!deflater.finished()) {
+                length += deflater.deflate(out, length, out.length - length);
+            }
+            return length;
+        } finally {
+            deflater.end();
+        }
+    }
+}
@@ -0,0 +1,268 @@
+package ru.playland.core.optimization;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.Queue;
+import java.util.Random;
+import org.bukkit.support.environment.Normal;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Runs every sequence against the wheel and a {@link PriorityQueue} with the comparator of {@code CraftScheduler}
+ */
+@Normal
+public class TaskTimingWheelTest {
+
+    private static final Comparator<Task> ORDER = Comparator.<Task>comparingLong(task -> task.tick).thenComparingLong(task -> task.order);
+
+    @Test
+    public void testSameTickRunsInCreationOrder() {
+        final List<Task> tasks = new ArrayList<>();
+        for (int i = 0; i < 32; ++i) {
+            tasks.add(new Task(5 + i % 3, i));
+        }
+        // Offered out of creation order, like rescheduled repeating tasks
+        Collections.shuffle(tasks, new Random(1));
+
+        assertSameRuns(tasks, 0, 10);
+    }
+
+    @Test
+    public void testRootCascadeBoundary() {
+        final List<Task> tasks = new ArrayList<>();
+        int order = 0;
+        for (final long tick : new long[] {254, 255, 256, 257, 511, 512, 513}) {
+            // Later created first, the cascaded slot has to be sorted
+            tasks.add(new Task(tick, order + 1));
+            tasks.add(new Task(tick, order));
+            order += 2;
+        }
+
+        assertSameRuns(tasks, 0, 600);
+        // The same ticks from a cursor that is not aligned to a slot
+        assertSameRuns(copy(tasks), 100, 600);
+    }
+
+    @Test
+    public void testUpperCascadeBoundary() {
+        final List<Task> tasks = new ArrayList<>();
+        int order = 0;
+        for (final long tick : new long[] {(1 << 14) - 257, (1 << 14) - 1, 1 << 14, (1 << 14) + 1, (1 << 14) + 256, (1 << 15) + 3}) {
+            tasks.add(new Task(tick, order + 1));
+            tasks.add(new Task(tick, order));
+            order += 2;
+        }
+
+        assertSameRuns(tasks, 0, (1 << 15) + 10);
+        assertSameRuns(copy(tasks), 1000, (1 << 15) + 10);
+    }
+
+    @Test
+    public void testOverflow() {
+        final long wheel = 1L << 26;
+        final List<Task> tasks = new ArrayList<>();
+        int order = 0;
+        for (final long tick : new long[] {10, wheel - 1, wheel, wheel + 1, wheel + 300, 2 * wheel + 5, 3 * wheel}) {
+            tasks.add(new Task(tick, order + 1));
+            tasks.add(new Task(tick, order));
+            order += 2;
+        }
+
+        final TaskTimingWheel<Task> timingWheel = new TaskTimingWheel<>();
+        final PriorityQueue<Task> reference = new PriorityQueue<>(ORDER);
+        offer(timingWheel, reference, tasks);
+        // Stepping over whole ranges at once, every tick in between is still cascaded
+        for (final long tick : new long[] {0, 10, wheel - 2, wheel - 1, wheel, wheel + 299, wheel + 300, 2 * wheel + 5, 3 * wheel - 1, 3 * wheel}) {
+            assertEquals(run(reference, tick), run(timingWheel, tick), "tick " + tick);
+        }
+        assertTrue(timingWheel.isEmpty());
+
+        // Offered once the wheel is already far along
+        final List<Task> late = List.of(new Task(3 * wheel + 1, 100), new Task(4 * wheel + 7, 101), new Task(5 * wheel, 102));
+        offer(timingWheel, reference, late);
+        for (final long tick : new long[] {3 * wheel + 1, 4 * wheel + 6, 4 * wheel + 7, 5 * wheel}) {
+            assertEquals(run(reference, tick), run(timingWheel, tick), "tick " + tick);
+        }
+        assertTrue(timingWheel.isEmpty());
+    }
+
+    @Test
+    public void testRandomSchedule() {
+        final Random random = new Random(42);
+        final TaskTimingWheel<Task> wheel = new TaskTimingWheel<>();
+        final PriorityQueue<Task> reference = new PriorityQueue<>(ORDER);
+        final List<Task> pending = new ArrayList<>();
+        int order = 0;
+
+        for (long tick = 0; tick < 40_000; ++tick) {
+            for (int i = random.nextInt(4); i > 0; --i) {
+                final long delay = switch (random.nextInt(4)) {
+                    case 0 -> random.nextInt(4);
+                    case 1 -> random.nextInt(300);
+                    case 2 -> random.nextInt(20_000);
+                    default -> -random.nextInt(3);
+                };
+                // Creation order is not offer order, tasks are created before they are scheduled
+                final Task task = new Task(tick + delay, order + random.nextInt(8));
+                order += 8;
+                wheel.offer(task);
+                reference.offer(task);
+                pending.add(task);
+            }
+            if (!pending.isEmpty() && random.nextInt(8) == 0) {
+                final Task cancelled = pending.remove(random.nextInt(pending.size()));
+                assertEquals(reference.remove(cancelled), wheel.remove(cancelled));
+            }
+
+            final List<Task> expected = run(reference, tick);
+            assertEquals(expected, run(wheel, tick), "tick " + tick);
+            pending.removeAll(expected);
+            for (final Task task : expected) {
+                // Repeating tasks come back with a new tick and the same order
+                if (random.nextInt(3) == 0) {
+                    task.tick = tick + 1 + random.nextInt(500);
+                    wheel.offer(task);
+                    reference.offer(task);
+                    pending.add(task);
+                }
+            }
+            assertEquals(reference.size(), wheel.size());
+        }
+    }
+
+    @Test
+    public void testRemoveDuringIteration() {
+        final List<Task> tasks = new ArrayList<>();
+        for (int i = 0; i < 200; ++i) {
+            tasks.add(new Task(i * 97 % 20_000, i));
+        }
+        final TaskTimingWheel<Task> wheel = new TaskTimingWheel<>();
+        final PriorityQueue<Task> reference = new PriorityQueue<>(ORDER);
+        offer(wheel, reference, tasks);
+        // Some of them due, some cascaded
+        assertEquals(run(reference, 300), run(wheel, 300));
+
+        final List<Task> removed = new ArrayList<>();
+        int seen = 0;
+        for (final Iterator<Task> iterator = wheel.iterator(); iterator.hasNext(); ) {
+            final Task task = iterator.next();
+            ++seen;
+            if (task.order % 3 == 0) {
+                iterator.remove();
+                assertThrows(IllegalStateException.class, iterator::remove);
+                removed.add(task);
+            }
+        }
+        assertEquals(reference.size(), seen);
+        for (final Task task : removed) {
+            assertFalse(wheel.contains(task));
+            assertTrue(reference.remove(task));
+        }
+        assertEquals(reference.size(), wheel.size());
+
+        assertEquals(run(reference, 20_000), run(wheel, 20_000));
+        assertTrue(wheel.isEmpty());
+        // A removed task can be scheduled again
+        final Task task = removed.get(0);
+        task.tick = 20_001;
+        wheel.offer(task);
+        assertThrows(IllegalStateException.class, () -> wheel.offer(task));
+        assertEquals(List.of(task), run(wheel, 20_001));
+    }
+
+    @Test
+    public void testPeekWithNothingDue() {
+        final TaskTimingWheel<Task> wheel = new TaskTimingWheel<>();
+        final PriorityQueue<Task> reference = new PriorityQueue<>(ORDER);
+        assertNull(wheel.peek());
+        assertNull(wheel.poll());
+
+        offer(wheel, reference, List.of(new Task(70_000, 0), new Task(1_000, 5), new Task(1_000, 3), new Task(300, 9), new Task(1L << 27, 1)));
+        assertFalse(wheel.isReady(10));
+        for (int i = 0; i < 5; ++i) {
+            // Spread over the root, upper levels and overflow, the earliest one is found anyway
+            assertSame(reference.peek(), wheel.peek());
+            assertSame(wheel.peek(), wheel.peek());
+            assertSame(reference.poll(), wheel.poll());
+            assertEquals(reference.size(), wheel.size());
+        }
+        assertNull(wheel.peek());
+
+        // Due tasks come first, even if a later tick was created earlier
+        offer(wheel, reference, List.of(new Task(20, 7), new Task(25, 1)));
+        assertTrue(wheel.isReady(20));
+        assertSame(reference.peek(), wheel.peek());
+    }
+
+    private static void assertSameRuns(final List<Task> tasks, final long from, final long to) {
+        final TaskTimingWheel<Task> wheel = new TaskTimingWheel<>(from);
+        final PriorityQueue<Task> reference = new PriorityQueue<>(ORDER);
+        offer(wheel, reference, tasks);
+        for (long tick = from; tick <= to; ++tick) {
+            assertEquals(run(reference, tick), run(wheel, tick), "tick " + tick);
+        }
+        assertTrue(wheel.isEmpty());
+    }
+
+    private static void offer(final TaskTimingWheel<Task> wheel, final PriorityQueue<Task> reference, final List<Task> tasks) {
+        for (final Task task : tasks) {
+            wheel.offer(task);
+            reference.offer(task);
+        }
+    }
+
+    /**
+     * The tasks a scheduler runs on {@code tick}, like the loop of {@code CraftScheduler#mainThreadHeartbeat}
+     */
+    private static List<Task> run(final Queue<Task> queue, final long tick) {
+        final List<Task> ran = new ArrayList<>();
+        while (queue instanceof final TaskTimingWheel<Task> wheel ? wheel.isReady(tick) : !queue.isEmpty() && queue.peek().tick <= tick) {
+            ran.add(queue.poll());
+        }
+        return ran;
+    }
+
+    private static List<Task> copy(final List<Task> tasks) {
+        final List<Task> copy = new ArrayList<>();
+        for (final Task task : tasks) {
+            copy.add(new Task(task.tick, task.order));
+        }
+        return copy;
+    }
+
+    private static final class Task extends TaskTimingWheel.Node {
+        private long tick;
+        private final long order;
+
+        private Task(final long tick, final long order) {
+            this.tick = tick;
+            this.order = order;
+        }
+
+        @Override
+        protected long getWheelTick() {
+            return this.tick;
+        }
+
+        @Override
+        protected long getWheelOrder() {
+            return this.order;
+        }
+
+        @Override
+        public String toString() {
+            return "Task{tick=" + this.tick + ", order=" + this.order + "}";
+        }
+    }
+}
@@ -33,7 +33,7 @@ if (!file(".git").exists()) {
 
 rootProject.name = "paper"
 
-for (name in listOf("paper-api", "paper-server")) {
+for (name in listOf("paper-api", "paper-server", "paper-benchmarks")) {
     include(name)
     file(name).mkdirs()
 }